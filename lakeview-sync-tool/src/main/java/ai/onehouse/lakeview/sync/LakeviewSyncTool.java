@@ -13,6 +13,7 @@ import ai.onehouse.config.models.configv1.Database;
 import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
 import ai.onehouse.config.models.configv1.ParserConfig;
 import ai.onehouse.metadata_extractor.ActiveTimelineInstantBatcher;
+import ai.onehouse.metadata_extractor.CheckpointCache;
 import ai.onehouse.metadata_extractor.HoodiePropertiesReader;
 import ai.onehouse.metadata_extractor.TableDiscoveryAndUploadJob;
 import ai.onehouse.metadata_extractor.TableDiscoveryService;
@@ -21,6 +22,7 @@ import ai.onehouse.metadata_extractor.TimelineCommitInstantsUploader;
 import ai.onehouse.metrics.LakeViewExtractorMetrics;
 import ai.onehouse.metrics.Metrics;
 import ai.onehouse.storage.AsyncStorageClient;
+import ai.onehouse.storage.ByteBufferPool;
 import ai.onehouse.storage.GCSAsyncStorageClient;
 import ai.onehouse.storage.PresignedUrlFileUploader;
 import ai.onehouse.storage.S3AsyncStorageClient;
@@ -41,6 +43,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -70,6 +73,9 @@ public class LakeviewSyncTool extends HoodieSyncTool implements AutoCloseable {
   private static final int HTTP_CLIENT_DEFAULT_TIMEOUT_SECONDS = 15;
   private static final int HTTP_CLIENT_MAX_RETRIES = 3;
   private static final long HTTP_CLIENT_RETRY_DELAY_MS = 1000;
+  // uploads and api requests at the upper bounds of their concurrency limiters together
+  private static final int HTTP_CLIENT_MAX_REQUESTS =
+      PresignedUrlFileUploader.MAX_CONCURRENT_UPLOADS + OnehouseApiClient.MAX_CONCURRENT_REQUESTS;
 
   private final boolean isLakeviewSyncToolEnabled;
   @Nullable
@@ -91,8 +97,11 @@ public class LakeviewSyncTool extends HoodieSyncTool implements AutoCloseable {
     this.executorService = Executors.newFixedThreadPool(2);
     if (isLakeviewSyncToolEnabled) {
       this.config = getConfig(hoodieConfig);
-      this.asyncHttpClientWithRetry = getAsyncHttpClientWithRetry(executorService);
-      this.tableDiscoveryAndUploadJob = getTableDiscoveryAndUploadJob(this.config, this.executorService, this.asyncHttpClientWithRetry);
+      LakeViewExtractorMetrics lakeViewExtractorMetrics = new LakeViewExtractorMetrics(Metrics.getInstance(),
+          new ConfigProvider(this.config));
+      this.asyncHttpClientWithRetry = getAsyncHttpClientWithRetry(executorService, lakeViewExtractorMetrics);
+      this.tableDiscoveryAndUploadJob = getTableDiscoveryAndUploadJob(this.config, this.executorService,
+          this.asyncHttpClientWithRetry, lakeViewExtractorMetrics);
       this.httpClientTimeoutSeconds = hoodieConfig.getIntOrDefault(LakeviewSyncConfigHolder.LAKEVIEW_HTTP_CLIENT_TIMEOUT_SECONDS);
       this.httpClientMaxRetries = hoodieConfig.getIntOrDefault(LakeviewSyncConfigHolder.LAKEVIEW_HTTP_CLIENT_MAX_RETRIES);
       this.httpClientRetryDelayMs = Option.ofNullable(hoodieConfig.getLong(LakeviewSyncConfigHolder.LAKEVIEW_HTTP_CLIENT_RETRY_DELAY_MS)).orElse(Long.valueOf(LakeviewSyncConfigHolder.LAKEVIEW_HTTP_CLIENT_RETRY_DELAY_MS.defaultValue()));
@@ -243,13 +252,13 @@ public class LakeviewSyncTool extends HoodieSyncTool implements AutoCloseable {
 
   private TableDiscoveryAndUploadJob getTableDiscoveryAndUploadJob(@Nonnull Config config,
                                                                    @Nonnull ExecutorService executorService,
-                                                                   @Nonnull AsyncHttpClientWithRetry asyncHttpClientWithRetry) {
+                                                                   @Nonnull AsyncHttpClientWithRetry asyncHttpClientWithRetry,
+                                                                   @Nonnull LakeViewExtractorMetrics lakeViewExtractorMetrics) {
     StorageUtils storageUtils = new StorageUtils();
-    AsyncStorageClient asyncStorageClient = getAsyncStorageClient(config, executorService, storageUtils);
     ConfigProvider configProvider = new ConfigProvider(config);
 
-    LakeViewExtractorMetrics lakeViewExtractorMetrics = new LakeViewExtractorMetrics(Metrics.getInstance(),
-        configProvider);
+    AsyncStorageClient asyncStorageClient = getAsyncStorageClient(config, executorService, storageUtils,
+        lakeViewExtractorMetrics);
 
     TableDiscoveryService tableDiscoveryService = new TableDiscoveryService(asyncStorageClient, storageUtils,
             configProvider, executorService, lakeViewExtractorMetrics);
@@ -257,38 +266,52 @@ public class LakeviewSyncTool extends HoodieSyncTool implements AutoCloseable {
         lakeViewExtractorMetrics);
     OnehouseApiClient onehouseApiClient = new OnehouseApiClient(asyncHttpClientWithRetry, config,
         lakeViewExtractorMetrics);
+    MetadataExtractorConfig metadataExtractorConfig = config.getMetadataExtractorConfig();
+    ByteBufferPool byteBufferPool = new ByteBufferPool(metadataExtractorConfig.getFileUploadStreamBatchSize(),
+        metadataExtractorConfig.getFileUploadBufferPoolSize(), metadataExtractorConfig.isFileUploadUseDirectBuffers());
     PresignedUrlFileUploader presignedUrlFileUploader = new PresignedUrlFileUploader(asyncStorageClient,
-        asyncHttpClientWithRetry, lakeViewExtractorMetrics);
+        asyncHttpClientWithRetry, lakeViewExtractorMetrics, byteBufferPool);
+    CheckpointCache checkpointCache = new CheckpointCache(metadataExtractorConfig.getCheckpointCacheConfig(),
+        Clock.systemUTC());
     TimelineCommitInstantsUploader timelineCommitInstantsUploader = new TimelineCommitInstantsUploader(asyncStorageClient,
-        presignedUrlFileUploader, onehouseApiClient, storageUtils, executorService, new ActiveTimelineInstantBatcher(config),
-        lakeViewExtractorMetrics, config);
+        presignedUrlFileUploader, onehouseApiClient, checkpointCache, storageUtils, executorService,
+        new ActiveTimelineInstantBatcher(config), lakeViewExtractorMetrics, config);
     TableMetadataUploaderService tableMetadataUploaderService = new TableMetadataUploaderService(hoodiePropertiesReader,
-        onehouseApiClient, timelineCommitInstantsUploader, lakeViewExtractorMetrics, executorService);
+        onehouseApiClient, checkpointCache, timelineCommitInstantsUploader, lakeViewExtractorMetrics, executorService,
+        config);
 
     return new TableDiscoveryAndUploadJob(tableDiscoveryService, tableMetadataUploaderService, lakeViewExtractorMetrics);
   }
 
   private AsyncStorageClient getAsyncStorageClient(@Nonnull Config config, @Nonnull ExecutorService executorService,
-                                                   StorageUtils storageUtils) {
+                                                   StorageUtils storageUtils,
+                                                   LakeViewExtractorMetrics lakeViewExtractorMetrics) {
     if (config.getFileSystemConfiguration().getS3Config() != null) {
       S3AsyncClientProvider s3AsyncClientProvider = new S3AsyncClientProvider(config, executorService);
-      return new S3AsyncStorageClient(s3AsyncClientProvider, storageUtils, executorService);
+      return new S3AsyncStorageClient(s3AsyncClientProvider, storageUtils, executorService,
+          config.getFileSystemConfiguration().getRangedReadConfig());
     } else {
       GcsClientProvider gcsClientProvider = new GcsClientProvider(config);
-      return new GCSAsyncStorageClient(gcsClientProvider, storageUtils, executorService);
+      return new GCSAsyncStorageClient(gcsClientProvider, storageUtils, executorService,
+          config.getFileSystemConfiguration().getGcsConfig(), lakeViewExtractorMetrics,
+          config.getFileSystemConfiguration().getRangedReadConfig());
     }
   }
 
-  private AsyncHttpClientWithRetry getAsyncHttpClientWithRetry(@Nonnull ExecutorService executorService) {
-    Dispatcher dispatcher = new Dispatcher(executorService);
+  private AsyncHttpClientWithRetry getAsyncHttpClientWithRetry(@Nonnull ExecutorService executorService,
+                                                               @Nonnull LakeViewExtractorMetrics lakeViewExtractorMetrics) {
+    // calls run on okhttp's own executor, responses complete on the shared executor
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(HTTP_CLIENT_MAX_REQUESTS);
+    dispatcher.setMaxRequestsPerHost(HTTP_CLIENT_MAX_REQUESTS);
     OkHttpClient okHttpClient = new OkHttpClient.Builder()
         .readTimeout(httpClientTimeoutSeconds, TimeUnit.SECONDS)
         .writeTimeout(httpClientTimeoutSeconds, TimeUnit.SECONDS)
         .connectTimeout(httpClientTimeoutSeconds, TimeUnit.SECONDS)
         .dispatcher(dispatcher)
         .build();
-    return new AsyncHttpClientWithRetry(
-        httpClientMaxRetries, httpClientRetryDelayMs, okHttpClient);
+    return new AsyncHttpClientWithRetry(httpClientMaxRetries, httpClientRetryDelayMs, okHttpClient,
+        executorService, lakeViewExtractorMetrics);
   }
 
   @VisibleForTesting
@@ -319,12 +342,13 @@ public class LakeviewSyncTool extends HoodieSyncTool implements AutoCloseable {
   public void close() {
     try {
       super.close();
-      if (executorService != null) {
-        executorService.shutdown();
-      }
+      // the job writes held back checkpoints on shutdown, before the executor is shut down
       if (tableDiscoveryAndUploadJob != null) {
         tableDiscoveryAndUploadJob.shutdown();
       }
+      if (executorService != null) {
+        executorService.shutdown();
+      }
       if (asyncHttpClientWithRetry != null) {
         asyncHttpClientWithRetry.shutdownScheduler();
       }
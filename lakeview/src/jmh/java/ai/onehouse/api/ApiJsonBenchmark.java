@@ -0,0 +1,113 @@
+package ai.onehouse.api;
+
+import static ai.onehouse.constants.MetadataExtractorConstants.TABLE_PROCESSING_BATCH_SIZE;
+
+import ai.onehouse.api.models.request.CommitTimelineType;
+import ai.onehouse.api.models.request.UploadedFile;
+import ai.onehouse.api.models.request.UpsertTableMetricsCheckpointRequest;
+import ai.onehouse.api.models.response.GetTableMetricsCheckpointResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/*
+ * Writes a checkpoint update of a batch of uploaded files into a request and reads the checkpoints
+ * of a batch of tables from a response. STRING goes through an intermediate string, as the api
+ * client used to, and STREAMING through the shared readers and writers. Run with -prof gc to see
+ * the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ApiJsonBenchmark {
+  private static final MediaType JSON_MEDIA_TYPE =
+      MediaType.parse("application/json; charset=utf-8");
+  private static final int CHECKPOINT_SIZE = 4 * 1024;
+
+  public enum Codec {
+    STRING,
+    STREAMING
+  }
+
+  @Param({"STRING", "STREAMING"})
+  public Codec codec;
+
+  @Param({"1000"})
+  public int numUploadedFiles;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final Buffer sink = new Buffer();
+  private UpsertTableMetricsCheckpointRequest upsertRequest;
+  private byte[] getCheckpointsResponse;
+
+  @Setup
+  public void setup() throws IOException {
+    List<UploadedFile> uploadedFiles = new ArrayList<>();
+    for (int i = 0; i < numUploadedFiles; i++) {
+      uploadedFiles.add(
+          UploadedFile.builder()
+              .name(String.format("%017d.commit", i))
+              .lastModifiedAt(1700000000000L + i)
+              .build());
+    }
+    String checkpoint = StringUtils.repeat('c', CHECKPOINT_SIZE);
+    upsertRequest =
+        UpsertTableMetricsCheckpointRequest.builder()
+            .tableId(UUID.randomUUID().toString())
+            .checkpoint(checkpoint)
+            .filesUploaded(new ArrayList<>())
+            .uploadedFiles(uploadedFiles)
+            .commitTimelineType(CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE)
+            .build();
+    uploadedFiles.forEach(file -> upsertRequest.getFilesUploaded().add(file.getName()));
+
+    List<GetTableMetricsCheckpointResponse.TableMetadataCheckpoint> checkpoints =
+        new ArrayList<>();
+    for (int i = 0; i < TABLE_PROCESSING_BATCH_SIZE; i++) {
+      checkpoints.add(
+          new GetTableMetricsCheckpointResponse.TableMetadataCheckpoint(
+              UUID.randomUUID().toString(), checkpoint));
+    }
+    getCheckpointsResponse =
+        mapper.writeValueAsBytes(
+            GetTableMetricsCheckpointResponse.builder().checkpoints(checkpoints).build());
+  }
+
+  @Benchmark
+  public long writeUpsertRequest() throws IOException {
+    RequestBody requestBody =
+        codec == Codec.STRING
+            ? RequestBody.create(JSON_MEDIA_TYPE, mapper.writeValueAsString(upsertRequest))
+            : OnehouseApiClient.jsonRequestBody(upsertRequest);
+    requestBody.writeTo(sink);
+    long size = sink.size();
+    sink.clear();
+    return size;
+  }
+
+  @Benchmark
+  public GetTableMetricsCheckpointResponse readGetCheckpointsResponse() throws IOException {
+    try (ResponseBody responseBody = ResponseBody.create(JSON_MEDIA_TYPE, getCheckpointsResponse)) {
+      return codec == Codec.STRING
+          ? mapper.readValue(responseBody.string(), GetTableMetricsCheckpointResponse.class)
+          : JsonCodecs.readerFor(GetTableMetricsCheckpointResponse.class)
+              .readValue(responseBody.byteStream());
+    }
+  }
+}
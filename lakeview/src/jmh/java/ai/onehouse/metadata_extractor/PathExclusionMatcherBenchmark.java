@@ -0,0 +1,79 @@
+package ai.onehouse.metadata_extractor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/*
+ * Compares excluding 1M synthetic folder paths by calling String#matches for every pattern, which is
+ * how discovery used to exclude paths, with the precompiled PathExclusionMatcher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PathExclusionMatcherBenchmark {
+  private static final int NUM_PATHS = 1_000_000;
+  private static final List<String> PATTERNS =
+      Arrays.asList(
+          "s3://bucket/lake_1/db_1/",
+          "s3://bucket/lake_2/db_3/table_5/",
+          "s3://bucket/lake_3/.*",
+          "s3://bucket/lake_4/db_2/.*",
+          "s3://bucket/lake_5/db_\\d+/tmp_.*",
+          ".*/_temporary/.*");
+
+  private List<String> paths;
+  private PathExclusionMatcher pathExclusionMatcher;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    paths = new ArrayList<>(NUM_PATHS);
+    for (int i = 0; i < NUM_PATHS; i++) {
+      StringBuilder path =
+          new StringBuilder("s3://bucket/lake_")
+              .append(random.nextInt(10))
+              .append("/db_")
+              .append(random.nextInt(20))
+              .append('/');
+      int depth = random.nextInt(4);
+      for (int level = 0; level < depth; level++) {
+        path.append(random.nextInt(50) == 0 ? "_temporary" : "table_" + random.nextInt(1000))
+            .append('/');
+      }
+      paths.add(path.toString());
+    }
+    pathExclusionMatcher = new PathExclusionMatcher(PATTERNS);
+  }
+
+  @Benchmark
+  public int stringMatches() {
+    int numExcluded = 0;
+    for (String path : paths) {
+      if (PATTERNS.stream().anyMatch(path::matches)) {
+        numExcluded++;
+      }
+    }
+    return numExcluded;
+  }
+
+  @Benchmark
+  public int pathExclusionMatcher() {
+    int numExcluded = 0;
+    for (String path : paths) {
+      if (pathExclusionMatcher.isExcluded(path)) {
+        numExcluded++;
+      }
+    }
+    return numExcluded;
+  }
+}
@@ -0,0 +1,191 @@
+package ai.onehouse.storage;
+
+import ai.onehouse.api.AsyncHttpClientWithRetry;
+import ai.onehouse.config.ConfigProvider;
+import ai.onehouse.config.models.common.FileSystemConfiguration;
+import ai.onehouse.config.models.common.LocalFileSystemConfig;
+import ai.onehouse.config.models.common.OnehouseClientConfig;
+import ai.onehouse.config.models.configv1.ConfigV1;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import ai.onehouse.metrics.Metrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/*
+ * Uploads a batch of instant files to a local endpoint which answers each PUT after a fixed delay,
+ * standing in for the latency of presigned url uploads. The upload continuations run on a fixed
+ * size pool, the same way as on the extractor's executor, and the calls on okhttp's own dispatcher
+ * executor. BLOCKING_TASK waits for each upload inside a task of the pool, as uploads used to, and
+ * NON_BLOCKING composes on the http client's futures, which should not depend on the pool size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PresignedUrlUploadBenchmark {
+  private static final int NUM_FILES = 256;
+  private static final int FILE_SIZE_BYTES = 16 * 1024;
+  private static final long UPLOAD_LATENCY_MILLIS = 50;
+
+  public enum UploadMode {
+    BLOCKING_TASK,
+    NON_BLOCKING
+  }
+
+  @Param({"BLOCKING_TASK", "NON_BLOCKING"})
+  public UploadMode uploadMode;
+
+  @Param({"2", "8"})
+  public int poolSize;
+
+  private ConfigV1 config;
+  private Path directory;
+  private List<String> fileUris;
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private ForkJoinPool executorService;
+  private AsyncHttpClientWithRetry asyncHttpClientWithRetry;
+  private PresignedUrlFileUploader presignedUrlFileUploader;
+  private String uploadUrl;
+
+  @Setup
+  public void setup() throws IOException {
+    config =
+        ConfigV1.builder()
+            .version("V1")
+            .onehouseClientConfig(OnehouseClientConfig.builder().build())
+            .fileSystemConfiguration(
+                FileSystemConfiguration.builder()
+                    .localFileSystemConfig(LocalFileSystemConfig.builder().build())
+                    .build())
+            .metadataExtractorConfig(
+                MetadataExtractorConfig.builder().parserConfig(Collections.emptyList()).build())
+            .build();
+    directory = Files.createTempDirectory("presigned-url-upload-benchmark");
+    fileUris = new ArrayList<>();
+    for (int i = 0; i < NUM_FILES; i++) {
+      Path file = directory.resolve(String.format("%017d.commit", i));
+      Files.write(file, new byte[FILE_SIZE_BYTES]);
+      fileUris.add(file.toUri().toString());
+    }
+    serverExecutor = Executors.newCachedThreadPool();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+    server.createContext("/", PresignedUrlUploadBenchmark::handleUpload);
+    server.setExecutor(serverExecutor);
+    server.start();
+    uploadUrl = "http://localhost:" + server.getAddress().getPort() + "/upload";
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    // a new pool per iteration, so the threads it grows to are counted for this iteration only
+    executorService =
+        new ForkJoinPool(poolSize, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(NUM_FILES);
+    dispatcher.setMaxRequestsPerHost(NUM_FILES);
+    LakeViewExtractorMetrics hudiMetadataExtractorMetrics =
+        new LakeViewExtractorMetrics(Metrics.getInstance(), new ConfigProvider(config));
+    asyncHttpClientWithRetry =
+        new AsyncHttpClientWithRetry(
+            1,
+            1000L,
+            new OkHttpClient.Builder().dispatcher(dispatcher).build(),
+            executorService,
+            hudiMetadataExtractorMetrics);
+    presignedUrlFileUploader =
+        new PresignedUrlFileUploader(
+            new LocalAsyncStorageClient(
+                LocalFileSystemConfig.builder().build(), new StorageUtils(), executorService),
+            asyncHttpClientWithRetry,
+            hudiMetadataExtractorMetrics,
+            new ByteBufferPool(FILE_SIZE_BYTES, poolSize, false));
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownIteration() {
+    asyncHttpClientWithRetry.shutdownScheduler();
+    executorService.shutdown();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    server.stop(0);
+    serverExecutor.shutdown();
+    FileUtils.deleteDirectory(directory.toFile());
+  }
+
+  /*
+   * Largest number of threads the shared pool had to start while uploading, blocked pool threads
+   * are compensated with new ones.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class PoolCounters {
+    public long maxPoolThreads;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      maxPoolThreads = 0;
+    }
+  }
+
+  @Benchmark
+  public void uploadFiles(PoolCounters poolCounters) {
+    List<CompletableFuture<Void>> uploadFutures = new ArrayList<>();
+    for (String fileUri : fileUris) {
+      if (uploadMode == UploadMode.BLOCKING_TASK) {
+        uploadFutures.add(
+            CompletableFuture.runAsync(
+                () -> presignedUrlFileUploader.uploadFileToPresignedUrl(uploadUrl, fileUri).join(),
+                executorService));
+      } else {
+        uploadFutures.add(presignedUrlFileUploader.uploadFileToPresignedUrl(uploadUrl, fileUri));
+      }
+    }
+    CompletableFuture.allOf(uploadFutures.toArray(new CompletableFuture[0])).join();
+    poolCounters.maxPoolThreads =
+        Math.max(poolCounters.maxPoolThreads, executorService.getPoolSize());
+  }
+
+  private static void handleUpload(HttpExchange exchange) throws IOException {
+    try (InputStream requestBody = exchange.getRequestBody()) {
+      while (requestBody.read() != -1) {
+        // drain the uploaded file
+      }
+      Thread.sleep(UPLOAD_LATENCY_MILLIS);
+      exchange.sendResponseHeaders(200, -1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+}
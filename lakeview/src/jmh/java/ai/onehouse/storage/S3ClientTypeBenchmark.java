@@ -0,0 +1,259 @@
+package ai.onehouse.storage;
+
+import ai.onehouse.config.models.common.FileSystemConfiguration;
+import ai.onehouse.config.models.common.OnehouseClientConfig;
+import ai.onehouse.config.models.common.S3Config;
+import ai.onehouse.config.models.configv1.ConfigV1;
+import ai.onehouse.storage.models.File;
+import ai.onehouse.storage.providers.S3AsyncClientProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/*
+ * Compares the NETTY and CRT S3 clients on what a timeline upload does: listing the .hoodie folder of
+ * a table and reading its small instant files. Requests are served by an in-process S3 stand-in, so
+ * the numbers reflect client overhead rather than network latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class S3ClientTypeBenchmark {
+  private static final String BUCKET = "bucket";
+  private static final String TIMELINE_PREFIX = "table/.hoodie/";
+  private static final int NUM_INSTANT_FILES = 500;
+  private static final int INSTANT_FILE_SIZE_BYTES = 2048;
+
+  @Param({"NETTY", "CRT"})
+  public S3Config.S3ClientType clientType;
+
+  private LocalS3Server localS3Server;
+  private ExecutorService executorService;
+  private S3AsyncStorageClient s3AsyncStorageClient;
+
+  @Setup
+  public void setup() throws IOException {
+    localS3Server = new LocalS3Server();
+    for (int i = 0; i < NUM_INSTANT_FILES; i++) {
+      localS3Server.putObject(
+          String.format("%s%017d.commit", TIMELINE_PREFIX, i), new byte[INSTANT_FILE_SIZE_BYTES]);
+    }
+    executorService =
+        new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors() * 5,
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+            null,
+            true);
+    S3Config s3Config =
+        S3Config.builder()
+            .region("us-east-1")
+            .accessKey(Optional.of("access-key"))
+            .accessSecret(Optional.of("access-secret"))
+            .clientType(clientType)
+            .endpointOverride(Optional.of("http://localhost:" + localS3Server.getPort()))
+            .forcePathStyle(Optional.of(true))
+            .build();
+    ConfigV1 config =
+        ConfigV1.builder()
+            .version("V1")
+            .onehouseClientConfig(OnehouseClientConfig.builder().build())
+            .fileSystemConfiguration(FileSystemConfiguration.builder().s3Config(s3Config).build())
+            .build();
+    s3AsyncStorageClient =
+        new S3AsyncStorageClient(
+            new S3AsyncClientProvider(config, executorService), new StorageUtils(), executorService);
+  }
+
+  @TearDown
+  public void tearDown() {
+    localS3Server.stop();
+    executorService.shutdown();
+  }
+
+  /*
+   * Reads which fail are reported next to the score instead of failing the benchmark, so that
+   * sporadic client errors show up in the comparison.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class ReadCounters {
+    public long failedReads;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      failedReads = 0;
+    }
+  }
+
+  @Benchmark
+  public long listAndReadInstantFiles(ReadCounters readCounters) {
+    String timelineUri = String.format("s3://%s/%s", BUCKET, TIMELINE_PREFIX);
+    List<CompletableFuture<byte[]>> readFutures =
+        s3AsyncStorageClient.listAllFilesInDir(timelineUri).join().stream()
+            .filter(file -> !file.isDirectory())
+            .map(File::getFilename)
+            .map(filename -> s3AsyncStorageClient.readFileAsBytes(timelineUri + filename))
+            .collect(Collectors.toList());
+    long numBytesRead = 0;
+    for (CompletableFuture<byte[]> readFuture : readFutures) {
+      try {
+        numBytesRead += readFuture.join().length;
+      } catch (CompletionException e) {
+        readCounters.failedReads++;
+      }
+    }
+    return numBytesRead;
+  }
+
+  /*
+   * Serves the path style ListObjectsV2, HeadObject and GetObject requests of a single bucket from
+   * memory, including the ranged GETs the CRT client splits downloads into.
+   */
+  private static class LocalS3Server {
+    private final Map<String, byte[]> objects = new TreeMap<>();
+    private final HttpServer server;
+    private final ExecutorService serverExecutor = Executors.newFixedThreadPool(64);
+
+    LocalS3Server() throws IOException {
+      // responses are written in several packets, which Nagle's algorithm would delay
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+      server.createContext("/", this::handle);
+      server.setExecutor(serverExecutor);
+      server.start();
+    }
+
+    int getPort() {
+      return server.getAddress().getPort();
+    }
+
+    void putObject(String key, byte[] content) {
+      objects.put(key, content);
+    }
+
+    void stop() {
+      server.stop(0);
+      serverExecutor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+      try {
+        String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), "UTF-8");
+        String key = path.substring(Math.min(path.length(), BUCKET.length() + 2));
+        Map<String, String> queryParams = getQueryParams(exchange.getRequestURI().getRawQuery());
+        if (key.isEmpty() && "2".equals(queryParams.get("list-type"))) {
+          listObjects(exchange, queryParams.getOrDefault("prefix", ""));
+        } else if (objects.containsKey(key)) {
+          getObject(exchange, objects.get(key));
+        } else {
+          exchange.sendResponseHeaders(404, -1);
+        }
+      } finally {
+        exchange.close();
+      }
+    }
+
+    private void listObjects(HttpExchange exchange, String prefix) throws IOException {
+      StringBuilder response =
+          new StringBuilder(
+              "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                  + "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">");
+      response.append("<Name>").append(BUCKET).append("</Name>");
+      response.append("<Prefix>").append(prefix).append("</Prefix>");
+      response.append("<Delimiter>/</Delimiter><IsTruncated>false</IsTruncated>");
+      for (Map.Entry<String, byte[]> object : objects.entrySet()) {
+        if (object.getKey().startsWith(prefix)
+            && object.getKey().indexOf('/', prefix.length()) < 0) {
+          response
+              .append("<Contents><Key>")
+              .append(object.getKey())
+              .append("</Key><LastModified>2024-01-01T00:00:00.000Z</LastModified>")
+              .append("<ETag>\"etag\"</ETag><Size>")
+              .append(object.getValue().length)
+              .append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+        }
+      }
+      response.append("</ListBucketResult>");
+      exchange.getResponseHeaders().add("Content-Type", "application/xml");
+      sendResponse(exchange, 200, response.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void getObject(HttpExchange exchange, byte[] content) throws IOException {
+      exchange.getResponseHeaders().add("ETag", "\"etag\"");
+      exchange.getResponseHeaders().add("Last-Modified", "Mon, 01 Jan 2024 00:00:00 GMT");
+      if ("HEAD".equals(exchange.getRequestMethod())) {
+        exchange.getResponseHeaders().add("Content-Length", String.valueOf(content.length));
+        exchange.sendResponseHeaders(200, -1);
+        return;
+      }
+      String range = exchange.getRequestHeaders().getFirst("Range");
+      if (range == null) {
+        sendResponse(exchange, 200, content);
+        return;
+      }
+      String[] rangeBounds = range.substring("bytes=".length()).split("-");
+      int start = Integer.parseInt(rangeBounds[0]);
+      int end =
+          Math.min(
+              content.length - 1,
+              rangeBounds.length > 1 ? Integer.parseInt(rangeBounds[1]) : content.length - 1);
+      exchange
+          .getResponseHeaders()
+          .add("Content-Range", String.format("bytes %d-%d/%d", start, end, content.length));
+      byte[] rangeContent = new byte[end - start + 1];
+      System.arraycopy(content, start, rangeContent, 0, rangeContent.length);
+      sendResponse(exchange, 206, rangeContent);
+    }
+
+    private static void sendResponse(HttpExchange exchange, int statusCode, byte[] body)
+        throws IOException {
+      exchange.sendResponseHeaders(statusCode, body.length);
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+        outputStream.write(body);
+      }
+    }
+
+    private static Map<String, String> getQueryParams(String rawQuery)
+        throws UnsupportedEncodingException {
+      Map<String, String> queryParams = new HashMap<>();
+      if (rawQuery == null) {
+        return queryParams;
+      }
+      for (String param : rawQuery.split("&")) {
+        int separator = param.indexOf('=');
+        String name = separator < 0 ? param : param.substring(0, separator);
+        String value = separator < 0 ? "" : param.substring(separator + 1);
+        queryParams.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+      }
+      return queryParams;
+    }
+  }
+}
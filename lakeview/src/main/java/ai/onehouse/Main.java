@@ -105,6 +105,8 @@ public class Main {
       MetadataExtractorConfig.JobRunMode jobRunMode =
           ((ConfigV1) config).getMetadataExtractorConfig().getJobRunMode();
       if (MetadataExtractorConfig.JobRunMode.CONTINUOUS.equals(jobRunMode)) {
+        // the extractor runs until it is stopped, eg: by SIGTERM
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(config)));
         job.runInContinuousMode(config);
       } else {
         job.runOnce();
@@ -127,8 +129,9 @@ public class Main {
         Thread.currentThread().interrupt();
       }
     }
-    asyncHttpClientWithRetry.shutdownScheduler();
+    // the job writes held back checkpoints on shutdown, before the http client is shut down
     job.shutdown();
+    asyncHttpClientWithRetry.shutdownScheduler();
     metricsServer.shutdown();
     if (configRefresher != null) {
       configRefresher.shutdown();
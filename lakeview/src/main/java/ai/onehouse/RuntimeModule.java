@@ -4,15 +4,24 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import ai.onehouse.api.AsyncHttpClientWithRetry;
+import ai.onehouse.api.OnehouseApiClient;
 import ai.onehouse.config.Config;
 import ai.onehouse.config.ConfigProvider;
 import ai.onehouse.config.models.common.FileSystemConfiguration;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
+import ai.onehouse.metadata_extractor.CheckpointCache;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
 import ai.onehouse.storage.AsyncStorageClient;
+import ai.onehouse.storage.ByteBufferPool;
+import ai.onehouse.storage.CachingAsyncStorageClient;
 import ai.onehouse.storage.GCSAsyncStorageClient;
+import ai.onehouse.storage.LocalAsyncStorageClient;
+import ai.onehouse.storage.PresignedUrlFileUploader;
 import ai.onehouse.storage.S3AsyncStorageClient;
 import ai.onehouse.storage.StorageUtils;
 import ai.onehouse.storage.providers.GcsClientProvider;
 import ai.onehouse.storage.providers.S3AsyncClientProvider;
+import java.time.Clock;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinWorkerThread;
@@ -31,6 +40,11 @@ public class RuntimeModule extends AbstractModule {
   private static final int IO_WORKLOAD_NUM_THREAD_MULTIPLIER = 5;
   private static final int HTTP_CLIENT_DEFAULT_TIMEOUT_SECONDS = 15;
   private static final int HTTP_CLIENT_MAX_RETRIES = 3;
+  // the concurrency limiters of uploads and api requests can both be at their upper bound, calls
+  // beyond okhttp's limits, 64 in all and 5 per host by default, would queue while holding a permit
+  @VisibleForTesting
+  static final int HTTP_CLIENT_MAX_REQUESTS =
+      PresignedUrlFileUploader.MAX_CONCURRENT_UPLOADS + OnehouseApiClient.MAX_CONCURRENT_REQUESTS;
   private static final long HTTP_CLIENT_RETRY_DELAY_MS = 1000;
   private final Config config;
 
@@ -40,8 +54,12 @@ public class RuntimeModule extends AbstractModule {
 
   @Provides
   @Singleton
-  static OkHttpClient providesOkHttpClient(ExecutorService executorService) {
-    Dispatcher dispatcher = new Dispatcher(executorService);
+  static OkHttpClient providesOkHttpClient() {
+    // okhttp holds a dispatcher thread for the whole of a call, calls run on okhttp's own cached
+    // executor so that they do not take up the threads of the shared executor
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(HTTP_CLIENT_MAX_REQUESTS);
+    dispatcher.setMaxRequestsPerHost(HTTP_CLIENT_MAX_REQUESTS);
     return new OkHttpClient.Builder()
         .readTimeout(HTTP_CLIENT_DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
         .writeTimeout(HTTP_CLIENT_DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
@@ -52,9 +70,26 @@ public class RuntimeModule extends AbstractModule {
 
   @Provides
   @Singleton
-  static AsyncHttpClientWithRetry providesHttpAsyncClient(OkHttpClient okHttpClient) {
+  static AsyncHttpClientWithRetry providesHttpAsyncClient(
+      OkHttpClient okHttpClient,
+      ExecutorService executorService,
+      LakeViewExtractorMetrics hudiMetadataExtractorMetrics) {
     return new AsyncHttpClientWithRetry(
-        HTTP_CLIENT_MAX_RETRIES, HTTP_CLIENT_RETRY_DELAY_MS, okHttpClient);
+        HTTP_CLIENT_MAX_RETRIES,
+        HTTP_CLIENT_RETRY_DELAY_MS,
+        okHttpClient,
+        executorService,
+        hudiMetadataExtractorMetrics);
+  }
+
+  @Provides
+  @Singleton
+  static ByteBufferPool providesByteBufferPool(Config config) {
+    MetadataExtractorConfig metadataExtractorConfig = config.getMetadataExtractorConfig();
+    return new ByteBufferPool(
+        metadataExtractorConfig.getFileUploadStreamBatchSize(),
+        metadataExtractorConfig.getFileUploadBufferPoolSize(),
+        metadataExtractorConfig.isFileUploadUseDirectBuffers());
   }
 
   @Provides
@@ -64,19 +99,66 @@ public class RuntimeModule extends AbstractModule {
       StorageUtils storageUtils,
       S3AsyncClientProvider s3AsyncClientProvider,
       GcsClientProvider gcsClientProvider,
-      ExecutorService executorService) {
+      ExecutorService executorService,
+      LakeViewExtractorMetrics lakeViewExtractorMetrics) {
     FileSystemConfiguration fileSystemConfiguration = config.getFileSystemConfiguration();
+    AsyncStorageClient asyncStorageClient =
+        createAsyncStorageClient(
+            fileSystemConfiguration,
+            storageUtils,
+            s3AsyncClientProvider,
+            gcsClientProvider,
+            executorService,
+            lakeViewExtractorMetrics);
+    if (fileSystemConfiguration.getListingCacheConfig() != null) {
+      return new CachingAsyncStorageClient(
+          asyncStorageClient,
+          fileSystemConfiguration.getListingCacheConfig(),
+          storageUtils,
+          executorService,
+          lakeViewExtractorMetrics);
+    }
+    return asyncStorageClient;
+  }
+
+  private static AsyncStorageClient createAsyncStorageClient(
+      FileSystemConfiguration fileSystemConfiguration,
+      StorageUtils storageUtils,
+      S3AsyncClientProvider s3AsyncClientProvider,
+      GcsClientProvider gcsClientProvider,
+      ExecutorService executorService,
+      LakeViewExtractorMetrics lakeViewExtractorMetrics) {
     if (fileSystemConfiguration.getS3Config() != null) {
       s3AsyncClientProvider.getS3AsyncClient(); // to initialise the client
-      return new S3AsyncStorageClient(s3AsyncClientProvider, storageUtils, executorService);
+      return new S3AsyncStorageClient(
+          s3AsyncClientProvider,
+          storageUtils,
+          executorService,
+          fileSystemConfiguration.getRangedReadConfig());
+    } else if (fileSystemConfiguration.getLocalFileSystemConfig() != null) {
+      return new LocalAsyncStorageClient(
+          fileSystemConfiguration.getLocalFileSystemConfig(), storageUtils, executorService);
     } else {
       // if S3 File system credentials are not passed, we default to GCS as GCS client can be
       // instantiated without any credentials
       gcsClientProvider.getGcsClient();
-      return new GCSAsyncStorageClient(gcsClientProvider, storageUtils, executorService);
+      return new GCSAsyncStorageClient(
+          gcsClientProvider,
+          storageUtils,
+          executorService,
+          fileSystemConfiguration.getGcsConfig(),
+          lakeViewExtractorMetrics,
+          fileSystemConfiguration.getRangedReadConfig());
     }
   }
 
+  @Provides
+  @Singleton
+  static CheckpointCache providesCheckpointCache(Config config) {
+    return new CheckpointCache(
+        config.getMetadataExtractorConfig().getCheckpointCacheConfig(), Clock.systemUTC());
+  }
+
   @Provides
   @Singleton
   static ConfigProvider configProvider(Config config) {
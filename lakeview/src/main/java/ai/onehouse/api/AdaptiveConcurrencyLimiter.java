@@ -0,0 +1,170 @@
+package ai.onehouse.api;
+
+import ai.onehouse.constants.MetricsConstants;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Limits the number of concurrent requests with additive increase / multiplicative decrease. The
+ * limit grows by about one for every limit worth of successful requests while they are sent at the
+ * limit and their latency stays within LATENCY_TOLERANCE of the smoothed latency, and is cut by
+ * BACKOFF_RATIO when a request is throttled or times out. Requests beyond the limit wait in a queue
+ * for a permit.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+  private static final double BACKOFF_RATIO = 0.5;
+  private static final double LATENCY_TOLERANCE = 2.0;
+  // weight of a new latency sample in the smoothed latency
+  private static final double LATENCY_SMOOTHING_FACTOR = 0.05;
+
+  private final MetricsConstants.ConcurrencyLimiterType limiterType;
+  private final int minLimit;
+  private final int maxLimit;
+  private final LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
+  private final Ticker ticker;
+  private final Queue<CompletableFuture<Permit>> waitingAcquires = new ArrayDeque<>();
+  private double limit;
+  private int numInFlight;
+  private double smoothedLatencyNanos;
+  private long lastBackoffNanos;
+
+  public AdaptiveConcurrencyLimiter(
+      @Nonnull MetricsConstants.ConcurrencyLimiterType limiterType,
+      int initialLimit,
+      int minLimit,
+      int maxLimit,
+      @Nonnull LakeViewExtractorMetrics hudiMetadataExtractorMetrics) {
+    this(
+        limiterType,
+        initialLimit,
+        minLimit,
+        maxLimit,
+        hudiMetadataExtractorMetrics,
+        Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  AdaptiveConcurrencyLimiter(
+      MetricsConstants.ConcurrencyLimiterType limiterType,
+      int initialLimit,
+      int minLimit,
+      int maxLimit,
+      LakeViewExtractorMetrics hudiMetadataExtractorMetrics,
+      Ticker ticker) {
+    this.limiterType = limiterType;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = initialLimit;
+    this.hudiMetadataExtractorMetrics = hudiMetadataExtractorMetrics;
+    this.ticker = ticker;
+    this.lastBackoffNanos = ticker.read();
+    hudiMetadataExtractorMetrics.setConcurrencyLimit(limiterType, initialLimit);
+  }
+
+  public enum Outcome {
+    SUCCESS,
+    // throttled or timed out, the limit is reduced
+    DROPPED,
+    // failed for reasons unrelated to load, the limit is left unchanged
+    IGNORED
+  }
+
+  /*
+   * Completes once the request may be sent, the returned permit has to be released with the outcome
+   * of the request.
+   */
+  public CompletableFuture<Permit> acquire() {
+    CompletableFuture<Permit> permitFuture = new CompletableFuture<>();
+    int queueSize;
+    synchronized (this) {
+      if (numInFlight < getLimit()) {
+        numInFlight++;
+        permitFuture.complete(new Permit());
+        return permitFuture;
+      }
+      waitingAcquires.add(permitFuture);
+      queueSize = waitingAcquires.size();
+    }
+    hudiMetadataExtractorMetrics.setConcurrencyLimiterQueueSize(limiterType, queueSize);
+    return permitFuture;
+  }
+
+  @VisibleForTesting
+  synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  @VisibleForTesting
+  synchronized int getNumInFlight() {
+    return numInFlight;
+  }
+
+  private void release(Permit permit, Outcome outcome) {
+    long nowNanos = ticker.read();
+    long latencyNanos = nowNanos - permit.startNanos;
+    CompletableFuture<Permit> nextPermitFuture = null;
+    boolean isBackedOff = false;
+    int updatedLimit;
+    int queueSize;
+    synchronized (this) {
+      boolean isAtLimit = numInFlight >= getLimit();
+      numInFlight--;
+      if (outcome == Outcome.DROPPED) {
+        // requests sent before the last backoff saw the old limit, they do not back off again
+        if (permit.startNanos >= lastBackoffNanos) {
+          limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+          lastBackoffNanos = nowNanos;
+          isBackedOff = true;
+        }
+      } else if (outcome == Outcome.SUCCESS) {
+        boolean isLatencyStable =
+            smoothedLatencyNanos == 0 || latencyNanos <= smoothedLatencyNanos * LATENCY_TOLERANCE;
+        smoothedLatencyNanos =
+            smoothedLatencyNanos == 0
+                ? latencyNanos
+                : smoothedLatencyNanos
+                    + LATENCY_SMOOTHING_FACTOR * (latencyNanos - smoothedLatencyNanos);
+        // the limit only grows while it is what holds requests back
+        if (isAtLimit && isLatencyStable) {
+          limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+      }
+      if (numInFlight < getLimit() && !waitingAcquires.isEmpty()) {
+        numInFlight++;
+        nextPermitFuture = waitingAcquires.poll();
+      }
+      updatedLimit = getLimit();
+      queueSize = waitingAcquires.size();
+    }
+    if (isBackedOff) {
+      log.debug("Reduced {} concurrency limit to {}", limiterType, updatedLimit);
+    }
+    hudiMetadataExtractorMetrics.setConcurrencyLimit(limiterType, updatedLimit);
+    hudiMetadataExtractorMetrics.setConcurrencyLimiterQueueSize(limiterType, queueSize);
+    if (nextPermitFuture != null) {
+      nextPermitFuture.complete(new Permit());
+    }
+  }
+
+  public class Permit {
+    private final long startNanos = ticker.read();
+    private boolean isReleased;
+
+    public void release(Outcome outcome) {
+      synchronized (this) {
+        if (isReleased) {
+          return;
+        }
+        isReleased = true;
+      }
+      AdaptiveConcurrencyLimiter.this.release(this, outcome);
+    }
+  }
+}
@@ -1,15 +1,35 @@
 package ai.onehouse.api;
 
 import static ai.onehouse.constants.ApiConstants.ACCEPTABLE_HTTP_FAILURE_STATUS_CODES;
+import static ai.onehouse.constants.ApiConstants.ONEHOUSE_API_ENDPOINT;
 
+import ai.onehouse.exceptions.CircuitBreakerOpenException;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -17,7 +37,17 @@ import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import org.apache.commons.lang3.StringUtils;
 
+/*
+ * Sends requests and retries them with jittered exponential backoff, or after the delay asked for
+ * by the Retry-After header of a throttled response. Retries are drawn from a retry budget shared
+ * by all requests, and every endpoint has a circuit breaker which fails requests fast while the
+ * endpoint keeps failing, so that an outage is not made worse by every request retrying.
+ * Idempotent requests can be hedged to cut their tail latency.
+ * Calls run on the threads of okhttp's dispatcher, the returned futures are completed on the
+ * completion executor so that continuations do not hold up a dispatcher thread.
+ */
 @Slf4j
 public class AsyncHttpClientWithRetry {
 
@@ -25,30 +55,210 @@ public class AsyncHttpClientWithRetry {
   private final int maxRetries;
   private final long retryDelayMillis;
   private final OkHttpClient okHttpClient;
+  private final Executor completionExecutor;
+  private final LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
+  private final RetryBudget retryBudget;
+  // hedges are extra attempts as well, drawn from a budget of their own
+  private final RetryBudget hedgeBudget;
+  private final int circuitBreakerFailureThreshold;
+  private final Ticker ticker;
+  // keyed by getEndpoint
+  private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+  private final Map<String, LatencyTracker> latencyTrackers = new ConcurrentHashMap<>();
   private static final long MAX_RETRY_DELAY_MILLIS = 10000; // 10seconds
+  private static final long MAX_RETRY_AFTER_MILLIS = 60000;
+  private static final int RETRY_BUDGET_CAPACITY = 100;
+  private static final double RETRY_BUDGET_RATIO = 0.2;
+  private static final int CIRCUIT_BREAKER_FAILURE_THRESHOLD = 10;
+  private static final long CIRCUIT_BREAKER_OPEN_DURATION_NANOS = TimeUnit.SECONDS.toNanos(30);
+  private static final int HEDGE_BUDGET_CAPACITY = 10;
+  private static final double HEDGE_BUDGET_RATIO = 0.05;
+  private static final double HEDGE_LATENCY_PERCENTILE = 0.95;
+  private static final int HEDGE_LATENCY_WINDOW_SIZE = 200;
+  private static final int HEDGE_LATENCY_MIN_SAMPLES = 20;
+  private static final String RETRY_AFTER_HEADER = "Retry-After";
   private static final Random random = new Random();
+  private static final int TOO_MANY_REQUESTS_STATUS_CODE = 429;
+  private static final int SERVICE_UNAVAILABLE_STATUS_CODE = 503;
+  private static final HttpUrl ONEHOUSE_API_URL = HttpUrl.parse(ONEHOUSE_API_ENDPOINT);
 
   public AsyncHttpClientWithRetry(
-      int maxRetries, long retryDelayMillis, OkHttpClient okHttpClient) {
+      int maxRetries,
+      long retryDelayMillis,
+      OkHttpClient okHttpClient,
+      LakeViewExtractorMetrics hudiMetadataExtractorMetrics) {
+    this(
+        maxRetries,
+        retryDelayMillis,
+        okHttpClient,
+        MoreExecutors.directExecutor(),
+        hudiMetadataExtractorMetrics);
+  }
+
+  public AsyncHttpClientWithRetry(
+      int maxRetries,
+      long retryDelayMillis,
+      OkHttpClient okHttpClient,
+      Executor completionExecutor,
+      LakeViewExtractorMetrics hudiMetadataExtractorMetrics) {
+    this(
+        maxRetries,
+        retryDelayMillis,
+        okHttpClient,
+        completionExecutor,
+        hudiMetadataExtractorMetrics,
+        new RetryBudget(RETRY_BUDGET_CAPACITY, RETRY_BUDGET_RATIO),
+        new RetryBudget(HEDGE_BUDGET_CAPACITY, HEDGE_BUDGET_RATIO),
+        CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+        Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  AsyncHttpClientWithRetry(
+      int maxRetries,
+      long retryDelayMillis,
+      OkHttpClient okHttpClient,
+      Executor completionExecutor,
+      LakeViewExtractorMetrics hudiMetadataExtractorMetrics,
+      RetryBudget retryBudget,
+      RetryBudget hedgeBudget,
+      int circuitBreakerFailureThreshold,
+      Ticker ticker) {
     this.maxRetries = maxRetries;
     this.retryDelayMillis = retryDelayMillis;
     this.scheduler = Executors.newSingleThreadScheduledExecutor();
     this.okHttpClient = okHttpClient;
+    this.completionExecutor = completionExecutor;
+    this.hudiMetadataExtractorMetrics = hudiMetadataExtractorMetrics;
+    this.retryBudget = retryBudget;
+    this.hedgeBudget = hedgeBudget;
+    this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    this.ticker = ticker;
   }
 
   public CompletableFuture<Response> makeRequestWithRetry(Request request) {
-    return attemptRequest(request, 1);
+    return makeRequestWithRetry(request, null);
+  }
+
+  /*
+   * Each attempt waits for a permit from the concurrency limiter when one is given, and reports
+   * throttling responses and timeouts back to it so the limit is reduced.
+   */
+  public CompletableFuture<Response> makeRequestWithRetry(
+      Request request, @Nullable AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    retryBudget.onRequest();
+    return attemptRequest(request, 1, concurrencyLimiter);
+  }
+
+  /*
+   * For idempotent requests only: sends a second attempt when the request has not completed within
+   * the HEDGE_LATENCY_PERCENTILE latency of recent requests to the endpoint, and completes with the
+   * first response of either. The hedge is a single attempt without retries, and is skipped when
+   * the hedge budget is drained.
+   */
+  public CompletableFuture<Response> makeHedgedRequestWithRetry(
+      Request request, @Nullable AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    String endpoint = getEndpoint(request.url());
+    LatencyTracker latencyTracker =
+        latencyTrackers.computeIfAbsent(
+            endpoint,
+            key -> new LatencyTracker(HEDGE_LATENCY_WINDOW_SIZE, HEDGE_LATENCY_MIN_SAMPLES));
+    OptionalLong hedgeDelayNanos = latencyTracker.getPercentile(HEDGE_LATENCY_PERCENTILE);
+    hedgeBudget.onRequest();
+    hudiMetadataExtractorMetrics.incrementHttpHedgeEligibleCounter(endpoint);
+
+    long startNanos = ticker.read();
+    CompletableFuture<Response> primaryAttempt = makeRequestWithRetry(request, concurrencyLimiter);
+    primaryAttempt.thenAccept(response -> latencyTracker.record(ticker.read() - startNanos));
+    if (!hedgeDelayNanos.isPresent()) {
+      return primaryAttempt;
+    }
+
+    CompletableFuture<Response> future = new CompletableFuture<>();
+    AtomicInteger numPendingAttempts = new AtomicInteger(1);
+    completeWithFirstResponse(primaryAttempt, future, numPendingAttempts, () -> {});
+    ScheduledFuture<?> hedge =
+        scheduler.schedule(
+            () -> {
+              if (future.isDone() || !hedgeBudget.tryAcquireRetry()) {
+                return;
+              }
+              numPendingAttempts.incrementAndGet();
+              hudiMetadataExtractorMetrics.incrementHttpHedgeCounter(endpoint);
+              completeWithFirstResponse(
+                  attemptRequest(request, maxRetries, concurrencyLimiter),
+                  future,
+                  numPendingAttempts,
+                  () -> hudiMetadataExtractorMetrics.incrementHttpHedgeWinCounter(endpoint));
+            },
+            hedgeDelayNanos.getAsLong(),
+            TimeUnit.NANOSECONDS);
+    future.whenComplete((response, throwable) -> hedge.cancel(false));
+    return future;
+  }
+
+  // fails only once all attempts failed, responses arriving after the first are closed
+  private static void completeWithFirstResponse(
+      CompletableFuture<Response> attempt,
+      CompletableFuture<Response> future,
+      AtomicInteger numPendingAttempts,
+      Runnable onWin) {
+    attempt.whenComplete(
+        (response, throwable) -> {
+          int numRemainingAttempts = numPendingAttempts.decrementAndGet();
+          if (throwable == null) {
+            if (future.complete(response)) {
+              onWin.run();
+            } else {
+              response.close();
+            }
+          } else if (numRemainingAttempts == 0) {
+            future.completeExceptionally(throwable);
+          }
+        });
+  }
+
+  private CompletableFuture<Response> attemptRequest(
+      Request request, int tryCount, @Nullable AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    // rejected before waiting for a permit, requests to an open endpoint fail right away
+    String endpoint = getEndpoint(request.url());
+    if (!getCircuitBreaker(endpoint).tryAcquire()) {
+      hudiMetadataExtractorMetrics.incrementCircuitBreakerRejectedCounter(endpoint);
+      CompletableFuture<Response> future = new CompletableFuture<>();
+      future.completeExceptionally(new CircuitBreakerOpenException(endpoint));
+      return future;
+    }
+    if (concurrencyLimiter == null) {
+      return attemptRequest(request, tryCount, null, null);
+    }
+    return concurrencyLimiter
+        .acquire()
+        .thenCompose(permit -> attemptRequest(request, tryCount, concurrencyLimiter, permit));
   }
 
-  private CompletableFuture<Response> attemptRequest(Request request, int tryCount) {
+  private CompletableFuture<Response> attemptRequest(
+      Request request,
+      int tryCount,
+      @Nullable AdaptiveConcurrencyLimiter concurrencyLimiter,
+      @Nullable AdaptiveConcurrencyLimiter.Permit permit) {
     CompletableFuture<Response> future = new CompletableFuture<>();
+    String endpoint = getEndpoint(request.url());
+    CircuitBreaker circuitBreaker = getCircuitBreaker(endpoint);
     okHttpClient
         .newCall(request)
         .enqueue(
             new Callback() {
               @Override
               public void onFailure(@Nonnull Call call, @Nonnull IOException e) {
-                if (tryCount < maxRetries) {
+                if (permit != null) {
+                  // timeouts are reported as InterruptedIOException
+                  permit.release(
+                      e instanceof InterruptedIOException
+                          ? AdaptiveConcurrencyLimiter.Outcome.DROPPED
+                          : AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+                }
+                circuitBreaker.onFailure();
+                if (tryCount < maxRetries && tryAcquireRetry(endpoint)) {
                   Request request = call.request();
                   HttpUrl url = request.url();
                   String method = request.method();
@@ -59,17 +269,30 @@ public class AsyncHttpClientWithRetry {
                       url,
                       method);
 
-                  scheduleRetry(request, tryCount, future);
+                  scheduleRetry(
+                      request, tryCount, calculateDelay(tryCount), future, concurrencyLimiter);
                 } else {
-                  future.completeExceptionally(e);
+                  complete(future, null, e);
                 }
               }
 
               @Override
               public void onResponse(@Nonnull Call call, @Nonnull Response response) {
-                if (!response.isSuccessful()
-                    && !ACCEPTABLE_HTTP_FAILURE_STATUS_CODES.contains(response.code())
-                    && tryCount < maxRetries) {
+                if (permit != null) {
+                  permit.release(
+                      isThrottled(response)
+                          ? AdaptiveConcurrencyLimiter.Outcome.DROPPED
+                          : AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+                }
+                boolean isRetryable =
+                    !response.isSuccessful()
+                        && !ACCEPTABLE_HTTP_FAILURE_STATUS_CODES.contains(response.code());
+                if (isRetryable) {
+                  circuitBreaker.onFailure();
+                } else {
+                  circuitBreaker.onSuccess();
+                }
+                if (isRetryable && tryCount < maxRetries && tryAcquireRetry(endpoint)) {
                   Request request = call.request();
                   HttpUrl url = request.url();
                   String method = request.method();
@@ -80,10 +303,14 @@ public class AsyncHttpClientWithRetry {
                       tryCount,
                       url,
                       method);
+                  long delayMillis =
+                      Math.min(
+                          Math.max(calculateDelay(tryCount), getRetryAfterMillis(response)),
+                          MAX_RETRY_AFTER_MILLIS);
                   response.close();
-                  scheduleRetry(request, tryCount, future);
+                  scheduleRetry(request, tryCount, delayMillis, future, concurrencyLimiter);
                 } else {
-                  future.complete(response);
+                  complete(future, response, null);
                 }
               }
             });
@@ -91,11 +318,98 @@ public class AsyncHttpClientWithRetry {
     return future;
   }
 
-  private void scheduleRetry(Request request, int tryCount, CompletableFuture<Response> future) {
+  // completed on the calling thread once the completion executor is shut down
+  private void complete(
+      CompletableFuture<Response> future,
+      @Nullable Response response,
+      @Nullable Throwable throwable) {
+    Runnable completion =
+        () -> {
+          if (throwable != null) {
+            future.completeExceptionally(throwable);
+          } else {
+            future.complete(response);
+          }
+        };
+    try {
+      completionExecutor.execute(completion);
+    } catch (RejectedExecutionException e) {
+      completion.run();
+    }
+  }
+
+  private static boolean isThrottled(Response response) {
+    return response.code() == TOO_MANY_REQUESTS_STATUS_CODE
+        || response.code() == SERVICE_UNAVAILABLE_STATUS_CODE;
+  }
+
+  private boolean tryAcquireRetry(String endpoint) {
+    if (!retryBudget.tryAcquireRetry()) {
+      log.warn("Retry budget exhausted, not retrying request to endpoint {}", endpoint);
+      hudiMetadataExtractorMetrics.incrementHttpRetryBudgetExhaustedCounter(endpoint);
+      return false;
+    }
+    hudiMetadataExtractorMetrics.incrementHttpRetryCounter(endpoint);
+    return true;
+  }
+
+  private CircuitBreaker getCircuitBreaker(String endpoint) {
+    return circuitBreakers.computeIfAbsent(
+        endpoint,
+        key ->
+            new CircuitBreaker(
+                key,
+                circuitBreakerFailureThreshold,
+                CIRCUIT_BREAKER_OPEN_DURATION_NANOS,
+                hudiMetadataExtractorMetrics,
+                ticker));
+  }
+
+  /*
+   * Requests to the onehouse api are told apart by the last segment of their path, eg:
+   * upload-urls or checkpoint, and presigned url uploads by their host.
+   */
+  @VisibleForTesting
+  static String getEndpoint(HttpUrl url) {
+    if (ONEHOUSE_API_URL != null && url.host().equals(ONEHOUSE_API_URL.host())) {
+      List<String> pathSegments = url.pathSegments();
+      return StringUtils.defaultIfEmpty(pathSegments.get(pathSegments.size() - 1), url.host());
+    }
+    return url.host();
+  }
+
+  // Retry-After holds either the number of seconds to wait or the date to wait until
+  @VisibleForTesting
+  static long getRetryAfterMillis(Response response) {
+    String retryAfter = response.header(RETRY_AFTER_HEADER);
+    if (StringUtils.isBlank(retryAfter)) {
+      return 0;
+    }
+    try {
+      return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.trim())));
+    } catch (NumberFormatException e) {
+      try {
+        Instant retryAt =
+            ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                .toInstant();
+        return Math.max(0, Duration.between(Instant.now(), retryAt).toMillis());
+      } catch (DateTimeParseException dateTimeParseException) {
+        log.warn("Ignoring invalid {} header: {}", RETRY_AFTER_HEADER, retryAfter);
+        return 0;
+      }
+    }
+  }
+
+  private void scheduleRetry(
+      Request request,
+      int tryCount,
+      long delayMillis,
+      CompletableFuture<Response> future,
+      @Nullable AdaptiveConcurrencyLimiter concurrencyLimiter) {
     scheduler.schedule(
         () -> {
           log.info("Scheduling request with attempt: {}", (tryCount + 1));
-          attemptRequest(request, tryCount + 1)
+          attemptRequest(request, tryCount + 1, concurrencyLimiter)
               .whenComplete(
                   (resp, throwable) -> {
                     if (throwable != null) {
@@ -105,7 +419,7 @@ public class AsyncHttpClientWithRetry {
                     }
                   });
         },
-        calculateDelay(tryCount),
+        delayMillis,
         TimeUnit.MILLISECONDS);
   }
 
@@ -0,0 +1,98 @@
+package ai.onehouse.api;
+
+import ai.onehouse.constants.MetricsConstants;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Stops sending requests to an endpoint which keeps failing. The breaker opens after
+ * failureThreshold consecutive failures and rejects requests until openDurationNanos have passed,
+ * then lets a single trial request through: the breaker closes when it succeeds and opens again
+ * when it fails.
+ */
+@Slf4j
+class CircuitBreaker {
+  private final String endpoint;
+  private final int failureThreshold;
+  private final long openDurationNanos;
+  private final LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
+  private final Ticker ticker;
+  private MetricsConstants.CircuitBreakerState state = MetricsConstants.CircuitBreakerState.CLOSED;
+  private int numConsecutiveFailures;
+  private long openedAtNanos;
+  private boolean trialInFlight;
+
+  CircuitBreaker(
+      String endpoint,
+      int failureThreshold,
+      long openDurationNanos,
+      LakeViewExtractorMetrics hudiMetadataExtractorMetrics,
+      Ticker ticker) {
+    this.endpoint = endpoint;
+    this.failureThreshold = failureThreshold;
+    this.openDurationNanos = openDurationNanos;
+    this.hudiMetadataExtractorMetrics = hudiMetadataExtractorMetrics;
+    this.ticker = ticker;
+    hudiMetadataExtractorMetrics.setCircuitBreakerState(endpoint, state);
+  }
+
+  /*
+   * Returns whether a request may be sent, the outcome of an allowed request has to be reported
+   * with onSuccess or onFailure.
+   */
+  synchronized boolean tryAcquire() {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (ticker.read() - openedAtNanos < openDurationNanos) {
+          return false;
+        }
+        setState(MetricsConstants.CircuitBreakerState.HALF_OPEN);
+        trialInFlight = true;
+        return true;
+      default:
+        if (trialInFlight) {
+          return false;
+        }
+        trialInFlight = true;
+        return true;
+    }
+  }
+
+  synchronized void onSuccess() {
+    numConsecutiveFailures = 0;
+    trialInFlight = false;
+    if (state != MetricsConstants.CircuitBreakerState.CLOSED) {
+      log.info("Closing circuit breaker of endpoint {}", endpoint);
+      setState(MetricsConstants.CircuitBreakerState.CLOSED);
+    }
+  }
+
+  synchronized void onFailure() {
+    numConsecutiveFailures++;
+    trialInFlight = false;
+    if (state == MetricsConstants.CircuitBreakerState.HALF_OPEN
+        || (state == MetricsConstants.CircuitBreakerState.CLOSED
+            && numConsecutiveFailures >= failureThreshold)) {
+      log.warn(
+          "Opening circuit breaker of endpoint {} after {} consecutive failures",
+          endpoint,
+          numConsecutiveFailures);
+      openedAtNanos = ticker.read();
+      setState(MetricsConstants.CircuitBreakerState.OPEN);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized MetricsConstants.CircuitBreakerState getState() {
+    return state;
+  }
+
+  private void setState(MetricsConstants.CircuitBreakerState state) {
+    this.state = state;
+    hudiMetadataExtractorMetrics.setCircuitBreakerState(endpoint, state);
+  }
+}
@@ -0,0 +1,36 @@
+package ai.onehouse.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Readers and writers of the api payloads and checkpoints, built from a single mapper. Readers and
+ * writers are immutable and thread safe, so they are built once per type and shared instead of
+ * every class configuring a mapper of its own.
+ */
+public final class JsonCodecs {
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper().registerModule(new JavaTimeModule());
+  private static final ObjectWriter WRITER = MAPPER.writer();
+  private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+  private JsonCodecs() {}
+
+  public static ObjectReader readerFor(Class<?> type) {
+    return READERS.computeIfAbsent(type, MAPPER::readerFor);
+  }
+
+  public static ObjectWriter writerFor(Class<?> type) {
+    return WRITERS.computeIfAbsent(type, MAPPER::writerFor);
+  }
+
+  // writes values with their runtime type
+  public static ObjectWriter writer() {
+    return WRITER;
+  }
+}
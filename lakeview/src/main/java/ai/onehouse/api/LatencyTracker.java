@@ -0,0 +1,39 @@
+package ai.onehouse.api;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+
+/*
+ * Latencies of the last windowSize requests to an endpoint, from which the hedging delay is taken.
+ */
+class LatencyTracker {
+  private final long[] latenciesNanos;
+  private final int minSamples;
+  private int numSamples;
+  private int nextSample;
+
+  LatencyTracker(int windowSize, int minSamples) {
+    this.latenciesNanos = new long[windowSize];
+    this.minSamples = minSamples;
+  }
+
+  synchronized void record(long latencyNanos) {
+    latenciesNanos[nextSample] = latencyNanos;
+    nextSample = (nextSample + 1) % latenciesNanos.length;
+    numSamples = Math.min(numSamples + 1, latenciesNanos.length);
+  }
+
+  /*
+   * Returns the latency below which the given fraction of the recorded requests completed, empty
+   * until minSamples requests are recorded.
+   */
+  synchronized OptionalLong getPercentile(double percentile) {
+    if (numSamples < minSamples || numSamples == 0) {
+      return OptionalLong.empty();
+    }
+    long[] sortedLatenciesNanos = Arrays.copyOf(latenciesNanos, numSamples);
+    Arrays.sort(sortedLatenciesNanos);
+    int index = (int) Math.ceil(percentile * numSamples) - 1;
+    return OptionalLong.of(sortedLatenciesNanos[Math.max(0, Math.min(index, numSamples - 1))]);
+  }
+}
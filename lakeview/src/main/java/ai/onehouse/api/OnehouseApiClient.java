@@ -1,7 +1,11 @@
 package ai.onehouse.api;
 
 import static ai.onehouse.constants.ApiConstants.ACCEPTABLE_HTTP_FAILURE_STATUS_CODES;
+import static ai.onehouse.constants.ApiConstants.BATCH_GENERATE_COMMIT_METADATA_UPLOAD_URL;
+import static ai.onehouse.constants.ApiConstants.BULK_GET_TABLE_METRICS_CHECKPOINT;
+import static ai.onehouse.constants.ApiConstants.COMPLETE_MULTIPART_UPLOAD;
 import static ai.onehouse.constants.ApiConstants.GENERATE_COMMIT_METADATA_UPLOAD_URL;
+import static ai.onehouse.constants.ApiConstants.GENERATE_MULTIPART_UPLOAD_URLS;
 import static ai.onehouse.constants.ApiConstants.GET_TABLE_METRICS_CHECKPOINT;
 import static ai.onehouse.constants.ApiConstants.INITIALIZE_TABLE_METRICS_CHECKPOINT;
 import static ai.onehouse.constants.ApiConstants.LINK_UID_KEY;
@@ -13,20 +17,28 @@ import static ai.onehouse.constants.ApiConstants.ONEHOUSE_USER_UUID_KEY;
 import static ai.onehouse.constants.ApiConstants.PROJECT_UID_KEY;
 import static ai.onehouse.constants.ApiConstants.UNAUTHORIZED_ERROR_MESSAGE;
 import static ai.onehouse.constants.ApiConstants.UPSERT_TABLE_METRICS_CHECKPOINT;
+import static ai.onehouse.constants.MetadataExtractorConstants.UPLOAD_URL_BATCH_MAX_REQUESTS;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
+import ai.onehouse.api.models.request.BatchGenerateCommitMetadataUploadUrlRequest;
+import ai.onehouse.api.models.request.BulkGetTableMetricsCheckpointsRequest;
+import ai.onehouse.api.models.request.CompleteMultipartUploadRequest;
 import ai.onehouse.api.models.request.GenerateCommitMetadataUploadUrlRequest;
+import ai.onehouse.api.models.request.GenerateMultipartUploadUrlsRequest;
 import ai.onehouse.api.models.request.InitializeTableMetricsCheckpointRequest;
 import ai.onehouse.api.models.request.UpsertTableMetricsCheckpointRequest;
 import ai.onehouse.api.models.response.ApiResponse;
+import ai.onehouse.api.models.response.BatchGenerateCommitMetadataUploadUrlResponse;
+import ai.onehouse.api.models.response.CompleteMultipartUploadResponse;
 import ai.onehouse.api.models.response.GenerateCommitMetadataUploadUrlResponse;
+import ai.onehouse.api.models.response.GenerateMultipartUploadUrlsResponse;
 import ai.onehouse.api.models.response.GetTableMetricsCheckpointResponse;
 import ai.onehouse.api.models.response.InitializeTableMetricsCheckpointResponse;
 import ai.onehouse.api.models.response.UpsertTableMetricsCheckpointResponse;
 import ai.onehouse.config.Config;
 import ai.onehouse.config.models.common.OnehouseClientConfig;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
 import ai.onehouse.constants.MetricsConstants;
 import ai.onehouse.metrics.LakeViewExtractorMetrics;
 import java.io.IOException;
@@ -36,6 +48,8 @@ import java.text.MessageFormat;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
 import lombok.SneakyThrows;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
@@ -43,13 +57,24 @@ import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.apache.commons.lang3.StringUtils;
 
+// shared by all components, so that they are throttled by one limiter
+@Singleton
 public class OnehouseApiClient {
+  private static final int INITIAL_CONCURRENT_REQUESTS = 8;
+  private static final int MIN_CONCURRENT_REQUESTS = 1;
+  public static final int MAX_CONCURRENT_REQUESTS = 32;
+  private static final MediaType JSON_MEDIA_TYPE =
+      MediaType.parse("application/json; charset=utf-8");
   private final AsyncHttpClientWithRetry asyncClient;
   private final Headers headers;
   private final LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
-  private final ObjectMapper mapper;
+  private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+  private final boolean requestHedgingEnabled;
+  // set when upload url requests of concurrent tables are sent together
+  @Nullable private final UploadUrlRequestBatcher uploadUrlRequestBatcher;
 
   @Inject
   public OnehouseApiClient(
@@ -59,15 +84,29 @@ public class OnehouseApiClient {
     this.asyncClient = asyncClient;
     this.headers = getHeaders(config.getOnehouseClientConfig());
     this.hudiMetadataExtractorMetrics = hudiMetadataExtractorMetrics;
-    this.mapper = new ObjectMapper();
+    this.concurrencyLimiter =
+        new AdaptiveConcurrencyLimiter(
+            MetricsConstants.ConcurrencyLimiterType.ONEHOUSE_API,
+            INITIAL_CONCURRENT_REQUESTS,
+            MIN_CONCURRENT_REQUESTS,
+            MAX_CONCURRENT_REQUESTS,
+            hudiMetadataExtractorMetrics);
+    MetadataExtractorConfig metadataExtractorConfig = config.getMetadataExtractorConfig();
+    this.requestHedgingEnabled = metadataExtractorConfig.isRequestHedgingEnabled();
+    this.uploadUrlRequestBatcher =
+        metadataExtractorConfig.getUploadUrlBatchWindowMillis() > 0
+            ? new UploadUrlRequestBatcher(
+                metadataExtractorConfig.getUploadUrlBatchWindowMillis(),
+                UPLOAD_URL_BATCH_MAX_REQUESTS,
+                this)
+            : null;
   }
 
-  @SneakyThrows
   public CompletableFuture<InitializeTableMetricsCheckpointResponse>
       initializeTableMetricsCheckpoint(InitializeTableMetricsCheckpointRequest request) {
     return asyncPost(
         INITIALIZE_TABLE_METRICS_CHECKPOINT,
-        mapper.writeValueAsString(request),
+        request,
         InitializeTableMetricsCheckpointResponse.class);
   }
 
@@ -83,22 +122,61 @@ public class OnehouseApiClient {
     return asyncGet(url, GetTableMetricsCheckpointResponse.class);
   }
 
-  @SneakyThrows
+  public CompletableFuture<GetTableMetricsCheckpointResponse> bulkGetTableMetricsCheckpoints(
+      BulkGetTableMetricsCheckpointsRequest request) {
+    return asyncPost(
+        BULK_GET_TABLE_METRICS_CHECKPOINT, request, GetTableMetricsCheckpointResponse.class, true);
+  }
+
   public CompletableFuture<UpsertTableMetricsCheckpointResponse> upsertTableMetricsCheckpoint(
       UpsertTableMetricsCheckpointRequest request) {
     return asyncPost(
         MessageFormat.format(UPSERT_TABLE_METRICS_CHECKPOINT, request.getTableId()),
-        mapper.writeValueAsString(request),
+        request,
         UpsertTableMetricsCheckpointResponse.class);
   }
 
-  @SneakyThrows
   public CompletableFuture<GenerateCommitMetadataUploadUrlResponse> generateCommitMetadataUploadUrl(
       GenerateCommitMetadataUploadUrlRequest request) {
+    if (uploadUrlRequestBatcher != null) {
+      return uploadUrlRequestBatcher.generateCommitMetadataUploadUrl(request);
+    }
+    return generateCommitMetadataUploadUrlPerTable(request);
+  }
+
+  CompletableFuture<GenerateCommitMetadataUploadUrlResponse>
+      generateCommitMetadataUploadUrlPerTable(GenerateCommitMetadataUploadUrlRequest request) {
     return asyncPost(
         MessageFormat.format(GENERATE_COMMIT_METADATA_UPLOAD_URL, request.getTableId()),
-        mapper.writeValueAsString(request),
-        GenerateCommitMetadataUploadUrlResponse.class);
+        request,
+        GenerateCommitMetadataUploadUrlResponse.class,
+        true);
+  }
+
+  public CompletableFuture<BatchGenerateCommitMetadataUploadUrlResponse>
+      batchGenerateCommitMetadataUploadUrl(BatchGenerateCommitMetadataUploadUrlRequest request) {
+    return asyncPost(
+        BATCH_GENERATE_COMMIT_METADATA_UPLOAD_URL,
+        request,
+        BatchGenerateCommitMetadataUploadUrlResponse.class,
+        true);
+  }
+
+  // starts a multipart upload on every call, so it is never hedged
+  public CompletableFuture<GenerateMultipartUploadUrlsResponse> generateMultipartUploadUrls(
+      GenerateMultipartUploadUrlsRequest request) {
+    return asyncPost(
+        MessageFormat.format(GENERATE_MULTIPART_UPLOAD_URLS, request.getTableId()),
+        request,
+        GenerateMultipartUploadUrlsResponse.class);
+  }
+
+  public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUpload(
+      CompleteMultipartUploadRequest request) {
+    return asyncPost(
+        MessageFormat.format(COMPLETE_MULTIPART_UPLOAD, request.getTableId()),
+        request,
+        CompleteMultipartUploadResponse.class);
   }
 
   @VisibleForTesting
@@ -121,32 +199,52 @@ public class OnehouseApiClient {
   <T> CompletableFuture<T> asyncGet(String url, Class<T> typeReference) {
     Request request = new Request.Builder().url(url).headers(headers).build();
 
-    return asyncClient
-        .makeRequestWithRetry(request)
-        .thenApply(response -> handleResponse(response, typeReference));
+    return send(request, true).thenApply(response -> handleResponse(response, typeReference));
   }
 
   @VisibleForTesting
-  <T> CompletableFuture<T> asyncPost(String apiEndpoint, String json, Class<T> typeReference) {
-    RequestBody body = RequestBody.create(MediaType.parse("application/json; charset=utf-8"), json);
+  <T> CompletableFuture<T> asyncPost(
+      String apiEndpoint, Object requestBody, Class<T> typeReference) {
+    return asyncPost(apiEndpoint, requestBody, typeReference, false);
+  }
 
+  // idempotent requests are hedged when request hedging is enabled
+  @VisibleForTesting
+  <T> CompletableFuture<T> asyncPost(
+      String apiEndpoint, Object requestBody, Class<T> typeReference, boolean idempotent) {
     Request request =
         new Request.Builder()
             .url(ONEHOUSE_API_ENDPOINT + apiEndpoint)
-            .post(body)
+            .post(jsonRequestBody(requestBody))
             .headers(headers)
             .build();
 
-    return asyncClient
-        .makeRequestWithRetry(request)
+    return send(request, idempotent)
         .thenApply(response -> handleResponse(response, typeReference));
   }
 
+  private CompletableFuture<Response> send(Request request, boolean idempotent) {
+    return requestHedgingEnabled && idempotent
+        ? asyncClient.makeHedgedRequestWithRetry(request, concurrencyLimiter)
+        : asyncClient.makeRequestWithRetry(request, concurrencyLimiter);
+  }
+
+  /*
+   * The value is serialised once, into bytes rather than an intermediate string, so serialisation
+   * failures surface before anything is sent, the request carries a Content-Length and retries
+   * send the same bytes.
+   */
+  @SneakyThrows
+  @VisibleForTesting
+  static RequestBody jsonRequestBody(Object value) {
+    return RequestBody.create(JSON_MEDIA_TYPE, JsonCodecs.writer().writeValueAsBytes(value));
+  }
+
   private <T> T handleResponse(Response response, Class<T> typeReference) {
     if (response.isSuccessful()) {
-      try {
-        if (response.body() != null) {
-          return mapper.readValue(response.body().string(), typeReference);
+      try (ResponseBody body = response.body()) {
+        if (body != null) {
+          return JsonCodecs.readerFor(typeReference).readValue(body.byteStream());
         }
         return null;
       } catch (IOException jsonProcessingException) {
@@ -0,0 +1,40 @@
+package ai.onehouse.api;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/*
+ * Token bucket shared by the requests of a client. Every request adds retryRatio tokens, up to
+ * capacity, and every retry takes one, so once the bucket is drained retries are limited to about
+ * retryRatio of the requests instead of every failed request being retried maxRetries times.
+ */
+class RetryBudget {
+  private final double capacity;
+  private final double retryRatio;
+  private double tokens;
+
+  RetryBudget(int capacity, double retryRatio) {
+    this.capacity = capacity;
+    this.retryRatio = retryRatio;
+    this.tokens = capacity;
+  }
+
+  synchronized void onRequest() {
+    tokens = Math.min(capacity, tokens + retryRatio);
+  }
+
+  /*
+   * Returns whether a failed request may be retried, taking a token when it may.
+   */
+  synchronized boolean tryAcquireRetry() {
+    if (tokens < 1) {
+      return false;
+    }
+    tokens--;
+    return true;
+  }
+
+  @VisibleForTesting
+  synchronized double getTokens() {
+    return tokens;
+  }
+}
@@ -0,0 +1,156 @@
+package ai.onehouse.api;
+
+import ai.onehouse.api.models.request.BatchGenerateCommitMetadataUploadUrlRequest;
+import ai.onehouse.api.models.request.GenerateCommitMetadataUploadUrlRequest;
+import ai.onehouse.api.models.response.GenerateCommitMetadataUploadUrlResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Collects the upload url requests of the tables processed concurrently for up to windowMillis and
+ * sends them as a single multi-table request of at most maxRequests requests, the urls are handed
+ * back to each table from its position in the response. Once the api answers that it does not
+ * know the multi-table endpoint, requests are sent one per table for the rest of the run.
+ */
+@Slf4j
+class UploadUrlRequestBatcher {
+  private static final int NOT_FOUND_STATUS_CODE = 404;
+
+  private final long windowMillis;
+  private final int maxRequests;
+  private final OnehouseApiClient onehouseApiClient;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicBoolean batchRequestsSupported = new AtomicBoolean(true);
+  private List<PendingRequest> pendingRequests = new ArrayList<>();
+
+  UploadUrlRequestBatcher(long windowMillis, int maxRequests, OnehouseApiClient onehouseApiClient) {
+    this.windowMillis = windowMillis;
+    this.maxRequests = Math.max(1, maxRequests);
+    this.onehouseApiClient = onehouseApiClient;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "upload-url-request-batcher");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  CompletableFuture<GenerateCommitMetadataUploadUrlResponse> generateCommitMetadataUploadUrl(
+      GenerateCommitMetadataUploadUrlRequest request) {
+    if (!batchRequestsSupported.get()) {
+      return onehouseApiClient.generateCommitMetadataUploadUrlPerTable(request);
+    }
+    CompletableFuture<GenerateCommitMetadataUploadUrlResponse> future = new CompletableFuture<>();
+    List<PendingRequest> fullBatch = null;
+    synchronized (this) {
+      pendingRequests.add(new PendingRequest(request, future));
+      if (pendingRequests.size() >= maxRequests) {
+        fullBatch = pendingRequests;
+        pendingRequests = new ArrayList<>();
+      } else if (pendingRequests.size() == 1) {
+        List<PendingRequest> batch = pendingRequests;
+        scheduler.schedule(() -> flush(batch), windowMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (fullBatch != null) {
+      send(fullBatch);
+    }
+    return future;
+  }
+
+  private void flush(List<PendingRequest> batch) {
+    synchronized (this) {
+      // already sent once it was full
+      if (pendingRequests != batch) {
+        return;
+      }
+      pendingRequests = new ArrayList<>();
+    }
+    send(batch);
+  }
+
+  private void send(List<PendingRequest> batch) {
+    if (batch.size() == 1 || !batchRequestsSupported.get()) {
+      sendEach(batch);
+      return;
+    }
+    onehouseApiClient
+        .batchGenerateCommitMetadataUploadUrl(
+            BatchGenerateCommitMetadataUploadUrlRequest.builder()
+                .requests(
+                    batch.stream().map(PendingRequest::getRequest).collect(Collectors.toList()))
+                .build())
+        .whenComplete(
+            (batchResponse, throwable) -> {
+              if (throwable != null) {
+                batch.forEach(
+                    pendingRequest -> pendingRequest.getFuture().completeExceptionally(throwable));
+              } else if (batchResponse.isFailure()
+                  && batchResponse.getStatusCode() == NOT_FOUND_STATUS_CODE) {
+                if (batchRequestsSupported.compareAndSet(true, false)) {
+                  log.info(
+                      "Multi-table upload url requests are not supported by the api, "
+                          + "requesting upload urls per table");
+                }
+                sendEach(batch);
+              } else if (batchResponse.isFailure()) {
+                batch.forEach(
+                    pendingRequest ->
+                        pendingRequest
+                            .getFuture()
+                            .complete(
+                                getFailureResponse(
+                                    batchResponse.getStatusCode(), batchResponse.getCause())));
+              } else if (batchResponse.getResponses() == null
+                  || batchResponse.getResponses().size() != batch.size()) {
+                log.warn(
+                    "Multi-table upload url response does not match its {} requests, "
+                        + "requesting upload urls per table",
+                    batch.size());
+                sendEach(batch);
+              } else {
+                for (int i = 0; i < batch.size(); i++) {
+                  batch.get(i).getFuture().complete(batchResponse.getResponses().get(i));
+                }
+              }
+            });
+  }
+
+  private void sendEach(List<PendingRequest> batch) {
+    for (PendingRequest pendingRequest : batch) {
+      onehouseApiClient
+          .generateCommitMetadataUploadUrlPerTable(pendingRequest.getRequest())
+          .whenComplete(
+              (response, throwable) -> {
+                if (throwable != null) {
+                  pendingRequest.getFuture().completeExceptionally(throwable);
+                } else {
+                  pendingRequest.getFuture().complete(response);
+                }
+              });
+    }
+  }
+
+  private static GenerateCommitMetadataUploadUrlResponse getFailureResponse(
+      int statusCode, String cause) {
+    GenerateCommitMetadataUploadUrlResponse response =
+        new GenerateCommitMetadataUploadUrlResponse();
+    response.setError(statusCode, cause);
+    return response;
+  }
+
+  @Value
+  private static class PendingRequest {
+    GenerateCommitMetadataUploadUrlRequest request;
+    CompletableFuture<GenerateCommitMetadataUploadUrlResponse> future;
+  }
+}
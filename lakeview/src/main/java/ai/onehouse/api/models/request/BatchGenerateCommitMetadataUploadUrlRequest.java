@@ -0,0 +1,15 @@
+package ai.onehouse.api.models.request;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Jacksonized
+@Value
+public class BatchGenerateCommitMetadataUploadUrlRequest {
+  // upload url requests of several tables, answered in the same order
+  @NonNull private final List<GenerateCommitMetadataUploadUrlRequest> requests;
+}
@@ -0,0 +1,15 @@
+package ai.onehouse.api.models.request;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Jacksonized
+@Value
+public class BulkGetTableMetricsCheckpointsRequest {
+  // sent in the body, so that it is not bound by the length of the url
+  @NonNull private final List<String> tableIds;
+}
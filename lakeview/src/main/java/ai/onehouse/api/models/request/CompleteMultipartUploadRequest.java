@@ -0,0 +1,18 @@
+package ai.onehouse.api.models.request;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Jacksonized
+@Value
+public class CompleteMultipartUploadRequest {
+  @NonNull private final String tableId;
+  @NonNull private final CommitTimelineType commitTimelineType;
+  @NonNull private final String commitInstant;
+  @NonNull private final String uploadId;
+  @NonNull private final List<UploadedPart> parts;
+}
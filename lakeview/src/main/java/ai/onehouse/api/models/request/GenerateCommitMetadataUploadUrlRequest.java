@@ -1,5 +1,6 @@
 package ai.onehouse.api.models.request;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 import lombok.Builder;
 import lombok.NonNull;
@@ -13,4 +14,8 @@ public class GenerateCommitMetadataUploadUrlRequest {
   @NonNull private final String tableId;
   @NonNull private final CommitTimelineType commitTimelineType;
   @NonNull private final List<String> commitInstants;
+
+  // asks for a single url to upload all instants as one bundle, left out of the request when false
+  @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+  private final boolean bundleUpload;
 }
@@ -0,0 +1,16 @@
+package ai.onehouse.api.models.request;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Jacksonized
+@Value
+public class GenerateMultipartUploadUrlsRequest {
+  @NonNull private final String tableId;
+  @NonNull private final CommitTimelineType commitTimelineType;
+  @NonNull private final String commitInstant;
+  private final int numParts;
+}
@@ -0,0 +1,14 @@
+package ai.onehouse.api.models.request;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Jacksonized
+@Value
+public class UploadedPart {
+  // part numbers start at 1, in the order of the part upload urls
+  private int partNumber;
+  private String etag;
+}
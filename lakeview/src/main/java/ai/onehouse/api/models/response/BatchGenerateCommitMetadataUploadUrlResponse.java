@@ -0,0 +1,16 @@
+package ai.onehouse.api.models.response;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Builder
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchGenerateCommitMetadataUploadUrlResponse extends ApiResponse {
+  // one response per request, in the order of the requests
+  private List<GenerateCommitMetadataUploadUrlResponse> responses;
+}
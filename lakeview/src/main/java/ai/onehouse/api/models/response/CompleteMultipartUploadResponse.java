@@ -0,0 +1,8 @@
+package ai.onehouse.api.models.response;
+
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+
+@Builder
+@NoArgsConstructor
+public class CompleteMultipartUploadResponse extends ApiResponse {}
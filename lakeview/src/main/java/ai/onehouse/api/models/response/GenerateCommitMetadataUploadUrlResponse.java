@@ -12,4 +12,8 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class GenerateCommitMetadataUploadUrlResponse extends ApiResponse {
   private List<String> uploadUrls;
+  // Content-Encoding values the upload urls accept, absent when uploads must not be compressed
+  private List<String> supportedContentEncodings;
+  // set when a bundle upload was requested and the api supports bundles
+  private String bundleUploadUrl;
 }
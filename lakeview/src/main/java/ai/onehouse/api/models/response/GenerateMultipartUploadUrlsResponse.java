@@ -0,0 +1,17 @@
+package ai.onehouse.api.models.response;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Builder
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class GenerateMultipartUploadUrlsResponse extends ApiResponse {
+  private String uploadId;
+  // one url per part, in part order
+  private List<String> partUploadUrls;
+}
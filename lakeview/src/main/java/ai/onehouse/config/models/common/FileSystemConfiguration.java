@@ -12,4 +12,10 @@ import lombok.extern.jackson.Jacksonized;
 public class FileSystemConfiguration {
   private S3Config s3Config;
   private GCSConfig gcsConfig;
+  // tables on a local or mounted file system, accessed with file:// paths
+  private LocalFileSystemConfig localFileSystemConfig;
+  // listings are cached only when this is set
+  private ListingCacheConfig listingCacheConfig;
+  // large files are read from S3 and GCS in concurrent ranges only when this is set
+  private RangedReadConfig rangedReadConfig;
 }
@@ -1,5 +1,9 @@
 package ai.onehouse.config.models.common;
 
+import static ai.onehouse.constants.StorageConstants.GCS_BLOCKING_QUEUE_CAPACITY;
+import static ai.onehouse.constants.StorageConstants.GCS_BLOCKING_THREADS;
+import static ai.onehouse.constants.StorageConstants.GCS_READ_CHUNK_SIZE_BYTES;
+
 import java.util.Optional;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -14,4 +18,9 @@ public class GCSConfig {
   @Builder.Default private Optional<String> projectId = Optional.empty();
   @Builder.Default private Optional<String> gcpServiceAccountKeyPath = Optional.empty();
   @Builder.Default private Optional<String> serviceAccountToImpersonate = Optional.empty();
+  // max number of concurrent GCS calls
+  @Builder.Default private int blockingThreads = GCS_BLOCKING_THREADS;
+  // GCS calls waiting for a thread beyond this fail right away
+  @Builder.Default private int blockingQueueCapacity = GCS_BLOCKING_QUEUE_CAPACITY;
+  @Builder.Default private int readChunkSizeBytes = GCS_READ_CHUNK_SIZE_BYTES;
 }
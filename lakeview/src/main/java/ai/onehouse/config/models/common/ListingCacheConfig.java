@@ -0,0 +1,22 @@
+package ai.onehouse.config.models.common;
+
+import static ai.onehouse.constants.StorageConstants.LISTING_CACHE_DISCOVERY_TTL_SECONDS;
+import static ai.onehouse.constants.StorageConstants.LISTING_CACHE_MAX_ENTRIES;
+import static ai.onehouse.constants.StorageConstants.LISTING_CACHE_TIMELINE_TTL_SECONDS;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Jacksonized
+@Getter
+@EqualsAndHashCode
+public class ListingCacheConfig {
+  @Builder.Default private int maxEntries = LISTING_CACHE_MAX_ENTRIES;
+  // applies to listings outside the .hoodie folder of tables
+  @Builder.Default private int discoveryTtlSeconds = LISTING_CACHE_DISCOVERY_TTL_SECONDS;
+  // applies to listings of the .hoodie folder of tables and its sub folders
+  @Builder.Default private int timelineTtlSeconds = LISTING_CACHE_TIMELINE_TTL_SECONDS;
+}
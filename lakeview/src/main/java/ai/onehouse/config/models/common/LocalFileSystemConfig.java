@@ -0,0 +1,17 @@
+package ai.onehouse.config.models.common;
+
+import static ai.onehouse.constants.StorageConstants.LOCAL_FILE_SYSTEM_LISTING_PAGE_SIZE;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Jacksonized
+@Getter
+@EqualsAndHashCode
+public class LocalFileSystemConfig {
+  // max number of entries returned in a page when listing a directory
+  @Builder.Default private int listingPageSize = LOCAL_FILE_SYSTEM_LISTING_PAGE_SIZE;
+}
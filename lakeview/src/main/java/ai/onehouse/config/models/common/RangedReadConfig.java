@@ -0,0 +1,25 @@
+package ai.onehouse.config.models.common;
+
+import static ai.onehouse.constants.StorageConstants.RANGED_READ_MAX_IN_FLIGHT_BYTES;
+import static ai.onehouse.constants.StorageConstants.RANGED_READ_MAX_IN_FLIGHT_RANGES;
+import static ai.onehouse.constants.StorageConstants.RANGED_READ_RANGE_SIZE_BYTES;
+import static ai.onehouse.constants.StorageConstants.RANGED_READ_THRESHOLD_BYTES;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Jacksonized
+@Getter
+@EqualsAndHashCode
+public class RangedReadConfig {
+  // files larger than this are read in ranges, smaller files are read as a single stream
+  @Builder.Default private long thresholdBytes = RANGED_READ_THRESHOLD_BYTES;
+  @Builder.Default private long rangeSizeBytes = RANGED_READ_RANGE_SIZE_BYTES;
+  // ranges fetched ahead of the reader, a file holds at most this many ranges in memory
+  @Builder.Default private int maxInFlightRanges = RANGED_READ_MAX_IN_FLIGHT_RANGES;
+  // ranges held in memory across all files, raised to a single range when smaller
+  @Builder.Default private long maxInFlightBytes = RANGED_READ_MAX_IN_FLIGHT_BYTES;
+}
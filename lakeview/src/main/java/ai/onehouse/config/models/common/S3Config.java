@@ -18,4 +18,25 @@ public class S3Config {
   @Builder.Default private Optional<String> accessKey = Optional.empty();
   @Builder.Default private Optional<String> accessSecret = Optional.empty();
   @Builder.Default private Optional<String> arnToImpersonate = Optional.empty();
+
+  // tuning of the S3 client, settings which are not provided keep the defaults of the AWS SDK
+  @Builder.Default private S3ClientType clientType = S3ClientType.NETTY;
+  // max number of concurrent requests to S3
+  @Builder.Default private Optional<Integer> maxConcurrency = Optional.empty();
+  // CRT only, the client opens as many connections as needed to reach the throughput
+  @Builder.Default private Optional<Double> targetThroughputInGbps = Optional.empty();
+  // NETTY only
+  @Builder.Default private Optional<Integer> connectionAcquisitionTimeoutSeconds = Optional.empty();
+  @Builder.Default private Optional<Integer> connectionMaxIdleTimeSeconds = Optional.empty();
+  @Builder.Default private Optional<Boolean> tcpKeepAlive = Optional.empty();
+  // to use an S3 compatible storage, which usually also requires path style access
+  @Builder.Default private Optional<String> endpointOverride = Optional.empty();
+  @Builder.Default private Optional<Boolean> forcePathStyle = Optional.empty();
+
+  public enum S3ClientType {
+    // netty based S3 client of the AWS SDK
+    NETTY,
+    // S3 client based on the AWS Common Runtime, requires the native aws-crt library
+    CRT
+  }
 }
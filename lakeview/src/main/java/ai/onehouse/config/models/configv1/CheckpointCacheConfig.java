@@ -0,0 +1,20 @@
+package ai.onehouse.config.models.configv1;
+
+import static ai.onehouse.constants.MetadataExtractorConstants.CHECKPOINT_CACHE_RECONCILE_INTERVAL_MINUTES;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder(toBuilder = true)
+@Getter
+@Jacksonized
+@EqualsAndHashCode
+public class CheckpointCacheConfig {
+  // the cache is kept in memory only when no file is configured
+  private String journalFilePath;
+
+  @Builder.Default
+  private int reconcileIntervalMinutes = CHECKPOINT_CACHE_RECONCILE_INTERVAL_MINUTES;
+}
@@ -0,0 +1,22 @@
+package ai.onehouse.config.models.configv1;
+
+import static ai.onehouse.constants.MetadataExtractorConstants.CRAWL_INDEX_FULL_RESCAN_INTERVAL_MINUTES;
+import static ai.onehouse.constants.MetadataExtractorConstants.CRAWL_INDEX_RELIST_INTERVAL_MINUTES;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder(toBuilder = true)
+@Getter
+@Jacksonized
+@EqualsAndHashCode
+public class CrawlIndexConfig {
+  // the index is kept in memory only when no file is configured
+  private String indexFilePath;
+  @Builder.Default private int relistIntervalMinutes = CRAWL_INDEX_RELIST_INTERVAL_MINUTES;
+
+  @Builder.Default
+  private int fullRescanIntervalMinutes = CRAWL_INDEX_FULL_RESCAN_INTERVAL_MINUTES;
+}
@@ -0,0 +1,20 @@
+package ai.onehouse.config.models.configv1;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Getter
+@Jacksonized
+@EqualsAndHashCode
+public class InventoryConfig {
+  /*
+   * Either the uri of an inventory manifest file, or the folder of an inventory configuration in
+   * which case the latest report in the folder is used.
+   */
+  @NonNull private List<String> inventoryUris;
+}
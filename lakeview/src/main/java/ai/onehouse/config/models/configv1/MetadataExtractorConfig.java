@@ -1,11 +1,23 @@
 package ai.onehouse.config.models.configv1;
 
+import static ai.onehouse.constants.MetadataExtractorConstants.CHECKPOINT_FLUSH_BATCHES;
+import static ai.onehouse.constants.MetadataExtractorConstants.CHECKPOINT_FLUSH_INTERVAL_SECONDS;
+import static ai.onehouse.constants.MetadataExtractorConstants.CHECKPOINT_PREFETCH_BATCHES;
 import static ai.onehouse.constants.MetadataExtractorConstants.DEFAULT_FILE_UPLOAD_STREAM_BATCH_SIZE;
+import static ai.onehouse.constants.MetadataExtractorConstants.FILE_UPLOAD_BUFFER_POOL_SIZE;
+import static ai.onehouse.constants.MetadataExtractorConstants.MULTIPART_UPLOAD_MAX_CONCURRENT_PARTS;
+import static ai.onehouse.constants.MetadataExtractorConstants.MULTIPART_UPLOAD_PART_SIZE_BYTES;
+import static ai.onehouse.constants.MetadataExtractorConstants.MULTIPART_UPLOAD_THRESHOLD_BYTES;
 import static ai.onehouse.constants.MetadataExtractorConstants.PRESIGNED_URL_REQUEST_BATCH_SIZE_ACTIVE_TIMELINE;
 import static ai.onehouse.constants.MetadataExtractorConstants.PRESIGNED_URL_REQUEST_BATCH_SIZE_ARCHIVED_TIMELINE;
 import static ai.onehouse.constants.MetadataExtractorConstants.PROCESS_TABLE_METADATA_SYNC_DURATION_SECONDS;
 import static ai.onehouse.constants.MetadataExtractorConstants.TABLE_DISCOVERY_INTERVAL_MINUTES;
+import static ai.onehouse.constants.MetadataExtractorConstants.TABLE_DISCOVERY_MAX_CONCURRENT_LISTINGS;
+import static ai.onehouse.constants.MetadataExtractorConstants.TABLE_DISCOVERY_MAX_CONCURRENT_LISTINGS_PER_BUCKET;
 import static ai.onehouse.constants.MetadataExtractorConstants.TABLE_METADATA_UPLOAD_INTERVAL_MINUTES;
+import static ai.onehouse.constants.MetadataExtractorConstants.TIMELINE_LISTING_PARALLELISM;
+import static ai.onehouse.constants.MetadataExtractorConstants.UPLOAD_URL_BATCH_WINDOW_MILLIS;
+import static ai.onehouse.constants.MetadataExtractorConstants.UPLOAD_URL_PREFETCH_BATCHES;
 import static ai.onehouse.constants.MetadataExtractorConstants.WAIT_TIME_BEFORE_SHUTDOWN;
 
 import java.util.List;
@@ -47,8 +59,64 @@ public class MetadataExtractorConfig {
 
   @Builder.Default private int fileUploadStreamBatchSize = DEFAULT_FILE_UPLOAD_STREAM_BATCH_SIZE;
 
+  @Builder.Default private int fileUploadBufferPoolSize = FILE_UPLOAD_BUFFER_POOL_SIZE;
+
+  @Builder.Default private boolean fileUploadUseDirectBuffers = false;
+
+  // instant files are compressed only when the api accepts the encoding for the upload urls
+  @Builder.Default private UploadCompression uploadCompression = UploadCompression.NONE;
+
+  // uploads each batch of instants as a single zip, when the api supports bundles
+  @Builder.Default private boolean bundleInstantUploads = false;
+
+  @Builder.Default private int uploadUrlPrefetchBatches = UPLOAD_URL_PREFETCH_BATCHES;
+
+  @Builder.Default private int uploadUrlBatchWindowMillis = UPLOAD_URL_BATCH_WINDOW_MILLIS;
+
+  // hedges the idempotent onehouse api calls: checkpoint reads and upload url generation
+  @Builder.Default private boolean requestHedgingEnabled = false;
+
+  // files uploaded one by one are split into parts once they reach the threshold, when set
+  @Builder.Default private long multipartUploadThresholdBytes = MULTIPART_UPLOAD_THRESHOLD_BYTES;
+
+  @Builder.Default private long multipartUploadPartSizeBytes = MULTIPART_UPLOAD_PART_SIZE_BYTES;
+
+  @Builder.Default
+  private int multipartUploadMaxConcurrentParts = MULTIPART_UPLOAD_MAX_CONCURRENT_PARTS;
+
+  // 1 updates the checkpoint after every batch
+  @Builder.Default private int checkpointFlushBatches = CHECKPOINT_FLUSH_BATCHES;
+
+  @Builder.Default private int checkpointFlushIntervalSeconds = CHECKPOINT_FLUSH_INTERVAL_SECONDS;
+
+  @Builder.Default private int checkpointPrefetchBatches = CHECKPOINT_PREFETCH_BATCHES;
+
+  // checkpoints are fetched from the api every round when not set
+  @Builder.Default private Optional<CheckpointCacheConfig> checkpointCacheConfig = Optional.empty();
+
   @Builder.Default private int waitTimeBeforeShutdown = WAIT_TIME_BEFORE_SHUTDOWN;
 
+  @Builder.Default private int timelineListingParallelism = TIMELINE_LISTING_PARALLELISM;
+
+  @Builder.Default
+  private int tableDiscoveryMaxConcurrentListings = TABLE_DISCOVERY_MAX_CONCURRENT_LISTINGS;
+
+  @Builder.Default
+  private int tableDiscoveryMaxConcurrentListingsPerBucket =
+      TABLE_DISCOVERY_MAX_CONCURRENT_LISTINGS_PER_BUCKET;
+
+  // 0 crawls all levels below the base paths
+  @Builder.Default private int tableDiscoveryMaxDepth = 0;
+
+  @Builder.Default
+  private TableDiscoveryCrawlOrder tableDiscoveryCrawlOrder =
+      TableDiscoveryCrawlOrder.BREADTH_FIRST;
+
+  @Builder.Default private Optional<CrawlIndexConfig> crawlIndexConfig = Optional.empty();
+
+  // tables are discovered from inventory reports instead of listing the base paths when set
+  @Builder.Default private Optional<InventoryConfig> inventoryConfig = Optional.empty();
+
   public enum JobRunMode {
     CONTINUOUS,
     ONCE
@@ -58,4 +126,22 @@ public class MetadataExtractorConfig {
     BLOCK_ON_INCOMPLETE_COMMIT,
     CONTINUE_ON_INCOMPLETE_COMMIT
   }
+
+  public enum TableDiscoveryCrawlOrder {
+    BREADTH_FIRST,
+    DEPTH_FIRST
+  }
+
+  public enum UploadCompression {
+    NONE(null),
+    GZIP("gzip"),
+    ZSTD("zstd");
+
+    // value of the Content-Encoding header of compressed uploads
+    @Getter private final String contentEncoding;
+
+    UploadCompression(String contentEncoding) {
+      this.contentEncoding = contentEncoding;
+    }
+  }
 }
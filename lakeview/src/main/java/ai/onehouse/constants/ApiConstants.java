@@ -17,7 +17,15 @@ public class ApiConstants {
       "/v1/community/initialize-tables";
   public static final String UPSERT_TABLE_METRICS_CHECKPOINT = "/v1/community/{0}/checkpoint";
   public static final String GET_TABLE_METRICS_CHECKPOINT = "/v1/community/checkpoints";
+  public static final String BULK_GET_TABLE_METRICS_CHECKPOINT =
+      "/v1/community/checkpoints/bulk-get";
   public static final String GENERATE_COMMIT_METADATA_UPLOAD_URL = "/v1/community/{0}/upload-urls";
+  public static final String BATCH_GENERATE_COMMIT_METADATA_UPLOAD_URL =
+      "/v1/community/batch-upload-urls";
+  public static final String GENERATE_MULTIPART_UPLOAD_URLS =
+      "/v1/community/{0}/multipart-upload-urls";
+  public static final String COMPLETE_MULTIPART_UPLOAD =
+      "/v1/community/{0}/complete-multipart-upload";
 
   // Header constants
   public static final String PROJECT_UID_KEY = "x-onehouse-project-uid";
@@ -33,10 +33,43 @@ public class MetadataExtractorConstants {
           Integer.parseInt(
               System.getenv().getOrDefault("EXTRACTOR_TABLE_PROCESSING_BATCH_SIZE", "20")));
   public static final int TABLE_DISCOVERY_INTERVAL_MINUTES = 30;
+  // limits on the folders listed at the same time during table discovery, S3 starts throttling
+  // requests to a bucket prefix beyond a few thousand listings per second
+  public static final int TABLE_DISCOVERY_MAX_CONCURRENT_LISTINGS = 100;
+  public static final int TABLE_DISCOVERY_MAX_CONCURRENT_LISTINGS_PER_BUCKET = 50;
   public static final int TABLE_METADATA_UPLOAD_INTERVAL_MINUTES = 5;
-  // Default batch size will be 5 MB
+  // Size of the pooled buffers files are streamed through while uploading, default is 256 KB
   public static final int DEFAULT_FILE_UPLOAD_STREAM_BATCH_SIZE =
-      Integer.parseInt(System.getenv().getOrDefault("FILE_UPLOAD_STREAM_BATCH_SIZE", "5242880"));
+      Integer.parseInt(System.getenv().getOrDefault("FILE_UPLOAD_STREAM_BATCH_SIZE", "262144"));
+  public static final int FILE_UPLOAD_BUFFER_POOL_SIZE = 64;
+  // Number of key ranges a long timeline is split into for listing it concurrently, 1 lists the
+  // timeline one page at a time
+  public static final int TIMELINE_LISTING_PARALLELISM = 1;
+  // upload urls of at most this many batches following the one being uploaded are requested ahead
+  public static final int UPLOAD_URL_PREFETCH_BATCHES = 0;
+  // upload url requests of concurrent tables are collected for this long and sent together, 0 sends
+  // a request per batch of instants
+  public static final int UPLOAD_URL_BATCH_WINDOW_MILLIS = 0;
+  public static final int UPLOAD_URL_BATCH_MAX_REQUESTS = 50;
+  // files of at least this size are uploaded in parts, 0 uploads every file in a single request
+  public static final long MULTIPART_UPLOAD_THRESHOLD_BYTES = 0;
+  public static final long MULTIPART_UPLOAD_PART_SIZE_BYTES = 8 * 1024 * 1024;
+  public static final int MULTIPART_UPLOAD_MAX_CONCURRENT_PARTS = 4;
+  // checkpoints of consecutive batches are combined into one update of at most this many batches,
+  // pending checkpoints are written once they are older than the flush interval
+  public static final int CHECKPOINT_FLUSH_BATCHES = 1;
+  public static final int CHECKPOINT_FLUSH_INTERVAL_SECONDS = 30;
+  // checkpoints of this many table batches are fetched together, ahead of their processing, 0
+  // fetches the checkpoints of each batch when it is processed
+  public static final int CHECKPOINT_PREFETCH_BATCHES = 0;
+  // table ids per bulk checkpoint request
+  public static final int CHECKPOINT_BULK_FETCH_PAGE_SIZE = 1000;
+  // checkpoints held in the checkpoint cache are read from the api again after at most this long
+  public static final int CHECKPOINT_CACHE_RECONCILE_INTERVAL_MINUTES = 60;
+  // folders known from the crawl index are listed again after at most this long, full rescans
+  // list every folder and drop folders which no longer exist from the index
+  public static final int CRAWL_INDEX_RELIST_INTERVAL_MINUTES = 360;
+  public static final int CRAWL_INDEX_FULL_RESCAN_INTERVAL_MINUTES = 1440;
   public static final Pattern ARCHIVED_COMMIT_INSTANT_PATTERN =
       Pattern.compile("\\.commits_\\.archive\\.\\d+_\\d+-\\d+-\\d+");
   public static final Pattern ACTIVE_COMMIT_INSTANT_PATTERN =
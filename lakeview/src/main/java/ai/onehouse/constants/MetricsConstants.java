@@ -18,4 +18,20 @@ public class MetricsConstants {
     NO_TABLES_TO_INITIALIZE,
     UNKNOWN,
   }
+
+  public enum ListingCacheType {
+    DISCOVERY,
+    TIMELINE
+  }
+
+  public enum ConcurrencyLimiterType {
+    PRESIGNED_URL_UPLOAD,
+    ONEHOUSE_API
+  }
+
+  public enum CircuitBreakerState {
+    CLOSED,
+    HALF_OPEN,
+    OPEN
+  }
 }
@@ -10,6 +10,31 @@ public class StorageConstants {
   public static final Pattern OBJECT_STORAGE_URI_PATTERN =
       Pattern.compile("^(s3://|gs://)([^/]+)(/.*)?");
 
+  // local file path: "file:///path/to/file", the file system root acts as a bucket with empty name
+  public static final Pattern LOCAL_FILE_URI_PATTERN = Pattern.compile("^(file://)()(/.*)");
+
+  // same as the max keys returned in a page by S3 list objects
+  public static final int LOCAL_FILE_SYSTEM_LISTING_PAGE_SIZE = 1000;
+
+  // listing cache defaults, discovery listings are kept across discovery rounds while timeline
+  // listings are kept only briefly so that new instants are picked up in the next upload round
+  public static final int LISTING_CACHE_MAX_ENTRIES = 10000;
+  public static final int LISTING_CACHE_DISCOVERY_TTL_SECONDS = 3600;
+  public static final int LISTING_CACHE_TIMELINE_TTL_SECONDS = 60;
+
+  // the GCS client blocks a thread per call, so GCS calls run on their own bounded executor instead
+  // of the shared one. The read chunk size matches the default of the GCS ReadChannel
+  public static final int GCS_BLOCKING_THREADS = 64;
+  public static final int GCS_BLOCKING_QUEUE_CAPACITY = 10000;
+  public static final int GCS_READ_CHUNK_SIZE_BYTES = 2 * 1024 * 1024;
+
+  // files larger than the threshold are read in ranges fetched concurrently, at most the in-flight
+  // ranges are held in memory per file, and at most the in-flight bytes across all files
+  public static final long RANGED_READ_THRESHOLD_BYTES = 32L * 1024 * 1024;
+  public static final long RANGED_READ_RANGE_SIZE_BYTES = 8L * 1024 * 1024;
+  public static final int RANGED_READ_MAX_IN_FLIGHT_RANGES = 4;
+  public static final long RANGED_READ_MAX_IN_FLIGHT_BYTES = 128L * 1024 * 1024;
+
   // https://cloud.google.com/compute/docs/naming-resources#resource-name-format
   public static final String GCP_RESOURCE_NAME_FORMAT = "^[a-z]([-a-z0-9]*[a-z0-9])$";
 }
@@ -0,0 +1,9 @@
+package ai.onehouse.exceptions;
+
+import java.io.IOException;
+
+public class CircuitBreakerOpenException extends IOException {
+  public CircuitBreakerOpenException(String endpoint) {
+    super(String.format("circuit breaker of endpoint %s is open", endpoint));
+  }
+}
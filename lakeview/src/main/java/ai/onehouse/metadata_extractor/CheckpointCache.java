@@ -0,0 +1,234 @@
+package ai.onehouse.metadata_extractor;
+
+import ai.onehouse.api.JsonCodecs;
+import ai.onehouse.api.models.response.GetTableMetricsCheckpointResponse;
+import ai.onehouse.config.models.configv1.CheckpointCacheConfig;
+import ai.onehouse.metadata_extractor.models.CheckpointJournalRecord;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+/*
+ * Checkpoints of the tables as last written or read by the extractor, so that upload rounds do not
+ * have to fetch the checkpoint of every table from the api. The cache is updated on every
+ * successful checkpoint update, a table is read from the api again once its checkpoint was last
+ * read more than reconcileIntervalMinutes ago, or after an update of its checkpoint failed. Changes
+ * can be appended to a local journal so that the cache survives restarts, the journal is rewritten
+ * once most of its records are superseded.
+ */
+@Slf4j
+public class CheckpointCache {
+  private static final int MIN_JOURNAL_RECORDS_TO_COMPACT = 1000;
+  private static final ObjectReader JOURNAL_RECORD_READER =
+      JsonCodecs.readerFor(CheckpointJournalRecord.class);
+  private static final ObjectWriter JOURNAL_RECORD_WRITER =
+      JsonCodecs.writerFor(CheckpointJournalRecord.class);
+  private final CheckpointCacheConfig checkpointCacheConfig;
+  private final Clock clock;
+  private final Map<String, CheckpointJournalRecord> entries = new HashMap<>();
+  private int numJournalRecords;
+
+  public CheckpointCache(Optional<CheckpointCacheConfig> checkpointCacheConfig, Clock clock) {
+    this.checkpointCacheConfig = checkpointCacheConfig.orElse(null);
+    this.clock = clock;
+    if (this.checkpointCacheConfig != null
+        && this.checkpointCacheConfig.getJournalFilePath() != null) {
+      loadJournal(this.checkpointCacheConfig.getJournalFilePath());
+    }
+  }
+
+  /*
+   * Returns the cached checkpoints of the tables which do not have to be read from the api.
+   */
+  public synchronized Map<String, String> getCheckpoints(Collection<String> tableIds) {
+    if (checkpointCacheConfig == null) {
+      return Collections.emptyMap();
+    }
+    Instant reconcileBefore =
+        clock
+            .instant()
+            .minus(Duration.ofMinutes(checkpointCacheConfig.getReconcileIntervalMinutes()));
+    Map<String, String> checkpoints = new HashMap<>();
+    for (String tableId : tableIds) {
+      CheckpointJournalRecord entry = entries.get(tableId);
+      if (entry != null && entry.getReconciledAt().isAfter(reconcileBefore)) {
+        checkpoints.put(tableId, entry.getCheckpoint());
+      }
+    }
+    return checkpoints;
+  }
+
+  /*
+   * Replaces the cached checkpoints of the tables with the ones read from the api, tables without
+   * checkpoint are dropped.
+   */
+  public synchronized void reconcile(
+      Collection<String> tableIds,
+      List<GetTableMetricsCheckpointResponse.TableMetadataCheckpoint> checkpoints) {
+    if (checkpointCacheConfig == null) {
+      return;
+    }
+    Instant reconciledAt = clock.instant();
+    Set<String> tableIdsWithoutCheckpoint = new HashSet<>(tableIds);
+    for (GetTableMetricsCheckpointResponse.TableMetadataCheckpoint checkpoint : checkpoints) {
+      String serializedCheckpoint = StringUtils.defaultString(checkpoint.getCheckpoint());
+      CheckpointJournalRecord entry = entries.get(checkpoint.getTableId());
+      if (entry != null && !entry.getCheckpoint().equals(serializedCheckpoint)) {
+        log.warn(
+            "Cached checkpoint of table {} differs from the one read from the api, using the api's",
+            checkpoint.getTableId());
+      }
+      tableIdsWithoutCheckpoint.remove(checkpoint.getTableId());
+      record(
+          CheckpointJournalRecord.builder()
+              .tableId(checkpoint.getTableId())
+              .checkpoint(serializedCheckpoint)
+              .reconciledAt(reconciledAt)
+              .build());
+    }
+    for (String tableId : tableIdsWithoutCheckpoint) {
+      invalidate(tableId);
+    }
+  }
+
+  /*
+   * Records a checkpoint written by the extractor.
+   */
+  public synchronized void put(String tableId, String checkpoint) {
+    if (checkpointCacheConfig == null) {
+      return;
+    }
+    CheckpointJournalRecord entry = entries.get(tableId);
+    record(
+        CheckpointJournalRecord.builder()
+            .tableId(tableId)
+            .checkpoint(checkpoint)
+            .reconciledAt(entry != null ? entry.getReconciledAt() : clock.instant())
+            .build());
+  }
+
+  /*
+   * Drops the table, eg: after its checkpoint update failed, so that it is read from the api again.
+   */
+  public synchronized void invalidate(String tableId) {
+    if (checkpointCacheConfig == null || !entries.containsKey(tableId)) {
+      return;
+    }
+    record(CheckpointJournalRecord.builder().tableId(tableId).build());
+  }
+
+  @VisibleForTesting
+  synchronized Map<String, CheckpointJournalRecord> getEntries() {
+    return new HashMap<>(entries);
+  }
+
+  private void record(CheckpointJournalRecord journalRecord) {
+    apply(journalRecord);
+    String journalFilePath = checkpointCacheConfig.getJournalFilePath();
+    if (journalFilePath == null) {
+      return;
+    }
+    if (numJournalRecords >= Math.max(MIN_JOURNAL_RECORDS_TO_COMPACT, 2 * entries.size())) {
+      compactJournal(journalFilePath);
+      return;
+    }
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(
+            Paths.get(journalFilePath),
+            StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND)) {
+      writer.write(JOURNAL_RECORD_WRITER.writeValueAsString(journalRecord));
+      writer.newLine();
+      numJournalRecords++;
+    } catch (IOException e) {
+      // the checkpoints are still on the api, the table is read from there after a restart
+      log.warn("Failed to append to checkpoint journal {}", journalFilePath, e);
+    }
+  }
+
+  private void apply(CheckpointJournalRecord journalRecord) {
+    if (journalRecord.getCheckpoint() == null) {
+      entries.remove(journalRecord.getTableId());
+    } else {
+      entries.put(journalRecord.getTableId(), journalRecord);
+    }
+  }
+
+  private void loadJournal(String journalFilePath) {
+    Path path = Paths.get(journalFilePath);
+    if (!Files.exists(path)) {
+      return;
+    }
+    try {
+      for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+        if (StringUtils.isBlank(line)) {
+          continue;
+        }
+        numJournalRecords++;
+        try {
+          CheckpointJournalRecord journalRecord = JOURNAL_RECORD_READER.readValue(line);
+          if (journalRecord.getCheckpoint() == null || journalRecord.getReconciledAt() != null) {
+            apply(journalRecord);
+          }
+        } catch (IOException e) {
+          // eg: the last record when the extractor stopped while appending it
+          log.warn("Skipping unreadable record in checkpoint journal {}", journalFilePath);
+        }
+      }
+      log.info("Loaded {} checkpoints from checkpoint journal {}", entries.size(), journalFilePath);
+    } catch (IOException e) {
+      // checkpoints are read from the api instead
+      log.warn("Failed to load checkpoint journal from {}, ignoring it", journalFilePath, e);
+      entries.clear();
+    }
+    if (numJournalRecords > entries.size()) {
+      compactJournal(journalFilePath);
+    }
+  }
+
+  private void compactJournal(String journalFilePath) {
+    Path path = Paths.get(journalFilePath).toAbsolutePath();
+    try {
+      // written to a temporary file first so that a crash does not leave a partial journal behind
+      Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+      try {
+        try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+          for (CheckpointJournalRecord entry : new TreeMap<>(entries).values()) {
+            writer.write(JOURNAL_RECORD_WRITER.writeValueAsString(entry));
+            writer.newLine();
+          }
+        }
+        Files.move(
+            tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        numJournalRecords = entries.size();
+      } finally {
+        Files.deleteIfExists(tempPath);
+      }
+    } catch (IOException e) {
+      log.warn("Failed to compact checkpoint journal {}", journalFilePath, e);
+    }
+  }
+}
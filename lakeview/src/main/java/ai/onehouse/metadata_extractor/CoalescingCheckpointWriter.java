@@ -0,0 +1,142 @@
+package ai.onehouse.metadata_extractor;
+
+import ai.onehouse.api.JsonCodecs;
+import ai.onehouse.api.OnehouseApiClient;
+import ai.onehouse.api.models.request.CommitTimelineType;
+import ai.onehouse.api.models.request.UploadedFile;
+import ai.onehouse.api.models.request.UpsertTableMetricsCheckpointRequest;
+import ai.onehouse.metadata_extractor.models.Checkpoint;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Writes the checkpoints of the batches of a timeline behind the uploads. Checkpoints of
+ * consecutive batches are combined into one update, which holds the checkpoint of the last batch
+ * and the files uploaded in all of them. The update is sent once maxBatches batches are pending,
+ * once the oldest pending batch is older than maxDelay, or when the writer is flushed after the
+ * last batch or on shutdown. A checkpoint is only written after its files are uploaded, so files
+ * whose checkpoint is lost are uploaded again in the next run. Written checkpoints are recorded in
+ * the checkpoint cache, a failed update drops the table from it. Batches are written one at a time,
+ * the writer is synchronized so that it can be flushed on shutdown while batches are written.
+ */
+@Slf4j
+class CoalescingCheckpointWriter {
+  private static final ObjectWriter CHECKPOINT_WRITER = JsonCodecs.writerFor(Checkpoint.class);
+  private final String tableId;
+  private final CommitTimelineType commitTimelineType;
+  private final OnehouseApiClient onehouseApiClient;
+  private final CheckpointCache checkpointCache;
+  private final LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
+  private final int maxBatches;
+  private final long maxDelayNanos;
+  private final Ticker ticker;
+  private final List<UploadedFile> pendingUploadedFiles = new ArrayList<>();
+  private Checkpoint pendingCheckpoint;
+  private int numPendingBatches;
+  private long firstPendingBatchNanos;
+
+  CoalescingCheckpointWriter(
+      String tableId,
+      CommitTimelineType commitTimelineType,
+      OnehouseApiClient onehouseApiClient,
+      CheckpointCache checkpointCache,
+      LakeViewExtractorMetrics hudiMetadataExtractorMetrics,
+      int maxBatches,
+      Duration maxDelay,
+      Ticker ticker) {
+    this.tableId = tableId;
+    this.commitTimelineType = commitTimelineType;
+    this.onehouseApiClient = onehouseApiClient;
+    this.checkpointCache = checkpointCache;
+    this.hudiMetadataExtractorMetrics = hudiMetadataExtractorMetrics;
+    this.maxBatches = Math.max(1, maxBatches);
+    this.maxDelayNanos = maxDelay.toNanos();
+    this.ticker = ticker;
+  }
+
+  /*
+   * Adds the checkpoint of an uploaded batch and completes with it, right away when the update is
+   * held back and once it is written otherwise.
+   */
+  synchronized CompletableFuture<Checkpoint> write(Checkpoint checkpoint, List<UploadedFile> uploadedFiles) {
+    if (numPendingBatches == 0) {
+      firstPendingBatchNanos = ticker.read();
+    }
+    pendingCheckpoint = checkpoint;
+    pendingUploadedFiles.addAll(uploadedFiles);
+    numPendingBatches++;
+    if (numPendingBatches < maxBatches
+        && ticker.read() - firstPendingBatchNanos < maxDelayNanos) {
+      return CompletableFuture.completedFuture(checkpoint);
+    }
+    return flush().thenApply(ignored -> checkpoint);
+  }
+
+  /*
+   * Writes the pending checkpoint, if any. Pending batches are dropped when the update fails, their
+   * files are then uploaded again in the next run.
+   */
+  synchronized CompletableFuture<Void> flush() {
+    if (numPendingBatches == 0) {
+      return CompletableFuture.completedFuture(null);
+    }
+    Checkpoint checkpoint = pendingCheckpoint;
+    List<UploadedFile> uploadedFiles = new ArrayList<>(pendingUploadedFiles);
+    int numBatches = numPendingBatches;
+    pendingCheckpoint = null;
+    pendingUploadedFiles.clear();
+    numPendingBatches = 0;
+
+    String serializedCheckpoint;
+    try {
+      serializedCheckpoint = CHECKPOINT_WRITER.writeValueAsString(checkpoint);
+    } catch (JsonProcessingException e) {
+      CompletableFuture<Void> failedFuture = new CompletableFuture<>();
+      failedFuture.completeExceptionally(new RuntimeException("failed to serialise checkpoint", e));
+      return failedFuture;
+    }
+    log.debug(
+        "Writing checkpoint of {} batches for table {} timeline {}",
+        numBatches,
+        tableId,
+        commitTimelineType);
+    long flushStartNanos = ticker.read();
+    return onehouseApiClient
+        .upsertTableMetricsCheckpoint(
+            UpsertTableMetricsCheckpointRequest.builder()
+                .commitTimelineType(commitTimelineType)
+                .tableId(tableId)
+                .checkpoint(serializedCheckpoint)
+                .filesUploaded(
+                    uploadedFiles.stream().map(UploadedFile::getName).collect(Collectors.toList()))
+                .uploadedFiles(uploadedFiles)
+                .build())
+        .thenAccept(
+            upsertTableMetricsCheckpointResponse -> {
+              if (upsertTableMetricsCheckpointResponse.isFailure()) {
+                throw new RuntimeException(
+                    String.format(
+                        "failed to update checkpoint: status_code: %d, exception: %s",
+                        upsertTableMetricsCheckpointResponse.getStatusCode(),
+                        upsertTableMetricsCheckpointResponse.getCause()));
+              }
+              checkpointCache.put(tableId, serializedCheckpoint);
+              hudiMetadataExtractorMetrics.incrementCheckpointFlushCounters(
+                  numBatches, ticker.read() - flushStartNanos);
+            })
+        .whenComplete(
+            (ignored, throwable) -> {
+              if (throwable != null) {
+                checkpointCache.invalidate(tableId);
+              }
+            });
+  }
+}
@@ -0,0 +1,394 @@
+package ai.onehouse.metadata_extractor;
+
+import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_FOLDER_NAME;
+import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_PROPERTIES_FILE;
+
+import ai.onehouse.api.JsonCodecs;
+import ai.onehouse.storage.AsyncStorageClient;
+import ai.onehouse.storage.StorageUtils;
+import ai.onehouse.storage.models.File;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nonnull;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Finds hudi tables in S3 Inventory and GCS Storage Insights inventory reports: the folders which
+ * contain a .hoodie/hoodie.properties object are the table folders. Report files are streamed one row
+ * at a time, only CSV reports (optionally gzip compressed) are supported.
+ */
+@Slf4j
+public class InventoryReportReader {
+  private static final String HOODIE_PROPERTIES_KEY =
+      HOODIE_FOLDER_NAME + "/" + HOODIE_PROPERTIES_FILE;
+  private static final String MANIFEST_FILE_SUFFIX = "manifest.json";
+  // S3 writes the manifest of each report into a folder named after the report creation time
+  private static final Pattern S3_REPORT_FOLDER_PATTERN =
+      Pattern.compile("\\d{4}-\\d{2}-\\d{2}T\\d{2}-\\d{2}Z/");
+  private static final String CSV_FILE_FORMAT = "CSV";
+  private static final String CSV_FILE_EXTENSION = ".csv";
+  private static final String GZIP_FILE_EXTENSION = ".gz";
+  private static final String S3_SCHEME = "s3://";
+  private static final String GCS_SCHEME = "gs://";
+  private static final String S3_BUCKET_COLUMN = "Bucket";
+  private static final String S3_KEY_COLUMN = "Key";
+  private static final String GCS_BUCKET_COLUMN = "bucket";
+  private static final String GCS_NAME_COLUMN = "name";
+  private static final char QUOTE = '"';
+  private static final ObjectReader MANIFEST_READER = JsonCodecs.readerFor(JsonNode.class);
+
+  private final AsyncStorageClient asyncStorageClient;
+  private final StorageUtils storageUtils;
+  private final ExecutorService executorService;
+
+  public InventoryReportReader(
+      @Nonnull AsyncStorageClient asyncStorageClient,
+      @Nonnull StorageUtils storageUtils,
+      @Nonnull ExecutorService executorService) {
+    this.asyncStorageClient = asyncStorageClient;
+    this.storageUtils = storageUtils;
+    this.executorService = executorService;
+  }
+
+  /**
+   * Reads the latest inventory report of each location.
+   *
+   * @param inventoryUris Uris of manifest files, or of folders containing the reports of an
+   *     inventory configuration.
+   * @return Uris of the table folders, ending with "/". Tables nested inside other tables, eg: the
+   *     metadata table, are left out the same way as when the folders are listed.
+   */
+  public CompletableFuture<Set<String>> readTableUris(List<String> inventoryUris) {
+    Set<String> tableUris = ConcurrentHashMap.newKeySet();
+    List<CompletableFuture<Void>> reportFutures = new ArrayList<>();
+    for (String inventoryUri : inventoryUris) {
+      reportFutures.add(
+          resolveManifestUri(inventoryUri)
+              .thenCompose(this::readManifest)
+              .thenCompose(this::readReportFiles)
+              .thenAccept(tableUris::addAll));
+    }
+    return CompletableFuture.allOf(reportFutures.toArray(new CompletableFuture[0]))
+        .thenApply(ignored -> removeNestedTables(tableUris));
+  }
+
+  private CompletableFuture<String> resolveManifestUri(String inventoryUri) {
+    if (inventoryUri.endsWith(".json")) {
+      return CompletableFuture.completedFuture(inventoryUri);
+    }
+    return asyncStorageClient
+        .listAllFilesInDir(inventoryUri)
+        .thenApply(
+            files -> {
+              // report folders and manifest file names start with the report time
+              Optional<String> latestReportFolder =
+                  files.stream()
+                      .filter(File::isDirectory)
+                      .map(File::getFilename)
+                      .filter(filename -> S3_REPORT_FOLDER_PATTERN.matcher(filename).matches())
+                      .max(String::compareTo);
+              if (latestReportFolder.isPresent()) {
+                return storageUtils.constructFileUri(
+                    storageUtils.constructFileUri(inventoryUri, latestReportFolder.get()),
+                    MANIFEST_FILE_SUFFIX);
+              }
+              return files.stream()
+                  .filter(file -> !file.isDirectory())
+                  .map(File::getFilename)
+                  .filter(filename -> filename.endsWith(MANIFEST_FILE_SUFFIX))
+                  .max(String::compareTo)
+                  .map(filename -> storageUtils.constructFileUri(inventoryUri, filename))
+                  .orElseThrow(
+                      () ->
+                          new IllegalArgumentException(
+                              "No inventory manifest found in " + inventoryUri));
+            });
+  }
+
+  private CompletableFuture<InventoryReport> readManifest(String manifestUri) {
+    log.info("Reading inventory manifest {}", manifestUri);
+    return asyncStorageClient
+        .readFileAsBytes(manifestUri)
+        .thenApply(
+            manifestBytes -> {
+              JsonNode manifest;
+              try {
+                manifest = MANIFEST_READER.readTree(manifestBytes);
+              } catch (IOException e) {
+                throw new UncheckedIOException("Failed to parse manifest " + manifestUri, e);
+              }
+              if (manifest.has("files")) {
+                return parseS3Manifest(manifestUri, manifest);
+              }
+              if (manifest.has("report_shards_file_names")) {
+                return parseGcsManifest(manifestUri, manifest);
+              }
+              throw new IllegalArgumentException("Unknown inventory manifest " + manifestUri);
+            });
+  }
+
+  /*
+   * S3 report rows have no header, the columns are listed in the fileSchema of the manifest and
+   * object keys are URL encoded.
+   */
+  private InventoryReport parseS3Manifest(String manifestUri, JsonNode manifest) {
+    String fileFormat = manifest.path("fileFormat").asText();
+    if (!CSV_FILE_FORMAT.equalsIgnoreCase(fileFormat)) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Unsupported inventory format %s in %s, only CSV is supported",
+              fileFormat, manifestUri));
+    }
+    List<String> columns =
+        Arrays.stream(manifest.path("fileSchema").asText().split(","))
+            .map(String::trim)
+            .collect(Collectors.toList());
+    List<String> reportFileUris = new ArrayList<>();
+    for (JsonNode file : manifest.path("files")) {
+      reportFileUris.add(getS3ReportFileUri(manifestUri, manifest, file.path("key").asText()));
+    }
+    return InventoryReport.builder()
+        .tableUriScheme(S3_SCHEME)
+        .reportFileUris(reportFileUris)
+        .hasHeader(false)
+        .bucketColumnIndex(getColumnIndex(columns, S3_BUCKET_COLUMN, manifestUri))
+        .keyColumnIndex(getColumnIndex(columns, S3_KEY_COLUMN, manifestUri))
+        .delimiter(',')
+        .isUrlEncoded(true)
+        .build();
+  }
+
+  /*
+   * GCS reports have a header row and are written to the same folder as the manifest.
+   */
+  private InventoryReport parseGcsManifest(String manifestUri, JsonNode manifest) {
+    String manifestFolderUri = manifestUri.substring(0, manifestUri.lastIndexOf('/') + 1);
+    List<String> reportFileUris = new ArrayList<>();
+    for (JsonNode fileName : manifest.path("report_shards_file_names")) {
+      String reportFileUri = storageUtils.constructFileUri(manifestFolderUri, fileName.asText());
+      if (!reportFileUri.endsWith(CSV_FILE_EXTENSION)) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Unsupported inventory report %s, only CSV is supported", reportFileUri));
+      }
+      reportFileUris.add(reportFileUri);
+    }
+    String delimiter =
+        manifest.path("report_config").path("csv_options").path("delimiter").asText(",");
+    return InventoryReport.builder()
+        .tableUriScheme(GCS_SCHEME)
+        .reportFileUris(reportFileUris)
+        .hasHeader(true)
+        .bucketColumnIndex(-1)
+        .keyColumnIndex(-1)
+        .delimiter(delimiter.isEmpty() ? ',' : delimiter.charAt(0))
+        .isUrlEncoded(false)
+        .build();
+  }
+
+  /*
+   * Report file keys are relative to the destination bucket. When the manifest is read from a copy
+   * of the destination bucket (eg: on local disk), the report files are resolved against the same
+   * copy, by locating the folder of the report file key within the manifest uri.
+   */
+  private static String getS3ReportFileUri(String manifestUri, JsonNode manifest, String key) {
+    String keyFolder = key.substring(0, key.lastIndexOf('/') + 1);
+    while (!keyFolder.isEmpty()) {
+      int keyFolderIndex = manifestUri.indexOf("/" + keyFolder);
+      if (keyFolderIndex >= 0) {
+        return manifestUri.substring(0, keyFolderIndex + 1) + key;
+      }
+      keyFolder = keyFolder.substring(0, keyFolder.lastIndexOf('/', keyFolder.length() - 2) + 1);
+    }
+    String destinationBucketArn = manifest.path("destinationBucket").asText();
+    return S3_SCHEME
+        + destinationBucketArn.substring(destinationBucketArn.lastIndexOf(':') + 1)
+        + "/"
+        + key;
+  }
+
+  private CompletableFuture<Set<String>> readReportFiles(InventoryReport inventoryReport) {
+    Set<String> tableUris = ConcurrentHashMap.newKeySet();
+    List<CompletableFuture<Void>> reportFileFutures = new ArrayList<>();
+    for (String reportFileUri : inventoryReport.getReportFileUris()) {
+      reportFileFutures.add(
+          asyncStorageClient
+              .streamFileAsync(reportFileUri)
+              .thenAcceptAsync(
+                  fileStreamData -> {
+                    try (InputStream inputStream = fileStreamData.getInputStream()) {
+                      readReportFile(inventoryReport, reportFileUri, inputStream, tableUris);
+                    } catch (IOException e) {
+                      throw new UncheckedIOException(
+                          "Failed to read inventory report " + reportFileUri, e);
+                    }
+                  },
+                  executorService));
+    }
+    return CompletableFuture.allOf(reportFileFutures.toArray(new CompletableFuture[0]))
+        .thenApply(ignored -> tableUris);
+  }
+
+  private void readReportFile(
+      InventoryReport inventoryReport,
+      String reportFileUri,
+      InputStream inputStream,
+      Set<String> tableUris)
+      throws IOException {
+    log.debug("Reading inventory report {}", reportFileUri);
+    InputStream reportInputStream =
+        reportFileUri.endsWith(GZIP_FILE_EXTENSION)
+            ? new GZIPInputStream(inputStream)
+            : inputStream;
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(reportInputStream, StandardCharsets.UTF_8))) {
+      int bucketColumnIndex = inventoryReport.getBucketColumnIndex();
+      int keyColumnIndex = inventoryReport.getKeyColumnIndex();
+      if (inventoryReport.isHasHeader()) {
+        String header = reader.readLine();
+        if (header == null) {
+          return;
+        }
+        List<String> columns = parseCsvLine(header, inventoryReport.getDelimiter());
+        bucketColumnIndex = getColumnIndex(columns, GCS_BUCKET_COLUMN, reportFileUri);
+        keyColumnIndex = getColumnIndex(columns, GCS_NAME_COLUMN, reportFileUri);
+      }
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+        // cheap check before parsing, as nearly all rows are not hoodie.properties files
+        if (!line.contains(HOODIE_PROPERTIES_FILE)) {
+          continue;
+        }
+        List<String> fields = parseCsvLine(line, inventoryReport.getDelimiter());
+        if (fields.size() <= Math.max(bucketColumnIndex, keyColumnIndex)) {
+          continue;
+        }
+        String key = fields.get(keyColumnIndex);
+        if (inventoryReport.isUrlEncoded()) {
+          key = urlDecode(key);
+        }
+        Optional<String> tableFolder = getTableFolder(key);
+        if (tableFolder.isPresent()) {
+          tableUris.add(
+              inventoryReport.getTableUriScheme()
+                  + fields.get(bucketColumnIndex)
+                  + "/"
+                  + tableFolder.get());
+        }
+      }
+    }
+  }
+
+  /*
+   * Returns the folder of the table the hoodie.properties key belongs to, skipping tables within
+   * the .hoodie folder of another table such as the metadata table.
+   */
+  private static Optional<String> getTableFolder(String key) {
+    if (!key.equals(HOODIE_PROPERTIES_KEY) && !key.endsWith("/" + HOODIE_PROPERTIES_KEY)) {
+      return Optional.empty();
+    }
+    String tableFolder = key.substring(0, key.length() - HOODIE_PROPERTIES_KEY.length());
+    if (tableFolder.startsWith(HOODIE_FOLDER_NAME + "/")
+        || tableFolder.contains("/" + HOODIE_FOLDER_NAME + "/")) {
+      return Optional.empty();
+    }
+    return Optional.of(tableFolder);
+  }
+
+  /*
+   * Listing stops at the first table folder, so tables nested within a table are not discovered.
+   */
+  private static Set<String> removeNestedTables(Set<String> tableUris) {
+    Set<String> topLevelTableUris = new TreeSet<>();
+    String lastTopLevelTableUri = null;
+    // a table sorts right before the tables nested within it
+    for (String tableUri : new TreeSet<>(tableUris)) {
+      if (lastTopLevelTableUri == null || !tableUri.startsWith(lastTopLevelTableUri)) {
+        topLevelTableUris.add(tableUri);
+        lastTopLevelTableUri = tableUri;
+      }
+    }
+    return topLevelTableUris;
+  }
+
+  private static int getColumnIndex(List<String> columns, String column, String uri) {
+    int columnIndex = columns.indexOf(column);
+    if (columnIndex < 0) {
+      throw new IllegalArgumentException(
+          String.format("Inventory report %s does not have the %s column", uri, column));
+    }
+    return columnIndex;
+  }
+
+  private static List<String> parseCsvLine(String line, char delimiter) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean inQuotes = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (inQuotes) {
+        if (c == QUOTE && i + 1 < line.length() && line.charAt(i + 1) == QUOTE) {
+          field.append(QUOTE);
+          i++;
+        } else if (c == QUOTE) {
+          inQuotes = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == QUOTE) {
+        inQuotes = true;
+      } else if (c == delimiter) {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  private static String urlDecode(String value) {
+    try {
+      return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Builder
+  @Value
+  private static class InventoryReport {
+    String tableUriScheme;
+    List<String> reportFileUris;
+    boolean hasHeader;
+    // -1 when the columns are read from the header
+    int bucketColumnIndex;
+    int keyColumnIndex;
+    char delimiter;
+    boolean isUrlEncoded;
+  }
+}
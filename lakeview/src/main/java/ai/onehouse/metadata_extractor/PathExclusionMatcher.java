@@ -0,0 +1,111 @@
+package ai.onehouse.metadata_extractor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/*
+ * Matches paths against the configured path exclusion patterns, with the same result as calling
+ * String#matches for each pattern on paths without line breaks. Patterns are compiled once: patterns
+ * without regex constructs are matched exactly, patterns made of a literal prefix followed by ".*"
+ * are matched through a prefix trie, and only the remaining patterns are evaluated as precompiled
+ * regexes.
+ */
+final class PathExclusionMatcher {
+  private static final String ANY_SUFFIX = ".*";
+  private static final String REGEX_META_CHARACTERS = "\\.[]{}()<>*+-=!?^$|";
+
+  private final List<String> patterns;
+  private final Set<String> exactPaths = new HashSet<>();
+  private final TrieNode prefixTrie = new TrieNode();
+  private final List<Pattern> regexPatterns = new ArrayList<>();
+
+  PathExclusionMatcher(List<String> patterns) {
+    this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+    for (String pattern : patterns) {
+      StringBuilder literal = new StringBuilder();
+      int literalEnd = parseLiteral(pattern, literal);
+      if (literalEnd == pattern.length()) {
+        exactPaths.add(literal.toString());
+      } else if (pattern.substring(literalEnd).equals(ANY_SUFFIX)) {
+        prefixTrie.add(literal);
+      } else {
+        regexPatterns.add(Pattern.compile(pattern));
+      }
+    }
+  }
+
+  List<String> getPatterns() {
+    return patterns;
+  }
+
+  boolean isExcluded(String path) {
+    if (exactPaths.contains(path) || prefixTrie.matchesPrefixOf(path)) {
+      return true;
+    }
+    for (Pattern regexPattern : regexPatterns) {
+      if (regexPattern.matcher(path).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Collects the leading characters of the pattern which match only themselves, unescaping
+   * characters such as "\.", and returns the index of the first regex construct.
+   */
+  private static int parseLiteral(String pattern, StringBuilder literal) {
+    int index = 0;
+    while (index < pattern.length()) {
+      char c = pattern.charAt(index);
+      if (c == '\\') {
+        // escaped letters and digits are character classes, back references or quoting
+        if (index + 1 == pattern.length()
+            || Character.isLetterOrDigit(pattern.charAt(index + 1))) {
+          return index;
+        }
+        literal.append(pattern.charAt(index + 1));
+        index += 2;
+      } else if (REGEX_META_CHARACTERS.indexOf(c) >= 0) {
+        return index;
+      } else {
+        literal.append(c);
+        index++;
+      }
+    }
+    return index;
+  }
+
+  private static class TrieNode {
+    private final Map<Character, TrieNode> children = new HashMap<>();
+    private boolean isPrefixEnd;
+
+    void add(CharSequence prefix) {
+      TrieNode node = this;
+      for (int i = 0; i < prefix.length(); i++) {
+        node = node.children.computeIfAbsent(prefix.charAt(i), c -> new TrieNode());
+      }
+      node.isPrefixEnd = true;
+    }
+
+    boolean matchesPrefixOf(String path) {
+      TrieNode node = this;
+      for (int i = 0; !node.isPrefixEnd; i++) {
+        if (i == path.length()) {
+          return false;
+        }
+        node = node.children.get(path.charAt(i));
+        if (node == null) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
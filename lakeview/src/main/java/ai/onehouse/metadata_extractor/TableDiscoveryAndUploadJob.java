@@ -9,9 +9,11 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nonnull;
 import lombok.extern.slf4j.Slf4j;
@@ -21,6 +23,7 @@ public class TableDiscoveryAndUploadJob {
   private final TableDiscoveryService tableDiscoveryService;
   private final TableMetadataUploaderService tableMetadataUploaderService;
   private final ScheduledExecutorService scheduler;
+  private static final long SHUTDOWN_CHECKPOINT_FLUSH_TIMEOUT_SECONDS = 30;
   private final Object lock = new Object();
   private final LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
 
@@ -130,8 +133,22 @@ public class TableDiscoveryAndUploadJob {
     }
   }
 
+  /*
+   * Stops scheduling runs and writes the checkpoints held back by the uploads in progress, so that
+   * their progress is not lost.
+   */
   public void shutdown() {
     scheduler.shutdown();
+    try {
+      tableMetadataUploaderService
+          .flushCheckpoints()
+          .get(SHUTDOWN_CHECKPOINT_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while writing checkpoints on shutdown");
+    } catch (ExecutionException | TimeoutException e) {
+      log.error("Failed to write checkpoints on shutdown", e);
+    }
   }
 
   @VisibleForTesting
@@ -0,0 +1,220 @@
+package ai.onehouse.metadata_extractor;
+
+import ai.onehouse.api.JsonCodecs;
+import ai.onehouse.config.models.configv1.CrawlIndexConfig;
+import ai.onehouse.metadata_extractor.models.CrawlIndex;
+import ai.onehouse.metadata_extractor.models.CrawlIndexEntry;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Remembers which folders were found to be tables, and the sub folders of those that were not, so
+ * that a discovery round lists only the folders which are stale or changed recently instead of the
+ * whole lake. Every folder is listed again during periodic full rescans, which also drop folders that
+ * no longer exist. The index can be persisted to a local file so that it survives restarts.
+ */
+@Slf4j
+class TableDiscoveryCrawlIndex {
+  private static final ObjectReader CRAWL_INDEX_READER = JsonCodecs.readerFor(CrawlIndex.class);
+  private static final ObjectWriter CRAWL_INDEX_WRITER = JsonCodecs.writerFor(CrawlIndex.class);
+  private final Clock clock;
+  private final Map<String, CrawlIndexEntry> entries = new ConcurrentHashMap<>();
+  private final Set<String> visitedFolders = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger numListedFolders = new AtomicInteger();
+  private final AtomicInteger numReusedFolders = new AtomicInteger();
+  private volatile CrawlIndexConfig crawlIndexConfig;
+  private volatile boolean isFullRescan;
+  private volatile Instant roundStartTime;
+  private Instant lastFullRescanAt;
+  private String loadedIndexFilePath;
+
+  TableDiscoveryCrawlIndex(Clock clock) {
+    this.clock = clock;
+  }
+
+  /*
+   * Must be called before the folders of a discovery round are traversed, rounds must not overlap.
+   */
+  void startRound(Optional<CrawlIndexConfig> crawlIndexConfigOptional) {
+    visitedFolders.clear();
+    numListedFolders.set(0);
+    numReusedFolders.set(0);
+    roundStartTime = clock.instant();
+    crawlIndexConfig = crawlIndexConfigOptional.orElse(null);
+    if (crawlIndexConfig == null) {
+      entries.clear();
+      lastFullRescanAt = null;
+      loadedIndexFilePath = null;
+      return;
+    }
+
+    String indexFilePath = crawlIndexConfig.getIndexFilePath();
+    if (indexFilePath != null && !indexFilePath.equals(loadedIndexFilePath)) {
+      loadIndex(indexFilePath);
+      loadedIndexFilePath = indexFilePath;
+    }
+    isFullRescan =
+        lastFullRescanAt == null
+            || !lastFullRescanAt
+                .plus(Duration.ofMinutes(crawlIndexConfig.getFullRescanIntervalMinutes()))
+                .isAfter(roundStartTime);
+    log.info(
+        "Starting table discovery with {} folders in crawl index, full rescan: {}",
+        entries.size(),
+        isFullRescan);
+  }
+
+  /*
+   * Returns the indexed listing of the folder if it does not have to be listed again this round.
+   */
+  Optional<CrawlIndexEntry> getFreshEntry(String folderUri) {
+    CrawlIndexConfig config = crawlIndexConfig;
+    if (config == null || isFullRescan) {
+      return Optional.empty();
+    }
+    CrawlIndexEntry entry = entries.get(folderUri);
+    if (entry == null || entry.isChangedOnLastListing()) {
+      return Optional.empty();
+    }
+    // folders listed in the same round are spread across [interval / 2, interval] so that they do
+    // not all become stale in the same round again
+    long relistIntervalSeconds =
+        Duration.ofMinutes(config.getRelistIntervalMinutes()).getSeconds()
+            * (50 + Math.floorMod(folderUri.hashCode(), 51))
+            / 100;
+    if (!entry.getLastListedAt().plusSeconds(relistIntervalSeconds).isAfter(roundStartTime)) {
+      return Optional.empty();
+    }
+    visitedFolders.add(folderUri);
+    numReusedFolders.incrementAndGet();
+    return Optional.of(entry);
+  }
+
+  void recordTableRoot(String folderUri) {
+    record(
+        folderUri,
+        CrawlIndexEntry.builder()
+            .tableRoot(true)
+            .subDirectories(Collections.emptyList())
+            .lastListedAt(roundStartTime)
+            .changedOnLastListing(false)
+            .build());
+  }
+
+  void recordFolder(String folderUri, List<String> subDirectories) {
+    CrawlIndexEntry previousEntry = entries.get(folderUri);
+    // folders which appeared since the last round are likely still being populated
+    boolean isChanged =
+        previousEntry != null
+            ? previousEntry.isTableRoot() || !previousEntry.getSubDirectories().equals(subDirectories)
+            : !isFullRescan;
+    record(
+        folderUri,
+        CrawlIndexEntry.builder()
+            .tableRoot(false)
+            .subDirectories(subDirectories)
+            .lastListedAt(roundStartTime)
+            .changedOnLastListing(isChanged)
+            .build());
+  }
+
+  /*
+   * Drops the folder, eg: after its listing failed, so that it is listed again next round.
+   */
+  void remove(String folderUri) {
+    entries.remove(folderUri);
+  }
+
+  /*
+   * Drops folders which were not reached during the round and persists the index.
+   */
+  void endRound() {
+    CrawlIndexConfig config = crawlIndexConfig;
+    if (config == null) {
+      return;
+    }
+    entries.keySet().retainAll(visitedFolders);
+    if (isFullRescan) {
+      lastFullRescanAt = roundStartTime;
+    }
+    log.info(
+        "Table discovery listed {} folders and reused {} folders from crawl index",
+        numListedFolders.get(),
+        numReusedFolders.get());
+    if (config.getIndexFilePath() != null) {
+      persistIndex(config.getIndexFilePath());
+    }
+  }
+
+  @VisibleForTesting
+  Map<String, CrawlIndexEntry> getEntries() {
+    return Collections.unmodifiableMap(entries);
+  }
+
+  private void record(String folderUri, CrawlIndexEntry entry) {
+    if (crawlIndexConfig == null) {
+      return;
+    }
+    entries.put(folderUri, entry);
+    visitedFolders.add(folderUri);
+    numListedFolders.incrementAndGet();
+  }
+
+  private void loadIndex(String indexFilePath) {
+    entries.clear();
+    lastFullRescanAt = null;
+    Path path = Paths.get(indexFilePath);
+    if (!Files.exists(path)) {
+      return;
+    }
+    try {
+      CrawlIndex crawlIndex = CRAWL_INDEX_READER.readValue(path.toFile());
+      entries.putAll(crawlIndex.getEntries());
+      lastFullRescanAt = crawlIndex.getLastFullRescanAt();
+      log.info("Loaded {} folders from crawl index {}", entries.size(), indexFilePath);
+    } catch (IOException e) {
+      // the index only saves listings, discovery falls back to a full rescan
+      log.warn("Failed to load crawl index from {}, ignoring it", indexFilePath, e);
+    }
+  }
+
+  private void persistIndex(String indexFilePath) {
+    Path path = Paths.get(indexFilePath).toAbsolutePath();
+    CrawlIndex crawlIndex =
+        CrawlIndex.builder()
+            .lastFullRescanAt(lastFullRescanAt)
+            .entries(new TreeMap<>(entries))
+            .build();
+    try {
+      // written to a temporary file first so that a crash does not leave a partial index behind
+      Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+      try {
+        CRAWL_INDEX_WRITER.writeValue(tempPath.toFile(), crawlIndex);
+        Files.move(
+            tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tempPath);
+      }
+    } catch (IOException e) {
+      log.warn("Failed to persist crawl index to {}", indexFilePath, e);
+    }
+  }
+}
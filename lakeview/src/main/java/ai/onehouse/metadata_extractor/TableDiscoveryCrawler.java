@@ -0,0 +1,346 @@
+package ai.onehouse.metadata_extractor;
+
+import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_FOLDER_NAME;
+import static ai.onehouse.metadata_extractor.MetadataExtractorUtils.getMetadataExtractorFailureReason;
+
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
+import ai.onehouse.constants.MetricsConstants;
+import ai.onehouse.metadata_extractor.models.CrawlIndexEntry;
+import ai.onehouse.metadata_extractor.models.Table;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import ai.onehouse.storage.AsyncStorageClient;
+import ai.onehouse.storage.StorageUtils;
+import ai.onehouse.storage.models.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Crawls the folders under the base paths of a discovery round for hudi tables. Folders waiting to be
+ * listed are kept in a frontier with a queue per bucket, which is worked breadth first or depth first.
+ * Listings are started as long as the overall and the per bucket limits on in-flight listings allow,
+ * so wide trees do not flood the storage with listing calls and deep trees keep enough listings
+ * in-flight. Whichever thread completes a listing starts the next ones.
+ */
+@Slf4j
+class TableDiscoveryCrawler {
+  private final AsyncStorageClient asyncStorageClient;
+  private final StorageUtils storageUtils;
+  private final TableDiscoveryCrawlIndex crawlIndex;
+  private final LakeViewExtractorMetrics lakeviewExtractorMetrics;
+  private final PathExclusionMatcher exclusionMatcher;
+  private final int maxConcurrentListings;
+  private final int maxConcurrentListingsPerBucket;
+  private final int maxDepth;
+  private final boolean isDepthFirst;
+
+  // guarded by this, buckets are visited round robin in insertion order
+  private final Map<String, Deque<CrawlTask>> frontier = new LinkedHashMap<>();
+  private final Map<String, Integer> numInFlightListingsPerBucket = new HashMap<>();
+  private int numInFlightListings;
+  private int frontierSize;
+
+  // folders which are in the frontier or being listed
+  private final AtomicInteger numPendingFolders = new AtomicInteger();
+  private final AtomicInteger numDispatchRequests = new AtomicInteger();
+  private final AtomicInteger numListedFolders = new AtomicInteger();
+  private final CompletableFuture<Void> crawlFuture = new CompletableFuture<>();
+
+  TableDiscoveryCrawler(
+      AsyncStorageClient asyncStorageClient,
+      StorageUtils storageUtils,
+      TableDiscoveryCrawlIndex crawlIndex,
+      LakeViewExtractorMetrics lakeviewExtractorMetrics,
+      MetadataExtractorConfig metadataExtractorConfig,
+      PathExclusionMatcher exclusionMatcher) {
+    this.asyncStorageClient = asyncStorageClient;
+    this.storageUtils = storageUtils;
+    this.crawlIndex = crawlIndex;
+    this.lakeviewExtractorMetrics = lakeviewExtractorMetrics;
+    this.exclusionMatcher = exclusionMatcher;
+    // non-positive limits leave the crawl unbounded
+    this.maxConcurrentListings = metadataExtractorConfig.getTableDiscoveryMaxConcurrentListings();
+    this.maxConcurrentListingsPerBucket =
+        metadataExtractorConfig.getTableDiscoveryMaxConcurrentListingsPerBucket();
+    this.maxDepth = metadataExtractorConfig.getTableDiscoveryMaxDepth();
+    this.isDepthFirst =
+        MetadataExtractorConfig.TableDiscoveryCrawlOrder.DEPTH_FIRST.equals(
+            metadataExtractorConfig.getTableDiscoveryCrawlOrder());
+  }
+
+  /**
+   * Adds a base path to crawl, must be called before {@link #crawl()}.
+   *
+   * @return Set which holds the tables found under the base path once the crawl completes.
+   */
+  Set<Table> addBasePath(String basePath, String lakeName, String databaseName) {
+    Set<Table> tables = ConcurrentHashMap.newKeySet();
+    String bucketName;
+    try {
+      bucketName = storageUtils.getBucketNameFromUri(basePath);
+    } catch (Exception e) {
+      log.error("Failed to discover tables in path: {}", basePath, e);
+      return tables;
+    }
+    addToFrontier(new CrawlTask(basePath, bucketName, 0, lakeName, databaseName, tables));
+    return tables;
+  }
+
+  /*
+   * Completes once all folders under the base paths are crawled, folders which fail to be listed are
+   * skipped.
+   */
+  CompletableFuture<Void> crawl() {
+    Instant crawlStartTime = Instant.now();
+    if (numPendingFolders.get() == 0) {
+      crawlFuture.complete(null);
+    }
+    dispatch();
+    return crawlFuture.thenRun(
+        () -> {
+          long crawlDurationMillis =
+              Math.max(1, Duration.between(crawlStartTime, Instant.now()).toMillis());
+          log.info(
+              "Listed {} folders in {} ms ({} folders per second)",
+              numListedFolders.get(),
+              crawlDurationMillis,
+              numListedFolders.get() * 1000L / crawlDurationMillis);
+        });
+  }
+
+  /*
+   * Folders which do not have to be listed again are resolved from the crawl index right away,
+   * the remaining folders are queued.
+   */
+  private void addToFrontier(CrawlTask crawlTask) {
+    Deque<CrawlTask> indexedTasks = new ArrayDeque<>();
+    indexedTasks.push(crawlTask);
+    List<CrawlTask> tasksToQueue = new ArrayList<>();
+    while (!indexedTasks.isEmpty()) {
+      CrawlTask task = indexedTasks.pop();
+      Optional<CrawlIndexEntry> crawlIndexEntry = crawlIndex.getFreshEntry(task.getFolderUri());
+      if (!crawlIndexEntry.isPresent()) {
+        tasksToQueue.add(task);
+      } else if (crawlIndexEntry.get().isTableRoot()) {
+        addTable(task);
+      } else {
+        for (String subDirectory : crawlIndexEntry.get().getSubDirectories()) {
+          getSubDirectoryTask(task, subDirectory).ifPresent(indexedTasks::push);
+        }
+      }
+    }
+
+    if (tasksToQueue.isEmpty()) {
+      return;
+    }
+    numPendingFolders.addAndGet(tasksToQueue.size());
+    synchronized (this) {
+      for (CrawlTask task : tasksToQueue) {
+        frontier.computeIfAbsent(task.getBucketName(), bucket -> new ArrayDeque<>()).addLast(task);
+      }
+      frontierSize += tasksToQueue.size();
+      lakeviewExtractorMetrics.setTableDiscoveryFrontierSize(frontierSize);
+    }
+  }
+
+  /*
+   * Starts as many listings as the limits allow. Calls made while another thread is dispatching are
+   * picked up by that thread, so listings that complete synchronously do not recurse.
+   */
+  private void dispatch() {
+    if (numDispatchRequests.getAndIncrement() != 0) {
+      return;
+    }
+    int missedRequests = 1;
+    do {
+      List<CrawlTask> tasksToList = new ArrayList<>();
+      synchronized (this) {
+        boolean isTaskPolled = true;
+        while (isTaskPolled && hasCapacity(maxConcurrentListings, numInFlightListings)) {
+          isTaskPolled = false;
+          Iterator<Map.Entry<String, Deque<CrawlTask>>> iterator = frontier.entrySet().iterator();
+          while (iterator.hasNext() && hasCapacity(maxConcurrentListings, numInFlightListings)) {
+            Map.Entry<String, Deque<CrawlTask>> bucketQueue = iterator.next();
+            int numInFlightBucketListings =
+                numInFlightListingsPerBucket.getOrDefault(bucketQueue.getKey(), 0);
+            if (!hasCapacity(maxConcurrentListingsPerBucket, numInFlightBucketListings)) {
+              continue;
+            }
+            Deque<CrawlTask> queue = bucketQueue.getValue();
+            tasksToList.add(isDepthFirst ? queue.pollLast() : queue.pollFirst());
+            if (queue.isEmpty()) {
+              iterator.remove();
+            }
+            numInFlightListingsPerBucket.put(bucketQueue.getKey(), numInFlightBucketListings + 1);
+            numInFlightListings++;
+            frontierSize--;
+            isTaskPolled = true;
+          }
+        }
+        lakeviewExtractorMetrics.setTableDiscoveryFrontierSize(frontierSize);
+      }
+      for (CrawlTask task : tasksToList) {
+        listFolder(task);
+      }
+      missedRequests = numDispatchRequests.addAndGet(-missedRequests);
+    } while (missedRequests != 0);
+  }
+
+  private void listFolder(CrawlTask task) {
+    String folderUri = task.getFolderUri();
+    log.debug("Discovering tables in {}", folderUri);
+    List<String> subDirectories = new ArrayList<>();
+    // pages are listed in lexicographic order, directories listed before the position of .hoodie
+    // are crawled only once it is known that the folder is not a table
+    List<String> deferredDirectories = new ArrayList<>();
+    AtomicBoolean isTableFolder = new AtomicBoolean(false);
+    AtomicBoolean listedPastHoodieFolder = new AtomicBoolean(false);
+
+    CompletableFuture<Void> listingFuture;
+    try {
+      listingFuture =
+          asyncStorageClient.listFilesInDirByPage(
+              folderUri,
+              listedFiles -> {
+                if (isHudiTableFolder(listedFiles)) {
+                  isTableFolder.set(true);
+                  return CompletableFuture.completedFuture(false);
+                }
+
+                List<String> directories =
+                    listedFiles.stream()
+                        .filter(File::isDirectory)
+                        .map(File::getFilename)
+                        .collect(Collectors.toList());
+                subDirectories.addAll(directories);
+                deferredDirectories.addAll(directories);
+                if (listedPastHoodieFolder.get() || isListedPastHoodieFolder(listedFiles)) {
+                  listedPastHoodieFolder.set(true);
+                  addSubDirectoriesToFrontier(task, deferredDirectories);
+                  deferredDirectories.clear();
+                  dispatch();
+                }
+                return CompletableFuture.completedFuture(true);
+              });
+    } catch (Exception e) {
+      listingFuture = new CompletableFuture<>();
+      listingFuture.completeExceptionally(e);
+    }
+
+    listingFuture
+        .thenRun(
+            () -> {
+              if (isTableFolder.get()) {
+                crawlIndex.recordTableRoot(folderUri);
+                addTable(task);
+              } else {
+                crawlIndex.recordFolder(folderUri, subDirectories);
+                addSubDirectoriesToFrontier(task, deferredDirectories);
+              }
+            })
+        .whenComplete(
+            (ignored, throwable) -> {
+              if (throwable != null) {
+                log.error("Failed to discover tables in path: {}", folderUri, throwable);
+                crawlIndex.remove(folderUri);
+                lakeviewExtractorMetrics.incrementTableDiscoveryFailureCounter(
+                    getMetadataExtractorFailureReason(
+                        throwable, MetricsConstants.MetadataUploadFailureReasons.UNKNOWN));
+              }
+              numListedFolders.incrementAndGet();
+              lakeviewExtractorMetrics.incrementTableDiscoveryFoldersListedCounter();
+              synchronized (this) {
+                numInFlightListings--;
+                numInFlightListingsPerBucket.merge(task.getBucketName(), -1, Integer::sum);
+              }
+              if (numPendingFolders.decrementAndGet() == 0) {
+                crawlFuture.complete(null);
+              } else {
+                dispatch();
+              }
+            });
+  }
+
+  private void addSubDirectoriesToFrontier(CrawlTask task, List<String> directories) {
+    for (String directory : directories) {
+      getSubDirectoryTask(task, directory).ifPresent(this::addToFrontier);
+    }
+  }
+
+  private Optional<CrawlTask> getSubDirectoryTask(CrawlTask task, String directory) {
+    int depth = task.getDepth() + 1;
+    String folderUri = storageUtils.constructFileUri(task.getFolderUri(), directory);
+    if ((maxDepth > 0 && depth > maxDepth) || exclusionMatcher.isExcluded(folderUri)) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        new CrawlTask(
+            folderUri,
+            task.getBucketName(),
+            depth,
+            task.getLakeName(),
+            task.getDatabaseName(),
+            task.getTables()));
+  }
+
+  private void addTable(CrawlTask task) {
+    if (!exclusionMatcher.isExcluded(task.getFolderUri())) {
+      task.getTables()
+          .add(
+              Table.builder()
+                  .absoluteTableUri(task.getFolderUri())
+                  .databaseName(task.getDatabaseName())
+                  .lakeName(task.getLakeName())
+                  .build());
+    }
+  }
+
+  private static boolean hasCapacity(int limit, int numInFlight) {
+    return limit <= 0 || numInFlight < limit;
+  }
+
+  /*
+   *  checks the contents of a folder to see if it is a hudi table or not
+   *  a folder is a hudi table if it contains .hoodie folder within it
+   */
+  private static boolean isHudiTableFolder(List<File> listedFiles) {
+    return listedFiles.stream().anyMatch(file -> file.getFilename().startsWith(HOODIE_FOLDER_NAME));
+  }
+
+  /*
+   *  files are listed in lexicographic order, so once a file sorting after .hoodie is listed the
+   *  folder can no longer turn out to be a hudi table
+   */
+  private static boolean isListedPastHoodieFolder(List<File> listedFiles) {
+    return listedFiles.stream()
+        .anyMatch(file -> file.getFilename().compareTo(HOODIE_FOLDER_NAME) > 0);
+  }
+
+  @Value
+  private static class CrawlTask {
+    String folderUri;
+    String bucketName;
+    // depth below the base path
+    int depth;
+    String lakeName;
+    String databaseName;
+    // tables found under the base path the folder belongs to
+    Set<Table> tables;
+  }
+}
@@ -1,28 +1,25 @@
 package ai.onehouse.metadata_extractor;
 
-import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_FOLDER_NAME;
-import static ai.onehouse.metadata_extractor.MetadataExtractorUtils.getMetadataExtractorFailureReason;
-import static java.util.Collections.emptySet;
-
+import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
-import ai.onehouse.constants.MetricsConstants;
 import ai.onehouse.config.ConfigProvider;
 import ai.onehouse.config.models.configv1.Database;
+import ai.onehouse.config.models.configv1.InventoryConfig;
 import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
 import ai.onehouse.config.models.configv1.ParserConfig;
 import ai.onehouse.metadata_extractor.models.Table;
 import ai.onehouse.metrics.LakeViewExtractorMetrics;
 import ai.onehouse.storage.AsyncStorageClient;
 import ai.onehouse.storage.StorageUtils;
-import ai.onehouse.storage.models.File;
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -30,7 +27,9 @@ import org.apache.commons.lang3.tuple.Pair;
 
 /*
  * Discovers hudi tables by Parsing all folders (including nested folders) in provided base paths
- * excluded paths will be skipped.
+ * excluded paths will be skipped. When a crawl index is configured, folders listed in earlier rounds
+ * are only listed again once they are stale. When inventory reports are configured, tables are found
+ * in the reports instead of listing the base paths.
  */
 @Slf4j
 public class TableDiscoveryService {
@@ -40,6 +39,10 @@ public class TableDiscoveryService {
   private final ExecutorService executorService;
   private final ConfigProvider configProvider;
   private final LakeViewExtractorMetrics lakeviewExtractorMetrics;
+  private final TableDiscoveryCrawlIndex crawlIndex;
+  private final InventoryReportReader inventoryReportReader;
+  private volatile PathExclusionMatcher pathExclusionMatcher =
+      new PathExclusionMatcher(Collections.emptyList());
 
   @Inject
   public TableDiscoveryService(
@@ -48,11 +51,32 @@ public class TableDiscoveryService {
       @Nonnull ConfigProvider configProvider,
       @Nonnull ExecutorService executorService,
       @Nonnull LakeViewExtractorMetrics lakeviewExtractorMetrics) {
+    this(
+        asyncStorageClient,
+        storageUtils,
+        configProvider,
+        executorService,
+        lakeviewExtractorMetrics,
+        new TableDiscoveryCrawlIndex(Clock.systemUTC()),
+        new InventoryReportReader(asyncStorageClient, storageUtils, executorService));
+  }
+
+  @VisibleForTesting
+  TableDiscoveryService(
+      AsyncStorageClient asyncStorageClient,
+      StorageUtils storageUtils,
+      ConfigProvider configProvider,
+      ExecutorService executorService,
+      LakeViewExtractorMetrics lakeviewExtractorMetrics,
+      TableDiscoveryCrawlIndex crawlIndex,
+      InventoryReportReader inventoryReportReader) {
     this.asyncStorageClient = asyncStorageClient;
     this.storageUtils = storageUtils;
     this.executorService = executorService;
     this.configProvider = configProvider;
     this.lakeviewExtractorMetrics = lakeviewExtractorMetrics;
+    this.crawlIndex = crawlIndex;
+    this.inventoryReportReader = inventoryReportReader;
   }
 
   public CompletableFuture<Set<Table>> discoverTables() {
@@ -61,33 +85,78 @@ public class TableDiscoveryService {
     List<String> excludedPathPatterns =
         metadataExtractorConfig.getPathExclusionPatterns().orElse(new ArrayList<>());
     log.info("Starting table discover service, excluding {}", excludedPathPatterns);
+    PathExclusionMatcher exclusionMatcher = getPathExclusionMatcher(excludedPathPatterns);
+    Optional<InventoryConfig> inventoryConfig = metadataExtractorConfig.getInventoryConfig();
+    CompletableFuture<Set<String>> inventoryTableUrisFuture = null;
+    TableDiscoveryCrawler crawler = null;
+    if (inventoryConfig.isPresent()) {
+      inventoryTableUrisFuture =
+          inventoryReportReader.readTableUris(inventoryConfig.get().getInventoryUris());
+    } else {
+      crawlIndex.startRound(metadataExtractorConfig.getCrawlIndexConfig());
+      crawler =
+          new TableDiscoveryCrawler(
+              asyncStorageClient,
+              storageUtils,
+              crawlIndex,
+              lakeviewExtractorMetrics,
+              metadataExtractorConfig,
+              exclusionMatcher);
+    }
     List<Pair<String, CompletableFuture<Set<Table>>>> pathToDiscoveredTablesFuturePairList =
         new ArrayList<>();
+    List<Pair<String, Set<Table>>> pathToCrawledTablesPairList = new ArrayList<>();
 
     for (ParserConfig parserConfig : metadataExtractorConfig.getParserConfig()) {
       for (Database database : parserConfig.getDatabases()) {
         for (String basePathConfig : database.getBasePaths()) {
           String basePath = extractBasePath(basePathConfig);
 
-          if (isExcluded(basePath, excludedPathPatterns)) {
+          if (exclusionMatcher.isExcluded(basePath)) {
             log.warn("Provided base-path has also been passed under paths to exclude {}", basePath);
           }
 
-          pathToDiscoveredTablesFuturePairList.add(
-              Pair.of(
-                  basePathConfig,
-                  discoverTablesInPath(
-                      basePath, parserConfig.getLake(), database.getName(), excludedPathPatterns)));
+          String lakeName = parserConfig.getLake();
+          String databaseName = database.getName();
+          if (inventoryTableUrisFuture != null) {
+            pathToDiscoveredTablesFuturePairList.add(
+                Pair.of(
+                    basePathConfig,
+                    inventoryTableUrisFuture.thenApply(
+                        tableUris ->
+                            getTablesInPathFromInventory(
+                                tableUris,
+                                basePath,
+                                lakeName,
+                                databaseName,
+                                exclusionMatcher))));
+          } else {
+            pathToCrawledTablesPairList.add(
+                Pair.of(basePathConfig, crawler.addBasePath(basePath, lakeName, databaseName)));
+          }
         }
       }
     }
 
+    if (crawler != null) {
+      CompletableFuture<Void> crawlFuture = crawler.crawl();
+      for (Pair<String, Set<Table>> pathToCrawledTablesPair : pathToCrawledTablesPairList) {
+        pathToDiscoveredTablesFuturePairList.add(
+            Pair.of(
+                pathToCrawledTablesPair.getLeft(),
+                crawlFuture.thenApply(ignored -> pathToCrawledTablesPair.getRight())));
+      }
+    }
+
     return CompletableFuture.allOf(
             pathToDiscoveredTablesFuturePairList.stream()
                 .map(Pair::getRight)
                 .toArray(CompletableFuture[]::new))
-        .thenApply(
+        .thenApplyAsync(
             ignored -> {
+              if (!inventoryConfig.isPresent()) {
+                crawlIndex.endRound();
+              }
               Set<Table> allTablePaths = ConcurrentHashMap.newKeySet();
               for (Pair<String, CompletableFuture<Set<Table>>> pathToDiscoveredTablesPair :
                   pathToDiscoveredTablesFuturePairList) {
@@ -112,7 +181,8 @@ public class TableDiscoveryService {
                 allTablePaths.addAll(discoveredTables);
               }
               return allTablePaths;
-            });
+            },
+            executorService);
   }
 
   private String extractBasePath(String basePathConfig) {
@@ -125,72 +195,64 @@ public class TableDiscoveryService {
     return basePathConfigParts.length > 1 ? basePathConfigParts[1] : "";
   }
 
-  private CompletableFuture<Set<Table>> discoverTablesInPath(
-      String path, String lakeName, String databaseName, List<String> excludedPathPatterns) {
-    try {
-      log.info(String.format("Discovering tables in %s", path));
-      return asyncStorageClient
-          .listAllFilesInDir(path)
-          .thenComposeAsync(
-              listedFiles -> {
-                Set<Table> tablePaths = ConcurrentHashMap.newKeySet();
-                List<CompletableFuture<Void>> recursiveFutures = new ArrayList<>();
-
-                if (isHudiTableFolder(listedFiles)) {
-                  Table table =
-                      Table.builder()
-                          .absoluteTableUri(path)
-                          .databaseName(databaseName)
-                          .lakeName(lakeName)
-                          .build();
-                  if (!isExcluded(table.getAbsoluteTableUri(), excludedPathPatterns)) {
-                    tablePaths.add(table);
-                  }
-                  return CompletableFuture.completedFuture(tablePaths);
-                }
-
-                List<File> directories =
-                    listedFiles.stream().filter(File::isDirectory).collect(Collectors.toList());
-
-                for (File file : directories) {
-                  String filePath = storageUtils.constructFileUri(path, file.getFilename());
-                  if (!isExcluded(filePath, excludedPathPatterns)) {
-                    CompletableFuture<Void> recursiveFuture =
-                        discoverTablesInPath(filePath, lakeName, databaseName, excludedPathPatterns)
-                            .thenAccept(tablePaths::addAll);
-                    recursiveFutures.add(recursiveFuture);
-                  }
-                }
+  /*
+   * Picks the tables under the base path from the tables found in the inventory reports, skipping
+   * tables within excluded folders the same way as when the base path is listed.
+   */
+  private Set<Table> getTablesInPathFromInventory(
+      Set<String> tableUris,
+      String basePath,
+      String lakeName,
+      String databaseName,
+      PathExclusionMatcher exclusionMatcher) {
+    String basePathPrefix = basePath.endsWith("/") ? basePath : basePath + "/";
+    Set<Table> tables = ConcurrentHashMap.newKeySet();
+    for (String tableUri : tableUris) {
+      if (!tableUri.startsWith(basePathPrefix)) {
+        continue;
+      }
+      if (tableUri.equals(basePathPrefix)) {
+        tables.addAll(getTableInFolder(basePath, lakeName, databaseName, exclusionMatcher));
+        continue;
+      }
+      boolean isInExcludedFolder = false;
+      for (int folderEnd = tableUri.indexOf('/', basePathPrefix.length());
+          folderEnd >= 0 && !isInExcludedFolder;
+          folderEnd = tableUri.indexOf('/', folderEnd + 1)) {
+        isInExcludedFolder = exclusionMatcher.isExcluded(tableUri.substring(0, folderEnd + 1));
+      }
+      if (!isInExcludedFolder) {
+        tables.add(
+            Table.builder()
+                .absoluteTableUri(tableUri)
+                .databaseName(databaseName)
+                .lakeName(lakeName)
+                .build());
+      }
+    }
+    return tables;
+  }
 
-                return CompletableFuture.allOf(recursiveFutures.toArray(new CompletableFuture[0]))
-                    .thenApplyAsync(ignored -> tablePaths, executorService);
-              },
-              executorService)
-          .exceptionally(
-              e -> {
-                log.error("Failed to discover tables in path: {}", path, e);
-                lakeviewExtractorMetrics.incrementTableDiscoveryFailureCounter(
-                  getMetadataExtractorFailureReason(
-                    e,
-                    MetricsConstants.MetadataUploadFailureReasons.UNKNOWN)
-                );
-                return emptySet();
-              });
-    } catch (Exception e) {
-      log.error("Failed to discover tables in path: {}", path, e);
-      return CompletableFuture.completedFuture(emptySet());
+  private Set<Table> getTableInFolder(
+      String path, String lakeName, String databaseName, PathExclusionMatcher exclusionMatcher) {
+    Set<Table> tables = ConcurrentHashMap.newKeySet();
+    Table table =
+        Table.builder().absoluteTableUri(path).databaseName(databaseName).lakeName(lakeName).build();
+    if (!exclusionMatcher.isExcluded(table.getAbsoluteTableUri())) {
+      tables.add(table);
     }
+    return tables;
   }
 
   /*
-   *  checks the contents of a folder to see if it is a hudi table or not
-   *  a folder is a hudi table if it contains .hoodie folder within it
+   * The patterns are compiled again only when the config they are read from changes.
    */
-  private static boolean isHudiTableFolder(List<File> listedFiles) {
-    return listedFiles.stream().anyMatch(file -> file.getFilename().startsWith(HOODIE_FOLDER_NAME));
-  }
-
-  private boolean isExcluded(String filePath, List<String> excludedPathPatterns) {
-    return excludedPathPatterns.stream().anyMatch(filePath::matches);
+  private PathExclusionMatcher getPathExclusionMatcher(List<String> excludedPathPatterns) {
+    PathExclusionMatcher matcher = pathExclusionMatcher;
+    if (!matcher.getPatterns().equals(excludedPathPatterns)) {
+      matcher = new PathExclusionMatcher(excludedPathPatterns);
+      pathExclusionMatcher = matcher;
+    }
+    return matcher;
   }
 }
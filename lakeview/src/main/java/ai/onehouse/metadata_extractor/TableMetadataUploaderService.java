@@ -1,21 +1,24 @@
 package ai.onehouse.metadata_extractor;
 
 import static ai.onehouse.constants.MetadataExtractorConstants.ARCHIVED_COMMIT_INSTANT_PATTERN;
+import static ai.onehouse.constants.MetadataExtractorConstants.CHECKPOINT_BULK_FETCH_PAGE_SIZE;
 import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_FOLDER_NAME;
 import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_PROPERTIES_FILE;
 import static ai.onehouse.constants.MetadataExtractorConstants.INITIAL_CHECKPOINT;
 import static ai.onehouse.constants.MetadataExtractorConstants.TABLE_PROCESSING_BATCH_SIZE;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import ai.onehouse.api.JsonCodecs;
 import ai.onehouse.api.OnehouseApiClient;
+import ai.onehouse.api.models.request.BulkGetTableMetricsCheckpointsRequest;
 import ai.onehouse.api.models.request.CommitTimelineType;
 import ai.onehouse.api.models.request.InitializeTableMetricsCheckpointRequest;
 import ai.onehouse.api.models.response.GetTableMetricsCheckpointResponse;
 import ai.onehouse.api.models.response.InitializeTableMetricsCheckpointResponse;
+import ai.onehouse.config.Config;
 import ai.onehouse.constants.MetricsConstants;
 import ai.onehouse.metadata_extractor.models.Checkpoint;
 import ai.onehouse.metadata_extractor.models.Table;
@@ -30,6 +33,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
@@ -41,27 +45,34 @@ import org.apache.commons.lang3.StringUtils;
  */
 @Slf4j
 public class TableMetadataUploaderService {
+  private static final ObjectReader CHECKPOINT_READER = JsonCodecs.readerFor(Checkpoint.class);
+  private static final int NOT_FOUND_STATUS_CODE = 404;
   private final HoodiePropertiesReader hoodiePropertiesReader;
   private final OnehouseApiClient onehouseApiClient;
+  private final CheckpointCache checkpointCache;
   private final TimelineCommitInstantsUploader timelineCommitInstantsUploader;
   private final LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
   private final ExecutorService executorService;
-  private final ObjectMapper mapper;
+  private final int checkpointPrefetchBatches;
+  private final AtomicBoolean bulkCheckpointRequestsSupported = new AtomicBoolean(true);
 
   @Inject
   public TableMetadataUploaderService(
       @Nonnull HoodiePropertiesReader hoodiePropertiesReader,
       @Nonnull OnehouseApiClient onehouseApiClient,
+      @Nonnull CheckpointCache checkpointCache,
       @Nonnull TimelineCommitInstantsUploader timelineCommitInstantsUploader,
       @Nonnull LakeViewExtractorMetrics hudiMetadataExtractorMetrics,
-      @Nonnull ExecutorService executorService) {
+      @Nonnull ExecutorService executorService,
+      @Nonnull Config config) {
     this.hoodiePropertiesReader = hoodiePropertiesReader;
     this.onehouseApiClient = onehouseApiClient;
+    this.checkpointCache = checkpointCache;
     this.timelineCommitInstantsUploader = timelineCommitInstantsUploader;
     this.hudiMetadataExtractorMetrics = hudiMetadataExtractorMetrics;
     this.executorService = executorService;
-    this.mapper = new ObjectMapper();
-    mapper.registerModule(new JavaTimeModule());
+    this.checkpointPrefetchBatches =
+        config.getMetadataExtractorConfig().getCheckpointPrefetchBatches();
   }
 
   public CompletableFuture<Boolean> uploadInstantsInTables(Set<Table> tablesToProcess) {
@@ -73,19 +84,93 @@ public class TableMetadataUploaderService {
 
     CompletableFuture<Boolean> processTableBatchFuture = CompletableFuture.completedFuture(true);
 
-    // process batches one after another
-    for (List<Table> tableBatch : tableBatches) {
-      processTableBatchFuture =
-          processTableBatchFuture.thenComposeAsync(
-              previousResult ->
-                  uploadInstantsInTableBatch(tableBatch)
-                      .thenApply(currentResult -> previousResult && currentResult),
-              executorService);
+    if (checkpointPrefetchBatches <= 0 || tableBatches.isEmpty()) {
+      // process batches one after another
+      for (List<Table> tableBatch : tableBatches) {
+        processTableBatchFuture =
+            processTableBatchFuture.thenComposeAsync(
+                previousResult ->
+                    uploadInstantsInTableBatch(tableBatch, getTableMetricsCheckpoints(tableBatch))
+                        .thenApply(currentResult -> previousResult && currentResult),
+                executorService);
+      }
+      return processTableBatchFuture;
+    }
+
+    /*
+     * checkpoints of checkpointPrefetchBatches batches are fetched together, those of the next
+     * group of batches while the current group is processed
+     */
+    List<List<List<Table>>> tableBatchGroups =
+        Lists.partition(tableBatches, checkpointPrefetchBatches);
+    CompletableFuture<GetTableMetricsCheckpointResponse> groupCheckpointsFuture =
+        getTableMetricsCheckpoints(flatten(tableBatchGroups.get(0)));
+    for (int i = 0; i < tableBatchGroups.size(); i++) {
+      CompletableFuture<GetTableMetricsCheckpointResponse> checkpointsFuture =
+          groupCheckpointsFuture;
+      CompletableFuture<GetTableMetricsCheckpointResponse> nextGroupCheckpointsFuture =
+          new CompletableFuture<>();
+      if (i + 1 < tableBatchGroups.size()) {
+        List<Table> nextGroupTables = flatten(tableBatchGroups.get(i + 1));
+        processTableBatchFuture =
+            processTableBatchFuture.thenApply(
+                previousResult -> {
+                  prefetchTableMetricsCheckpoints(nextGroupTables, nextGroupCheckpointsFuture);
+                  return previousResult;
+                });
+      }
+      for (List<Table> tableBatch : tableBatchGroups.get(i)) {
+        processTableBatchFuture =
+            processTableBatchFuture.thenComposeAsync(
+                previousResult ->
+                    uploadInstantsInTableBatch(
+                            tableBatch,
+                            checkpointsFuture.thenApply(
+                                response -> getCheckpointsOfTables(response, tableBatch)))
+                        .thenApply(currentResult -> previousResult && currentResult),
+                executorService);
+      }
+      groupCheckpointsFuture = nextGroupCheckpointsFuture;
     }
 
     return processTableBatchFuture;
   }
 
+  private void prefetchTableMetricsCheckpoints(
+      List<Table> tables, CompletableFuture<GetTableMetricsCheckpointResponse> checkpointsFuture) {
+    try {
+      getTableMetricsCheckpoints(tables)
+          .whenComplete(
+              (response, throwable) -> {
+                if (throwable != null) {
+                  checkpointsFuture.completeExceptionally(throwable);
+                } else {
+                  checkpointsFuture.complete(response);
+                }
+              });
+    } catch (Exception e) {
+      checkpointsFuture.completeExceptionally(e);
+    }
+  }
+
+  private static List<Table> flatten(List<List<Table>> tableBatches) {
+    return tableBatches.stream().flatMap(List::stream).collect(Collectors.toList());
+  }
+
+  private static GetTableMetricsCheckpointResponse getCheckpointsOfTables(
+      GetTableMetricsCheckpointResponse response, List<Table> tables) {
+    if (response.isFailure()) {
+      return response;
+    }
+    Set<String> tableIds = tables.stream().map(Table::getTableId).collect(Collectors.toSet());
+    return GetTableMetricsCheckpointResponse.builder()
+        .checkpoints(
+            response.getCheckpoints().stream()
+                .filter(checkpoint -> tableIds.contains(checkpoint.getTableId()))
+                .collect(Collectors.toList()))
+        .build();
+  }
+
   private Table updateTableIdIfNotPresent(Table table) {
     if (StringUtils.isNotBlank(table.getTableId())) {
       return table;
@@ -96,11 +181,15 @@ public class TableMetadataUploaderService {
         .build();
   }
 
-  private CompletableFuture<Boolean> uploadInstantsInTableBatch(List<Table> tables) {
-    log.info("Fetching checkpoint for tables: " + tables);
-    return onehouseApiClient
-        .getTableMetricsCheckpoints(
-            tables.stream().map(Table::getTableId).collect(Collectors.toList()))
+  // writes the checkpoints held back by the tables being uploaded
+  public CompletableFuture<Void> flushCheckpoints() {
+    return timelineCommitInstantsUploader.flushCheckpoints();
+  }
+
+  private CompletableFuture<Boolean> uploadInstantsInTableBatch(
+      List<Table> tables,
+      CompletableFuture<GetTableMetricsCheckpointResponse> getTableMetricsCheckpointsFuture) {
+    return getTableMetricsCheckpointsFuture
         .thenComposeAsync(
             getTableMetricsCheckpointResponse -> {
               if (getTableMetricsCheckpointResponse.isFailure()) {
@@ -142,9 +231,10 @@ public class TableMetadataUploaderService {
                             table.getTableId(),
                             table,
                             StringUtils.isNotBlank(checkpointString)
-                                ? mapper.readValue(checkpointString, Checkpoint.class)
+                                ? CHECKPOINT_READER.readValue(checkpointString)
                                 : INITIAL_CHECKPOINT));
                   } catch (JsonProcessingException e) {
+                    checkpointCache.invalidate(table.getTableId());
                     log.error(
                         "Error deserializing checkpoint value for table: {}, skipping table",
                         table,
@@ -180,6 +270,108 @@ public class TableMetadataUploaderService {
             });
   }
 
+  /*
+   * Checkpoints held in the checkpoint cache are used as they are, only the others are fetched.
+   */
+  private CompletableFuture<GetTableMetricsCheckpointResponse> getTableMetricsCheckpoints(
+      List<Table> tables) {
+    List<String> tableIds = tables.stream().map(Table::getTableId).collect(Collectors.toList());
+    Map<String, String> cachedCheckpoints = checkpointCache.getCheckpoints(tableIds);
+    List<GetTableMetricsCheckpointResponse.TableMetadataCheckpoint> checkpoints =
+        cachedCheckpoints.entrySet().stream()
+            .map(
+                entry ->
+                    new GetTableMetricsCheckpointResponse.TableMetadataCheckpoint(
+                        entry.getKey(), entry.getValue()))
+            .collect(Collectors.toList());
+    List<String> tableIdsToFetch =
+        tableIds.stream()
+            .filter(tableId -> !cachedCheckpoints.containsKey(tableId))
+            .collect(Collectors.toList());
+    if (tableIdsToFetch.isEmpty()) {
+      log.info("Using cached checkpoint for tables: " + tables);
+      return CompletableFuture.completedFuture(
+          GetTableMetricsCheckpointResponse.builder().checkpoints(checkpoints).build());
+    }
+
+    log.info(
+        "Fetching checkpoint for tables: {}, {} checkpoints found in cache",
+        tables,
+        cachedCheckpoints.size());
+    return fetchTableMetricsCheckpoints(tableIdsToFetch)
+        .thenApply(
+            getTableMetricsCheckpointResponse -> {
+              if (getTableMetricsCheckpointResponse.isFailure()) {
+                return getTableMetricsCheckpointResponse;
+              }
+              checkpointCache.reconcile(
+                  tableIdsToFetch, getTableMetricsCheckpointResponse.getCheckpoints());
+              if (checkpoints.isEmpty()) {
+                return getTableMetricsCheckpointResponse;
+              }
+              checkpoints.addAll(getTableMetricsCheckpointResponse.getCheckpoints());
+              return GetTableMetricsCheckpointResponse.builder().checkpoints(checkpoints).build();
+            });
+  }
+
+  /*
+   * More tables than fit in a batch are fetched with paged bulk requests, which carry the table ids
+   * in the body instead of the url. Once the api answers that it does not know the bulk endpoint,
+   * checkpoints are fetched a batch of tables at a time for the rest of the run.
+   */
+  private CompletableFuture<GetTableMetricsCheckpointResponse> fetchTableMetricsCheckpoints(
+      List<String> tableIds) {
+    if (tableIds.size() <= TABLE_PROCESSING_BATCH_SIZE) {
+      return onehouseApiClient.getTableMetricsCheckpoints(tableIds);
+    }
+    if (!bulkCheckpointRequestsSupported.get()) {
+      return combineCheckpointResponses(
+          Lists.partition(tableIds, TABLE_PROCESSING_BATCH_SIZE).stream()
+              .map(onehouseApiClient::getTableMetricsCheckpoints)
+              .collect(Collectors.toList()));
+    }
+    return combineCheckpointResponses(
+            Lists.partition(tableIds, CHECKPOINT_BULK_FETCH_PAGE_SIZE).stream()
+                .map(
+                    tableIdsPage ->
+                        onehouseApiClient.bulkGetTableMetricsCheckpoints(
+                            BulkGetTableMetricsCheckpointsRequest.builder()
+                                .tableIds(tableIdsPage)
+                                .build()))
+                .collect(Collectors.toList()))
+        .thenCompose(
+            response -> {
+              if (response.isFailure() && response.getStatusCode() == NOT_FOUND_STATUS_CODE) {
+                if (bulkCheckpointRequestsSupported.compareAndSet(true, false)) {
+                  log.info(
+                      "Bulk checkpoint requests are not supported by the api, "
+                          + "fetching checkpoints a batch of tables at a time");
+                }
+                return fetchTableMetricsCheckpoints(tableIds);
+              }
+              return CompletableFuture.completedFuture(response);
+            });
+  }
+
+  private static CompletableFuture<GetTableMetricsCheckpointResponse> combineCheckpointResponses(
+      List<CompletableFuture<GetTableMetricsCheckpointResponse>> responseFutures) {
+    return CompletableFuture.allOf(responseFutures.toArray(new CompletableFuture[0]))
+        .thenApply(
+            ignored -> {
+              List<GetTableMetricsCheckpointResponse.TableMetadataCheckpoint> checkpoints =
+                  new ArrayList<>();
+              for (CompletableFuture<GetTableMetricsCheckpointResponse> responseFuture :
+                  responseFutures) {
+                GetTableMetricsCheckpointResponse response = responseFuture.join();
+                if (response.isFailure()) {
+                  return response;
+                }
+                checkpoints.addAll(response.getCheckpoints());
+              }
+              return GetTableMetricsCheckpointResponse.builder().checkpoints(checkpoints).build();
+            });
+  }
+
   private CompletableFuture<List<CompletableFuture<Boolean>>>
       initialiseAndProcessNewlyDiscoveredTables(List<Table> tablesToInitialise) {
     List<CompletableFuture<Boolean>> processTablesFuture = new ArrayList<>();
@@ -300,6 +492,8 @@ public class TableMetadataUploaderService {
                             response.getError());
                         continue;
                       }
+                      // initialised tables start without checkpoint
+                      checkpointCache.put(table.getTableId(), "");
                       processTablesFuture.add(
                           uploadNewInstantsSinceCheckpoint(
                               table.getTableId(), table, INITIAL_CHECKPOINT));
@@ -8,19 +8,21 @@ import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_PROPERTIES
 import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_PROPERTIES_FILE_OBJ;
 import static ai.onehouse.constants.MetadataExtractorConstants.SAVEPOINT_ACTION;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import ai.onehouse.api.OnehouseApiClient;
 import ai.onehouse.api.models.request.CommitTimelineType;
+import ai.onehouse.api.models.request.CompleteMultipartUploadRequest;
 import ai.onehouse.api.models.request.GenerateCommitMetadataUploadUrlRequest;
+import ai.onehouse.api.models.request.GenerateMultipartUploadUrlsRequest;
 import ai.onehouse.api.models.request.UploadedFile;
-import ai.onehouse.api.models.request.UpsertTableMetricsCheckpointRequest;
+import ai.onehouse.api.models.request.UploadedPart;
+import ai.onehouse.api.models.response.GenerateCommitMetadataUploadUrlResponse;
 import ai.onehouse.config.Config;
 import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig.UploadCompression;
 import ai.onehouse.constants.MetricsConstants;
 import ai.onehouse.metadata_extractor.models.Checkpoint;
 import ai.onehouse.metadata_extractor.models.Table;
@@ -31,11 +33,19 @@ import ai.onehouse.storage.StorageUtils;
 import ai.onehouse.storage.models.File;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -54,17 +64,21 @@ public class TimelineCommitInstantsUploader {
   private final StorageUtils storageUtils;
   private final PresignedUrlFileUploader presignedUrlFileUploader;
   private final OnehouseApiClient onehouseApiClient;
+  private final CheckpointCache checkpointCache;
   private final ExecutorService executorService;
-  private final ObjectMapper mapper;
   private final ActiveTimelineInstantBatcher activeTimelineInstantBatcher;
   private final LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
   private final MetadataExtractorConfig extractorConfig;
+  // writers of the timelines being uploaded, flushed on shutdown
+  private final Set<CoalescingCheckpointWriter> activeCheckpointWriters =
+      ConcurrentHashMap.newKeySet();
 
   @Inject
   public TimelineCommitInstantsUploader(
       @Nonnull AsyncStorageClient asyncStorageClient,
       @Nonnull PresignedUrlFileUploader presignedUrlFileUploader,
       @Nonnull OnehouseApiClient onehouseApiClient,
+      @Nonnull CheckpointCache checkpointCache,
       @Nonnull StorageUtils storageUtils,
       @Nonnull ExecutorService executorService,
       @Nonnull ActiveTimelineInstantBatcher activeTimelineInstantBatcher,
@@ -73,13 +87,12 @@ public class TimelineCommitInstantsUploader {
     this.asyncStorageClient = asyncStorageClient;
     this.presignedUrlFileUploader = presignedUrlFileUploader;
     this.onehouseApiClient = onehouseApiClient;
+    this.checkpointCache = checkpointCache;
     this.storageUtils = storageUtils;
     this.executorService = executorService;
     this.activeTimelineInstantBatcher = activeTimelineInstantBatcher;
     this.hudiMetadataExtractorMetrics = hudiMetadataExtractorMetrics;
     this.extractorConfig = config.getMetadataExtractorConfig();
-    this.mapper = new ObjectMapper();
-    mapper.registerModule(new JavaTimeModule());
   }
 
   /**
@@ -152,19 +165,13 @@ public class TimelineCommitInstantsUploader {
       String timelineUri,
       Checkpoint checkpoint,
       CommitTimelineType commitTimelineType) {
-    return asyncStorageClient
-        .listAllFilesInDir(timelineUri)
+    return listInstantsToUpload(timelineUri, checkpoint, commitTimelineType)
         .thenComposeAsync(
-            files -> {
-              List<File> filesToUpload =
-                  getFilesToUploadBasedOnPreviousCheckpoint(
-                      files, checkpoint, commitTimelineType, false);
-
-              return filesToUpload.isEmpty()
-                  ? CompletableFuture.completedFuture(checkpoint)
-                  : uploadInstantsInSequentialBatches(
-                  tableId, table, filesToUpload, checkpoint, commitTimelineType);
-            },
+            filesToUpload ->
+                filesToUpload.isEmpty()
+                    ? CompletableFuture.completedFuture(checkpoint)
+                    : uploadInstantsInSequentialBatches(
+                        tableId, table, filesToUpload, checkpoint, commitTimelineType),
             executorService)
         .exceptionally(
             throwable -> {
@@ -187,8 +194,7 @@ public class TimelineCommitInstantsUploader {
       Checkpoint checkpoint,
       CommitTimelineType commitTimelineType,
       String startAfter) {
-    return asyncStorageClient
-        .fetchObjectsByPage(bucketName, prefix, null, startAfter)
+    return fetchInstantsPage(bucketName, prefix, startAfter, commitTimelineType)
         .thenComposeAsync(
             continuationTokenAndFiles -> {
               String nextContinuationToken = continuationTokenAndFiles.getLeft();
@@ -245,6 +251,93 @@ public class TimelineCommitInstantsUploader {
             });
   }
 
+  /**
+   * Lists the instants in the timeline which are yet to be uploaded, sorted in upload order. The
+   * timeline is listed page by page and only pending instants are retained, so memory grows with
+   * the number of instants to upload rather than with the size of the timeline. Uploads can only
+   * start once the listing completes, as archived instants are uploaded in numeric order which
+   * differs from the listing order.
+   */
+  private CompletableFuture<List<File>> listInstantsToUpload(
+      String timelineUri, Checkpoint checkpoint, CommitTimelineType commitTimelineType) {
+    if (extractorConfig.getTimelineListingParallelism() > 1) {
+      // with range listing enabled, the first page holds the whole timeline
+      return fetchInstantsPage(
+              storageUtils.getBucketNameFromUri(timelineUri),
+              storageUtils.getPathFromUrl(timelineUri),
+              null,
+              commitTimelineType)
+          .thenApply(
+              continuationTokenAndFiles ->
+                  getFilesToUploadBasedOnPreviousCheckpoint(
+                      continuationTokenAndFiles.getRight(), checkpoint, commitTimelineType, false));
+    }
+
+    List<File> pendingInstants = new ArrayList<>();
+    AtomicBoolean isTimelineEmpty = new AtomicBoolean(true);
+    return asyncStorageClient
+        .listFilesInDirByPage(
+            timelineUri,
+            files -> {
+              if (!files.isEmpty()) {
+                isTimelineEmpty.set(false);
+              }
+              files.stream()
+                  .filter(file -> shouldIncludeFile(file, checkpoint, false, commitTimelineType))
+                  .forEach(pendingInstants::add);
+              return CompletableFuture.completedFuture(true);
+            })
+        .thenApply(
+            ignored ->
+                isTimelineEmpty.get()
+                    ? pendingInstants
+                    : sortFilesToUpload(pendingInstants, checkpoint, commitTimelineType));
+  }
+
+  /**
+   * Fetches a page of the timeline starting after the given key. When range listing is enabled and
+   * the timeline does not fit in the page, the rest of the timeline is split into key ranges which
+   * are listed concurrently and returned along with the page, the continuation token is then null.
+   * Files are returned in the same order as a sequential listing, so the checkpoint of the last
+   * uploaded file holds irrespective of how the timeline was listed.
+   */
+  private CompletableFuture<Pair<String, List<File>>> fetchInstantsPage(
+      String bucketName, String prefix, String startAfter, CommitTimelineType commitTimelineType) {
+    int timelineListingParallelism = extractorConfig.getTimelineListingParallelism();
+    return asyncStorageClient
+        .fetchObjectsByPage(bucketName, prefix, null, startAfter)
+        .thenComposeAsync(
+            continuationTokenAndFiles -> {
+              List<File> firstPage = continuationTokenAndFiles.getRight();
+              if (timelineListingParallelism <= 1
+                  || StringUtils.isBlank(continuationTokenAndFiles.getLeft())
+                  || firstPage.isEmpty()) {
+                return CompletableFuture.completedFuture(continuationTokenAndFiles);
+              }
+
+              String lastListedFile =
+                  firstPage.stream().map(File::getFilename).max(String::compareTo).get();
+              List<String> rangeStartAfters =
+                  TimelineListingRangePlanner.planRangeStartAfters(
+                      prefix,
+                      lastListedFile,
+                      timelineListingParallelism,
+                      commitTimelineType,
+                      Instant.now());
+              log.debug(
+                  "Listing {} after {} in {} ranges", prefix, lastListedFile, rangeStartAfters.size());
+              return asyncStorageClient
+                  .listObjectsInRanges(bucketName, prefix, rangeStartAfters)
+                  .thenApply(
+                      remainingFiles -> {
+                        List<File> files = new ArrayList<>(firstPage);
+                        files.addAll(remainingFiles);
+                        return Pair.of((String) null, files);
+                      });
+            },
+            executorService);
+  }
+
   /**
    * Executes a sequential upload of files in parallel batches. This function processes multiple
    * files in parallel within each batch, ensuring efficient use of resources. However, it maintains
@@ -316,9 +409,28 @@ public class TimelineCommitInstantsUploader {
         commitTimelineType,
         numBatches);
 
+    // upload urls of the following batches are requested while a batch uploads, the checkpoint is
+    // still updated after each batch in order
+    int numBatchesToPrefetch = Math.max(0, extractorConfig.getUploadUrlPrefetchBatches());
+    Queue<CompletableFuture<GenerateCommitMetadataUploadUrlResponse>> uploadUrlFutures =
+        new ArrayDeque<>();
+    AtomicInteger numBatchesRequested = new AtomicInteger(0);
+    CoalescingCheckpointWriter checkpointWriter =
+        new CoalescingCheckpointWriter(
+            tableId,
+            commitTimelineType,
+            onehouseApiClient,
+            checkpointCache,
+            hudiMetadataExtractorMetrics,
+            extractorConfig.getCheckpointFlushBatches(),
+            Duration.ofSeconds(extractorConfig.getCheckpointFlushIntervalSeconds()),
+            Ticker.systemTicker());
+    activeCheckpointWriters.add(checkpointWriter);
     CompletableFuture<Checkpoint> sequentialBatchProcessingFuture =
         CompletableFuture.completedFuture(checkpoint);
-    for (List<File> batch : batches) {
+    for (int batchIndex = 0; batchIndex < numBatches; batchIndex++) {
+      List<File> batch = batches.get(batchIndex);
+      int lastBatchIndexToRequest = Math.min(batchIndex + numBatchesToPrefetch, numBatches - 1);
       sequentialBatchProcessingFuture =
           sequentialBatchProcessingFuture.thenComposeAsync(
               updatedCheckpoint -> {
@@ -332,8 +444,16 @@ public class TimelineCommitInstantsUploader {
                     updatedCheckpoint.getBatchId() + 1,
                     table,
                     commitTimelineType);
+                while (numBatchesRequested.get() <= lastBatchIndexToRequest) {
+                  uploadUrlFutures.add(
+                      generateUploadUrls(
+                          tableId,
+                          batches.get(numBatchesRequested.getAndIncrement()),
+                          commitTimelineType));
+                }
                 return uploadBatch(
                     tableId,
+                    uploadUrlFutures.poll(),
                     batch,
                     commitTimelineType,
                     storageUtils.constructFileUri(
@@ -341,10 +461,9 @@ public class TimelineCommitInstantsUploader {
                         getPathSuffixForTimeline(commitTimelineType)))
                     .thenComposeAsync(
                         ignored2 ->
-                            updateCheckpointAfterProcessingBatch(
-                                tableId,
-                                updatedCheckpoint,
-                                lastUploadedFile,
+                            checkpointWriter.write(
+                                getCheckpointAfterProcessingBatch(
+                                    updatedCheckpoint, lastUploadedFile, commitTimelineType),
                                 batch.stream()
                                     .map(
                                         file ->
@@ -354,8 +473,7 @@ public class TimelineCommitInstantsUploader {
                                                 .lastModifiedAt(
                                                     file.getLastModifiedAt().toEpochMilli())
                                                 .build())
-                                    .collect(Collectors.toList()),
-                                commitTimelineType),
+                                    .collect(Collectors.toList())),
                         executorService)
                     .exceptionally(
                         throwable -> {
@@ -371,25 +489,64 @@ public class TimelineCommitInstantsUploader {
               },
               executorService);
     }
-    return sequentialBatchProcessingFuture;
+    // checkpoints held back are written once the batches are done, also when a batch failed
+    return sequentialBatchProcessingFuture.thenCompose(
+        updatedCheckpoint ->
+            checkpointWriter
+                .flush()
+                .whenComplete(
+                    (ignored, throwable) -> activeCheckpointWriters.remove(checkpointWriter))
+                .handle(
+                    (ignored, throwable) -> {
+                      if (throwable != null) {
+                        hudiMetadataExtractorMetrics.incrementTableMetadataProcessingFailureCounter(
+                            MetricsConstants.MetadataUploadFailureReasons.UNKNOWN);
+                        log.error("error updating checkpoint for table: {}", table, throwable);
+                        return null;
+                      }
+                      return updatedCheckpoint;
+                    }));
+  }
+
+  /*
+   * Writes the checkpoints held back by the timelines being uploaded, so that the progress of their
+   * uploaded batches is kept when the extractor shuts down. Failed updates are logged and dropped,
+   * their files are uploaded again in the next run.
+   */
+  public CompletableFuture<Void> flushCheckpoints() {
+    return CompletableFuture.allOf(
+        activeCheckpointWriters.stream()
+            .map(
+                checkpointWriter ->
+                    checkpointWriter
+                        .flush()
+                        .exceptionally(
+                            throwable -> {
+                              log.error("error updating checkpoint on shutdown", throwable);
+                              return null;
+                            }))
+            .toArray(CompletableFuture[]::new));
+  }
+
+  private CompletableFuture<GenerateCommitMetadataUploadUrlResponse> generateUploadUrls(
+      String tableId, List<File> batch, CommitTimelineType commitTimelineType) {
+    return onehouseApiClient.generateCommitMetadataUploadUrl(
+        GenerateCommitMetadataUploadUrlRequest.builder()
+            .tableId(tableId)
+            .commitInstants(getCommitInstants(batch, commitTimelineType))
+            .commitTimelineType(commitTimelineType)
+            .bundleUpload(extractorConfig.isBundleInstantUploads())
+            .build());
   }
 
   private CompletableFuture<Void> uploadBatch(
       String tableId,
+      CompletableFuture<GenerateCommitMetadataUploadUrlResponse> uploadUrlsFuture,
       List<File> batch,
       CommitTimelineType commitTimelineType,
       String directoryUri) {
-    List<String> commitInstants =
-        batch.stream()
-            .map(file -> getFileNameWithPrefix(file, commitTimelineType))
-            .collect(Collectors.toList());
-    return onehouseApiClient
-        .generateCommitMetadataUploadUrl(
-            GenerateCommitMetadataUploadUrlRequest.builder()
-                .tableId(tableId)
-                .commitInstants(commitInstants)
-                .commitTimelineType(commitTimelineType)
-                .build())
+    List<String> commitInstants = getCommitInstants(batch, commitTimelineType);
+    return uploadUrlsFuture
         .thenComposeAsync(
             generateCommitMetadataUploadUrlResponse -> {
               if (generateCommitMetadataUploadUrlResponse.isFailure()) {
@@ -400,17 +557,45 @@ public class TimelineCommitInstantsUploader {
                         generateCommitMetadataUploadUrlResponse.getCause()));
               }
 
+              // api versions without bundle support return per file upload urls only
+              String bundleUploadUrl = generateCommitMetadataUploadUrlResponse.getBundleUploadUrl();
+              if (bundleUploadUrl != null) {
+                List<Pair<String, String>> entryNameAndFileUrls = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                  entryNameAndFileUrls.add(
+                      Pair.of(
+                          commitInstants.get(i),
+                          constructStorageUri(directoryUri, batch.get(i).getFilename())));
+                }
+                return presignedUrlFileUploader
+                    .uploadBundleToPresignedUrl(bundleUploadUrl, entryNameAndFileUrls)
+                    .thenRun(
+                        () -> {
+                          for (int i = 0; i < batch.size(); i++) {
+                            hudiMetadataExtractorMetrics.incrementMetadataUploadSuccessCounter();
+                          }
+                        });
+              }
+
+              UploadCompression uploadCompression =
+                  getUploadCompression(generateCommitMetadataUploadUrlResponse);
               List<CompletableFuture<Void>> uploadFutures = new ArrayList<>();
               for (int i = 0; i < batch.size(); i++) {
-                uploadFutures.add(
-                    presignedUrlFileUploader.uploadFileToPresignedUrl(
+                File file = batch.get(i);
+                String fileUri = constructStorageUri(directoryUri, file.getFilename());
+                CompletableFuture<Void> uploadFuture =
+                    isMultipartUpload(file)
+                        ? uploadFileInParts(
+                            tableId, commitTimelineType, commitInstants.get(i), fileUri, file)
+                        : presignedUrlFileUploader.uploadFileToPresignedUrl(
                             generateCommitMetadataUploadUrlResponse.getUploadUrls().get(i),
-                            constructStorageUri(directoryUri, batch.get(i).getFilename()),
-                            extractorConfig.getFileUploadStreamBatchSize())
-                        .thenApply(result -> {
-                          hudiMetadataExtractorMetrics.incrementMetadataUploadSuccessCounter();
-                          return result;
-                        }));
+                            fileUri,
+                            uploadCompression);
+                uploadFutures.add(
+                    uploadFuture.thenApply(result -> {
+                      hudiMetadataExtractorMetrics.incrementMetadataUploadSuccessCounter();
+                      return result;
+                    }));
               }
 
               return CompletableFuture.allOf(uploadFutures.toArray(new CompletableFuture[0]));
@@ -418,12 +603,105 @@ public class TimelineCommitInstantsUploader {
             executorService);
   }
 
-  private CompletableFuture<Checkpoint> updateCheckpointAfterProcessingBatch(
+  private boolean isMultipartUpload(File file) {
+    long multipartUploadThresholdBytes = extractorConfig.getMultipartUploadThresholdBytes();
+    return multipartUploadThresholdBytes > 0 && file.getSize() >= multipartUploadThresholdBytes;
+  }
+
+  /*
+   * Uploads a large instant file in parts through an upload url per part, the api assembles the
+   * parts into the instant file once all of them are uploaded. Parts are not compressed.
+   */
+  private CompletableFuture<Void> uploadFileInParts(
       String tableId,
-      Checkpoint previousCheckpoint,
-      File lastUploadedFile,
-      List<UploadedFile> uploadedFiles,
-      CommitTimelineType commitTimelineType) {
+      CommitTimelineType commitTimelineType,
+      String commitInstant,
+      String fileUri,
+      File file) {
+    long partSize =
+        PresignedUrlFileUploader.getMultipartUploadPartSize(
+            file.getSize(), extractorConfig.getMultipartUploadPartSizeBytes());
+    int numParts = PresignedUrlFileUploader.getNumMultipartUploadParts(file.getSize(), partSize);
+    return onehouseApiClient
+        .generateMultipartUploadUrls(
+            GenerateMultipartUploadUrlsRequest.builder()
+                .tableId(tableId)
+                .commitTimelineType(commitTimelineType)
+                .commitInstant(commitInstant)
+                .numParts(numParts)
+                .build())
+        .thenCompose(
+            generateMultipartUploadUrlsResponse -> {
+              if (generateMultipartUploadUrlsResponse.isFailure()
+                  || generateMultipartUploadUrlsResponse.getPartUploadUrls().size() != numParts) {
+                throw new RuntimeException(
+                    String.format(
+                        "failed to generate multipart upload urls: status_code: %d exception: %s",
+                        generateMultipartUploadUrlsResponse.getStatusCode(),
+                        generateMultipartUploadUrlsResponse.getCause()));
+              }
+              return presignedUrlFileUploader
+                  .uploadFilePartsToPresignedUrls(
+                      generateMultipartUploadUrlsResponse.getPartUploadUrls(),
+                      fileUri,
+                      file.getSize(),
+                      partSize,
+                      extractorConfig.getMultipartUploadMaxConcurrentParts())
+                  .thenCompose(
+                      etags -> {
+                        List<UploadedPart> uploadedParts = new ArrayList<>();
+                        for (int i = 0; i < etags.size(); i++) {
+                          uploadedParts.add(
+                              UploadedPart.builder().partNumber(i + 1).etag(etags.get(i)).build());
+                        }
+                        return onehouseApiClient.completeMultipartUpload(
+                            CompleteMultipartUploadRequest.builder()
+                                .tableId(tableId)
+                                .commitTimelineType(commitTimelineType)
+                                .commitInstant(commitInstant)
+                                .uploadId(generateMultipartUploadUrlsResponse.getUploadId())
+                                .parts(uploadedParts)
+                                .build());
+                      });
+            })
+        .thenAccept(
+            completeMultipartUploadResponse -> {
+              if (completeMultipartUploadResponse.isFailure()) {
+                throw new RuntimeException(
+                    String.format(
+                        "failed to complete multipart upload: status_code: %d exception: %s",
+                        completeMultipartUploadResponse.getStatusCode(),
+                        completeMultipartUploadResponse.getCause()));
+              }
+            });
+  }
+
+  private List<String> getCommitInstants(List<File> batch, CommitTimelineType commitTimelineType) {
+    return batch.stream()
+        .map(file -> getFileNameWithPrefix(file, commitTimelineType))
+        .collect(Collectors.toList());
+  }
+
+  /*
+   * Instant files are compressed with the configured encoding only when the api lists it among the
+   * encodings accepted by the upload urls, older api versions do not return any.
+   */
+  private UploadCompression getUploadCompression(
+      GenerateCommitMetadataUploadUrlResponse generateCommitMetadataUploadUrlResponse) {
+    UploadCompression uploadCompression = extractorConfig.getUploadCompression();
+    List<String> supportedContentEncodings =
+        generateCommitMetadataUploadUrlResponse.getSupportedContentEncodings();
+    if (uploadCompression == null
+        || uploadCompression == UploadCompression.NONE
+        || supportedContentEncodings == null
+        || !supportedContentEncodings.contains(uploadCompression.getContentEncoding())) {
+      return UploadCompression.NONE;
+    }
+    return uploadCompression;
+  }
+
+  private Checkpoint getCheckpointAfterProcessingBatch(
+      Checkpoint previousCheckpoint, File lastUploadedFile, CommitTimelineType commitTimelineType) {
 
     // archived instants would be processed if we are currently processing the first batch of active
     // timeline
@@ -436,43 +714,13 @@ public class TimelineCommitInstantsUploader {
       archivedCommitsProcessed = true;
     }
 
-    Checkpoint updatedCheckpoint =
-        Checkpoint.builder()
-            .batchId(batchId)
-            .lastUploadedFile(lastUploadedFile.getFilename())
-            .checkpointTimestamp(lastUploadedFile.getLastModifiedAt())
-            .archivedCommitsProcessed(archivedCommitsProcessed)
-            .firstIncompleteCommitFile(previousCheckpoint.getFirstIncompleteCommitFile())
-            .build();
-    try {
-      return onehouseApiClient
-          .upsertTableMetricsCheckpoint(
-              UpsertTableMetricsCheckpointRequest.builder()
-                  .commitTimelineType(commitTimelineType)
-                  .tableId(tableId)
-                  .checkpoint(mapper.writeValueAsString(updatedCheckpoint))
-                  .filesUploaded(
-                      uploadedFiles.stream()
-                          .map(UploadedFile::getName)
-                          .collect(Collectors.toList()))
-                  .uploadedFiles(uploadedFiles)
-                  .build())
-          .thenApply(
-              upsertTableMetricsCheckpointResponse -> {
-                if (upsertTableMetricsCheckpointResponse.isFailure()) {
-                  throw new RuntimeException(
-                      String.format(
-                          "failed to update checkpoint: status_code: %d, exception: %s",
-                          upsertTableMetricsCheckpointResponse.getStatusCode(),
-                          upsertTableMetricsCheckpointResponse.getCause()));
-                }
-                return updatedCheckpoint;
-              });
-    } catch (JsonProcessingException e) {
-      CompletableFuture<Checkpoint> f = new CompletableFuture<>();
-      f.completeExceptionally(new RuntimeException("failed to serialise checkpoint", e));
-      return f;
-    }
+    return Checkpoint.builder()
+        .batchId(batchId)
+        .lastUploadedFile(lastUploadedFile.getFilename())
+        .checkpointTimestamp(lastUploadedFile.getLastModifiedAt())
+        .archivedCommitsProcessed(archivedCommitsProcessed)
+        .firstIncompleteCommitFile(previousCheckpoint.getFirstIncompleteCommitFile())
+        .build();
   }
 
   /**
@@ -494,6 +742,23 @@ public class TimelineCommitInstantsUploader {
     if (filesList.isEmpty()) {
       return filesList;
     }
+    return sortFilesToUpload(
+        filesList.stream()
+            .filter(
+                file ->
+                    shouldIncludeFile(
+                        file, checkpoint, applyLastModifiedAtFilter, commitTimelineType))
+            .collect(Collectors.toList()),
+        checkpoint,
+        commitTimelineType);
+  }
+
+  /**
+   * Sorts the files which are yet to be uploaded in the order they need to be uploaded in, the
+   * hoodie properties file is uploaded first when the timeline is processed for the first time.
+   */
+  private List<File> sortFilesToUpload(
+      List<File> files, Checkpoint checkpoint, CommitTimelineType commitTimelineType) {
     Comparator<File> fileComparator;
 
     if (CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE.equals(commitTimelineType)) {
@@ -503,14 +768,7 @@ public class TimelineCommitInstantsUploader {
           Comparator.comparing(file -> getNumericPartFromArchivedCommit(file.getFilename()));
     }
 
-    List<File> filesToUpload =
-        filesList.stream()
-            .filter(
-                file ->
-                    shouldIncludeFile(
-                        file, checkpoint, applyLastModifiedAtFilter, commitTimelineType))
-            .sorted(fileComparator)
-            .collect(Collectors.toList());
+    List<File> filesToUpload = files.stream().sorted(fileComparator).collect(Collectors.toList());
 
     if (checkpoint.getBatchId() == 0) {
       // for the first batch, always include hoodie properties file
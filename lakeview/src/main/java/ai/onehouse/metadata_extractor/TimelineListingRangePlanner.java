@@ -0,0 +1,119 @@
+package ai.onehouse.metadata_extractor;
+
+import ai.onehouse.api.models.request.CommitTimelineType;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Splits the part of a timeline which comes after an already listed key into key ranges which can be
+ * listed concurrently. Range boundaries are startAfter keys, the first boundary is always the last
+ * listed key so the ranges together cover exactly the remainder of the timeline.
+ */
+public final class TimelineListingRangePlanner {
+  private static final int INSTANT_TIMESTAMP_LENGTH = 14;
+  private static final DateTimeFormatter INSTANT_TIMESTAMP_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+  private static final Pattern LEADING_DIGITS_PATTERN = Pattern.compile("^(\\d+)");
+  private static final String ARCHIVED_INSTANT_PREFIX = ".commits_.archive.";
+
+  private TimelineListingRangePlanner() {}
+
+  /**
+   * Plans the startAfter boundaries for listing the rest of a timeline.
+   *
+   * @param prefix Prefix of the timeline folder, ends with "/".
+   * @param lastListedFile Filename of the last key that has already been listed.
+   * @param numRanges Maximum number of ranges to split the remainder into.
+   * @param commitTimelineType Type of the commit timeline.
+   * @param now Upper bound used when splitting active timeline instant times.
+   * @return startAfter keys, one per range. A single entry means the remainder can not be split.
+   */
+  public static List<String> planRangeStartAfters(
+      String prefix,
+      String lastListedFile,
+      int numRanges,
+      CommitTimelineType commitTimelineType,
+      Instant now) {
+    String lastListedKey = prefix + lastListedFile;
+    List<String> boundaries =
+        CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED.equals(commitTimelineType)
+            ? getArchivedTimelineBoundaries(prefix, lastListedKey)
+            : getActiveTimelineBoundaries(prefix, lastListedFile, numRanges, now);
+
+    List<String> rangeStartAfters = new ArrayList<>();
+    rangeStartAfters.add(lastListedKey);
+    int numCandidates = boundaries.size();
+    int numBoundaries = Math.min(numRanges - 1, numCandidates);
+    for (int i = 1; i <= numBoundaries; i++) {
+      // spread the boundaries evenly when there are more candidates than ranges
+      String boundary = boundaries.get(i * numCandidates / (numBoundaries + 1));
+      if (boundary.compareTo(rangeStartAfters.get(rangeStartAfters.size() - 1)) > 0) {
+        rangeStartAfters.add(boundary);
+      }
+    }
+    return rangeStartAfters;
+  }
+
+  /*
+   * Active instants are named <instant time>.<action>[.<state>], where the instant time starts with a
+   * yyyyMMddHHmmss timestamp. The time between the last listed instant and now is split evenly.
+   */
+  private static List<String> getActiveTimelineBoundaries(
+      String prefix, String lastListedFile, int numRanges, Instant now) {
+    Matcher matcher = LEADING_DIGITS_PATTERN.matcher(lastListedFile);
+    if (!matcher.find() || matcher.group(1).length() < INSTANT_TIMESTAMP_LENGTH) {
+      return Collections.emptyList();
+    }
+
+    LocalDateTime lastListedInstantTime;
+    try {
+      lastListedInstantTime =
+          LocalDateTime.parse(
+              matcher.group(1).substring(0, INSTANT_TIMESTAMP_LENGTH), INSTANT_TIMESTAMP_FORMATTER);
+    } catch (DateTimeParseException e) {
+      return Collections.emptyList();
+    }
+
+    // newer instants than now (eg: tables using local timezone for instant times) are listed as
+    // part of the last range which is unbounded
+    long secondsToNow =
+        Duration.between(lastListedInstantTime, LocalDateTime.ofInstant(now, ZoneOffset.UTC))
+            .getSeconds();
+    List<String> boundaries = new ArrayList<>();
+    if (secondsToNow < numRanges) {
+      return boundaries;
+    }
+    for (int i = 1; i < numRanges; i++) {
+      boundaries.add(
+          prefix
+              + lastListedInstantTime
+                  .plusSeconds(secondsToNow * i / numRanges)
+                  .format(INSTANT_TIMESTAMP_FORMATTER));
+    }
+    return boundaries;
+  }
+
+  /*
+   * Archived instants are named .commits_.archive.<N>_<write token>, which are ordered by the
+   * digits of N when listed. The leading digit of N is used as the range boundary.
+   */
+  private static List<String> getArchivedTimelineBoundaries(String prefix, String lastListedKey) {
+    List<String> boundaries = new ArrayList<>();
+    for (int leadingDigit = 1; leadingDigit <= 9; leadingDigit++) {
+      String boundary = prefix + ARCHIVED_INSTANT_PREFIX + leadingDigit;
+      if (boundary.compareTo(lastListedKey) > 0) {
+        boundaries.add(boundary);
+      }
+    }
+    return boundaries;
+  }
+}
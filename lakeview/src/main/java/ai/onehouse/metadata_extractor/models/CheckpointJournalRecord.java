@@ -0,0 +1,20 @@
+package ai.onehouse.metadata_extractor.models;
+
+import java.time.Instant;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+/*
+ * Line of the checkpoint cache journal, a record without checkpoint removes the table from the
+ * cache. reconciledAt is when the checkpoint of the table was last read from the api.
+ */
+@Builder(toBuilder = true)
+@Value
+@Jacksonized
+public class CheckpointJournalRecord {
+  @NonNull String tableId;
+  String checkpoint;
+  Instant reconciledAt;
+}
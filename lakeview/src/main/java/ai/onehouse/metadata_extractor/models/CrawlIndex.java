@@ -0,0 +1,17 @@
+package ai.onehouse.metadata_extractor.models;
+
+import java.time.Instant;
+import java.util.Map;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Value
+@Jacksonized
+public class CrawlIndex {
+  Instant lastFullRescanAt;
+  // keyed by folder uri
+  @NonNull Map<String, CrawlIndexEntry> entries;
+}
@@ -0,0 +1,23 @@
+package ai.onehouse.metadata_extractor.models;
+
+import java.time.Instant;
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+/*
+ * Result of the last listing of a folder during table discovery, subDirectories is empty for table
+ * folders as they are not traversed further.
+ */
+@Builder(toBuilder = true)
+@Value
+@Jacksonized
+public class CrawlIndexEntry {
+  boolean tableRoot;
+  @NonNull List<String> subDirectories;
+  @NonNull Instant lastListedAt;
+  // set when the last listing found the folder changed, such folders are listed again next round
+  boolean changedOnLastListing;
+}
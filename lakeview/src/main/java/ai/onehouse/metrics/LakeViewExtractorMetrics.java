@@ -2,6 +2,7 @@ package ai.onehouse.metrics;
 
 import ai.onehouse.config.Config;
 import ai.onehouse.config.ConfigProvider;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
 import ai.onehouse.constants.MetricsConstants;
 import io.micrometer.core.instrument.Tag;
 import java.util.ArrayList;
@@ -14,15 +15,22 @@ public class LakeViewExtractorMetrics {
   private final Metrics metrics;
   private final Metrics.Gauge tablesDiscoveredGaugeMetric;
   private final Metrics.Gauge tablesProcessedGaugeMetric;
+  private final Metrics.Gauge tableDiscoveryFrontierGaugeMetric;
+  private final Metrics.Gauge gcsBlockingQueueGaugeMetric;
   private final Config extractorConfig;
 
   static final String METRICS_COMMON_PREFIX = "lakeView_";
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
 
   // Tag keys
   static final String CONFIG_VERSION_TAG_KEY = "config_version";
   static final String EXTRACTOR_JOB_RUN_MODE_TAG_KEY = "extractor_job_run_mode";
   static final String METADATA_UPLOAD_FAILURE_REASON_TAG_KEY = "metadata_upload_failure_reason";
   static final String METADATA_DISCOVER_FAILURE_REASON_TAG_KEY = "metadata_discover_failure_reason";
+  static final String LISTING_CACHE_TYPE_TAG_KEY = "listing_cache_type";
+  static final String UPLOAD_COMPRESSION_TAG_KEY = "upload_compression";
+  static final String CONCURRENCY_LIMITER_TAG_KEY = "concurrency_limiter";
+  static final String HTTP_ENDPOINT_TAG_KEY = "http_endpoint";
 
 
   // Metrics
@@ -35,6 +43,34 @@ public class LakeViewExtractorMetrics {
   static final String METADATA_UPLOAD_SUCCESS_COUNTER = METRICS_COMMON_PREFIX + "metadata_upload";
   static final String TABLE_METADATA_PROCESSING_FAILURE_COUNTER =
       METRICS_COMMON_PREFIX + "table_metadata_processing_failure";
+  static final String LISTING_CACHE_HIT_COUNTER = METRICS_COMMON_PREFIX + "listing_cache_hit";
+  static final String LISTING_CACHE_MISS_COUNTER = METRICS_COMMON_PREFIX + "listing_cache_miss";
+  static final String LISTING_CACHE_EVICTION_COUNTER =
+      METRICS_COMMON_PREFIX + "listing_cache_eviction";
+  static final String TABLE_DISCOVERY_FOLDERS_LISTED_COUNTER =
+      METRICS_COMMON_PREFIX + "table_discovery_folders_listed";
+  // the compression ratio is uncompressed bytes over compressed bytes
+  static final String UPLOAD_UNCOMPRESSED_BYTES_COUNTER =
+      METRICS_COMMON_PREFIX + "upload_uncompressed_bytes";
+  static final String UPLOAD_COMPRESSED_BYTES_COUNTER =
+      METRICS_COMMON_PREFIX + "upload_compressed_bytes";
+  static final String UPLOAD_COMPRESSION_CPU_SECONDS_COUNTER =
+      METRICS_COMMON_PREFIX + "upload_compression_cpu_seconds";
+  // batches per flush is the coalescing ratio of checkpoint updates, seconds per flush the latency
+  static final String CHECKPOINT_FLUSH_COUNTER = METRICS_COMMON_PREFIX + "checkpoint_flush";
+  static final String CHECKPOINT_FLUSHED_BATCHES_COUNTER =
+      METRICS_COMMON_PREFIX + "checkpoint_flushed_batches";
+  static final String CHECKPOINT_FLUSH_SECONDS_COUNTER =
+      METRICS_COMMON_PREFIX + "checkpoint_flush_seconds";
+  static final String HTTP_RETRY_COUNTER = METRICS_COMMON_PREFIX + "http_retry";
+  static final String HTTP_RETRY_BUDGET_EXHAUSTED_COUNTER =
+      METRICS_COMMON_PREFIX + "http_retry_budget_exhausted";
+  static final String CIRCUIT_BREAKER_REJECTED_COUNTER =
+      METRICS_COMMON_PREFIX + "circuit_breaker_rejected";
+  // the hedge rate is hedges over eligible requests, the win rate hedge wins over hedges
+  static final String HTTP_HEDGE_ELIGIBLE_COUNTER = METRICS_COMMON_PREFIX + "http_hedge_eligible";
+  static final String HTTP_HEDGE_COUNTER = METRICS_COMMON_PREFIX + "http_hedge";
+  static final String HTTP_HEDGE_WIN_COUNTER = METRICS_COMMON_PREFIX + "http_hedge_win";
 
   @Inject
   public LakeViewExtractorMetrics(
@@ -51,6 +87,16 @@ public class LakeViewExtractorMetrics {
             TablesProcessedGaugeMetricsMetadata.NAME,
             TablesProcessedGaugeMetricsMetadata.DESCRIPTION,
             getDefaultTags());
+    this.tableDiscoveryFrontierGaugeMetric =
+        metrics.gauge(
+            TableDiscoveryFrontierGaugeMetricsMetadata.NAME,
+            TableDiscoveryFrontierGaugeMetricsMetadata.DESCRIPTION,
+            getDefaultTags());
+    this.gcsBlockingQueueGaugeMetric =
+        metrics.gauge(
+            GcsBlockingQueueGaugeMetricsMetadata.NAME,
+            GcsBlockingQueueGaugeMetricsMetadata.DESCRIPTION,
+            getDefaultTags());
   }
 
   public void setDiscoveredTablesPerRound(long numTablesDiscovered) {
@@ -101,6 +147,125 @@ public class LakeViewExtractorMetrics {
     tablesProcessedGaugeMetric.increment();
   }
 
+  public void setTableDiscoveryFrontierSize(long frontierSize) {
+    tableDiscoveryFrontierGaugeMetric.setValue(frontierSize);
+  }
+
+  public void setGcsBlockingQueueSize(long queueSize) {
+    gcsBlockingQueueGaugeMetric.setValue(queueSize);
+  }
+
+  public void setConcurrencyLimit(
+      MetricsConstants.ConcurrencyLimiterType limiterType, long concurrencyLimit) {
+    metrics
+        .gauge(
+            ConcurrencyLimitGaugeMetricsMetadata.NAME,
+            ConcurrencyLimitGaugeMetricsMetadata.DESCRIPTION,
+            getConcurrencyLimiterTags(limiterType))
+        .setValue(concurrencyLimit);
+  }
+
+  public void setConcurrencyLimiterQueueSize(
+      MetricsConstants.ConcurrencyLimiterType limiterType, long queueSize) {
+    metrics
+        .gauge(
+            ConcurrencyLimiterQueueGaugeMetricsMetadata.NAME,
+            ConcurrencyLimiterQueueGaugeMetricsMetadata.DESCRIPTION,
+            getConcurrencyLimiterTags(limiterType))
+        .setValue(queueSize);
+  }
+
+  public void incrementTableDiscoveryFoldersListedCounter() {
+    metrics.increment(TABLE_DISCOVERY_FOLDERS_LISTED_COUNTER, getDefaultTags());
+  }
+
+  public void incrementListingCacheHitCounter(MetricsConstants.ListingCacheType listingCacheType) {
+    metrics.increment(LISTING_CACHE_HIT_COUNTER, getListingCacheTags(listingCacheType));
+  }
+
+  public void incrementListingCacheMissCounter(MetricsConstants.ListingCacheType listingCacheType) {
+    metrics.increment(LISTING_CACHE_MISS_COUNTER, getListingCacheTags(listingCacheType));
+  }
+
+  public void incrementListingCacheEvictionCounter(
+      MetricsConstants.ListingCacheType listingCacheType) {
+    metrics.increment(LISTING_CACHE_EVICTION_COUNTER, getListingCacheTags(listingCacheType));
+  }
+
+  public void incrementUploadCompressionCounters(
+      MetadataExtractorConfig.UploadCompression uploadCompression,
+      long uncompressedBytes,
+      long compressedBytes,
+      long cpuTimeNanos) {
+    List<Tag> tags = getDefaultTags();
+    tags.add(Tag.of(UPLOAD_COMPRESSION_TAG_KEY, uploadCompression.name()));
+    metrics.increment(UPLOAD_UNCOMPRESSED_BYTES_COUNTER, tags, uncompressedBytes);
+    metrics.increment(UPLOAD_COMPRESSED_BYTES_COUNTER, tags, compressedBytes);
+    metrics.increment(
+        UPLOAD_COMPRESSION_CPU_SECONDS_COUNTER, tags, cpuTimeNanos / (double) NANOS_PER_SECOND);
+  }
+
+  public void incrementCheckpointFlushCounters(long numBatches, long flushLatencyNanos) {
+    List<Tag> tags = getDefaultTags();
+    metrics.increment(CHECKPOINT_FLUSH_COUNTER, tags);
+    metrics.increment(CHECKPOINT_FLUSHED_BATCHES_COUNTER, tags, numBatches);
+    metrics.increment(
+        CHECKPOINT_FLUSH_SECONDS_COUNTER, tags, flushLatencyNanos / (double) NANOS_PER_SECOND);
+  }
+
+  public void incrementHttpRetryCounter(String endpoint) {
+    metrics.increment(HTTP_RETRY_COUNTER, getHttpEndpointTags(endpoint));
+  }
+
+  public void incrementHttpRetryBudgetExhaustedCounter(String endpoint) {
+    metrics.increment(HTTP_RETRY_BUDGET_EXHAUSTED_COUNTER, getHttpEndpointTags(endpoint));
+  }
+
+  public void incrementCircuitBreakerRejectedCounter(String endpoint) {
+    metrics.increment(CIRCUIT_BREAKER_REJECTED_COUNTER, getHttpEndpointTags(endpoint));
+  }
+
+  public void incrementHttpHedgeEligibleCounter(String endpoint) {
+    metrics.increment(HTTP_HEDGE_ELIGIBLE_COUNTER, getHttpEndpointTags(endpoint));
+  }
+
+  public void incrementHttpHedgeCounter(String endpoint) {
+    metrics.increment(HTTP_HEDGE_COUNTER, getHttpEndpointTags(endpoint));
+  }
+
+  public void incrementHttpHedgeWinCounter(String endpoint) {
+    metrics.increment(HTTP_HEDGE_WIN_COUNTER, getHttpEndpointTags(endpoint));
+  }
+
+  public void setCircuitBreakerState(
+      String endpoint, MetricsConstants.CircuitBreakerState circuitBreakerState) {
+    metrics
+        .gauge(
+            CircuitBreakerStateGaugeMetricsMetadata.NAME,
+            CircuitBreakerStateGaugeMetricsMetadata.DESCRIPTION,
+            getHttpEndpointTags(endpoint))
+        .setValue(circuitBreakerState.ordinal());
+  }
+
+  private List<Tag> getListingCacheTags(MetricsConstants.ListingCacheType listingCacheType) {
+    List<Tag> tags = getDefaultTags();
+    tags.add(Tag.of(LISTING_CACHE_TYPE_TAG_KEY, listingCacheType.name()));
+    return tags;
+  }
+
+  private List<Tag> getConcurrencyLimiterTags(
+      MetricsConstants.ConcurrencyLimiterType limiterType) {
+    List<Tag> tags = getDefaultTags();
+    tags.add(Tag.of(CONCURRENCY_LIMITER_TAG_KEY, limiterType.name()));
+    return tags;
+  }
+
+  private List<Tag> getHttpEndpointTags(String endpoint) {
+    List<Tag> tags = getDefaultTags();
+    tags.add(Tag.of(HTTP_ENDPOINT_TAG_KEY, endpoint));
+    return tags;
+  }
+
   private List<Tag> getDefaultTags() {
     List<Tag> tags = new ArrayList<>();
     tags.add(Tag.of(CONFIG_VERSION_TAG_KEY, extractorConfig.getVersion().toString()));
@@ -122,4 +287,39 @@ public class LakeViewExtractorMetrics {
     public static final String NAME = METRICS_COMMON_PREFIX + "processed_tables";
     public static final String DESCRIPTION = "Number of tables processed during extractor run";
   }
+
+  @Getter
+  private static class TableDiscoveryFrontierGaugeMetricsMetadata {
+    public static final String NAME = METRICS_COMMON_PREFIX + "table_discovery_frontier_size";
+    public static final String DESCRIPTION =
+        "Number of folders waiting to be listed during table discovery";
+  }
+
+  @Getter
+  private static class GcsBlockingQueueGaugeMetricsMetadata {
+    public static final String NAME = METRICS_COMMON_PREFIX + "gcs_blocking_queue_size";
+    public static final String DESCRIPTION =
+        "Number of GCS calls waiting for a thread of the GCS executor";
+  }
+
+  @Getter
+  private static class ConcurrencyLimitGaugeMetricsMetadata {
+    public static final String NAME = METRICS_COMMON_PREFIX + "concurrency_limit";
+    public static final String DESCRIPTION =
+        "Number of concurrent requests allowed by the concurrency limiter";
+  }
+
+  @Getter
+  private static class ConcurrencyLimiterQueueGaugeMetricsMetadata {
+    public static final String NAME = METRICS_COMMON_PREFIX + "concurrency_limiter_queue_size";
+    public static final String DESCRIPTION =
+        "Number of requests waiting for a permit of the concurrency limiter";
+  }
+
+  @Getter
+  private static class CircuitBreakerStateGaugeMetricsMetadata {
+    public static final String NAME = METRICS_COMMON_PREFIX + "circuit_breaker_state";
+    public static final String DESCRIPTION =
+        "State of the circuit breaker of an endpoint: 0 closed, 1 half open, 2 open";
+  }
 }
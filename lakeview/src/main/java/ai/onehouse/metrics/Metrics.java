@@ -37,12 +37,11 @@ public class Metrics {
   }
 
   public void increment(String name, List<Tag> tags) {
-    List<String> tagList = new ArrayList<>();
-    for (Tag tag : tags) {
-      tagList.add(tag.getKey());
-      tagList.add(tag.getValue());
-    }
-    createAndIncrementCounter(name, tagList);
+    createAndIncrementCounter(name, getTagList(tags));
+  }
+
+  public void increment(String name, List<Tag> tags, double amount) {
+    createAndIncrementCounter(name, getTagList(tags), amount);
   }
 
   public Gauge gauge(String name, String description, List<Tag> tags) {
@@ -71,6 +70,22 @@ public class Metrics {
     Counter.builder(name).tags(tagList.toArray(new String[0])).register(meterRegistry).increment();
   }
 
+  void createAndIncrementCounter(String name, List<String> tagList, double amount) {
+    Counter.builder(name)
+        .tags(tagList.toArray(new String[0]))
+        .register(meterRegistry)
+        .increment(amount);
+  }
+
+  private static List<String> getTagList(List<Tag> tags) {
+    List<String> tagList = new ArrayList<>();
+    for (Tag tag : tags) {
+      tagList.add(tag.getKey());
+      tagList.add(tag.getValue());
+    }
+    return tagList;
+  }
+
   // Generates a unique key based on the name, description, and tags
   private String generateGaugeKey(String name, String description, List<Tag> tags) {
     StringBuilder keyBuilder = new StringBuilder();
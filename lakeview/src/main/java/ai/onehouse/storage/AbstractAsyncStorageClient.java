@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -19,24 +20,111 @@ public abstract class AbstractAsyncStorageClient implements AsyncStorageClient {
 
   @Override
   public CompletableFuture<List<File>> listAllFilesInDir(String objectStorageUri) {
+    List<File> files = new ArrayList<>();
+    return listFilesInDirByPage(
+            objectStorageUri,
+            page -> {
+              files.addAll(page);
+              return CompletableFuture.completedFuture(true);
+            })
+        .thenApply(ignored -> files);
+  }
+
+  @Override
+  public CompletableFuture<Void> listFilesInDirByPage(
+      String objectStorageUri, Function<List<File>, CompletableFuture<Boolean>> pageConsumer) {
     log.debug("Listing files in {}", objectStorageUri);
     String bucketName = storageUtils.getBucketNameFromUri(objectStorageUri);
     String prefix = storageUtils.getPathFromUrl(objectStorageUri);
 
     // ensure prefix which is not the root dir always ends with "/"
     prefix = prefix.isEmpty() || prefix.endsWith("/") ? prefix : prefix + "/";
-    return listAllObjectsStorage(bucketName, prefix, null, new ArrayList<>());
+    return listPagesInStorage(bucketName, prefix, null, pageConsumer);
   }
 
-  protected CompletableFuture<List<File>> listAllObjectsStorage(
-      String bucketName, String prefix, String continuationToken, List<File> files) {
+  /*
+   * The next page is fetched only once the consumer is done with the current one, so at most one
+   * page of the listing is held in memory at a time.
+   */
+  private CompletableFuture<Void> listPagesInStorage(
+      String bucketName,
+      String prefix,
+      String continuationToken,
+      Function<List<File>, CompletableFuture<Boolean>> pageConsumer) {
     return fetchObjectsByPage(bucketName, prefix, continuationToken, null)
+        .thenComposeAsync(
+            continuationTokenAndFiles ->
+                pageConsumer
+                    .apply(continuationTokenAndFiles.getRight())
+                    .thenCompose(
+                        fetchNextPage -> {
+                          String newContinuationToken = continuationTokenAndFiles.getLeft();
+                          if (Boolean.TRUE.equals(fetchNextPage) && newContinuationToken != null) {
+                            return listPagesInStorage(
+                                bucketName, prefix, newContinuationToken, pageConsumer);
+                          } else {
+                            return CompletableFuture.completedFuture(null);
+                          }
+                        }),
+            executorService);
+  }
+
+  @Override
+  public CompletableFuture<List<File>> listObjectsInRanges(
+      String bucketName, String prefix, List<String> rangeStartAfters) {
+    List<CompletableFuture<List<File>>> rangeFutures = new ArrayList<>();
+    for (int i = 0; i < rangeStartAfters.size(); i++) {
+      String rangeEnd = i + 1 < rangeStartAfters.size() ? rangeStartAfters.get(i + 1) : null;
+      rangeFutures.add(
+          listObjectsInRange(
+              bucketName, prefix, rangeStartAfters.get(i), rangeEnd, null, new ArrayList<>()));
+    }
+    log.debug(
+        "Listing {} in {} ranges starting after {}",
+        prefix,
+        rangeFutures.size(),
+        rangeStartAfters);
+
+    return CompletableFuture.allOf(rangeFutures.toArray(new CompletableFuture[0]))
+        .thenApply(
+            ignored -> {
+              List<File> files = new ArrayList<>();
+              for (CompletableFuture<List<File>> rangeFuture : rangeFutures) {
+                files.addAll(rangeFuture.join());
+              }
+              return files;
+            });
+  }
+
+  /*
+   * Lists the keys in (rangeStartAfter, rangeEnd]. Pages are returned in key order, so listing
+   * stops at the first page which contains a key beyond the end of the range. Keys are also checked
+   * against the start of the range as not all storages treat startAfter as exclusive.
+   */
+  private CompletableFuture<List<File>> listObjectsInRange(
+      String bucketName,
+      String prefix,
+      String rangeStartAfter,
+      String rangeEnd,
+      String continuationToken,
+      List<File> files) {
+    return fetchObjectsByPage(bucketName, prefix, continuationToken, rangeStartAfter)
         .thenComposeAsync(
             continuationTokenAndFiles -> {
+              boolean reachedRangeEnd = false;
+              for (File file : continuationTokenAndFiles.getRight()) {
+                String key = prefix + file.getFilename();
+                if (rangeEnd != null && key.compareTo(rangeEnd) > 0) {
+                  reachedRangeEnd = true;
+                } else if (rangeStartAfter == null || key.compareTo(rangeStartAfter) > 0) {
+                  files.add(file);
+                }
+              }
+
               String newContinuationToken = continuationTokenAndFiles.getLeft();
-              files.addAll(continuationTokenAndFiles.getRight());
-              if (newContinuationToken != null) {
-                return listAllObjectsStorage(bucketName, prefix, newContinuationToken, files);
+              if (newContinuationToken != null && !reachedRangeEnd) {
+                return listObjectsInRange(
+                    bucketName, prefix, rangeStartAfter, rangeEnd, newContinuationToken, files);
               } else {
                 return CompletableFuture.completedFuture(files);
               }
@@ -4,15 +4,41 @@ import ai.onehouse.storage.models.File;
 import ai.onehouse.storage.models.FileStreamData;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import org.apache.commons.lang3.tuple.Pair;
 
 public interface AsyncStorageClient {
   CompletableFuture<List<File>> listAllFilesInDir(String path);
 
+  /**
+   * Lists the files in a directory one page at a time. A page is handed to the consumer as soon as
+   * it is fetched and the next page is fetched only after the future returned by the consumer
+   * completes, the listing stops early if that future completes with false. Pages are in the same
+   * order as listAllFilesInDir.
+   */
+  CompletableFuture<Void> listFilesInDirByPage(
+      String path, Function<List<File>, CompletableFuture<Boolean>> pageConsumer);
+
   CompletableFuture<FileStreamData> streamFileAsync(String path);
 
+  /**
+   * Streams the bytes of a file from offset up to offset + length, fewer when the file ends before
+   * that. The file size of the returned stream is the number of bytes in the range.
+   */
+  CompletableFuture<FileStreamData> streamFileRangeAsync(String path, long offset, long length);
+
   CompletableFuture<byte[]> readFileAsBytes(String path);
 
   CompletableFuture<Pair<String, List<File>>> fetchObjectsByPage(
       String bucketName, String prefix, String continuationToken, String startAfter);
+
+  /**
+   * Lists the objects under a prefix by splitting the key space into ranges which are fetched
+   * concurrently. Range i holds the keys after rangeStartAfters[i] up to and including
+   * rangeStartAfters[i + 1], the last range is unbounded. A null first boundary lists from the
+   * beginning of the prefix. Results are merged in range order, so they are returned in the same
+   * key order as a sequential listing of the prefix.
+   */
+  CompletableFuture<List<File>> listObjectsInRanges(
+      String bucketName, String prefix, List<String> rangeStartAfters);
 }
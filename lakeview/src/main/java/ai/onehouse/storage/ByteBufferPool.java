@@ -0,0 +1,49 @@
+package ai.onehouse.storage;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ * Pool of fixed size buffers reused across file uploads. Buffers are allocated on demand when the
+ * pool is empty and at most maxPooledBuffers of them are kept once released, so the memory held
+ * is bounded by the number of concurrent uploads times the buffer size.
+ */
+public class ByteBufferPool {
+  private final int bufferSizeBytes;
+  private final boolean useDirectBuffers;
+  private final BlockingQueue<ByteBuffer> pooledBuffers;
+
+  public ByteBufferPool(int bufferSizeBytes, int maxPooledBuffers, boolean useDirectBuffers) {
+    if (bufferSizeBytes <= 0) {
+      throw new IllegalArgumentException("bufferSizeBytes must be positive");
+    }
+    this.bufferSizeBytes = bufferSizeBytes;
+    this.useDirectBuffers = useDirectBuffers;
+    this.pooledBuffers = new ArrayBlockingQueue<>(Math.max(1, maxPooledBuffers));
+  }
+
+  public ByteBuffer acquire() {
+    ByteBuffer buffer = pooledBuffers.poll();
+    if (buffer != null) {
+      return buffer;
+    }
+    return useDirectBuffers
+        ? ByteBuffer.allocateDirect(bufferSizeBytes)
+        : ByteBuffer.allocate(bufferSizeBytes);
+  }
+
+  public void release(ByteBuffer buffer) {
+    buffer.clear();
+    // buffers beyond the pool capacity are left to the garbage collector
+    pooledBuffers.offer(buffer);
+  }
+
+  public int getBufferSizeBytes() {
+    return bufferSizeBytes;
+  }
+
+  int getNumPooledBuffers() {
+    return pooledBuffers.size();
+  }
+}
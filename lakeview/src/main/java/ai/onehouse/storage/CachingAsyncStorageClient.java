@@ -0,0 +1,223 @@
+package ai.onehouse.storage;
+
+import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_FOLDER_NAME;
+
+import ai.onehouse.config.models.common.ListingCacheConfig;
+import ai.onehouse.constants.MetricsConstants;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import ai.onehouse.storage.models.File;
+import ai.onehouse.storage.models.FileStreamData;
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.Nonnull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+
+/*
+ * Decorates a storage client with a bounded LRU cache of listed pages. Pages are cached by bucket,
+ * prefix, continuation token and startAfter, so full directory listings are served from the cache
+ * as well. Listings within the .hoodie folder of a table expire after the timeline TTL, all other
+ * listings after the discovery TTL. Concurrent requests for the same page share a single fetch.
+ */
+@Slf4j
+public class CachingAsyncStorageClient extends AbstractAsyncStorageClient {
+  private static final String HOODIE_FOLDER_PREFIX = HOODIE_FOLDER_NAME + "/";
+  private final AsyncStorageClient asyncStorageClient;
+  private final LakeViewExtractorMetrics lakeViewExtractorMetrics;
+  private final Duration discoveryTtl;
+  private final Duration timelineTtl;
+  private final Clock clock;
+  // access ordered, guarded by itself
+  private final Map<ListingKey, CachedPage> cache;
+
+  public CachingAsyncStorageClient(
+      @Nonnull AsyncStorageClient asyncStorageClient,
+      @Nonnull ListingCacheConfig listingCacheConfig,
+      @Nonnull StorageUtils storageUtils,
+      @Nonnull ExecutorService executorService,
+      @Nonnull LakeViewExtractorMetrics lakeViewExtractorMetrics) {
+    this(
+        asyncStorageClient,
+        listingCacheConfig,
+        storageUtils,
+        executorService,
+        lakeViewExtractorMetrics,
+        Clock.systemUTC());
+  }
+
+  @VisibleForTesting
+  CachingAsyncStorageClient(
+      AsyncStorageClient asyncStorageClient,
+      ListingCacheConfig listingCacheConfig,
+      StorageUtils storageUtils,
+      ExecutorService executorService,
+      LakeViewExtractorMetrics lakeViewExtractorMetrics,
+      Clock clock) {
+    super(executorService, storageUtils);
+    this.asyncStorageClient = asyncStorageClient;
+    this.lakeViewExtractorMetrics = lakeViewExtractorMetrics;
+    this.discoveryTtl = Duration.ofSeconds(listingCacheConfig.getDiscoveryTtlSeconds());
+    this.timelineTtl = Duration.ofSeconds(listingCacheConfig.getTimelineTtlSeconds());
+    this.clock = clock;
+    int maxEntries = listingCacheConfig.getMaxEntries();
+    this.cache =
+        new LinkedHashMap<ListingKey, CachedPage>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<ListingKey, CachedPage> eldest) {
+            if (size() > maxEntries) {
+              lakeViewExtractorMetrics.incrementListingCacheEvictionCounter(
+                  getListingCacheType(eldest.getKey().getPrefix()));
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  @Override
+  public CompletableFuture<Pair<String, List<File>>> fetchObjectsByPage(
+      String bucketName, String prefix, String continuationToken, String startAfter) {
+    ListingKey listingKey = new ListingKey(bucketName, prefix, continuationToken, startAfter);
+    MetricsConstants.ListingCacheType listingCacheType = getListingCacheType(prefix);
+    CachedPage loadingPage;
+    synchronized (cache) {
+      CachedPage cachedPage = cache.get(listingKey);
+      if (cachedPage != null && cachedPage.getExpiresAt().isAfter(clock.instant())) {
+        lakeViewExtractorMetrics.incrementListingCacheHitCounter(listingCacheType);
+        return cachedPage.getPage();
+      }
+      if (cachedPage != null) {
+        cache.remove(listingKey);
+        lakeViewExtractorMetrics.incrementListingCacheEvictionCounter(listingCacheType);
+      }
+      loadingPage =
+          new CachedPage(
+              new CompletableFuture<>(),
+              clock
+                  .instant()
+                  .plus(
+                      MetricsConstants.ListingCacheType.TIMELINE.equals(listingCacheType)
+                          ? timelineTtl
+                          : discoveryTtl));
+      cache.put(listingKey, loadingPage);
+    }
+
+    lakeViewExtractorMetrics.incrementListingCacheMissCounter(listingCacheType);
+    try {
+      asyncStorageClient
+          .fetchObjectsByPage(bucketName, prefix, continuationToken, startAfter)
+          .whenComplete(
+              (continuationTokenAndFiles, throwable) -> {
+                if (throwable != null) {
+                  // failed listings are not cached
+                  removeFromCache(listingKey, loadingPage);
+                  loadingPage.getPage().completeExceptionally(throwable);
+                } else {
+                  loadingPage
+                      .getPage()
+                      .complete(
+                          Pair.of(
+                              continuationTokenAndFiles.getLeft(),
+                              Collections.unmodifiableList(continuationTokenAndFiles.getRight())));
+                }
+              });
+    } catch (RuntimeException e) {
+      removeFromCache(listingKey, loadingPage);
+      loadingPage.getPage().completeExceptionally(e);
+    }
+    return loadingPage.getPage();
+  }
+
+  @Override
+  public CompletableFuture<FileStreamData> streamFileAsync(String path) {
+    return asyncStorageClient.streamFileAsync(path);
+  }
+
+  @Override
+  public CompletableFuture<FileStreamData> streamFileRangeAsync(
+      String path, long offset, long length) {
+    return asyncStorageClient.streamFileRangeAsync(path, offset, length);
+  }
+
+  @Override
+  public CompletableFuture<byte[]> readFileAsBytes(String path) {
+    return asyncStorageClient.readFileAsBytes(path);
+  }
+
+  /** Drops the cached listings of the given directory and of all directories under it. */
+  public void invalidate(String directoryUri) {
+    String bucketName = storageUtils.getBucketNameFromUri(directoryUri);
+    String prefix = storageUtils.getPathFromUrl(directoryUri);
+    log.debug("Invalidating cached listings under {}", directoryUri);
+    synchronized (cache) {
+      cache
+          .keySet()
+          .removeIf(
+              listingKey ->
+                  listingKey.getBucketName().equals(bucketName)
+                      && listingKey.getPrefix().startsWith(prefix));
+    }
+  }
+
+  /** Drops all cached listings. */
+  public void invalidateAll() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  @VisibleForTesting
+  int getCacheSize() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  private void removeFromCache(ListingKey listingKey, CachedPage cachedPage) {
+    synchronized (cache) {
+      cache.remove(listingKey, cachedPage);
+    }
+  }
+
+  private static MetricsConstants.ListingCacheType getListingCacheType(String prefix) {
+    return prefix.startsWith(HOODIE_FOLDER_PREFIX) || prefix.contains("/" + HOODIE_FOLDER_PREFIX)
+        ? MetricsConstants.ListingCacheType.TIMELINE
+        : MetricsConstants.ListingCacheType.DISCOVERY;
+  }
+
+  @Value
+  private static class ListingKey {
+    String bucketName;
+    String prefix;
+    String continuationToken;
+    String startAfter;
+  }
+
+  // compared by identity, so that a failed fetch only removes its own entry
+  private static final class CachedPage {
+    private final CompletableFuture<Pair<String, List<File>>> page;
+    private final Instant expiresAt;
+
+    CachedPage(CompletableFuture<Pair<String, List<File>>> page, Instant expiresAt) {
+      this.page = page;
+      this.expiresAt = expiresAt;
+    }
+
+    CompletableFuture<Pair<String, List<File>>> getPage() {
+      return page;
+    }
+
+    Instant getExpiresAt() {
+      return expiresAt;
+    }
+  }
+}
@@ -1,14 +1,22 @@
 package ai.onehouse.storage;
 
+import ai.onehouse.config.models.common.GCSConfig;
+import ai.onehouse.config.models.common.RangedReadConfig;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
 import com.google.api.gax.paging.Page;
+import com.google.cloud.ReadChannel;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.Storage;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.inject.Inject;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import ai.onehouse.storage.models.File;
 import ai.onehouse.storage.models.FileStreamData;
 import ai.onehouse.storage.providers.GcsClientProvider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -16,22 +24,95 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 
+/*
+ * The GCS client blocks the calling thread until a call completes, so calls run on a bounded executor
+ * of their own. Slow GCS calls then queue up there instead of occupying the threads of the shared
+ * executor, which keep serving upload callbacks and API calls. Results are handed back to the shared
+ * executor so that the GCS threads only ever wait on GCS.
+ */
 @Slf4j
 public class GCSAsyncStorageClient extends AbstractAsyncStorageClient {
+  private static final long BLOCKING_THREAD_KEEP_ALIVE_SECONDS = 60;
   private final GcsClientProvider gcsClientProvider;
+  private final ThreadPoolExecutor blockingExecutor;
+  private final int readChunkSizeBytes;
+  private final LakeViewExtractorMetrics lakeviewExtractorMetrics;
+  @Nullable private final RangedReadConfig rangedReadConfig;
+  @Nullable private final Semaphore rangedReadBytesBudget;
 
-  @Inject
   public GCSAsyncStorageClient(
       @Nonnull GcsClientProvider gcsClientProvider,
       @Nonnull StorageUtils storageUtils,
-      @Nonnull ExecutorService executorService) {
+      @Nonnull ExecutorService executorService,
+      GCSConfig gcsConfig,
+      @Nonnull LakeViewExtractorMetrics lakeviewExtractorMetrics) {
+    this(gcsClientProvider, storageUtils, executorService, gcsConfig, lakeviewExtractorMetrics, null);
+  }
+
+  public GCSAsyncStorageClient(
+      @Nonnull GcsClientProvider gcsClientProvider,
+      @Nonnull StorageUtils storageUtils,
+      @Nonnull ExecutorService executorService,
+      GCSConfig gcsConfig,
+      @Nonnull LakeViewExtractorMetrics lakeviewExtractorMetrics,
+      @Nullable RangedReadConfig rangedReadConfig) {
+    this(
+        gcsClientProvider,
+        storageUtils,
+        executorService,
+        gcsConfig != null ? gcsConfig : GCSConfig.builder().build(),
+        lakeviewExtractorMetrics,
+        rangedReadConfig,
+        null);
+  }
+
+  @VisibleForTesting
+  GCSAsyncStorageClient(
+      GcsClientProvider gcsClientProvider,
+      StorageUtils storageUtils,
+      ExecutorService executorService,
+      GCSConfig gcsConfig,
+      LakeViewExtractorMetrics lakeviewExtractorMetrics,
+      RangedReadConfig rangedReadConfig,
+      ThreadPoolExecutor blockingExecutor) {
     super(executorService, storageUtils);
     this.gcsClientProvider = gcsClientProvider;
+    this.readChunkSizeBytes = gcsConfig.getReadChunkSizeBytes();
+    this.lakeviewExtractorMetrics = lakeviewExtractorMetrics;
+    this.rangedReadConfig = rangedReadConfig;
+    this.rangedReadBytesBudget =
+        rangedReadConfig != null
+            ? RangedInputStream.createInFlightBytesBudget(rangedReadConfig)
+            : null;
+    this.blockingExecutor =
+        blockingExecutor != null ? blockingExecutor : createBlockingExecutor(gcsConfig);
+  }
+
+  private static ThreadPoolExecutor createBlockingExecutor(GCSConfig gcsConfig) {
+    int numThreads = Math.max(1, gcsConfig.getBlockingThreads());
+    log.info("Spinning up {} threads for GCS calls", numThreads);
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            numThreads,
+            numThreads,
+            BLOCKING_THREAD_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(Math.max(1, gcsConfig.getBlockingQueueCapacity())),
+            new ThreadFactoryBuilder().setNameFormat("gcs-blocking-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
   @Override
@@ -42,7 +123,7 @@ public class GCSAsyncStorageClient extends AbstractAsyncStorageClient {
         prefix,
         continuationToken,
         startAfter);
-    return CompletableFuture.supplyAsync(
+    return supplyBlocking(
         () -> {
           List<Storage.BlobListOption> optionList =
               new ArrayList<>(
@@ -67,48 +148,168 @@ public class GCSAsyncStorageClient extends AbstractAsyncStorageClient {
                     .lastModifiedAt(
                         Instant.ofEpochMilli(!blob.isDirectory() ? blob.getUpdateTime() : 0))
                     .isDirectory(blob.isDirectory())
+                    .size(blob.getSize() != null ? blob.getSize() : 0)
                     .build());
           }
           String nextPageToken = blobs.hasNextPage() ? blobs.getNextPageToken() : null;
           return Pair.of(nextPageToken, files);
-        },
-        executorService);
+        });
   }
 
   @VisibleForTesting
   CompletableFuture<Blob> readBlob(String gcsUri) {
-    log.debug("Reading GCS file: {}", gcsUri);
-    return CompletableFuture.supplyAsync(
-        () -> {
-          Blob blob =
-              gcsClientProvider
-                  .getGcsClient()
-                  .get(
-                      BlobId.of(
-                          storageUtils.getBucketNameFromUri(gcsUri),
-                          storageUtils.getPathFromUrl(gcsUri)));
-          if (blob != null) {
-            return blob;
-          } else {
-            throw new RuntimeException("Blob not found");
-          }
-        },
-        executorService);
+    return supplyBlocking(() -> getBlob(gcsUri));
   }
 
   @Override
   public CompletableFuture<FileStreamData> streamFileAsync(String gcsUri) {
     return readBlob(gcsUri)
         .thenApply(
-            blob ->
-                FileStreamData.builder()
-                    .inputStream(Channels.newInputStream(blob.reader()))
+            blob -> {
+              if (rangedReadConfig != null
+                  && blob.getSize() > rangedReadConfig.getThresholdBytes()) {
+                return FileStreamData.builder()
+                    .inputStream(readInRanges(blob, gcsUri))
                     .fileSize(blob.getSize())
-                    .build());
+                    .build();
+              }
+              ReadChannel reader = blob.reader();
+              reader.setChunkSize(readChunkSizeBytes);
+              return FileStreamData.builder()
+                  .inputStream(Channels.newInputStream(reader))
+                  .channel(reader)
+                  .fileSize(blob.getSize())
+                  .build();
+            });
+  }
+
+  @Override
+  public CompletableFuture<FileStreamData> streamFileRangeAsync(
+      String gcsUri, long offset, long length) {
+    return readBlob(gcsUri)
+        .thenApply(
+            blob -> {
+              ReadChannel reader = blob.reader();
+              reader.setChunkSize(readChunkSizeBytes);
+              try {
+                reader.seek(offset);
+              } catch (IOException e) {
+                reader.close();
+                throw new UncheckedIOException(e);
+              }
+              reader.limit(offset + length);
+              return FileStreamData.builder()
+                  .inputStream(Channels.newInputStream(reader))
+                  .channel(reader)
+                  .fileSize(Math.max(0, Math.min(length, blob.getSize() - offset)))
+                  .build();
+            });
   }
 
   @Override
   public CompletableFuture<byte[]> readFileAsBytes(String gcsUri) {
-    return readBlob(gcsUri).thenApply(Blob::getContent);
+    return supplyBlocking(() -> readContent(getBlob(gcsUri)));
+  }
+
+  private Blob getBlob(String gcsUri) {
+    log.debug("Reading GCS file: {}", gcsUri);
+    Blob blob =
+        gcsClientProvider
+            .getGcsClient()
+            .get(
+                BlobId.of(
+                    storageUtils.getBucketNameFromUri(gcsUri),
+                    storageUtils.getPathFromUrl(gcsUri)));
+    if (blob != null) {
+      return blob;
+    } else {
+      throw new RuntimeException("Blob not found");
+    }
+  }
+
+  /*
+   * The first range is streamed and the rest of the object is fetched in ranges on the GCS
+   * executor. All reads are pinned to the generation of the blob.
+   */
+  private InputStream readInRanges(Blob blob, String gcsUri) {
+    long fileSize = blob.getSize();
+    long rangeSize = rangedReadConfig.getRangeSizeBytes();
+    log.debug("Reading GCS file of {} bytes in ranges of {} bytes: {}", fileSize, rangeSize, gcsUri);
+    ReadChannel firstRangeReader = blob.reader(Blob.BlobSourceOption.generationMatch());
+    firstRangeReader.setChunkSize(readChunkSizeBytes);
+    firstRangeReader.limit(rangeSize);
+    return new RangedInputStream(
+        gcsUri,
+        Channels.newInputStream(firstRangeReader),
+        Math.min(rangeSize, fileSize),
+        fileSize,
+        rangeSize,
+        rangedReadConfig.getMaxInFlightRanges(),
+        rangedReadBytesBudget,
+        (offset, length) -> supplyBlocking(() -> readRange(blob, offset, (int) length)));
+  }
+
+  private byte[] readRange(Blob blob, long offset, int length) {
+    ByteBuffer range = ByteBuffer.allocate(length);
+    try (ReadChannel reader = blob.reader(Blob.BlobSourceOption.generationMatch())) {
+      reader.setChunkSize(readChunkSizeBytes);
+      reader.seek(offset);
+      reader.limit(offset + length);
+      while (range.hasRemaining() && reader.read(range) >= 0) {
+        // keep reading until the range is filled or the object ends
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read GCS file " + blob.getName(), e);
+    }
+    return range.position() == range.capacity()
+        ? range.array()
+        : Arrays.copyOf(range.array(), range.position());
+  }
+
+  /*
+   * Reads the object in chunks straight into an array of its size. The generation of the blob is
+   * pinned so that the content matches the size even if the object is overwritten meanwhile.
+   */
+  private byte[] readContent(Blob blob) {
+    long size = blob.getSize();
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          String.format("GCS file %s of %d bytes is too large to be read", blob.getName(), size));
+    }
+    ByteBuffer content = ByteBuffer.allocate((int) size);
+    try (ReadChannel reader = blob.reader(Blob.BlobSourceOption.generationMatch())) {
+      reader.setChunkSize(readChunkSizeBytes);
+      while (content.hasRemaining() && reader.read(content) >= 0) {
+        // keep reading until the array is filled or the object ends
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read GCS file " + blob.getName(), e);
+    }
+    return content.position() == content.capacity()
+        ? content.array()
+        : Arrays.copyOf(content.array(), content.position());
+  }
+
+  /*
+   * Runs the blocking GCS call on the GCS executor and completes the returned future on the shared
+   * executor. Calls are rejected once the queue of the GCS executor is full.
+   */
+  private <T> CompletableFuture<T> supplyBlocking(Supplier<T> gcsCall) {
+    CompletableFuture<T> gcsCallFuture;
+    try {
+      gcsCallFuture =
+          CompletableFuture.supplyAsync(
+              () -> {
+                lakeviewExtractorMetrics.setGcsBlockingQueueSize(blockingExecutor.getQueue().size());
+                return gcsCall.get();
+              },
+              blockingExecutor);
+    } catch (RejectedExecutionException e) {
+      log.warn("Rejected GCS call, {} calls are already queued", blockingExecutor.getQueue().size());
+      gcsCallFuture = new CompletableFuture<>();
+      gcsCallFuture.completeExceptionally(e);
+    }
+    lakeviewExtractorMetrics.setGcsBlockingQueueSize(blockingExecutor.getQueue().size());
+    return gcsCallFuture.thenApplyAsync(result -> result, executorService);
   }
 }
@@ -0,0 +1,300 @@
+package ai.onehouse.storage;
+
+import ai.onehouse.config.models.common.LocalFileSystemConfig;
+import ai.onehouse.storage.models.File;
+import ai.onehouse.storage.models.FileStreamData;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.Nonnull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+
+/*
+ * Storage client for tables on a local or mounted file system, paths are of the form
+ * file:///path/to/file. The file system root acts as a bucket with an empty name and object keys are
+ * paths relative to the root, so listing behaves the same as in object storages.
+ */
+@Slf4j
+public class LocalAsyncStorageClient extends AbstractAsyncStorageClient {
+  private static final String DIRECTORY_DELIMITER = "/";
+  private final int listingPageSize;
+
+  public LocalAsyncStorageClient(
+      @Nonnull LocalFileSystemConfig localFileSystemConfig,
+      @Nonnull StorageUtils storageUtils,
+      @Nonnull ExecutorService executorService) {
+    super(executorService, storageUtils);
+    this.listingPageSize = localFileSystemConfig.getListingPageSize();
+  }
+
+  /*
+   * Lists a directory the same way as S3 list objects with "/" as the delimiter: sub directories are
+   * returned as keys ending with "/", keys are returned in lexicographic order, and listing resumes
+   * after startAfter or after the continuation token, which is the last key of the previous page.
+   */
+  @Override
+  public CompletableFuture<Pair<String, List<File>>> fetchObjectsByPage(
+      String bucketName, String prefix, String continuationToken, String startAfter) {
+    log.debug(
+        "fetching files in dir {} continuationToken {} startAfter {}",
+        prefix,
+        continuationToken,
+        startAfter);
+    return CompletableFuture.supplyAsync(
+        () -> {
+          String listAfter =
+              StringUtils.isNotBlank(continuationToken) ? continuationToken : startAfter;
+          String directoryKey = prefix.substring(0, prefix.lastIndexOf(DIRECTORY_DELIMITER) + 1);
+          String namePrefix = prefix.substring(directoryKey.length());
+
+          // holds the first listingPageSize + 1 keys, the extra key tells if there are more pages
+          TreeMap<String, File> page = new TreeMap<>();
+          try (DirectoryStream<Path> directoryStream =
+              Files.newDirectoryStream(getPath(directoryKey))) {
+            for (Path entry : directoryStream) {
+              String name = entry.getFileName().toString();
+              if (!name.startsWith(namePrefix)) {
+                continue;
+              }
+              /*
+               * the key is name or name + "/", attributes are only read for names which may fall
+               * after listAfter and within the page, so paging through a directory does not read
+               * the attributes of every entry for every page
+               */
+              String fileKey = directoryKey + name;
+              if ((StringUtils.isNotBlank(listAfter)
+                      && (fileKey + DIRECTORY_DELIMITER).compareTo(listAfter) <= 0)
+                  || (page.size() > listingPageSize && fileKey.compareTo(page.lastKey()) > 0)) {
+                continue;
+              }
+              BasicFileAttributes attributes =
+                  Files.readAttributes(entry, BasicFileAttributes.class);
+              String key =
+                  directoryKey + name + (attributes.isDirectory() ? DIRECTORY_DELIMITER : "");
+              if (StringUtils.isNotBlank(listAfter) && key.compareTo(listAfter) <= 0) {
+                continue;
+              }
+              page.put(
+                  key,
+                  File.builder()
+                      .filename(key.substring(prefix.length()))
+                      .lastModifiedAt(
+                          attributes.isDirectory()
+                              ? Instant.EPOCH
+                              : attributes.lastModifiedTime().toInstant())
+                      .isDirectory(attributes.isDirectory())
+                      .size(attributes.isDirectory() ? 0 : attributes.size())
+                      .build());
+              if (page.size() > listingPageSize + 1) {
+                page.pollLastEntry();
+              }
+            }
+          } catch (NoSuchFileException | NotDirectoryException e) {
+            // same as object storages, listing a prefix with no objects returns no files
+            return Pair.of(null, Collections.emptyList());
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+
+          String nextContinuationToken = null;
+          if (page.size() > listingPageSize) {
+            page.pollLastEntry();
+            nextContinuationToken = page.lastKey();
+          }
+          List<File> files = new ArrayList<>();
+          for (Map.Entry<String, File> entry : page.entrySet()) {
+            files.add(entry.getValue());
+          }
+          return Pair.of(nextContinuationToken, files);
+        },
+        executorService);
+  }
+
+  /*
+   * Memory maps the file, so the upload reads the file contents straight from the page cache.
+   */
+  @Override
+  public CompletableFuture<FileStreamData> streamFileAsync(String fileUri) {
+    log.debug("Reading local file as InputStream: {}", fileUri);
+    return CompletableFuture.supplyAsync(
+        () -> {
+          Path path = getPath(storageUtils.getPathFromUrl(fileUri));
+          try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = fileChannel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+              // larger than what can be mapped in a single buffer
+              return FileStreamData.builder()
+                  .inputStream(Files.newInputStream(path))
+                  .fileSize(fileSize)
+                  .build();
+            }
+            // the mapping stays valid after the channel is closed
+            return FileStreamData.builder()
+                .inputStream(
+                    new ByteBufferInputStream(
+                        fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize)))
+                .fileSize(fileSize)
+                .build();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        },
+        executorService);
+  }
+
+  @Override
+  public CompletableFuture<FileStreamData> streamFileRangeAsync(
+      String fileUri, long offset, long length) {
+    log.debug(
+        "Reading bytes {} to {} of local file as InputStream: {}",
+        offset,
+        offset + length,
+        fileUri);
+    return CompletableFuture.supplyAsync(
+        () -> {
+          Path path = getPath(storageUtils.getPathFromUrl(fileUri));
+          try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long rangeSize = Math.max(0, Math.min(length, fileChannel.size() - offset));
+            if (rangeSize > Integer.MAX_VALUE) {
+              InputStream inputStream = Files.newInputStream(path);
+              ByteStreams.skipFully(inputStream, offset);
+              return FileStreamData.builder()
+                  .inputStream(ByteStreams.limit(inputStream, rangeSize))
+                  .fileSize(rangeSize)
+                  .build();
+            }
+            return FileStreamData.builder()
+                .inputStream(
+                    new ByteBufferInputStream(
+                        fileChannel.map(FileChannel.MapMode.READ_ONLY, offset, rangeSize)))
+                .fileSize(rangeSize)
+                .build();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        },
+        executorService);
+  }
+
+  @Override
+  public CompletableFuture<byte[]> readFileAsBytes(String fileUri) {
+    log.debug("Reading local file as bytes: {}", fileUri);
+    CompletableFuture<byte[]> readFuture = new CompletableFuture<>();
+    try {
+      AsynchronousFileChannel fileChannel =
+          AsynchronousFileChannel.open(
+              getPath(storageUtils.getPathFromUrl(fileUri)),
+              Collections.singleton(StandardOpenOption.READ),
+              executorService);
+      long fileSize = fileChannel.size();
+      if (fileSize > Integer.MAX_VALUE) {
+        closeQuietly(fileChannel);
+        readFuture.completeExceptionally(
+            new IOException(String.format("File %s is too large to be read as bytes", fileUri)));
+        return readFuture;
+      }
+      readFully(fileChannel, ByteBuffer.allocate((int) fileSize), readFuture);
+    } catch (IOException e) {
+      readFuture.completeExceptionally(e);
+    }
+    return readFuture;
+  }
+
+  private void readFully(
+      AsynchronousFileChannel fileChannel, ByteBuffer buffer, CompletableFuture<byte[]> future) {
+    if (!buffer.hasRemaining()) {
+      closeQuietly(fileChannel);
+      future.complete(buffer.array());
+      return;
+    }
+    fileChannel.read(
+        buffer,
+        buffer.position(),
+        null,
+        new CompletionHandler<Integer, Void>() {
+          @Override
+          public void completed(Integer bytesRead, Void attachment) {
+            if (bytesRead == -1) {
+              // file was truncated after its size was read
+              closeQuietly(fileChannel);
+              future.complete(Arrays.copyOf(buffer.array(), buffer.position()));
+            } else {
+              readFully(fileChannel, buffer, future);
+            }
+          }
+
+          @Override
+          public void failed(Throwable throwable, Void attachment) {
+            closeQuietly(fileChannel);
+            future.completeExceptionally(throwable);
+          }
+        });
+  }
+
+  private static Path getPath(String key) {
+    return Paths.get(DIRECTORY_DELIMITER + key);
+  }
+
+  private static void closeQuietly(AsynchronousFileChannel fileChannel) {
+    try {
+      fileChannel.close();
+    } catch (IOException e) {
+      log.warn("Failed to close file channel", e);
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int bytesToRead = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, bytesToRead);
+      return bytesToRead;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -1,15 +1,36 @@
 package ai.onehouse.storage;
 
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.luben.zstd.ZstdOutputStream;
 import com.google.inject.Inject;
+import ai.onehouse.api.AdaptiveConcurrencyLimiter;
 import ai.onehouse.api.AsyncHttpClientWithRetry;
+import ai.onehouse.api.JsonCodecs;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig.UploadCompression;
 import ai.onehouse.constants.MetricsConstants;
 import ai.onehouse.exceptions.FileUploadException;
 import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import ai.onehouse.storage.models.BundleManifest;
 import ai.onehouse.storage.models.FileStreamData;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import javax.annotation.Nonnull;
+import javax.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.MediaType;
 import okhttp3.Request;
@@ -17,102 +38,375 @@ import okhttp3.RequestBody;
 import okhttp3.Response;
 import okio.BufferedSink;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.lang3.tuple.Pair;
 
+// shared by all components, so that they are throttled by one limiter
 @Slf4j
+@Singleton
 public class PresignedUrlFileUploader {
+  private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  private static final String ETAG_HEADER = "ETag";
+  // limits of multipart uploads to S3, GCS accepts S3 multipart uploads with the same limits
+  private static final long MIN_MULTIPART_UPLOAD_PART_SIZE_BYTES = 5L * 1024 * 1024;
+  private static final long MULTIPART_UPLOAD_PART_SIZE_ALIGNMENT_BYTES = 1024L * 1024;
+  private static final int MAX_MULTIPART_UPLOAD_PARTS = 10000;
+  private static final MediaType OCTET_STREAM_MEDIA_TYPE =
+      MediaType.parse("application/octet-stream");
+  private static final String BUNDLE_MANIFEST_ENTRY_NAME = "manifest.json";
+  private static final MediaType ZIP_MEDIA_TYPE = MediaType.parse("application/zip");
+  private static final ObjectWriter BUNDLE_MANIFEST_WRITER =
+      JsonCodecs.writerFor(BundleManifest.class);
+  // zips and compressed files larger than this are spooled to a temporary file before upload
+  private static final int UPLOAD_SPOOL_MEMORY_THRESHOLD_BYTES = 1024 * 1024;
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+  // bounds of the number of concurrent uploads, the http client's dispatcher allows at least the
+  // upper bound of uploads and api requests together
+  private static final int INITIAL_CONCURRENT_UPLOADS = 16;
+  private static final int MIN_CONCURRENT_UPLOADS = 1;
+  public static final int MAX_CONCURRENT_UPLOADS = 64;
   private final AsyncStorageClient asyncStorageClient;
   private final AsyncHttpClientWithRetry asyncHttpClientWithRetry;
   private final LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
+  private final ByteBufferPool byteBufferPool;
+  private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 
   @Inject
   public PresignedUrlFileUploader(
       @Nonnull AsyncStorageClient asyncStorageClient,
       @Nonnull AsyncHttpClientWithRetry asyncHttpClientWithRetry,
-      @Nonnull LakeViewExtractorMetrics hudiMetadataExtractorMetrics) {
+      @Nonnull LakeViewExtractorMetrics hudiMetadataExtractorMetrics,
+      @Nonnull ByteBufferPool byteBufferPool) {
     this.asyncStorageClient = asyncStorageClient;
     this.asyncHttpClientWithRetry = asyncHttpClientWithRetry;
     this.hudiMetadataExtractorMetrics = hudiMetadataExtractorMetrics;
+    this.byteBufferPool = byteBufferPool;
+    this.concurrencyLimiter =
+        new AdaptiveConcurrencyLimiter(
+            MetricsConstants.ConcurrencyLimiterType.PRESIGNED_URL_UPLOAD,
+            INITIAL_CONCURRENT_UPLOADS,
+            MIN_CONCURRENT_UPLOADS,
+            MAX_CONCURRENT_UPLOADS,
+            hudiMetadataExtractorMetrics);
+  }
+
+  public CompletableFuture<Void> uploadFileToPresignedUrl(String presignedUrl, String fileUrl) {
+    return uploadFileToPresignedUrl(presignedUrl, fileUrl, UploadCompression.NONE);
   }
 
   public CompletableFuture<Void> uploadFileToPresignedUrl(
-      String presignedUrl, String fileUrl, int fileUploadStreamBatchSize) {
+      String presignedUrl, String fileUrl, UploadCompression uploadCompression) {
     log.debug("Uploading {} to retrieved presigned url", fileUrl);
-    return asyncStorageClient
-        .streamFileAsync(fileUrl)
-        .thenCompose(
-            fileStreamData ->
-                CompletableFuture.runAsync(
-                    () -> {
-                      Request request =
-                          getRequest(presignedUrl, fileUploadStreamBatchSize, fileStreamData);
-
-                      asyncHttpClientWithRetry
-                          .makeRequestWithRetry(request)
-                          .thenAccept(
-                              response -> {
-                                try (Response ignored = response) {
-                                  if (!response.isSuccessful()) {
-                                    int statusCode = response.code();
-                                    String message = response.message();
-                                    hudiMetadataExtractorMetrics
-                                        .incrementTableMetadataProcessingFailureCounter(
-                                            MetricsConstants.MetadataUploadFailureReasons
-                                                .PRESIGNED_URL_UPLOAD_FAILURE);
-                                    throw new FileUploadException(
-                                        String.format(
-                                            "File upload failed: response code: %s error message: %s",
-                                            statusCode, message));
-                                  }
-                                }
-                              })
-                          .join(); // Wait for the upload to complete
-                    }));
-  }
-
-  private @Nonnull Request getRequest(
-      String presignedUrl, int fileUploadStreamBatchSize, FileStreamData fileStreamData) {
-    Request request;
-    MediaType mediaType = MediaType.parse("application/octet-stream");
-    if (fileStreamData.getFileSize() <= fileUploadStreamBatchSize) {
-      // if the file size is less than the stream batch size, upload it directly
-      RequestBody requestBody;
-      try {
-        requestBody = RequestBody.create(mediaType, IOUtils.toByteArray(fileStreamData.getInputStream()));
-        request = new Request.Builder().url(presignedUrl).put(requestBody).build();
-      } catch (IOException e) {
-        throw new FileUploadException(e);
+    if (uploadCompression == UploadCompression.NONE) {
+      FileRequestBody requestBody = new FileRequestBody(fileUrl);
+      return upload(new Request.Builder().url(presignedUrl).put(requestBody).build(), requestBody);
+    }
+    SpooledRequestBody requestBody =
+        new SpooledRequestBody(OCTET_STREAM_MEDIA_TYPE, UPLOAD_SPOOL_MEMORY_THRESHOLD_BYTES) {
+          @Override
+          protected void writeContent(OutputStream outputStream) throws IOException {
+            writeCompressed(openFileStream(fileUrl), outputStream, uploadCompression);
+          }
+        };
+    return upload(
+        new Request.Builder()
+            .url(presignedUrl)
+            .put(requestBody)
+            .header(CONTENT_ENCODING_HEADER, uploadCompression.getContentEncoding())
+            .build(),
+        requestBody);
+  }
+
+  /*
+   * Uploads the files as a single zip, entries are named by the left side of each pair and read
+   * from the file url on the right side. The zip ends with a manifest.json entry listing the files
+   * and their sizes in upload order.
+   */
+  public CompletableFuture<Void> uploadBundleToPresignedUrl(
+      String presignedUrl, List<Pair<String, String>> entryNameAndFileUrls) {
+    log.debug(
+        "Uploading bundle of {} files to retrieved presigned url", entryNameAndFileUrls.size());
+    SpooledRequestBody requestBody =
+        new SpooledRequestBody(ZIP_MEDIA_TYPE, UPLOAD_SPOOL_MEMORY_THRESHOLD_BYTES) {
+          @Override
+          protected void writeContent(OutputStream outputStream) throws IOException {
+            List<BundleManifest.Entry> manifestEntries = new ArrayList<>();
+            try (ZipOutputStream zipStream = new ZipOutputStream(outputStream)) {
+              WritableByteChannel zipChannel = Channels.newChannel(zipStream);
+              for (Pair<String, String> entryNameAndFileUrl : entryNameAndFileUrls) {
+                zipStream.putNextEntry(new ZipEntry(entryNameAndFileUrl.getLeft()));
+                long size = copy(openFileStream(entryNameAndFileUrl.getRight()), zipChannel);
+                zipStream.closeEntry();
+                manifestEntries.add(
+                    BundleManifest.Entry.builder()
+                        .name(entryNameAndFileUrl.getLeft())
+                        .size(size)
+                        .build());
+              }
+              zipStream.putNextEntry(new ZipEntry(BUNDLE_MANIFEST_ENTRY_NAME));
+              zipStream.write(
+                  BUNDLE_MANIFEST_WRITER.writeValueAsBytes(
+                      BundleManifest.builder().entries(manifestEntries).build()));
+              zipStream.closeEntry();
+            }
+          }
+        };
+    return upload(new Request.Builder().url(presignedUrl).put(requestBody).build(), requestBody);
+  }
+
+  private CompletableFuture<Void> upload(Request request, Closeable requestBody) {
+    return asyncHttpClientWithRetry
+        .makeRequestWithRetry(request, concurrencyLimiter)
+        // releases what the body holds, also when the request failed before the body was written
+        .whenComplete((response, throwable) -> IOUtils.closeQuietly(requestBody))
+        .thenAccept(this::checkUploadResponse);
+  }
+
+  /*
+   * Uploads the file in parts of partSize bytes, the last part holds the remaining bytes. Parts are
+   * read from storage by range and uploaded with at most maxConcurrentParts in flight, each part is
+   * retried on its own. Completes with the ETags of the parts in part order.
+   */
+  public CompletableFuture<List<String>> uploadFilePartsToPresignedUrls(
+      List<String> partUploadUrls,
+      String fileUrl,
+      long fileSize,
+      long partSize,
+      int maxConcurrentParts) {
+    log.debug(
+        "Uploading {} in {} parts to retrieved presigned urls", fileUrl, partUploadUrls.size());
+    int numParts = partUploadUrls.size();
+    int numConcurrentParts = Math.max(1, Math.min(maxConcurrentParts, numParts));
+    String[] etags = new String[numParts];
+    List<CompletableFuture<Void>> partUploadFutures = new ArrayList<>();
+    for (int firstPartIndex = 0; firstPartIndex < numConcurrentParts; firstPartIndex++) {
+      // each of the concurrent uploads takes every numConcurrentParts-th part in turn
+      CompletableFuture<Void> partUploadFuture = CompletableFuture.completedFuture(null);
+      for (int partIndex = firstPartIndex; partIndex < numParts; partIndex += numConcurrentParts) {
+        int currentPartIndex = partIndex;
+        long offset = currentPartIndex * partSize;
+        partUploadFuture =
+            partUploadFuture
+                .thenCompose(
+                    ignored ->
+                        uploadPart(
+                            partUploadUrls.get(currentPartIndex),
+                            fileUrl,
+                            offset,
+                            Math.min(partSize, fileSize - offset)))
+                .thenAccept(etag -> etags[currentPartIndex] = etag);
+      }
+      partUploadFutures.add(partUploadFuture);
+    }
+    return CompletableFuture.allOf(partUploadFutures.toArray(new CompletableFuture[0]))
+        .thenApply(ignored -> Arrays.asList(etags));
+  }
+
+  /*
+   * Size of the parts a file is uploaded in, the configured part size raised to the smallest part
+   * size object stores accept and, for very large files, to keep within their maximum number of
+   * parts.
+   */
+  public static long getMultipartUploadPartSize(long fileSize, long configuredPartSizeBytes) {
+    long partSize = Math.max(configuredPartSizeBytes, MIN_MULTIPART_UPLOAD_PART_SIZE_BYTES);
+    long minPartSizeForFile = ceilDiv(fileSize, MAX_MULTIPART_UPLOAD_PARTS);
+    if (partSize < minPartSizeForFile) {
+      partSize =
+          ceilDiv(minPartSizeForFile, MULTIPART_UPLOAD_PART_SIZE_ALIGNMENT_BYTES)
+              * MULTIPART_UPLOAD_PART_SIZE_ALIGNMENT_BYTES;
+    }
+    return partSize;
+  }
+
+  public static int getNumMultipartUploadParts(long fileSize, long partSize) {
+    return (int) Math.max(1, ceilDiv(fileSize, partSize));
+  }
+
+  private static long ceilDiv(long dividend, long divisor) {
+    return (dividend + divisor - 1) / divisor;
+  }
+
+  private CompletableFuture<String> uploadPart(
+      String partUploadUrl, String fileUrl, long offset, long partLength) {
+    RequestBody requestBody =
+        new RequestBody() {
+          @Override
+          public MediaType contentType() {
+            return OCTET_STREAM_MEDIA_TYPE;
+          }
+
+          @Override
+          public long contentLength() {
+            return partLength;
+          }
+
+          @Override
+          public void writeTo(@Nonnull BufferedSink sink) throws IOException {
+            // the range is read once the part is sent, and again when it is retried
+            copy(openFileRangeStream(fileUrl, offset, partLength), sink);
+          }
+        };
+    return asyncHttpClientWithRetry
+        .makeRequestWithRetry(
+            new Request.Builder().url(partUploadUrl).put(requestBody).build(), concurrencyLimiter)
+        .thenApply(
+            response -> {
+              String etag = response.header(ETAG_HEADER);
+              checkUploadResponse(response);
+              if (etag == null) {
+                throw new FileUploadException(
+                    String.format(
+                        "Part upload of %s at offset %d returned no ETag", fileUrl, offset));
+              }
+              return etag;
+            });
+  }
+
+  private void checkUploadResponse(Response response) {
+    try (Response ignored = response) {
+      if (!response.isSuccessful()) {
+        int statusCode = response.code();
+        String message = response.message();
+        hudiMetadataExtractorMetrics.incrementTableMetadataProcessingFailureCounter(
+            MetricsConstants.MetadataUploadFailureReasons.PRESIGNED_URL_UPLOAD_FAILURE);
+        throw new FileUploadException(
+            String.format(
+                "File upload failed: response code: %s error message: %s", statusCode, message));
       }
-    } else {
-      request =
-          new Request.Builder()
-              .url(presignedUrl)
-              .put(
-                  // okhttp streaming:
-                  // https://github.com/square/okhttp/blob/master/samples/guide/src/main/java/okhttp3/recipes/PostStreaming.java
-                  new RequestBody() {
-                    @Override
-                    public MediaType contentType() {
-                      return mediaType;
-                    }
-
-                    @Override
-                    public long contentLength() {
-                      return fileStreamData.getFileSize();
-                    }
-
-                    @Override
-                    public void writeTo(@Nonnull BufferedSink sink) throws IOException {
-                      try (InputStream is = fileStreamData.getInputStream()) {
-                        byte[] buffer = new byte[fileUploadStreamBatchSize];
-                        int bytesRead;
-                        while ((bytesRead = is.read(buffer)) != -1) {
-                          sink.write(buffer, 0, bytesRead);
-                        }
-                      }
-                    }
-                  })
-              .build();
-    }
-    return request;
+    }
+  }
+
+  /*
+   * Called while okhttp writes a request body, where failures have to be IOExceptions for the call
+   * to fail instead of the exception escaping the dispatcher thread.
+   */
+  private FileStreamData openFileStream(String fileUrl) throws IOException {
+    try {
+      return asyncStorageClient.streamFileAsync(fileUrl).join();
+    } catch (CompletionException e) {
+      throw new IOException("Failed to read " + fileUrl, e.getCause());
+    }
+  }
+
+  private FileStreamData openFileRangeStream(String fileUrl, long offset, long length)
+      throws IOException {
+    try {
+      return asyncStorageClient.streamFileRangeAsync(fileUrl, offset, length).join();
+    } catch (CompletionException e) {
+      throw new IOException("Failed to read " + fileUrl, e.getCause());
+    }
+  }
+
+  /*
+   * Body of a single file upload. The file is opened when okhttp sends the request rather than
+   * while the request waits for a permit of the limiter, and opened again for every retry since a
+   * written stream is consumed.
+   */
+  private class FileRequestBody extends RequestBody implements Closeable {
+    private final String fileUrl;
+    // opened for the current attempt and not written yet
+    private FileStreamData unwrittenFileStreamData;
+
+    FileRequestBody(String fileUrl) {
+      this.fileUrl = fileUrl;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return OCTET_STREAM_MEDIA_TYPE;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+      return getUnwrittenFileStreamData().getFileSize();
+    }
+
+    @Override
+    public void writeTo(@Nonnull BufferedSink sink) throws IOException {
+      copy(takeUnwrittenFileStreamData(), sink);
+    }
+
+    @Override
+    public synchronized void close() {
+      if (unwrittenFileStreamData != null) {
+        closeQuietly(unwrittenFileStreamData);
+        unwrittenFileStreamData = null;
+      }
+    }
+
+    private synchronized FileStreamData getUnwrittenFileStreamData() throws IOException {
+      if (unwrittenFileStreamData == null) {
+        unwrittenFileStreamData = openFileStream(fileUrl);
+      }
+      return unwrittenFileStreamData;
+    }
+
+    private synchronized FileStreamData takeUnwrittenFileStreamData() throws IOException {
+      FileStreamData fileStreamData = getUnwrittenFileStreamData();
+      unwrittenFileStreamData = null;
+      return fileStreamData;
+    }
+  }
+
+  private static void closeQuietly(FileStreamData fileStreamData) {
+    try {
+      if (fileStreamData.getChannel() != null) {
+        fileStreamData.getChannel().close();
+      }
+      fileStreamData.getInputStream().close();
+    } catch (IOException e) {
+      log.warn("Failed to close file stream", e);
+    }
+  }
+
+  private void writeCompressed(
+      FileStreamData fileStreamData,
+      OutputStream outputStream,
+      UploadCompression uploadCompression)
+      throws IOException {
+    long cpuTimeBeforeNanos = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    CountingOutputStream compressedStream =
+        new CountingOutputStream(CloseShieldOutputStream.wrap(outputStream));
+    long uncompressedBytes;
+    try (OutputStream compressingStream =
+        getCompressingStream(compressedStream, uploadCompression)) {
+      uncompressedBytes = copy(fileStreamData, Channels.newChannel(compressingStream));
+    }
+    long cpuTimeAfterNanos = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    hudiMetadataExtractorMetrics.incrementUploadCompressionCounters(
+        uploadCompression,
+        uncompressedBytes,
+        compressedStream.getByteCount(),
+        // -1 when cpu time measurement is not supported or disabled
+        cpuTimeBeforeNanos < 0 ? 0 : cpuTimeAfterNanos - cpuTimeBeforeNanos);
+  }
+
+  private OutputStream getCompressingStream(
+      OutputStream outputStream, UploadCompression uploadCompression) throws IOException {
+    if (uploadCompression == UploadCompression.ZSTD) {
+      return new ZstdOutputStream(outputStream);
+    }
+    return new GZIPOutputStream(outputStream, byteBufferPool.getBufferSizeBytes());
+  }
+
+  private long copy(FileStreamData fileStreamData, WritableByteChannel outputChannel)
+      throws IOException {
+    long numBytesCopied = 0;
+    ByteBuffer buffer = byteBufferPool.acquire();
+    try (ReadableByteChannel channel = fileStreamData.openChannel()) {
+      int bytesRead;
+      while ((bytesRead = channel.read(buffer)) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          outputChannel.write(buffer);
+        }
+        buffer.clear();
+        numBytesCopied += bytesRead;
+      }
+    } finally {
+      byteBufferPool.release(buffer);
+    }
+    return numBytesCopied;
   }
 }
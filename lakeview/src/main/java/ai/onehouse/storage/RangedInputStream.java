@@ -0,0 +1,165 @@
+package ai.onehouse.storage;
+
+import ai.onehouse.config.models.common.RangedReadConfig;
+import com.google.common.primitives.Ints;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import javax.annotation.Nonnull;
+
+/*
+ * Reads a file as its first part, which is streamed as is, followed by the rest of the file in
+ * ranges of rangeSize bytes. Up to maxInFlightRanges ranges are fetched ahead of the reader, so
+ * that the ranges download concurrently while the file is still read in order. Every range takes
+ * its bytes from a budget shared by all files read by a storage client, which bounds the memory
+ * held across files. Ranges are only fetched ahead while there is room in the budget, and a reader
+ * which has no range left waits for room for its next range.
+ */
+class RangedInputStream extends InputStream {
+  private final String fileUri;
+  private final long fileSize;
+  private final long rangeSize;
+  private final int maxInFlightRanges;
+  private final Semaphore inFlightBytesBudget;
+  private final RangeReader rangeReader;
+  private final Queue<InFlightRange> inFlightRanges = new ArrayDeque<>();
+  private InputStream currentStream;
+  // bytes of the budget held by the range being read
+  private int currentRangeBytes;
+  private long nextRangeOffset;
+
+  @FunctionalInterface
+  interface RangeReader {
+    CompletableFuture<byte[]> readRange(long offset, long length);
+  }
+
+  RangedInputStream(
+      String fileUri,
+      InputStream firstPart,
+      long firstPartSize,
+      long fileSize,
+      long rangeSize,
+      int maxInFlightRanges,
+      Semaphore inFlightBytesBudget,
+      RangeReader rangeReader) {
+    this.fileUri = fileUri;
+    this.fileSize = fileSize;
+    this.rangeSize = rangeSize;
+    this.maxInFlightRanges = Math.max(1, maxInFlightRanges);
+    this.inFlightBytesBudget = inFlightBytesBudget;
+    this.rangeReader = rangeReader;
+    this.currentStream = firstPart;
+    this.nextRangeOffset = firstPartSize;
+    fetchRanges();
+  }
+
+  // budget of the ranges held across the files read by one storage client
+  static Semaphore createInFlightBytesBudget(RangedReadConfig rangedReadConfig) {
+    return new Semaphore(
+        Ints.saturatedCast(
+            Math.max(
+                rangedReadConfig.getMaxInFlightBytes(), rangedReadConfig.getRangeSizeBytes())));
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] singleByte = new byte[1];
+    int bytesRead = read(singleByte, 0, 1);
+    return bytesRead == -1 ? -1 : singleByte[0] & 0xFF;
+  }
+
+  @Override
+  public int read(@Nonnull byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    while (true) {
+      int bytesRead = currentStream.read(bytes, offset, length);
+      if (bytesRead != -1) {
+        return bytesRead;
+      }
+      if (!nextRange()) {
+        return -1;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    InFlightRange inFlightRange;
+    while ((inFlightRange = inFlightRanges.poll()) != null) {
+      inFlightRange.range.cancel(false);
+      inFlightBytesBudget.release(inFlightRange.length);
+    }
+    releaseCurrentRange();
+    currentStream.close();
+  }
+
+  private boolean nextRange() throws IOException {
+    currentStream.close();
+    releaseCurrentRange();
+    if (inFlightRanges.isEmpty() && nextRangeOffset < fileSize) {
+      // the budget is taken by ranges of other files, this file holds none of it while waiting
+      int length = getNextRangeLength();
+      try {
+        inFlightBytesBudget.acquire(length);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting to read range of " + fileUri);
+      }
+      fetchRange(length);
+    }
+    InFlightRange inFlightRange = inFlightRanges.poll();
+    if (inFlightRange == null) {
+      return false;
+    }
+    currentRangeBytes = inFlightRange.length;
+    try {
+      currentStream = new ByteArrayInputStream(inFlightRange.range.join());
+    } catch (CompletionException e) {
+      throw new IOException("Failed to read range of " + fileUri, e.getCause());
+    }
+    fetchRanges();
+    return true;
+  }
+
+  private void fetchRanges() {
+    while (inFlightRanges.size() < maxInFlightRanges && nextRangeOffset < fileSize) {
+      int length = getNextRangeLength();
+      if (!inFlightBytesBudget.tryAcquire(length)) {
+        return;
+      }
+      fetchRange(length);
+    }
+  }
+
+  private void fetchRange(int length) {
+    inFlightRanges.add(new InFlightRange(rangeReader.readRange(nextRangeOffset, length), length));
+    nextRangeOffset += length;
+  }
+
+  private int getNextRangeLength() {
+    return (int) Math.min(rangeSize, fileSize - nextRangeOffset);
+  }
+
+  private void releaseCurrentRange() {
+    inFlightBytesBudget.release(currentRangeBytes);
+    currentRangeBytes = 0;
+  }
+
+  private static class InFlightRange {
+    private final CompletableFuture<byte[]> range;
+    private final int length;
+
+    InFlightRange(CompletableFuture<byte[]> range, int length) {
+      this.range = range;
+      this.length = length;
+    }
+  }
+}
@@ -1,39 +1,63 @@
 package ai.onehouse.storage;
 
+import ai.onehouse.config.models.common.RangedReadConfig;
 import ai.onehouse.exceptions.RateLimitException;
 import com.google.inject.Inject;
 import ai.onehouse.storage.models.File;
 import ai.onehouse.storage.models.FileStreamData;
 import ai.onehouse.storage.providers.S3AsyncClientProvider;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.awscore.internal.AwsErrorCode;
 import software.amazon.awssdk.core.BytesWrapper;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 @Slf4j
 public class S3AsyncStorageClient extends AbstractAsyncStorageClient {
   private final S3AsyncClientProvider s3AsyncClientProvider;
+  @Nullable private final RangedReadConfig rangedReadConfig;
+  @Nullable private final Semaphore rangedReadBytesBudget;
+  private static final int RANGE_NOT_SATISFIABLE_STATUS_CODE = 416;
 
   @Inject
   public S3AsyncStorageClient(
       @Nonnull S3AsyncClientProvider s3AsyncClientProvider,
       @Nonnull StorageUtils storageUtils,
       @Nonnull ExecutorService executorService) {
+    this(s3AsyncClientProvider, storageUtils, executorService, null);
+  }
+
+  public S3AsyncStorageClient(
+      @Nonnull S3AsyncClientProvider s3AsyncClientProvider,
+      @Nonnull StorageUtils storageUtils,
+      @Nonnull ExecutorService executorService,
+      @Nullable RangedReadConfig rangedReadConfig) {
     super(executorService, storageUtils);
     this.s3AsyncClientProvider = s3AsyncClientProvider;
+    this.rangedReadConfig = rangedReadConfig;
+    this.rangedReadBytesBudget =
+        rangedReadConfig != null
+            ? RangedInputStream.createInFlightBytesBudget(rangedReadConfig)
+            : null;
   }
 
   @Override
@@ -88,6 +112,7 @@ public class S3AsyncStorageClient extends AbstractAsyncStorageClient {
                         .filename(s3Object.key().replaceFirst(prefix, ""))
                         .lastModifiedAt(s3Object.lastModified())
                         .isDirectory(false)
+                        .size(s3Object.size() != null ? s3Object.size() : 0)
                         .build())
             .collect(Collectors.toList());
     // process directories
@@ -108,6 +133,9 @@ public class S3AsyncStorageClient extends AbstractAsyncStorageClient {
   @Override
   public CompletableFuture<FileStreamData> streamFileAsync(String s3Uri) {
     log.debug("Reading S3 file as InputStream: {}", s3Uri);
+    if (rangedReadConfig != null) {
+      return streamFileInRangesAsync(s3Uri);
+    }
     GetObjectRequest getObjectRequest = getObjectRequest(s3Uri);
     return s3AsyncClientProvider
         .getS3AsyncClient()
@@ -125,6 +153,80 @@ public class S3AsyncStorageClient extends AbstractAsyncStorageClient {
         );
   }
 
+  /*
+   * The first request is a ranged GET of up to the threshold, which holds all of a file that is
+   * not read in ranges, and the size of the file is taken from its Content-Range. The rest of a
+   * larger file is fetched in ranges pinned to the same version of the object.
+   */
+  private CompletableFuture<FileStreamData> streamFileInRangesAsync(String s3Uri) {
+    long firstPartSize =
+        Math.max(rangedReadConfig.getThresholdBytes(), rangedReadConfig.getRangeSizeBytes());
+    GetObjectRequest getObjectRequest =
+        getObjectRequest(s3Uri).toBuilder().range(getRange(0, firstPartSize)).build();
+    return s3AsyncClientProvider
+        .getS3AsyncClient()
+        .getObject(getObjectRequest, AsyncResponseTransformer.toBlockingInputStream())
+        .thenApply(
+            firstPart -> {
+              long fileSize = getFileSize(firstPart.response());
+              return FileStreamData.builder()
+                  .inputStream(
+                      fileSize > firstPartSize
+                          ? readInRanges(s3Uri, firstPart, firstPartSize, fileSize)
+                          : firstPart)
+                  .fileSize(fileSize)
+                  .build();
+            })
+        .exceptionally(
+            ex -> {
+              // a range of an empty object cannot be satisfied
+              if (ex.getCause() instanceof S3Exception
+                  && ((S3Exception) ex.getCause()).statusCode()
+                      == RANGE_NOT_SATISFIABLE_STATUS_CODE) {
+                return FileStreamData.builder()
+                    .inputStream(new ByteArrayInputStream(new byte[0]))
+                    .fileSize(0)
+                    .build();
+              }
+              throw clientException(ex, "streamFileAsync", s3Uri);
+            });
+  }
+
+  // Content-Range holds the size of the object after the range, eg: bytes 0-99/1000
+  private static long getFileSize(GetObjectResponse response) {
+    String contentRange = response.contentRange();
+    if (contentRange != null && contentRange.indexOf('/') >= 0) {
+      String size = contentRange.substring(contentRange.lastIndexOf('/') + 1).trim();
+      if (!"*".equals(size)) {
+        return Long.parseLong(size);
+      }
+    }
+    // the whole object was returned
+    return response.contentLength();
+  }
+
+  @Override
+  public CompletableFuture<FileStreamData> streamFileRangeAsync(
+      String s3Uri, long offset, long length) {
+    log.debug(
+        "Reading bytes {} to {} of S3 file as InputStream: {}", offset, offset + length, s3Uri);
+    GetObjectRequest getObjectRequest =
+        getObjectRequest(s3Uri).toBuilder().range(getRange(offset, length)).build();
+    return s3AsyncClientProvider
+        .getS3AsyncClient()
+        .getObject(getObjectRequest, AsyncResponseTransformer.toBlockingInputStream())
+        .thenApply(
+            responseResponseInputStream ->
+                FileStreamData.builder()
+                    .inputStream(responseResponseInputStream)
+                    .fileSize(responseResponseInputStream.response().contentLength())
+                    .build())
+        .exceptionally(
+            ex -> {
+              throw clientException(ex, "streamFileRangeAsync", s3Uri);
+            });
+  }
+
   @Override
   public CompletableFuture<byte[]> readFileAsBytes(String s3Uri) {
     log.debug("Reading S3 file:  {}", s3Uri);
@@ -140,6 +242,46 @@ public class S3AsyncStorageClient extends AbstractAsyncStorageClient {
         );
   }
 
+  private InputStream readInRanges(
+      String s3Uri,
+      ResponseInputStream<GetObjectResponse> firstPart,
+      long firstPartSize,
+      long fileSize) {
+    long rangeSize = rangedReadConfig.getRangeSizeBytes();
+    String eTag = firstPart.response().eTag();
+    log.debug("Reading S3 file of {} bytes in ranges of {} bytes: {}", fileSize, rangeSize, s3Uri);
+    return new RangedInputStream(
+        s3Uri,
+        firstPart,
+        firstPartSize,
+        fileSize,
+        rangeSize,
+        rangedReadConfig.getMaxInFlightRanges(),
+        rangedReadBytesBudget,
+        (offset, length) -> readRangeAsBytes(s3Uri, eTag, offset, length));
+  }
+
+  private CompletableFuture<byte[]> readRangeAsBytes(
+      String s3Uri, @Nullable String eTag, long offset, long length) {
+    GetObjectRequest.Builder getObjectRequestBuilder =
+        getObjectRequest(s3Uri).toBuilder().range(getRange(offset, length));
+    if (eTag != null) {
+      getObjectRequestBuilder.ifMatch(eTag);
+    }
+    return s3AsyncClientProvider
+        .getS3AsyncClient()
+        .getObject(getObjectRequestBuilder.build(), AsyncResponseTransformer.toBytes())
+        .thenApply(BytesWrapper::asByteArray)
+        .exceptionally(
+            ex -> {
+              throw clientException(ex, "readRangeAsBytes", s3Uri);
+            });
+  }
+
+  private static String getRange(long offset, long length) {
+    return String.format("bytes=%d-%d", offset, offset + length - 1);
+  }
+
   private GetObjectRequest getObjectRequest(String s3Uri) {
     return GetObjectRequest.builder()
         .bucket(storageUtils.getBucketNameFromUri(s3Uri))
@@ -0,0 +1,95 @@
+package ai.onehouse.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import javax.annotation.Nonnull;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+
+/*
+ * Request body whose size is only known once written, such as zips and compressed files. The
+ * content is written once, into memory up to memoryThresholdBytes and into a temporary file past
+ * it, when okhttp asks for the content length. Requests therefore carry a Content-Length, which
+ * presigned S3 PUTs require, and retries send the same bytes. The temporary file is deleted on
+ * close.
+ */
+@Slf4j
+abstract class SpooledRequestBody extends RequestBody implements Closeable {
+  private static final String SPOOL_FILE_PREFIX = "lakeview-upload-";
+  private final MediaType contentType;
+  private final int memoryThresholdBytes;
+  private DeferredFileOutputStream spool;
+
+  SpooledRequestBody(MediaType contentType, int memoryThresholdBytes) {
+    this.contentType = contentType;
+    this.memoryThresholdBytes = memoryThresholdBytes;
+  }
+
+  protected abstract void writeContent(OutputStream outputStream) throws IOException;
+
+  @Override
+  public MediaType contentType() {
+    return contentType;
+  }
+
+  @Override
+  public long contentLength() throws IOException {
+    return getSpool().getByteCount();
+  }
+
+  @Override
+  public void writeTo(@Nonnull BufferedSink sink) throws IOException {
+    DeferredFileOutputStream writtenSpool = getSpool();
+    if (writtenSpool.isInMemory()) {
+      sink.write(writtenSpool.getData());
+      return;
+    }
+    try (Source source = Okio.source(writtenSpool.getPath())) {
+      sink.writeAll(source);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (spool != null) {
+      deleteSpoolFile(spool);
+      spool = null;
+    }
+  }
+
+  private synchronized DeferredFileOutputStream getSpool() throws IOException {
+    if (spool == null) {
+      DeferredFileOutputStream newSpool =
+          DeferredFileOutputStream.builder()
+              .setThreshold(memoryThresholdBytes)
+              .setPrefix(SPOOL_FILE_PREFIX)
+              .get();
+      try (OutputStream outputStream = newSpool) {
+        writeContent(outputStream);
+      } catch (IOException | RuntimeException e) {
+        deleteSpoolFile(newSpool);
+        throw e;
+      }
+      spool = newSpool;
+    }
+    return spool;
+  }
+
+  private static void deleteSpoolFile(DeferredFileOutputStream spool) {
+    if (spool.isInMemory()) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(spool.getPath());
+    } catch (IOException e) {
+      log.warn("Failed to delete upload spool file {}", spool.getPath(), e);
+    }
+  }
+}
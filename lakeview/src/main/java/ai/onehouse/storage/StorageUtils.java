@@ -1,5 +1,6 @@
 package ai.onehouse.storage;
 
+import static ai.onehouse.constants.StorageConstants.LOCAL_FILE_URI_PATTERN;
 import static ai.onehouse.constants.StorageConstants.OBJECT_STORAGE_URI_PATTERN;
 
 import java.util.regex.Matcher;
@@ -8,20 +9,11 @@ public class StorageUtils {
   private static final String INVALID_STORAGE_URI_ERROR_MSG = "Invalid Object storage Uri: ";
 
   public String getPathFromUrl(String uri) {
+    Matcher matcher = matchStorageUri(uri);
 
-    if (!OBJECT_STORAGE_URI_PATTERN.matcher(uri).matches()) {
-      throw new IllegalArgumentException(INVALID_STORAGE_URI_ERROR_MSG + uri);
-    }
-
-    String prefix = "";
-
-    // Remove the scheme and bucket name from the S3 path
-    int startIndex = uri.indexOf('/', 5); // Skip 's3://' and 'gs://'
-    if (startIndex != -1) {
-      prefix = uri.substring(startIndex + 1);
-    }
-
-    return prefix;
+    // Remove the scheme and bucket name from the path
+    String path = matcher.group(3);
+    return path == null ? "" : path.substring(1);
   }
 
   public String constructFileUri(String directoryUri, String filePath) {
@@ -34,9 +26,17 @@ public class StorageUtils {
   }
 
   public String getBucketNameFromUri(String uri) {
+    return matchStorageUri(uri).group(2);
+  }
+
+  private Matcher matchStorageUri(String uri) {
     Matcher matcher = OBJECT_STORAGE_URI_PATTERN.matcher(uri);
     if (matcher.matches()) {
-      return matcher.group(2);
+      return matcher;
+    }
+    matcher = LOCAL_FILE_URI_PATTERN.matcher(uri);
+    if (matcher.matches()) {
+      return matcher;
     }
     throw new IllegalArgumentException(INVALID_STORAGE_URI_ERROR_MSG + uri);
   }
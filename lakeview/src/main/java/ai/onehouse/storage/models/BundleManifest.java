@@ -0,0 +1,25 @@
+package ai.onehouse.storage.models;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+/*
+ * Last entry of a bundle upload, lists the files of the bundle in the order they were written.
+ */
+@Builder
+@Jacksonized
+@Value
+public class BundleManifest {
+  @NonNull List<Entry> entries;
+
+  @Builder
+  @Jacksonized
+  @Value
+  public static class Entry {
+    @NonNull String name;
+    long size;
+  }
+}
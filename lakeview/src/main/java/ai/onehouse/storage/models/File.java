@@ -11,4 +11,5 @@ public class File {
   @NonNull String filename; // filename does not include the path prefix
   @NonNull Instant lastModifiedAt;
   boolean isDirectory;
+  long size; // size in bytes, 0 for directories
 }
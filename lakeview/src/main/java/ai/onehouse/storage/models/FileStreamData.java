@@ -1,6 +1,9 @@
 package ai.onehouse.storage.models;
 
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import javax.annotation.Nullable;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.Value;
@@ -10,4 +13,10 @@ import lombok.Value;
 public class FileStreamData {
   @NonNull InputStream inputStream;
   long fileSize;
+  // channel backing the input stream, set by storage clients which read files through channels
+  @Nullable ReadableByteChannel channel;
+
+  public ReadableByteChannel openChannel() {
+    return channel != null ? channel : Channels.newChannel(inputStream);
+  }
 }
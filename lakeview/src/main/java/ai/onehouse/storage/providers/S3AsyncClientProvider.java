@@ -5,6 +5,8 @@ import com.google.inject.Inject;
 import ai.onehouse.config.Config;
 import ai.onehouse.config.models.common.FileSystemConfiguration;
 import ai.onehouse.config.models.common.S3Config;
+import java.net.URI;
+import java.time.Duration;
 import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -14,12 +16,15 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.client.config.SdkAdvancedAsyncClientOption;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.S3CrtAsyncClientBuilder;
 import software.amazon.awssdk.services.sts.StsClient;
 import software.amazon.awssdk.services.sts.model.AssumeRoleRequest;
 import software.amazon.awssdk.services.sts.model.AssumeRoleResponse;
@@ -40,14 +45,14 @@ public class S3AsyncClientProvider {
   protected S3AsyncClient createS3AsyncClient() {
     logger.debug("Instantiating S3 storage client");
     validateS3Config(s3Config);
-    S3AsyncClientBuilder s3AsyncClientBuilder = S3AsyncClient.builder();
+    AwsCredentialsProvider credentialsProvider = null;
 
     if (s3Config.getAccessKey().isPresent() && s3Config.getAccessSecret().isPresent()) {
       logger.debug("Using provided accessKey and accessSecret for authentication");
       AwsBasicCredentials awsCredentials =
           AwsBasicCredentials.create(
               s3Config.getAccessKey().get(), s3Config.getAccessSecret().get());
-      s3AsyncClientBuilder.credentialsProvider(StaticCredentialsProvider.create(awsCredentials));
+      credentialsProvider = StaticCredentialsProvider.create(awsCredentials);
     } else if(s3Config.getArnToImpersonate().isPresent()) {
       // Assume role of Destination ARN
       try (StsClient stsClient = StsClient.builder()
@@ -63,10 +68,41 @@ public class S3AsyncClientProvider {
             assumeRoleResponse.credentials().secretAccessKey(),
             assumeRoleResponse.credentials().sessionToken()
         );
-        s3AsyncClientBuilder.credentialsProvider(StaticCredentialsProvider.create(tempCredentials));
+        credentialsProvider = StaticCredentialsProvider.create(tempCredentials);
       }
     }
 
+    if (S3Config.S3ClientType.CRT.equals(s3Config.getClientType())) {
+      return createCrtS3AsyncClient(credentialsProvider);
+    }
+    return createNettyS3AsyncClient(credentialsProvider);
+  }
+
+  private S3AsyncClient createNettyS3AsyncClient(AwsCredentialsProvider credentialsProvider) {
+    NettyNioAsyncHttpClient.Builder httpClientBuilder = NettyNioAsyncHttpClient.builder();
+    s3Config.getMaxConcurrency().ifPresent(httpClientBuilder::maxConcurrency);
+    s3Config
+        .getConnectionAcquisitionTimeoutSeconds()
+        .ifPresent(
+            timeoutSeconds ->
+                httpClientBuilder.connectionAcquisitionTimeout(Duration.ofSeconds(timeoutSeconds)));
+    s3Config
+        .getConnectionMaxIdleTimeSeconds()
+        .ifPresent(
+            idleTimeSeconds ->
+                httpClientBuilder.connectionMaxIdleTime(Duration.ofSeconds(idleTimeSeconds)));
+    s3Config.getTcpKeepAlive().ifPresent(httpClientBuilder::tcpKeepAlive);
+
+    S3AsyncClientBuilder s3AsyncClientBuilder =
+        S3AsyncClient.builder().httpClientBuilder(httpClientBuilder);
+    if (credentialsProvider != null) {
+      s3AsyncClientBuilder.credentialsProvider(credentialsProvider);
+    }
+    s3Config
+        .getEndpointOverride()
+        .map(URI::create)
+        .ifPresent(s3AsyncClientBuilder::endpointOverride);
+    s3Config.getForcePathStyle().ifPresent(s3AsyncClientBuilder::forcePathStyle);
     return s3AsyncClientBuilder
         .region(Region.of(s3Config.getRegion()))
         .asyncConfiguration(
@@ -76,6 +112,25 @@ public class S3AsyncClientProvider {
         .build();
   }
 
+  private S3AsyncClient createCrtS3AsyncClient(AwsCredentialsProvider credentialsProvider) {
+    logger.info("Using the CRT based S3 client");
+    S3CrtAsyncClientBuilder s3CrtAsyncClientBuilder = S3AsyncClient.crtBuilder();
+    if (credentialsProvider != null) {
+      s3CrtAsyncClientBuilder.credentialsProvider(credentialsProvider);
+    }
+    s3Config.getMaxConcurrency().ifPresent(s3CrtAsyncClientBuilder::maxConcurrency);
+    s3Config.getTargetThroughputInGbps().ifPresent(s3CrtAsyncClientBuilder::targetThroughputInGbps);
+    s3Config
+        .getEndpointOverride()
+        .map(URI::create)
+        .ifPresent(s3CrtAsyncClientBuilder::endpointOverride);
+    s3Config.getForcePathStyle().ifPresent(s3CrtAsyncClientBuilder::forcePathStyle);
+    return s3CrtAsyncClientBuilder
+        .region(Region.of(s3Config.getRegion()))
+        .futureCompletionExecutor(executorService)
+        .build();
+  }
+
   private static String extractAccountIdFromArn(String arn) {
     Matcher matcher = Pattern.compile("arn:aws:iam::(\\d+):role/").matcher(arn);
     return matcher.find() ? matcher.group(1) : "";
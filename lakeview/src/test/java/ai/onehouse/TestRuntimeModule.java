@@ -6,19 +6,41 @@ import static junit.framework.TestCase.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import ai.onehouse.api.AdaptiveConcurrencyLimiter;
 import ai.onehouse.api.AsyncHttpClientWithRetry;
+import ai.onehouse.api.OnehouseApiClient;
 import ai.onehouse.config.Config;
 import ai.onehouse.config.models.common.FileSystemConfiguration;
 import ai.onehouse.config.models.common.GCSConfig;
+import ai.onehouse.config.models.common.LocalFileSystemConfig;
 import ai.onehouse.config.models.common.S3Config;
+import ai.onehouse.config.models.common.ListingCacheConfig;
+import ai.onehouse.constants.MetricsConstants;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
 import ai.onehouse.storage.AsyncStorageClient;
+import ai.onehouse.storage.CachingAsyncStorageClient;
 import ai.onehouse.storage.GCSAsyncStorageClient;
+import ai.onehouse.storage.LocalAsyncStorageClient;
+import ai.onehouse.storage.PresignedUrlFileUploader;
 import ai.onehouse.storage.S3AsyncStorageClient;
 import ai.onehouse.storage.StorageUtils;
 import ai.onehouse.storage.providers.GcsClientProvider;
 import ai.onehouse.storage.providers.S3AsyncClientProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -37,11 +59,74 @@ class TestRuntimeModule {
 
   @Test
   void testProvidesOkHttpClient() {
-    ExecutorService mockExecutorService = Mockito.mock(ExecutorService.class);
-    OkHttpClient okHttpClient = RuntimeModule.providesOkHttpClient(mockExecutorService);
+    OkHttpClient okHttpClient = RuntimeModule.providesOkHttpClient();
     assertNotNull(okHttpClient);
   }
 
+  @Test
+  void testProvidesOkHttpClientRunsSaturatedLimitersTogether() throws Exception {
+    // every request is answered only once all requests the limiters allow are in flight together
+    CountDownLatch allRequestsInFlight = new CountDownLatch(RuntimeModule.HTTP_CLIENT_MAX_REQUESTS);
+    MockWebServer mockWebServer = new MockWebServer();
+    mockWebServer.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            allRequestsInFlight.countDown();
+            allRequestsInFlight.await(10, TimeUnit.SECONDS);
+            return new MockResponse().setResponseCode(200);
+          }
+        });
+    mockWebServer.start();
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    OkHttpClient okHttpClient = RuntimeModule.providesOkHttpClient();
+    LakeViewExtractorMetrics mockMetrics = mock(LakeViewExtractorMetrics.class);
+    AsyncHttpClientWithRetry asyncHttpClientWithRetry =
+        RuntimeModule.providesHttpAsyncClient(okHttpClient, executorService, mockMetrics);
+    AdaptiveConcurrencyLimiter uploadLimiter =
+        new AdaptiveConcurrencyLimiter(
+            MetricsConstants.ConcurrencyLimiterType.PRESIGNED_URL_UPLOAD,
+            PresignedUrlFileUploader.MAX_CONCURRENT_UPLOADS,
+            1,
+            PresignedUrlFileUploader.MAX_CONCURRENT_UPLOADS,
+            mockMetrics);
+    AdaptiveConcurrencyLimiter apiLimiter =
+        new AdaptiveConcurrencyLimiter(
+            MetricsConstants.ConcurrencyLimiterType.ONEHOUSE_API,
+            OnehouseApiClient.MAX_CONCURRENT_REQUESTS,
+            1,
+            OnehouseApiClient.MAX_CONCURRENT_REQUESTS,
+            mockMetrics);
+
+    try {
+      List<CompletableFuture<Response>> responseFutures = new ArrayList<>();
+      for (int i = 0; i < PresignedUrlFileUploader.MAX_CONCURRENT_UPLOADS; i++) {
+        Request request =
+            new Request.Builder()
+                .url(mockWebServer.url("/upload"))
+                .put(RequestBody.create(null, new byte[0]))
+                .build();
+        responseFutures.add(asyncHttpClientWithRetry.makeRequestWithRetry(request, uploadLimiter));
+      }
+      for (int i = 0; i < OnehouseApiClient.MAX_CONCURRENT_REQUESTS; i++) {
+        Request request = new Request.Builder().url(mockWebServer.url("/api")).get().build();
+        responseFutures.add(asyncHttpClientWithRetry.makeRequestWithRetry(request, apiLimiter));
+      }
+
+      assertTrue(allRequestsInFlight.await(10, TimeUnit.SECONDS));
+      assertEquals(0, okHttpClient.dispatcher().queuedCallsCount());
+      for (CompletableFuture<Response> responseFuture : responseFutures) {
+        try (Response response = responseFuture.get(10, TimeUnit.SECONDS)) {
+          assertTrue(response.isSuccessful());
+        }
+      }
+    } finally {
+      asyncHttpClientWithRetry.shutdownScheduler();
+      executorService.shutdown();
+      mockWebServer.shutdown();
+    }
+  }
+
   @ParameterizedTest
   @EnumSource(FileSystem.class)
   void testProvidesAsyncStorageClient(FileSystem fileSystemType) {
@@ -57,6 +142,9 @@ class TestRuntimeModule {
       S3Config mockS3Config = mock(S3Config.class);
       when(mockFileSystemConfiguration.getS3Config()).thenReturn(mockS3Config);
       when(mockS3AsyncClientProvider.getS3AsyncClient()).thenReturn(null);
+    } else if (FileSystem.LOCAL.equals(fileSystemType)) {
+      when(mockFileSystemConfiguration.getLocalFileSystemConfig())
+          .thenReturn(LocalFileSystemConfig.builder().build());
     } else {
       GCSConfig mockGcsConfig = mock(GCSConfig.class);
       when(mockFileSystemConfiguration.getGcsConfig()).thenReturn(mockGcsConfig);
@@ -69,19 +157,43 @@ class TestRuntimeModule {
             mockStorageUtils,
             mockS3AsyncClientProvider,
             mockGcsClientProvider,
-            mockExecutorService);
+            mockExecutorService,
+            mock(LakeViewExtractorMetrics.class));
     if (FileSystem.S3.equals(fileSystemType)) {
       assertTrue(asyncStorageClient instanceof S3AsyncStorageClient);
+    } else if (FileSystem.LOCAL.equals(fileSystemType)) {
+      assertTrue(asyncStorageClient instanceof LocalAsyncStorageClient);
     } else {
       assertTrue(asyncStorageClient instanceof GCSAsyncStorageClient);
     }
   }
 
+  @Test
+  void testProvidesCachingAsyncStorageClient() {
+    FileSystemConfiguration mockFileSystemConfiguration = mock(FileSystemConfiguration.class);
+    when(mockConfig.getFileSystemConfiguration()).thenReturn(mockFileSystemConfiguration);
+    when(mockFileSystemConfiguration.getLocalFileSystemConfig())
+        .thenReturn(LocalFileSystemConfig.builder().build());
+    when(mockFileSystemConfiguration.getListingCacheConfig())
+        .thenReturn(ListingCacheConfig.builder().build());
+
+    AsyncStorageClient asyncStorageClient =
+        RuntimeModule.providesAsyncStorageClient(
+            mockConfig,
+            mock(StorageUtils.class),
+            mock(S3AsyncClientProvider.class),
+            mock(GcsClientProvider.class),
+            mock(ExecutorService.class),
+            mock(LakeViewExtractorMetrics.class));
+    assertTrue(asyncStorageClient instanceof CachingAsyncStorageClient);
+  }
+
   @Test
   void testProvidesHttpAsyncClient() {
     OkHttpClient mockOkHttpClient = mock(OkHttpClient.class);
     AsyncHttpClientWithRetry asyncHttpClientWithRetry =
-        runtimeModule.providesHttpAsyncClient(mockOkHttpClient);
+        runtimeModule.providesHttpAsyncClient(
+            mockOkHttpClient, mock(ExecutorService.class), mock(LakeViewExtractorMetrics.class));
     assertEquals(runtimeModule.getHttpClientMaxRetries(), asyncHttpClientWithRetry.getMaxRetries());
     assertEquals(
         runtimeModule.getHttpClientRetryDelayMs(), asyncHttpClientWithRetry.getRetryDelayMillis());
@@ -89,6 +201,7 @@ class TestRuntimeModule {
 
   enum FileSystem {
     S3,
-    GCS
+    GCS,
+    LOCAL
   }
 }
@@ -0,0 +1,160 @@
+package ai.onehouse.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+import ai.onehouse.constants.MetricsConstants;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import com.google.common.base.Ticker;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveConcurrencyLimiterTest {
+  private static final MetricsConstants.ConcurrencyLimiterType LIMITER_TYPE =
+      MetricsConstants.ConcurrencyLimiterType.PRESIGNED_URL_UPLOAD;
+
+  @Mock private LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
+  private FakeTicker ticker;
+
+  @BeforeEach
+  void setup() {
+    ticker = new FakeTicker();
+  }
+
+  @Test
+  void testLimitGrowsWhileLatencyIsStable() {
+    AdaptiveConcurrencyLimiter concurrencyLimiter = createLimiter(1, 1, 4);
+
+    acquireAndRelease(concurrencyLimiter, 1, 100, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    assertEquals(2, concurrencyLimiter.getLimit());
+    // each round at the limit adds 1 / limit, 2.5, 2.9 and then 3.24
+    for (int i = 0; i < 3; i++) {
+      acquireAndRelease(concurrencyLimiter, 2, 100, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    }
+    assertEquals(3, concurrencyLimiter.getLimit());
+    verify(hudiMetadataExtractorMetrics, atLeastOnce()).setConcurrencyLimit(LIMITER_TYPE, 3);
+  }
+
+  @Test
+  void testLimitDoesNotGrowWhenLatencyRises() {
+    AdaptiveConcurrencyLimiter concurrencyLimiter = createLimiter(1, 1, 4);
+
+    acquireAndRelease(concurrencyLimiter, 1, 100, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    assertEquals(2, concurrencyLimiter.getLimit());
+    acquireAndRelease(concurrencyLimiter, 2, 1000, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    acquireAndRelease(concurrencyLimiter, 2, 1000, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    assertEquals(2, concurrencyLimiter.getLimit());
+  }
+
+  @Test
+  void testLimitDoesNotGrowBelowTheLimit() {
+    AdaptiveConcurrencyLimiter concurrencyLimiter = createLimiter(4, 1, 8);
+
+    for (int i = 0; i < 10; i++) {
+      acquireAndRelease(concurrencyLimiter, 1, 100, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    }
+    assertEquals(4, concurrencyLimiter.getLimit());
+  }
+
+  @Test
+  void testLimitIsBoundedByMaxLimit() {
+    AdaptiveConcurrencyLimiter concurrencyLimiter = createLimiter(2, 1, 2);
+
+    for (int i = 0; i < 10; i++) {
+      acquireAndRelease(concurrencyLimiter, 2, 100, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    }
+    assertEquals(2, concurrencyLimiter.getLimit());
+  }
+
+  @Test
+  void testLimitBacksOffOncePerDroppedBatch() {
+    AdaptiveConcurrencyLimiter concurrencyLimiter = createLimiter(8, 1, 16);
+
+    // requests sent together are throttled together, which backs off only once
+    acquireAndRelease(concurrencyLimiter, 8, 100, AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+    assertEquals(4, concurrencyLimiter.getLimit());
+    acquireAndRelease(concurrencyLimiter, 4, 100, AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+    assertEquals(2, concurrencyLimiter.getLimit());
+    acquireAndRelease(concurrencyLimiter, 2, 100, AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+    acquireAndRelease(concurrencyLimiter, 1, 100, AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+    assertEquals(1, concurrencyLimiter.getLimit());
+  }
+
+  @Test
+  void testIgnoredOutcomeLeavesLimitUnchanged() {
+    AdaptiveConcurrencyLimiter concurrencyLimiter = createLimiter(2, 1, 4);
+
+    acquireAndRelease(concurrencyLimiter, 2, 100, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+    assertEquals(2, concurrencyLimiter.getLimit());
+    assertEquals(0, concurrencyLimiter.getNumInFlight());
+  }
+
+  @Test
+  void testRequestsBeyondLimitWaitForPermit() {
+    AdaptiveConcurrencyLimiter concurrencyLimiter = createLimiter(1, 1, 1);
+
+    AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire().join();
+    CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waitingPermit =
+        concurrencyLimiter.acquire();
+    assertFalse(waitingPermit.isDone());
+    verify(hudiMetadataExtractorMetrics).setConcurrencyLimiterQueueSize(LIMITER_TYPE, 1);
+
+    permit.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    assertTrue(waitingPermit.isDone());
+    assertEquals(1, concurrencyLimiter.getNumInFlight());
+    verify(hudiMetadataExtractorMetrics).setConcurrencyLimiterQueueSize(LIMITER_TYPE, 0);
+
+    // releasing a permit again has no effect
+    permit.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    assertEquals(1, concurrencyLimiter.getNumInFlight());
+    waitingPermit.join().release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    assertEquals(0, concurrencyLimiter.getNumInFlight());
+  }
+
+  private AdaptiveConcurrencyLimiter createLimiter(
+      int initialLimit, int minLimit, int maxLimit) {
+    return new AdaptiveConcurrencyLimiter(
+        LIMITER_TYPE, initialLimit, minLimit, maxLimit, hudiMetadataExtractorMetrics, ticker);
+  }
+
+  private void acquireAndRelease(
+      AdaptiveConcurrencyLimiter concurrencyLimiter,
+      int numRequests,
+      long latencyNanos,
+      AdaptiveConcurrencyLimiter.Outcome outcome) {
+    List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+    for (int i = 0; i < numRequests; i++) {
+      CompletableFuture<AdaptiveConcurrencyLimiter.Permit> permitFuture =
+          concurrencyLimiter.acquire();
+      assertTrue(permitFuture.isDone());
+      permits.add(permitFuture.join());
+    }
+    ticker.advance(latencyNanos);
+    for (AdaptiveConcurrencyLimiter.Permit permit : permits) {
+      permit.release(outcome);
+    }
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long durationNanos) {
+      nanos += durationNanos;
+    }
+  }
+}
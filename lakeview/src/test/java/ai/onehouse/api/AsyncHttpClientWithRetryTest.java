@@ -1,11 +1,25 @@
 package ai.onehouse.api;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 
+import ai.onehouse.constants.MetricsConstants;
+import ai.onehouse.exceptions.CircuitBreakerOpenException;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.mockwebserver.MockResponse;
@@ -19,6 +33,7 @@ class AsyncHttpClientWithRetryTest {
   private MockWebServer mockWebServer;
   private AsyncHttpClientWithRetry asyncHttpClientWithRetry;
   private OkHttpClient okHttpClient;
+  private LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
 
   @BeforeEach
   void setUp() throws IOException {
@@ -26,7 +41,9 @@ class AsyncHttpClientWithRetryTest {
     mockWebServer.start();
 
     okHttpClient = new OkHttpClient.Builder().build();
-    asyncHttpClientWithRetry = new AsyncHttpClientWithRetry(3, 100, okHttpClient);
+    hudiMetadataExtractorMetrics = mock(LakeViewExtractorMetrics.class);
+    asyncHttpClientWithRetry =
+        new AsyncHttpClientWithRetry(3, 100, okHttpClient, hudiMetadataExtractorMetrics);
   }
 
   @AfterEach
@@ -83,4 +100,220 @@ class AsyncHttpClientWithRetryTest {
 
     assertEquals(0, mockWebServer.getRequestCount());
   }
+
+  @Test
+  void testResponsesCompleteOnCompletionExecutor() throws Exception {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+    ExecutorService completionExecutor =
+        Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "completion"));
+    AsyncHttpClientWithRetry client =
+        new AsyncHttpClientWithRetry(
+            1, 100, okHttpClient, completionExecutor, hudiMetadataExtractorMetrics);
+    Request request = new Request.Builder().url(mockWebServer.url("/")).get().build();
+
+    try {
+      String completingThreadName =
+          client
+              .makeRequestWithRetry(request)
+              .thenApply(
+                  response -> {
+                    response.close();
+                    return Thread.currentThread().getName();
+                  })
+              .get();
+
+      assertEquals("completion", completingThreadName);
+    } finally {
+      client.shutdownScheduler();
+      completionExecutor.shutdown();
+    }
+  }
+
+  @Test
+  void testThrottledResponsesReduceConcurrencyLimit()
+      throws InterruptedException, ExecutionException {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+    AdaptiveConcurrencyLimiter concurrencyLimiter =
+        new AdaptiveConcurrencyLimiter(
+            MetricsConstants.ConcurrencyLimiterType.ONEHOUSE_API,
+            8,
+            1,
+            32,
+            mock(LakeViewExtractorMetrics.class));
+
+    Request request = new Request.Builder().url(mockWebServer.url("/")).get().build();
+
+    Response response =
+        asyncHttpClientWithRetry.makeRequestWithRetry(request, concurrencyLimiter).get();
+
+    assertTrue(response.isSuccessful());
+    assertEquals(2, mockWebServer.getRequestCount());
+    assertEquals(4, concurrencyLimiter.getLimit());
+    assertEquals(0, concurrencyLimiter.getNumInFlight());
+  }
+
+  @Test
+  void testRetryWaitsForRetryAfter() throws InterruptedException, ExecutionException {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "1"));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+    Request request = new Request.Builder().url(mockWebServer.url("/")).get().build();
+
+    long startNanos = System.nanoTime();
+    Response response = asyncHttpClientWithRetry.makeRequestWithRetry(request).get();
+
+    assertTrue(response.isSuccessful());
+    assertEquals(2, mockWebServer.getRequestCount());
+    // the backoff of the first retry is at most 300ms
+    assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(1000));
+    verify(hudiMetadataExtractorMetrics).incrementHttpRetryCounter("localhost");
+  }
+
+  @Test
+  void testRetriesStopOnceRetryBudgetIsExhausted()
+      throws InterruptedException, ExecutionException {
+    asyncHttpClientWithRetry.shutdownScheduler();
+    okHttpClient = new OkHttpClient.Builder().build();
+    asyncHttpClientWithRetry =
+        new AsyncHttpClientWithRetry(
+            3,
+            100,
+            okHttpClient,
+            MoreExecutors.directExecutor(),
+            hudiMetadataExtractorMetrics,
+            new RetryBudget(1, 0),
+            new RetryBudget(0, 0),
+            10,
+            Ticker.systemTicker());
+    mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+    Request request = new Request.Builder().url(mockWebServer.url("/")).get().build();
+
+    Response response = asyncHttpClientWithRetry.makeRequestWithRetry(request).get();
+
+    assertEquals(500, response.code());
+    assertEquals(2, mockWebServer.getRequestCount());
+    verify(hudiMetadataExtractorMetrics).incrementHttpRetryBudgetExhaustedCounter("localhost");
+  }
+
+  @Test
+  void testOpenCircuitBreakerFailsRequestsFast() throws InterruptedException, ExecutionException {
+    FakeTicker ticker = new FakeTicker();
+    asyncHttpClientWithRetry.shutdownScheduler();
+    okHttpClient = new OkHttpClient.Builder().build();
+    asyncHttpClientWithRetry =
+        new AsyncHttpClientWithRetry(
+            1,
+            100,
+            okHttpClient,
+            MoreExecutors.directExecutor(),
+            hudiMetadataExtractorMetrics,
+            new RetryBudget(1, 0),
+            new RetryBudget(0, 0),
+            2,
+            ticker);
+    mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+    Request request = new Request.Builder().url(mockWebServer.url("/")).get().build();
+
+    assertEquals(500, asyncHttpClientWithRetry.makeRequestWithRetry(request).get().code());
+    assertEquals(500, asyncHttpClientWithRetry.makeRequestWithRetry(request).get().code());
+    ExecutionException exception =
+        assertThrows(
+            ExecutionException.class,
+            () -> asyncHttpClientWithRetry.makeRequestWithRetry(request).get());
+    assertInstanceOf(CircuitBreakerOpenException.class, exception.getCause());
+    assertEquals(2, mockWebServer.getRequestCount());
+    verify(hudiMetadataExtractorMetrics).incrementCircuitBreakerRejectedCounter("localhost");
+
+    ticker.advance(TimeUnit.SECONDS.toNanos(30));
+    assertTrue(asyncHttpClientWithRetry.makeRequestWithRetry(request).get().isSuccessful());
+    assertEquals(3, mockWebServer.getRequestCount());
+  }
+
+  @Test
+  void testSlowRequestIsHedged() throws InterruptedException, ExecutionException {
+    Request request = new Request.Builder().url(mockWebServer.url("/")).get().build();
+    // the hedging delay is taken from the latency of earlier requests
+    for (int i = 0; i < 20; i++) {
+      mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+      asyncHttpClientWithRetry.makeHedgedRequestWithRetry(request, null).get().close();
+    }
+    verify(hudiMetadataExtractorMetrics, never()).incrementHttpHedgeCounter("localhost");
+    mockWebServer.enqueue(
+        new MockResponse().setResponseCode(200).setHeadersDelay(2, TimeUnit.SECONDS));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+    long startNanos = System.nanoTime();
+    Response response = asyncHttpClientWithRetry.makeHedgedRequestWithRetry(request, null).get();
+
+    assertTrue(response.isSuccessful());
+    assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+    assertEquals(22, mockWebServer.getRequestCount());
+    verify(hudiMetadataExtractorMetrics).incrementHttpHedgeCounter("localhost");
+    // counted right after the response is handed over
+    verify(hudiMetadataExtractorMetrics, timeout(1000)).incrementHttpHedgeWinCounter("localhost");
+    response.close();
+    // the slow response is closed once it arrives
+    while (okHttpClient.dispatcher().runningCallsCount() > 0) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  void testGetEndpoint() {
+    assertEquals(
+        "checkpoint",
+        AsyncHttpClientWithRetry.getEndpoint(
+            HttpUrl.parse("https://api.onehouse.ai/v1/community/table-id/checkpoint")));
+    assertEquals(
+        "bucket.s3.amazonaws.com",
+        AsyncHttpClientWithRetry.getEndpoint(
+            HttpUrl.parse("https://bucket.s3.amazonaws.com/path/file?X-Amz-Signature=abc")));
+  }
+
+  @Test
+  void testGetRetryAfterMillis() {
+    Request request = new Request.Builder().url(mockWebServer.url("/")).get().build();
+    assertEquals(
+        2000,
+        AsyncHttpClientWithRetry.getRetryAfterMillis(
+            retryAfterResponse(request).header("Retry-After", "2").build()));
+    assertEquals(
+        0,
+        AsyncHttpClientWithRetry.getRetryAfterMillis(
+            retryAfterResponse(request)
+                .header("Retry-After", "Wed, 21 Oct 2015 07:28:00 GMT")
+                .build()));
+    assertEquals(
+        0,
+        AsyncHttpClientWithRetry.getRetryAfterMillis(
+            retryAfterResponse(request).header("Retry-After", "soon").build()));
+  }
+
+  private static Response.Builder retryAfterResponse(Request request) {
+    return new Response.Builder()
+        .request(request)
+        .protocol(Protocol.HTTP_1_1)
+        .code(503)
+        .message("Service Unavailable");
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long durationNanos) {
+      nanos += durationNanos;
+    }
+  }
 }
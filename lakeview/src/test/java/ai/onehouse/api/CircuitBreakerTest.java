@@ -0,0 +1,99 @@
+package ai.onehouse.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import ai.onehouse.constants.MetricsConstants;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CircuitBreakerTest {
+  private static final String ENDPOINT = "checkpoint";
+  private static final long OPEN_DURATION_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  @Mock private LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
+  private FakeTicker ticker;
+  private CircuitBreaker circuitBreaker;
+
+  @BeforeEach
+  void setup() {
+    ticker = new FakeTicker();
+    circuitBreaker =
+        new CircuitBreaker(ENDPOINT, 2, OPEN_DURATION_NANOS, hudiMetadataExtractorMetrics, ticker);
+  }
+
+  @Test
+  void testBreakerOpensAfterConsecutiveFailures() {
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onFailure();
+    // a success in between resets the count
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onSuccess();
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onFailure();
+    assertEquals(MetricsConstants.CircuitBreakerState.CLOSED, circuitBreaker.getState());
+
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onFailure();
+    assertEquals(MetricsConstants.CircuitBreakerState.OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.tryAcquire());
+    verify(hudiMetadataExtractorMetrics)
+        .setCircuitBreakerState(ENDPOINT, MetricsConstants.CircuitBreakerState.OPEN);
+  }
+
+  @Test
+  void testSingleTrialRequestOnceOpenDurationPassed() {
+    openBreaker();
+
+    ticker.advance(OPEN_DURATION_NANOS);
+    assertTrue(circuitBreaker.tryAcquire());
+    assertEquals(MetricsConstants.CircuitBreakerState.HALF_OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.tryAcquire());
+
+    circuitBreaker.onSuccess();
+    assertEquals(MetricsConstants.CircuitBreakerState.CLOSED, circuitBreaker.getState());
+    assertTrue(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  void testFailedTrialRequestOpensBreakerAgain() {
+    openBreaker();
+
+    ticker.advance(OPEN_DURATION_NANOS);
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onFailure();
+    assertEquals(MetricsConstants.CircuitBreakerState.OPEN, circuitBreaker.getState());
+    ticker.advance(OPEN_DURATION_NANOS - 1);
+    assertFalse(circuitBreaker.tryAcquire());
+  }
+
+  private void openBreaker() {
+    for (int i = 0; i < 2; i++) {
+      assertTrue(circuitBreaker.tryAcquire());
+      circuitBreaker.onFailure();
+    }
+    assertFalse(circuitBreaker.tryAcquire());
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long durationNanos) {
+      nanos += durationNanos;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package ai.onehouse.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.OptionalLong;
+import org.junit.jupiter.api.Test;
+
+class LatencyTrackerTest {
+
+  @Test
+  void testPercentileOfRecordedLatencies() {
+    LatencyTracker latencyTracker = new LatencyTracker(10, 4);
+    for (long latency = 1; latency <= 3; latency++) {
+      latencyTracker.record(latency);
+    }
+    assertFalse(latencyTracker.getPercentile(0.9).isPresent());
+
+    for (long latency = 4; latency <= 10; latency++) {
+      latencyTracker.record(latency);
+    }
+    assertEquals(OptionalLong.of(9), latencyTracker.getPercentile(0.9));
+    assertEquals(OptionalLong.of(5), latencyTracker.getPercentile(0.5));
+  }
+
+  @Test
+  void testOldLatenciesLeaveTheWindow() {
+    LatencyTracker latencyTracker = new LatencyTracker(4, 4);
+    for (int i = 0; i < 4; i++) {
+      latencyTracker.record(1000);
+    }
+    for (long latency = 1; latency <= 4; latency++) {
+      latencyTracker.record(latency);
+    }
+    assertEquals(OptionalLong.of(4), latencyTracker.getPercentile(1.0));
+  }
+}
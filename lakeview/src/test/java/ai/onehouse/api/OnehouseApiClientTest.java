@@ -1,6 +1,10 @@
 package ai.onehouse.api;
 
+import static ai.onehouse.constants.ApiConstants.BATCH_GENERATE_COMMIT_METADATA_UPLOAD_URL;
+import static ai.onehouse.constants.ApiConstants.BULK_GET_TABLE_METRICS_CHECKPOINT;
+import static ai.onehouse.constants.ApiConstants.COMPLETE_MULTIPART_UPLOAD;
 import static ai.onehouse.constants.ApiConstants.GENERATE_COMMIT_METADATA_UPLOAD_URL;
+import static ai.onehouse.constants.ApiConstants.GENERATE_MULTIPART_UPLOAD_URLS;
 import static ai.onehouse.constants.ApiConstants.GET_TABLE_METRICS_CHECKPOINT;
 import static ai.onehouse.constants.ApiConstants.INITIALIZE_TABLE_METRICS_CHECKPOINT;
 import static ai.onehouse.constants.ApiConstants.LINK_UID_KEY;
@@ -16,22 +20,36 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import ai.onehouse.api.models.request.BatchGenerateCommitMetadataUploadUrlRequest;
+import ai.onehouse.api.models.request.BulkGetTableMetricsCheckpointsRequest;
 import ai.onehouse.api.models.request.CommitTimelineType;
+import ai.onehouse.api.models.request.CompleteMultipartUploadRequest;
 import ai.onehouse.api.models.request.GenerateCommitMetadataUploadUrlRequest;
+import ai.onehouse.api.models.request.GenerateMultipartUploadUrlsRequest;
 import ai.onehouse.api.models.request.InitializeTableMetricsCheckpointRequest;
 import ai.onehouse.api.models.request.TableType;
+import ai.onehouse.api.models.request.UploadedPart;
 import ai.onehouse.api.models.request.UpsertTableMetricsCheckpointRequest;
+import ai.onehouse.api.models.response.BatchGenerateCommitMetadataUploadUrlResponse;
+import ai.onehouse.api.models.response.CompleteMultipartUploadResponse;
 import ai.onehouse.api.models.response.GenerateCommitMetadataUploadUrlResponse;
+import ai.onehouse.api.models.response.GenerateMultipartUploadUrlsResponse;
 import ai.onehouse.api.models.response.GetTableMetricsCheckpointResponse;
 import ai.onehouse.api.models.response.InitializeTableMetricsCheckpointResponse;
 import ai.onehouse.api.models.response.UpsertTableMetricsCheckpointResponse;
+import ai.onehouse.config.Config;
 import ai.onehouse.config.models.common.OnehouseClientConfig;
 import ai.onehouse.config.models.configv1.ConfigV1;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
 import ai.onehouse.constants.MetricsConstants;
 import ai.onehouse.metrics.LakeViewExtractorMetrics;
 import java.text.MessageFormat;
@@ -45,8 +63,10 @@ import okhttp3.Headers;
 import okhttp3.MediaType;
 import okhttp3.Protocol;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Buffer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -55,6 +75,7 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -63,6 +84,7 @@ class OnehouseApiClientTest {
   @Mock private AsyncHttpClientWithRetry client;
   @Mock private ConfigV1 config;
   @Mock private OnehouseClientConfig onehouseClientConfig;
+  @Mock private MetadataExtractorConfig metadataExtractorConfig;
   @Mock private LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
   private OnehouseApiClient onehouseApiClient;
 
@@ -71,7 +93,6 @@ class OnehouseApiClientTest {
   private static final int FAILURE_STATUS_CODE_SYSTEM = 500;
   private static final String SAMPLE_HOST = "http://example.com";
   private static final String FAILURE_ERROR = "call failed";
-  private static final ObjectMapper MAPPER = new ObjectMapper();
   public static final String PROJECT_ID = "projectId";
   public static final String REQUEST_ID = "requestId";
   public static final String REGION = "region";
@@ -82,6 +103,7 @@ class OnehouseApiClientTest {
   @BeforeEach
   void setup() {
     when(config.getOnehouseClientConfig()).thenReturn(onehouseClientConfig);
+    when(config.getMetadataExtractorConfig()).thenReturn(metadataExtractorConfig);
     when(onehouseClientConfig.getProjectId()).thenReturn(PROJECT_ID);
     when(onehouseClientConfig.getApiKey()).thenReturn(API_KEY);
     when(onehouseClientConfig.getApiSecret()).thenReturn(API_SECRET);
@@ -89,6 +111,22 @@ class OnehouseApiClientTest {
     onehouseApiClient = new OnehouseApiClient(client, config, hudiMetadataExtractorMetrics);
   }
 
+  @Test
+  void testInjectedClientIsShared() {
+    Injector injector =
+        Guice.createInjector(
+            binder -> {
+              binder.bind(AsyncHttpClientWithRetry.class).toInstance(client);
+              binder.bind(Config.class).toInstance(config);
+              binder
+                  .bind(LakeViewExtractorMetrics.class)
+                  .toInstance(hudiMetadataExtractorMetrics);
+            });
+    assertSame(
+        injector.getInstance(OnehouseApiClient.class),
+        injector.getInstance(OnehouseApiClient.class));
+  }
+
   @Test
   void testLinkIdRegionHeaders() {
     Headers headers = onehouseApiClient.getHeaders(onehouseClientConfig);
@@ -125,15 +163,40 @@ class OnehouseApiClientTest {
   }
 
   @Test
+  @SneakyThrows
   void testAsyncPost() {
     String apiEndpoint = "/testEndpoint";
-    String requestJson = "{\"key\":\"value\"}";
     stubOkHttpCall(apiEndpoint, false);
     CompletableFuture<GetTableMetricsCheckpointResponse> futureResult =
         onehouseApiClient.asyncPost(
-            apiEndpoint, requestJson, GetTableMetricsCheckpointResponse.class);
+            apiEndpoint,
+            Collections.singletonMap("key", "value"),
+            GetTableMetricsCheckpointResponse.class);
     GetTableMetricsCheckpointResponse result = futureResult.join();
     assertEquals("checkpoint", result.getCheckpoints().get(0).getCheckpoint());
+
+    ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+    verify(client).makeRequestWithRetry(requestCaptor.capture(), any());
+    RequestBody requestBody = requestCaptor.getValue().body();
+    assertEquals(MediaType.parse("application/json; charset=utf-8"), requestBody.contentType());
+    assertEquals("{\"key\":\"value\"}".length(), requestBody.contentLength());
+    // every attempt sends the same bytes
+    for (int attempt = 0; attempt < 2; attempt++) {
+      Buffer buffer = new Buffer();
+      requestBody.writeTo(buffer);
+      assertEquals("{\"key\":\"value\"}", buffer.readUtf8());
+    }
+  }
+
+  @Test
+  void testAsyncPostFailsBeforeSendingWhenBodyCannotBeSerialised() {
+    // jackson fails on beans without properties
+    assertThrows(
+        JsonProcessingException.class,
+        () ->
+            onehouseApiClient.asyncPost(
+                "/testEndpoint", new Object(), GetTableMetricsCheckpointResponse.class));
+    verify(client, never()).makeRequestWithRetry(any(), any());
   }
 
   @ParameterizedTest
@@ -145,11 +208,12 @@ class OnehouseApiClientTest {
       })
   void testAsyncPostFailure(int failureStatusCode) {
     String apiEndpoint = "/testEndpoint";
-    String requestJson = "{\"key\":\"value\"}";
     stubOkHttpCall(apiEndpoint, true, failureStatusCode);
     CompletableFuture<GetTableMetricsCheckpointResponse> futureResult =
         onehouseApiClient.asyncPost(
-            apiEndpoint, requestJson, GetTableMetricsCheckpointResponse.class);
+            apiEndpoint,
+            Collections.singletonMap("key", "value"),
+            GetTableMetricsCheckpointResponse.class);
     GetTableMetricsCheckpointResponse result = futureResult.join();
     assertTrue(result.isFailure());
     verify(hudiMetadataExtractorMetrics)
@@ -174,6 +238,69 @@ class OnehouseApiClientTest {
     assertEquals("checkpoint", result.getCheckpoints().get(0).getCheckpoint());
   }
 
+  @Test
+  void testIdempotentRequestsAreHedgedWhenEnabled() {
+    when(metadataExtractorConfig.isRequestHedgingEnabled()).thenReturn(true);
+    onehouseApiClient = new OnehouseApiClient(client, config, hudiMetadataExtractorMetrics);
+    String apiEndpoint = "/testEndpoint";
+    when(client.makeHedgedRequestWithRetry(
+            any(Request.class), any(AdaptiveConcurrencyLimiter.class)))
+        .thenAnswer(
+            invocation ->
+                CompletableFuture.completedFuture(
+                    new Response.Builder()
+                        .code(200)
+                        .message("OK")
+                        .request(invocation.getArgument(0))
+                        .protocol(Protocol.HTTP_1_1)
+                        .body(ResponseBody.create(MediaType.parse("application/json"), "{}"))
+                        .build()));
+
+    onehouseApiClient
+        .asyncGet(SAMPLE_HOST + apiEndpoint, GetTableMetricsCheckpointResponse.class)
+        .join();
+    onehouseApiClient
+        .asyncPost(
+            apiEndpoint,
+            Collections.singletonMap("key", "value"),
+            GetTableMetricsCheckpointResponse.class,
+            true)
+        .join();
+    verify(client, times(2)).makeHedgedRequestWithRetry(any(), any());
+    verify(client, never()).makeRequestWithRetry(any(), any());
+  }
+
+  @Test
+  void testMultipartUploadUrlRequestsAreNotHedged() {
+    when(metadataExtractorConfig.isRequestHedgingEnabled()).thenReturn(true);
+    onehouseApiClient = new OnehouseApiClient(client, config, hudiMetadataExtractorMetrics);
+    when(client.makeRequestWithRetry(any(Request.class), any(AdaptiveConcurrencyLimiter.class)))
+        .thenAnswer(
+            invocation ->
+                CompletableFuture.completedFuture(
+                    new Response.Builder()
+                        .code(200)
+                        .message("OK")
+                        .request(invocation.getArgument(0))
+                        .protocol(Protocol.HTTP_1_1)
+                        .body(
+                            ResponseBody.create(
+                                MediaType.parse("application/json"), "{\"uploadId\":\"id\"}"))
+                        .build()));
+
+    // a losing hedge would leave a multipart upload behind
+    onehouseApiClient
+        .generateMultipartUploadUrls(
+            GenerateMultipartUploadUrlsRequest.builder()
+                .tableId(UUID.randomUUID().toString())
+                .commitTimelineType(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+                .commitInstant("archived/.commits_.archive.1_1-0-1")
+                .numParts(2)
+                .build())
+        .join();
+    verify(client, never()).makeHedgedRequestWithRetry(any(), any());
+  }
+
   @ParameterizedTest
   @ValueSource(
       ints = {
@@ -234,7 +361,7 @@ class OnehouseApiClientTest {
         .when(onehouseApiClientSpy)
         .asyncPost(
             (MessageFormat.format(INITIALIZE_TABLE_METRICS_CHECKPOINT, tableId)),
-            (MAPPER.writeValueAsString(request)),
+            (request),
             (InitializeTableMetricsCheckpointResponse.class));
     InitializeTableMetricsCheckpointResponse response =
         onehouseApiClientSpy.initializeTableMetricsCheckpoint(request).get();
@@ -272,6 +399,35 @@ class OnehouseApiClientTest {
     assertNotNull(response);
   }
 
+  @Test
+  @SneakyThrows
+  void verifyBulkGetTableMetricsCheckpoints() {
+    UUID tableId1 = UUID.randomUUID();
+    UUID tableId2 = UUID.randomUUID();
+    OnehouseApiClient onehouseApiClientSpy = spy(onehouseApiClient);
+    BulkGetTableMetricsCheckpointsRequest request =
+        BulkGetTableMetricsCheckpointsRequest.builder()
+            .tableIds(Arrays.asList(tableId1.toString(), tableId2.toString()))
+            .build();
+    doReturn(
+            CompletableFuture.completedFuture(
+                GetTableMetricsCheckpointResponse.builder()
+                    .checkpoints(
+                        Arrays.asList(
+                            buildTableMetadataCheckpoint(tableId1.toString(), "checkpoint1"),
+                            buildTableMetadataCheckpoint(tableId2.toString(), "checkpoint2")))
+                    .build()))
+        .when(onehouseApiClientSpy)
+        .asyncPost(
+            BULK_GET_TABLE_METRICS_CHECKPOINT,
+            request,
+            GetTableMetricsCheckpointResponse.class,
+            true);
+    GetTableMetricsCheckpointResponse response =
+        onehouseApiClientSpy.bulkGetTableMetricsCheckpoints(request).get();
+    assertEquals(2, response.getCheckpoints().size());
+  }
+
   @ParameterizedTest
   @EnumSource(CommitTimelineType.class)
   @SneakyThrows
@@ -292,7 +448,7 @@ class OnehouseApiClientTest {
         .when(onehouseApiClientSpy)
         .asyncPost(
             (MessageFormat.format(UPSERT_TABLE_METRICS_CHECKPOINT, tableId)),
-            (MAPPER.writeValueAsString(request)),
+            (request),
             (UpsertTableMetricsCheckpointResponse.class));
     UpsertTableMetricsCheckpointResponse response =
         onehouseApiClientSpy.upsertTableMetricsCheckpoint(request).get();
@@ -319,13 +475,99 @@ class OnehouseApiClientTest {
         .when(onehouseApiClientSpy)
         .asyncPost(
             (MessageFormat.format(GENERATE_COMMIT_METADATA_UPLOAD_URL, tableId)),
-            (MAPPER.writeValueAsString(request)),
-            (GenerateCommitMetadataUploadUrlResponse.class));
+            (request),
+            (GenerateCommitMetadataUploadUrlResponse.class),
+            true);
     GenerateCommitMetadataUploadUrlResponse response =
         onehouseApiClientSpy.generateCommitMetadataUploadUrl(request).get();
     assertNotNull(response);
   }
 
+  @Test
+  @SneakyThrows
+  void verifyBatchGenerateCommitMetadataUploadUrl() {
+    OnehouseApiClient onehouseApiClientSpy = spy(onehouseApiClient);
+    BatchGenerateCommitMetadataUploadUrlRequest request =
+        BatchGenerateCommitMetadataUploadUrlRequest.builder()
+            .requests(
+                Collections.singletonList(
+                    GenerateCommitMetadataUploadUrlRequest.builder()
+                        .tableId(UUID.randomUUID().toString())
+                        .commitTimelineType(CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE)
+                        .commitInstants(Collections.emptyList())
+                        .build()))
+            .build();
+    doReturn(
+            CompletableFuture.completedFuture(
+                BatchGenerateCommitMetadataUploadUrlResponse.builder()
+                    .responses(Collections.emptyList())
+                    .build()))
+        .when(onehouseApiClientSpy)
+        .asyncPost(
+            BATCH_GENERATE_COMMIT_METADATA_UPLOAD_URL,
+            request,
+            BatchGenerateCommitMetadataUploadUrlResponse.class,
+            true);
+    BatchGenerateCommitMetadataUploadUrlResponse response =
+        onehouseApiClientSpy.batchGenerateCommitMetadataUploadUrl(request).get();
+    assertNotNull(response);
+  }
+
+  @Test
+  @SneakyThrows
+  void verifyGenerateMultipartUploadUrls() {
+    UUID tableId = UUID.randomUUID();
+    OnehouseApiClient onehouseApiClientSpy = spy(onehouseApiClient);
+    GenerateMultipartUploadUrlsRequest request =
+        GenerateMultipartUploadUrlsRequest.builder()
+            .tableId(tableId.toString())
+            .commitTimelineType(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+            .commitInstant("archived/.commits_.archive.1_1-0-1")
+            .numParts(2)
+            .build();
+    doReturn(
+            CompletableFuture.completedFuture(
+                GenerateMultipartUploadUrlsResponse.builder()
+                    .uploadId("upload-id")
+                    .partUploadUrls(Arrays.asList("part-1", "part-2"))
+                    .build()))
+        .when(onehouseApiClientSpy)
+        .asyncPost(
+            (MessageFormat.format(GENERATE_MULTIPART_UPLOAD_URLS, tableId)),
+            (request),
+            (GenerateMultipartUploadUrlsResponse.class));
+    GenerateMultipartUploadUrlsResponse response =
+        onehouseApiClientSpy.generateMultipartUploadUrls(request).get();
+    assertEquals("upload-id", response.getUploadId());
+  }
+
+  @Test
+  @SneakyThrows
+  void verifyCompleteMultipartUpload() {
+    UUID tableId = UUID.randomUUID();
+    OnehouseApiClient onehouseApiClientSpy = spy(onehouseApiClient);
+    CompleteMultipartUploadRequest request =
+        CompleteMultipartUploadRequest.builder()
+            .tableId(tableId.toString())
+            .commitTimelineType(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+            .commitInstant("archived/.commits_.archive.1_1-0-1")
+            .uploadId("upload-id")
+            .parts(
+                Collections.singletonList(
+                    UploadedPart.builder().partNumber(1).etag("etag-1").build()))
+            .build();
+    doReturn(
+            CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()))
+        .when(onehouseApiClientSpy)
+        .asyncPost(
+            (MessageFormat.format(COMPLETE_MULTIPART_UPLOAD, tableId)),
+            (request),
+            (CompleteMultipartUploadResponse.class));
+    CompleteMultipartUploadResponse response =
+        onehouseApiClientSpy.completeMultipartUpload(request).get();
+    assertNotNull(response);
+  }
+
   private void stubOkHttpCall(String apiEndpoint, boolean isFailure) {
     stubOkHttpCall(apiEndpoint, isFailure, FAILURE_STATUS_CODE_SYSTEM);
   }
@@ -356,7 +598,7 @@ class OnehouseApiClientTest {
               .build();
     }
 
-    when(client.makeRequestWithRetry(any(Request.class)))
+    when(client.makeRequestWithRetry(any(Request.class), any(AdaptiveConcurrencyLimiter.class)))
         .thenReturn(CompletableFuture.completedFuture(response));
   }
 
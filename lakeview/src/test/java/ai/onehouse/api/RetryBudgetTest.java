@@ -0,0 +1,33 @@
+package ai.onehouse.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RetryBudgetTest {
+
+  @Test
+  void testRetriesAreLimitedOnceBudgetIsDrained() {
+    RetryBudget retryBudget = new RetryBudget(2, 0.5);
+    assertTrue(retryBudget.tryAcquireRetry());
+    assertTrue(retryBudget.tryAcquireRetry());
+    assertFalse(retryBudget.tryAcquireRetry());
+
+    // every other request earns a retry
+    retryBudget.onRequest();
+    assertFalse(retryBudget.tryAcquireRetry());
+    retryBudget.onRequest();
+    assertTrue(retryBudget.tryAcquireRetry());
+  }
+
+  @Test
+  void testTokensDoNotExceedCapacity() {
+    RetryBudget retryBudget = new RetryBudget(2, 0.5);
+    for (int i = 0; i < 10; i++) {
+      retryBudget.onRequest();
+    }
+    assertEquals(2.0, retryBudget.getTokens());
+  }
+}
@@ -0,0 +1,166 @@
+package ai.onehouse.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ai.onehouse.api.models.request.BatchGenerateCommitMetadataUploadUrlRequest;
+import ai.onehouse.api.models.request.CommitTimelineType;
+import ai.onehouse.api.models.request.GenerateCommitMetadataUploadUrlRequest;
+import ai.onehouse.api.models.response.BatchGenerateCommitMetadataUploadUrlResponse;
+import ai.onehouse.api.models.response.GenerateCommitMetadataUploadUrlResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UploadUrlRequestBatcherTest {
+  private static final long WINDOW_MILLIS = 50;
+
+  private OnehouseApiClient onehouseApiClient;
+  private LocalApi localApi;
+
+  @BeforeEach
+  void setup() {
+    onehouseApiClient = mock(OnehouseApiClient.class);
+    localApi = new LocalApi();
+    when(onehouseApiClient.generateCommitMetadataUploadUrlPerTable(any()))
+        .thenAnswer(invocation -> localApi.generateUploadUrls(invocation.getArgument(0)));
+    when(onehouseApiClient.batchGenerateCommitMetadataUploadUrl(any()))
+        .thenAnswer(invocation -> localApi.batchGenerateUploadUrls(invocation.getArgument(0)));
+  }
+
+  @Test
+  void testConcurrentRequestsAreSentTogether() {
+    UploadUrlRequestBatcher uploadUrlRequestBatcher =
+        new UploadUrlRequestBatcher(WINDOW_MILLIS, 10, onehouseApiClient);
+
+    List<CompletableFuture<GenerateCommitMetadataUploadUrlResponse>> futures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(uploadUrlRequestBatcher.generateCommitMetadataUploadUrl(request("table" + i)));
+    }
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(
+          Collections.singletonList("https://upload/table" + i + "/instant"),
+          futures.get(i).join().getUploadUrls());
+    }
+    assertEquals(1, localApi.numBatchRequests.get());
+    assertEquals(0, localApi.numRequests.get());
+  }
+
+  @Test
+  void testFullBatchIsSentWithoutWaiting() {
+    UploadUrlRequestBatcher uploadUrlRequestBatcher =
+        new UploadUrlRequestBatcher(Long.MAX_VALUE, 2, onehouseApiClient);
+
+    CompletableFuture<GenerateCommitMetadataUploadUrlResponse> future1 =
+        uploadUrlRequestBatcher.generateCommitMetadataUploadUrl(request("table1"));
+    CompletableFuture<GenerateCommitMetadataUploadUrlResponse> future2 =
+        uploadUrlRequestBatcher.generateCommitMetadataUploadUrl(request("table2"));
+
+    assertTrue(future1.isDone());
+    assertTrue(future2.isDone());
+    assertEquals(1, localApi.numBatchRequests.get());
+  }
+
+  @Test
+  void testFallsBackToRequestsPerTable() {
+    localApi.batchRequestsSupported = false;
+    UploadUrlRequestBatcher uploadUrlRequestBatcher =
+        new UploadUrlRequestBatcher(WINDOW_MILLIS, 10, onehouseApiClient);
+
+    CompletableFuture<GenerateCommitMetadataUploadUrlResponse> future1 =
+        uploadUrlRequestBatcher.generateCommitMetadataUploadUrl(request("table1"));
+    CompletableFuture<GenerateCommitMetadataUploadUrlResponse> future2 =
+        uploadUrlRequestBatcher.generateCommitMetadataUploadUrl(request("table2"));
+    assertEquals(
+        Collections.singletonList("https://upload/table1/instant"),
+        future1.join().getUploadUrls());
+    assertEquals(
+        Collections.singletonList("https://upload/table2/instant"),
+        future2.join().getUploadUrls());
+    assertEquals(2, localApi.numRequests.get());
+
+    // later requests are not held back anymore
+    assertTrue(
+        uploadUrlRequestBatcher.generateCommitMetadataUploadUrl(request("table3")).isDone());
+    assertEquals(1, localApi.numBatchRequests.get());
+    assertEquals(3, localApi.numRequests.get());
+  }
+
+  @Test
+  void testBatchFailureIsReportedToEveryTable() {
+    localApi.batchFailureStatusCode = 500;
+    UploadUrlRequestBatcher uploadUrlRequestBatcher =
+        new UploadUrlRequestBatcher(WINDOW_MILLIS, 2, onehouseApiClient);
+
+    CompletableFuture<GenerateCommitMetadataUploadUrlResponse> future1 =
+        uploadUrlRequestBatcher.generateCommitMetadataUploadUrl(request("table1"));
+    CompletableFuture<GenerateCommitMetadataUploadUrlResponse> future2 =
+        uploadUrlRequestBatcher.generateCommitMetadataUploadUrl(request("table2"));
+
+    assertTrue(future1.join().isFailure());
+    assertEquals(500, future2.join().getStatusCode());
+    assertEquals(0, localApi.numRequests.get());
+  }
+
+  private static GenerateCommitMetadataUploadUrlRequest request(String tableId) {
+    return GenerateCommitMetadataUploadUrlRequest.builder()
+        .tableId(tableId)
+        .commitTimelineType(CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE)
+        .commitInstants(Collections.singletonList("instant"))
+        .build();
+  }
+
+  // stands in for the api, returns an upload url per instant of the table
+  private static class LocalApi {
+    private final AtomicInteger numRequests = new AtomicInteger();
+    private final AtomicInteger numBatchRequests = new AtomicInteger();
+    private boolean batchRequestsSupported = true;
+    private int batchFailureStatusCode;
+
+    CompletableFuture<GenerateCommitMetadataUploadUrlResponse> generateUploadUrls(
+        GenerateCommitMetadataUploadUrlRequest request) {
+      numRequests.incrementAndGet();
+      return CompletableFuture.completedFuture(getResponse(request));
+    }
+
+    CompletableFuture<BatchGenerateCommitMetadataUploadUrlResponse> batchGenerateUploadUrls(
+        BatchGenerateCommitMetadataUploadUrlRequest request) {
+      numBatchRequests.incrementAndGet();
+      BatchGenerateCommitMetadataUploadUrlResponse response =
+          new BatchGenerateCommitMetadataUploadUrlResponse();
+      if (!batchRequestsSupported) {
+        response.setError(404, "Not Found");
+      } else if (batchFailureStatusCode != 0) {
+        response.setError(batchFailureStatusCode, "Internal Server Error");
+      } else {
+        response =
+            BatchGenerateCommitMetadataUploadUrlResponse.builder()
+                .responses(
+                    request.getRequests().stream()
+                        .map(LocalApi::getResponse)
+                        .collect(Collectors.toList()))
+                .build();
+      }
+      return CompletableFuture.completedFuture(response);
+    }
+
+    private static GenerateCommitMetadataUploadUrlResponse getResponse(
+        GenerateCommitMetadataUploadUrlRequest request) {
+      return GenerateCommitMetadataUploadUrlResponse.builder()
+          .uploadUrls(
+              request.getCommitInstants().stream()
+                  .map(instant -> "https://upload/" + request.getTableId() + "/" + instant)
+                  .collect(Collectors.toList()))
+          .build();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package ai.onehouse.metadata_extractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ai.onehouse.api.models.response.GetTableMetricsCheckpointResponse;
+import ai.onehouse.config.models.configv1.CheckpointCacheConfig;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CheckpointCacheTest {
+  private static final String TABLE_ID = "table-id";
+  private static final String TABLE_ID2 = "table-id2";
+  private static final Instant START_TIME = Instant.parse("2024-01-01T00:00:00Z");
+  private static final CheckpointCacheConfig CHECKPOINT_CACHE_CONFIG =
+      CheckpointCacheConfig.builder().reconcileIntervalMinutes(60).build();
+
+  @TempDir Path tempDir;
+  private Clock clock;
+
+  @BeforeEach
+  void setup() {
+    clock = mock(Clock.class);
+    when(clock.instant()).thenReturn(START_TIME);
+  }
+
+  @Test
+  void testCheckpointsAreReconciledOnceStale() {
+    CheckpointCache checkpointCache =
+        new CheckpointCache(Optional.of(CHECKPOINT_CACHE_CONFIG), clock);
+    checkpointCache.reconcile(
+        Arrays.asList(TABLE_ID, TABLE_ID2),
+        Collections.singletonList(tableCheckpoint(TABLE_ID, "fetched")));
+    // tables without checkpoint on the api are not cached
+    assertEquals(
+        Collections.singletonMap(TABLE_ID, "fetched"),
+        checkpointCache.getCheckpoints(Arrays.asList(TABLE_ID, TABLE_ID2)));
+
+    // updates do not postpone the next reconciliation
+    when(clock.instant()).thenReturn(START_TIME.plus(Duration.ofMinutes(30)));
+    checkpointCache.put(TABLE_ID, "written");
+    assertEquals(
+        Collections.singletonMap(TABLE_ID, "written"),
+        checkpointCache.getCheckpoints(Collections.singletonList(TABLE_ID)));
+
+    when(clock.instant()).thenReturn(START_TIME.plus(Duration.ofMinutes(60)));
+    assertTrue(checkpointCache.getCheckpoints(Collections.singletonList(TABLE_ID)).isEmpty());
+  }
+
+  @Test
+  void testInvalidatedTablesAreFetchedAgain() {
+    CheckpointCache checkpointCache =
+        new CheckpointCache(Optional.of(CHECKPOINT_CACHE_CONFIG), clock);
+    checkpointCache.put(TABLE_ID, "written");
+    checkpointCache.invalidate(TABLE_ID);
+    assertTrue(checkpointCache.getCheckpoints(Collections.singletonList(TABLE_ID)).isEmpty());
+  }
+
+  @Test
+  void testCacheIsDisabledWithoutConfig() {
+    CheckpointCache checkpointCache = new CheckpointCache(Optional.empty(), clock);
+    checkpointCache.put(TABLE_ID, "written");
+    assertTrue(checkpointCache.getCheckpoints(Collections.singletonList(TABLE_ID)).isEmpty());
+  }
+
+  @Test
+  void testCacheIsRestoredFromJournal() throws IOException {
+    Path journalPath = tempDir.resolve("checkpoints.journal");
+    CheckpointCacheConfig checkpointCacheConfig =
+        CHECKPOINT_CACHE_CONFIG.toBuilder().journalFilePath(journalPath.toString()).build();
+    CheckpointCache checkpointCache =
+        new CheckpointCache(Optional.of(checkpointCacheConfig), clock);
+    checkpointCache.put(TABLE_ID, "first");
+    checkpointCache.put(TABLE_ID, "second");
+    checkpointCache.put(TABLE_ID2, "written");
+    checkpointCache.invalidate(TABLE_ID2);
+    assertEquals(4, Files.readAllLines(journalPath).size());
+    // a record cut short by a crash is skipped
+    Files.write(
+        journalPath,
+        "{\"tableId\":".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+
+    CheckpointCache restoredCheckpointCache =
+        new CheckpointCache(Optional.of(checkpointCacheConfig), clock);
+    assertEquals(checkpointCache.getEntries(), restoredCheckpointCache.getEntries());
+    assertEquals(
+        Collections.singletonMap(TABLE_ID, "second"),
+        restoredCheckpointCache.getCheckpoints(Arrays.asList(TABLE_ID, TABLE_ID2)));
+    // superseded records are dropped from the journal when it is loaded
+    assertEquals(1, Files.readAllLines(journalPath).size());
+  }
+
+  private static GetTableMetricsCheckpointResponse.TableMetadataCheckpoint tableCheckpoint(
+      String tableId, String checkpoint) {
+    return GetTableMetricsCheckpointResponse.TableMetadataCheckpoint.builder()
+        .tableId(tableId)
+        .checkpoint(checkpoint)
+        .build();
+  }
+}
@@ -0,0 +1,178 @@
+package ai.onehouse.metadata_extractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.onehouse.api.OnehouseApiClient;
+import ai.onehouse.api.models.request.CommitTimelineType;
+import ai.onehouse.api.models.request.UploadedFile;
+import ai.onehouse.api.models.request.UpsertTableMetricsCheckpointRequest;
+import ai.onehouse.api.models.response.UpsertTableMetricsCheckpointResponse;
+import ai.onehouse.metadata_extractor.models.Checkpoint;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CoalescingCheckpointWriterTest {
+  private static final String TABLE_ID = "table-id";
+  private static final CommitTimelineType TIMELINE_TYPE =
+      CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE;
+
+  @Mock private OnehouseApiClient onehouseApiClient;
+  @Mock private CheckpointCache checkpointCache;
+  @Mock private LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
+  private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+  private FakeTicker ticker;
+
+  @BeforeEach
+  void setup() {
+    ticker = new FakeTicker();
+  }
+
+  @Test
+  @SneakyThrows
+  void testCheckpointsAreCoalescedUpToMaxBatches() {
+    CoalescingCheckpointWriter checkpointWriter = createWriter(2, Duration.ofMinutes(1));
+    stubUpsertResponse(UpsertTableMetricsCheckpointResponse.builder().build());
+
+    assertEquals(checkpoint(1), checkpointWriter.write(checkpoint(1), uploadedFiles("1")).join());
+    verify(onehouseApiClient, never()).upsertTableMetricsCheckpoint(any());
+
+    ticker.advance(Duration.ofMillis(20).toNanos());
+    assertEquals(checkpoint(2), checkpointWriter.write(checkpoint(2), uploadedFiles("2")).join());
+    ticker.advance(Duration.ofMillis(10).toNanos());
+    checkpointWriter.write(checkpoint(3), uploadedFiles("3")).join();
+    checkpointWriter.flush().join();
+
+    ArgumentCaptor<UpsertTableMetricsCheckpointRequest> requestCaptor =
+        ArgumentCaptor.forClass(UpsertTableMetricsCheckpointRequest.class);
+    verify(onehouseApiClient, times(2)).upsertTableMetricsCheckpoint(requestCaptor.capture());
+    UpsertTableMetricsCheckpointRequest coalescedRequest = requestCaptor.getAllValues().get(0);
+    assertEquals(mapper.writeValueAsString(checkpoint(2)), coalescedRequest.getCheckpoint());
+    assertEquals(Arrays.asList("1", "2"), coalescedRequest.getFilesUploaded());
+    assertEquals(uploadedFiles("1", "2"), coalescedRequest.getUploadedFiles());
+    assertEquals(TABLE_ID, coalescedRequest.getTableId());
+    assertEquals(TIMELINE_TYPE, coalescedRequest.getCommitTimelineType());
+    // the last batch is written when the writer is flushed
+    assertEquals(
+        mapper.writeValueAsString(checkpoint(3)),
+        requestCaptor.getAllValues().get(1).getCheckpoint());
+    verify(hudiMetadataExtractorMetrics).incrementCheckpointFlushCounters(2, 0);
+    verify(hudiMetadataExtractorMetrics).incrementCheckpointFlushCounters(1, 0);
+    verify(checkpointCache).put(TABLE_ID, mapper.writeValueAsString(checkpoint(2)));
+    verify(checkpointCache).put(TABLE_ID, mapper.writeValueAsString(checkpoint(3)));
+  }
+
+  @Test
+  void testPendingCheckpointIsWrittenAfterMaxDelay() {
+    CoalescingCheckpointWriter checkpointWriter = createWriter(10, Duration.ofSeconds(30));
+    stubUpsertResponse(UpsertTableMetricsCheckpointResponse.builder().build());
+
+    checkpointWriter.write(checkpoint(1), uploadedFiles("1")).join();
+    ticker.advance(Duration.ofSeconds(29).toNanos());
+    checkpointWriter.write(checkpoint(2), uploadedFiles("2")).join();
+    verify(onehouseApiClient, never()).upsertTableMetricsCheckpoint(any());
+
+    ticker.advance(Duration.ofSeconds(1).toNanos());
+    checkpointWriter.write(checkpoint(3), uploadedFiles("3")).join();
+    verify(onehouseApiClient).upsertTableMetricsCheckpoint(any());
+    verify(hudiMetadataExtractorMetrics).incrementCheckpointFlushCounters(eq(3L), anyLong());
+
+    // nothing is pending anymore
+    checkpointWriter.flush().join();
+    verify(onehouseApiClient).upsertTableMetricsCheckpoint(any());
+  }
+
+  @Test
+  void testFailedFlushDropsPendingCheckpoint() {
+    CoalescingCheckpointWriter checkpointWriter = createWriter(1, Duration.ZERO);
+    UpsertTableMetricsCheckpointResponse failureResponse =
+        UpsertTableMetricsCheckpointResponse.builder().build();
+    failureResponse.setError(500, "api error");
+    stubUpsertResponse(failureResponse);
+
+    CompletableFuture<Checkpoint> writeFuture =
+        checkpointWriter.write(checkpoint(1), uploadedFiles("1"));
+
+    CompletionException exception = assertThrows(CompletionException.class, writeFuture::join);
+    assertTrue(exception.getCause().getMessage().startsWith("failed to update checkpoint"));
+    checkpointWriter.flush().join();
+    verify(onehouseApiClient).upsertTableMetricsCheckpoint(any());
+    verify(hudiMetadataExtractorMetrics, never())
+        .incrementCheckpointFlushCounters(anyLong(), anyLong());
+    // the table is read from the api again as its checkpoint there is not known
+    verify(checkpointCache).invalidate(TABLE_ID);
+    verify(checkpointCache, never()).put(any(), any());
+  }
+
+  private CoalescingCheckpointWriter createWriter(int maxBatches, Duration maxDelay) {
+    return new CoalescingCheckpointWriter(
+        TABLE_ID,
+        TIMELINE_TYPE,
+        onehouseApiClient,
+        checkpointCache,
+        hudiMetadataExtractorMetrics,
+        maxBatches,
+        maxDelay,
+        ticker);
+  }
+
+  private void stubUpsertResponse(UpsertTableMetricsCheckpointResponse response) {
+    when(onehouseApiClient.upsertTableMetricsCheckpoint(any()))
+        .thenReturn(CompletableFuture.completedFuture(response));
+  }
+
+  private static Checkpoint checkpoint(int batchId) {
+    return Checkpoint.builder()
+        .batchId(batchId)
+        .checkpointTimestamp(Instant.EPOCH.plusSeconds(batchId))
+        .lastUploadedFile(String.valueOf(batchId))
+        .archivedCommitsProcessed(true)
+        .build();
+  }
+
+  private static List<UploadedFile> uploadedFiles(String... names) {
+    List<UploadedFile> uploadedFiles = new ArrayList<>();
+    for (String name : names) {
+      uploadedFiles.add(UploadedFile.builder().name(name).lastModifiedAt(0L).build());
+    }
+    return uploadedFiles;
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long durationNanos) {
+      nanos += durationNanos;
+    }
+  }
+}
@@ -20,6 +20,7 @@ import ai.onehouse.api.models.response.GenerateCommitMetadataUploadUrlResponse;
 import ai.onehouse.api.models.response.UpsertTableMetricsCheckpointResponse;
 import ai.onehouse.config.Config;
 import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig.UploadCompression;
 import ai.onehouse.metadata_extractor.models.Checkpoint;
 import ai.onehouse.metadata_extractor.models.Table;
 import ai.onehouse.metrics.LakeViewExtractorMetrics;
@@ -30,6 +31,7 @@ import ai.onehouse.storage.models.File;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -37,6 +39,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ForkJoinPool;
@@ -84,6 +87,7 @@ class ContinueOnIncompleteCommitStrategyTest {
         asyncStorageClient,
         presignedUrlFileUploader,
         onehouseApiClient,
+        new CheckpointCache(Optional.empty(), Clock.systemUTC()),
         new StorageUtils(),
         ForkJoinPool.commonPool(),
         activeTimelineInstantBatcher,
@@ -306,7 +310,7 @@ class ContinueOnIncompleteCommitStrategyTest {
       String fileUri =
           S3_TABLE_URI + ".hoodie/" + presignedUrl.substring(PRESIGNED_URL_PREFIX.length());
       when(presignedUrlFileUploader.uploadFileToPresignedUrl(
-              presignedUrl, fileUri, metadataExtractorConfig.getFileUploadStreamBatchSize()))
+              presignedUrl, fileUri, UploadCompression.NONE))
           .thenReturn(CompletableFuture.completedFuture(null));
     }
     when(onehouseApiClient.upsertTableMetricsCheckpoint(
@@ -353,8 +357,7 @@ class ContinueOnIncompleteCommitStrategyTest {
       String fileUri =
           S3_TABLE_URI + ".hoodie/" + presignedUrl.substring(PRESIGNED_URL_PREFIX.length());
       verify(presignedUrlFileUploader, times(1))
-          .uploadFileToPresignedUrl(
-              presignedUrl, fileUri, metadataExtractorConfig.getFileUploadStreamBatchSize());
+          .uploadFileToPresignedUrl(presignedUrl, fileUri, UploadCompression.NONE);
     }
     verify(onehouseApiClient, times(1))
         .upsertTableMetricsCheckpoint(
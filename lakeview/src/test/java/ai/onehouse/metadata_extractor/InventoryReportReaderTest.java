@@ -0,0 +1,131 @@
+package ai.onehouse.metadata_extractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ai.onehouse.config.models.common.LocalFileSystemConfig;
+import ai.onehouse.storage.LocalAsyncStorageClient;
+import ai.onehouse.storage.StorageUtils;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InventoryReportReaderTest {
+  @TempDir Path tempDir;
+  private InventoryReportReader inventoryReportReader;
+
+  @BeforeEach
+  void setup() {
+    StorageUtils storageUtils = new StorageUtils();
+    inventoryReportReader =
+        new InventoryReportReader(
+            new LocalAsyncStorageClient(
+                LocalFileSystemConfig.builder().build(), storageUtils, ForkJoinPool.commonPool()),
+            storageUtils,
+            ForkJoinPool.commonPool());
+  }
+
+  @Test
+  void testReadS3InventoryReport() throws IOException {
+    Path configFolder = tempDir.resolve("inventory/source-bucket/config");
+    // the older report refers to a report file which no longer exists
+    writeFile(
+        configFolder.resolve("2024-01-01T01-00Z/manifest.json"),
+        getS3Manifest("CSV", "inventory/source-bucket/config/data/old.csv.gz"));
+    writeFile(
+        configFolder.resolve("2024-01-02T01-00Z/manifest.json"),
+        getS3Manifest("CSV", "inventory/source-bucket/config/data/report.csv.gz"));
+    Path reportFile = configFolder.resolve("data/report.csv.gz");
+    Files.createDirectories(reportFile.getParent());
+    try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(reportFile))) {
+      outputStream.write(
+          String.join(
+                  "\n",
+                  "\"source-bucket\",\"lake/db/table1/.hoodie/hoodie.properties\",\"100\"",
+                  "\"source-bucket\",\"lake/db/table1/.hoodie/20240101000000.commit\",\"100\"",
+                  "\"source-bucket\",\"lake/db/table1/.hoodie/metadata/.hoodie/hoodie.properties\","
+                      + "\"100\"",
+                  "\"source-bucket\",\"lake/db/table1/nested/.hoodie/hoodie.properties\",\"100\"",
+                  "\"source-bucket\",\"lake/db/table%202/.hoodie/hoodie.properties\",\"100\"",
+                  "\"source-bucket\",\"lake/db/not_a_table/hoodie.properties\",\"100\"")
+              .getBytes(StandardCharsets.UTF_8));
+    }
+
+    assertEquals(
+        new HashSet<>(
+            Arrays.asList(
+                "s3://source-bucket/lake/db/table1/", "s3://source-bucket/lake/db/table 2/")),
+        inventoryReportReader
+            .readTableUris(Collections.singletonList("file://" + configFolder + "/"))
+            .join());
+  }
+
+  @Test
+  void testReadGcsInventoryReport() throws IOException {
+    Path reportFolder = tempDir.resolve("inventory");
+    writeFile(
+        reportFolder.resolve("config_2024-01-01T00:00:00Z_manifest.json"),
+        "{\"report_shards_file_names\": [\"missing.csv\"]}");
+    writeFile(
+        reportFolder.resolve("config_2024-01-02T00:00:00Z_manifest.json"),
+        "{\"report_config\": {\"csv_options\": {\"delimiter\": \";\"}},"
+            + " \"report_shards_file_names\": [\"config_2024-01-02T00:00:00Z_0.csv\","
+            + " \"config_2024-01-02T00:00:00Z_1.csv\"]}");
+    writeFile(
+        reportFolder.resolve("config_2024-01-02T00:00:00Z_0.csv"),
+        "name;bucket\n"
+            + "\"lake/table;1/.hoodie/hoodie.properties\";source-bucket\n"
+            + "lake/table1/data.parquet;source-bucket\n");
+    writeFile(
+        reportFolder.resolve("config_2024-01-02T00:00:00Z_1.csv"),
+        "name;bucket\n.hoodie/hoodie.properties;root-table-bucket\n");
+
+    assertEquals(
+        new HashSet<>(Arrays.asList("gs://source-bucket/lake/table;1/", "gs://root-table-bucket/")),
+        inventoryReportReader
+            .readTableUris(Collections.singletonList("file://" + reportFolder))
+            .join());
+  }
+
+  @Test
+  void testUnsupportedInventoryFormat() throws IOException {
+    Path manifest = tempDir.resolve("manifest.json");
+    writeFile(manifest, getS3Manifest("ORC", "data/report.orc"));
+
+    CompletionException exception =
+        assertThrows(
+            CompletionException.class,
+            () ->
+                inventoryReportReader
+                    .readTableUris(Collections.singletonList("file://" + manifest))
+                    .join());
+    assertTrue(exception.getCause() instanceof IllegalArgumentException);
+  }
+
+  private static String getS3Manifest(String fileFormat, String reportFileKey) {
+    return String.format(
+        "{\"sourceBucket\": \"source-bucket\","
+            + " \"destinationBucket\": \"arn:aws:s3:::inventory-bucket\","
+            + " \"fileFormat\": \"%s\","
+            + " \"fileSchema\": \"Bucket, Key, Size\","
+            + " \"files\": [{\"key\": \"%s\", \"size\": 100}]}",
+        fileFormat, reportFileKey);
+  }
+
+  private static void writeFile(Path path, String content) throws IOException {
+    Files.createDirectories(path.getParent());
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
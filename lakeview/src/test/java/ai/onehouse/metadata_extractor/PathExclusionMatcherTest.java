@@ -0,0 +1,80 @@
+package ai.onehouse.metadata_extractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class PathExclusionMatcherTest {
+  private static final List<String> PATHS =
+      Arrays.asList(
+          "s3://bucket/",
+          "s3://bucket/lake/",
+          "s3://bucket/lake/excluded/",
+          "s3://bucket/lake/excluded/table/",
+          "s3://bucket/lake/excluded_table/",
+          "s3://bucket/lake/tmp_1/",
+          "s3://bucket/lake/tmp_12/",
+          "s3://bucket/lake/table.v1/",
+          "s3://bucket/lake/tablexv1/",
+          "gs://bucket/lake/excluded/",
+          "");
+
+  @ParameterizedTest
+  @MethodSource("getPatterns")
+  void testMatchesSameAsRegex(String pattern) {
+    PathExclusionMatcher matcher = new PathExclusionMatcher(Collections.singletonList(pattern));
+    for (String path : PATHS) {
+      assertEquals(path.matches(pattern), matcher.isExcluded(path), pattern + " on " + path);
+    }
+  }
+
+  @Test
+  void testMultiplePatterns() {
+    PathExclusionMatcher matcher =
+        new PathExclusionMatcher(
+            Arrays.asList(
+                "s3://bucket/lake/excluded/",
+                "s3://bucket/lake/tmp_.*",
+                "s3://bucket/lake/tmp/.*",
+                "gs://.*/excluded/"));
+
+    assertTrue(matcher.isExcluded("s3://bucket/lake/excluded/"));
+    assertFalse(matcher.isExcluded("s3://bucket/lake/excluded/table/"));
+    assertTrue(matcher.isExcluded("s3://bucket/lake/tmp_1/"));
+    assertTrue(matcher.isExcluded("s3://bucket/lake/tmp/"));
+    assertFalse(matcher.isExcluded("s3://bucket/lake/tmp"));
+    assertTrue(matcher.isExcluded("gs://bucket/lake/excluded/"));
+    assertFalse(matcher.isExcluded("s3://bucket/lake/"));
+    assertFalse(new PathExclusionMatcher(Collections.emptyList()).isExcluded("s3://bucket/"));
+  }
+
+  static Stream<Arguments> getPatterns() {
+    return Stream.of(
+            "s3://bucket/lake/excluded/",
+            "s3://bucket/lake/excluded/.*",
+            "s3://bucket/lake/excluded.*",
+            "s3://bucket/lake/table\\.v1/",
+            "s3://bucket/lake/table.v1/",
+            "s3://bucket/lake/table\\.v1/.*",
+            "s3://bucket/lake/tmp_\\d/",
+            "s3://bucket/lake/tmp_1*/",
+            "s3://bucket/lake/tmp_1?/.*",
+            "s3://bucket/lake/(excluded|tmp_1)/.*",
+            ".*/excluded/.*",
+            ".*",
+            "",
+            "\\Qs3://bucket/lake/table.v1/\\E",
+            "^s3://bucket/lake/$",
+            "s3://bucket/lake/excluded/\\.*")
+        .map(Arguments::of);
+  }
+}
@@ -156,8 +156,11 @@ class TableDiscoveryAndUploadJobTest {
 
   @Test
   void testShutdown() {
+    when(mockTableMetadataUploaderService.flushCheckpoints())
+        .thenReturn(CompletableFuture.completedFuture(null));
     job.shutdown();
     verify(mockScheduler).shutdown();
+    verify(mockTableMetadataUploaderService).flushCheckpoints();
   }
 
   public static <R> CompletableFuture<R> failedFuture(Throwable error) {
@@ -0,0 +1,121 @@
+package ai.onehouse.metadata_extractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ai.onehouse.config.models.configv1.CrawlIndexConfig;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TableDiscoveryCrawlIndexTest {
+  private static final String BASE_PATH = "s3://bucket/base_path/";
+  private static final String TABLE_PATH = "s3://bucket/base_path/table/";
+  private static final Instant START_TIME = Instant.parse("2024-01-01T00:00:00Z");
+  private static final CrawlIndexConfig CRAWL_INDEX_CONFIG =
+      CrawlIndexConfig.builder().relistIntervalMinutes(60).fullRescanIntervalMinutes(600).build();
+
+  @TempDir Path tempDir;
+  private Clock clock;
+  private TableDiscoveryCrawlIndex crawlIndex;
+
+  @BeforeEach
+  void setup() {
+    clock = mock(Clock.class);
+    when(clock.instant()).thenReturn(START_TIME);
+    crawlIndex = new TableDiscoveryCrawlIndex(clock);
+  }
+
+  @Test
+  void testFoldersAreListedAgainOnceStale() {
+    runFirstRound(Optional.of(CRAWL_INDEX_CONFIG));
+
+    startRoundAt(START_TIME.plusSeconds(29 * 60), Optional.of(CRAWL_INDEX_CONFIG));
+    assertTrue(crawlIndex.getFreshEntry(BASE_PATH).isPresent());
+    assertTrue(crawlIndex.getFreshEntry(TABLE_PATH).get().isTableRoot());
+
+    startRoundAt(START_TIME.plusSeconds(60 * 60), Optional.of(CRAWL_INDEX_CONFIG));
+    assertFalse(crawlIndex.getFreshEntry(BASE_PATH).isPresent());
+    assertFalse(crawlIndex.getFreshEntry(TABLE_PATH).isPresent());
+  }
+
+  @Test
+  void testChangedFoldersAreListedAgainNextRound() {
+    runFirstRound(Optional.of(CRAWL_INDEX_CONFIG));
+
+    startRoundAt(START_TIME.plusSeconds(60 * 60), Optional.of(CRAWL_INDEX_CONFIG));
+    crawlIndex.recordFolder(BASE_PATH, Arrays.asList("new_table/", "table/"));
+    crawlIndex.recordTableRoot(TABLE_PATH);
+    crawlIndex.endRound();
+
+    startRoundAt(START_TIME.plusSeconds(61 * 60), Optional.of(CRAWL_INDEX_CONFIG));
+    assertFalse(crawlIndex.getFreshEntry(BASE_PATH).isPresent());
+    assertTrue(crawlIndex.getFreshEntry(TABLE_PATH).isPresent());
+  }
+
+  @Test
+  void testFullRescanListsAllFolders() {
+    runFirstRound(Optional.of(CRAWL_INDEX_CONFIG));
+
+    startRoundAt(START_TIME.plusSeconds(600 * 60), Optional.of(CRAWL_INDEX_CONFIG));
+    assertFalse(crawlIndex.getFreshEntry(TABLE_PATH).isPresent());
+  }
+
+  @Test
+  void testFoldersNotReachedDuringRoundAreDropped() {
+    runFirstRound(Optional.of(CRAWL_INDEX_CONFIG));
+
+    startRoundAt(START_TIME.plusSeconds(60 * 60), Optional.of(CRAWL_INDEX_CONFIG));
+    crawlIndex.recordFolder(BASE_PATH, Collections.emptyList());
+    crawlIndex.endRound();
+
+    assertEquals(Collections.singleton(BASE_PATH), crawlIndex.getEntries().keySet());
+  }
+
+  @Test
+  void testIndexIsPersisted() {
+    Optional<CrawlIndexConfig> crawlIndexConfig =
+        Optional.of(
+            CRAWL_INDEX_CONFIG.toBuilder()
+                .indexFilePath(tempDir.resolve("crawl_index.json").toString())
+                .build());
+    runFirstRound(crawlIndexConfig);
+
+    TableDiscoveryCrawlIndex restoredCrawlIndex = new TableDiscoveryCrawlIndex(clock);
+    when(clock.instant()).thenReturn(START_TIME.plusSeconds(60));
+    restoredCrawlIndex.startRound(crawlIndexConfig);
+    assertEquals(crawlIndex.getEntries(), restoredCrawlIndex.getEntries());
+    assertTrue(restoredCrawlIndex.getFreshEntry(TABLE_PATH).isPresent());
+  }
+
+  @Test
+  void testIndexIsClearedWhenDisabled() {
+    runFirstRound(Optional.of(CRAWL_INDEX_CONFIG));
+
+    startRoundAt(START_TIME.plusSeconds(60), Optional.empty());
+    assertTrue(crawlIndex.getEntries().isEmpty());
+    assertFalse(crawlIndex.getFreshEntry(TABLE_PATH).isPresent());
+  }
+
+  private void runFirstRound(Optional<CrawlIndexConfig> crawlIndexConfig) {
+    crawlIndex.startRound(crawlIndexConfig);
+    assertFalse(crawlIndex.getFreshEntry(BASE_PATH).isPresent());
+    crawlIndex.recordFolder(BASE_PATH, Collections.singletonList("table/"));
+    crawlIndex.recordTableRoot(TABLE_PATH);
+    crawlIndex.endRound();
+  }
+
+  private void startRoundAt(Instant now, Optional<CrawlIndexConfig> crawlIndexConfig) {
+    when(clock.instant()).thenReturn(now);
+    crawlIndex.startRound(crawlIndexConfig);
+  }
+}
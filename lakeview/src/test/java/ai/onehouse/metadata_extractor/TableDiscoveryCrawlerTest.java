@@ -0,0 +1,200 @@
+package ai.onehouse.metadata_extractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
+import ai.onehouse.metadata_extractor.models.Table;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import ai.onehouse.storage.AsyncStorageClient;
+import ai.onehouse.storage.StorageUtils;
+import ai.onehouse.storage.models.File;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TableDiscoveryCrawlerTest {
+  private static final String LAKE = "lake";
+  private static final String DATABASE = "database";
+
+  @Mock private AsyncStorageClient asyncStorageClient;
+  @Mock private LakeViewExtractorMetrics lakeViewExtractorMetrics;
+  private final List<String> listedFolders = new ArrayList<>();
+
+  @Test
+  void testInFlightListingsAreBounded() {
+    List<File> folders =
+        IntStream.range(0, 5)
+            .mapToObj(i -> generateFileObj("folder" + i + "/", true))
+            .collect(Collectors.toList());
+    List<Pair<String, CompletableFuture<Void>>> inFlightListings = new ArrayList<>();
+    when(asyncStorageClient.listFilesInDirByPage(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              String path = invocation.getArgument(0);
+              Function<List<File>, CompletableFuture<Boolean>> pageConsumer =
+                  invocation.getArgument(1);
+              if (path.endsWith("base_path/")) {
+                pageConsumer.apply(folders).join();
+              }
+              CompletableFuture<Void> listingFuture = new CompletableFuture<>();
+              inFlightListings.add(Pair.of(path, listingFuture));
+              return listingFuture;
+            });
+    TableDiscoveryCrawler crawler =
+        createCrawler(
+            getMetadataExtractorConfigBuilder()
+                .tableDiscoveryMaxConcurrentListings(3)
+                .tableDiscoveryMaxConcurrentListingsPerBucket(2)
+                .build());
+    crawler.addBasePath("s3://bucket1/base_path/", LAKE, DATABASE);
+    crawler.addBasePath("s3://bucket2/base_path/", LAKE, DATABASE);
+
+    CompletableFuture<Void> crawlFuture = crawler.crawl();
+    int numListings = 0;
+    while (!inFlightListings.isEmpty()) {
+      assertTrue(inFlightListings.size() <= 3);
+      Map<String, Integer> numInFlightListingsPerBucket = new HashMap<>();
+      for (Pair<String, CompletableFuture<Void>> inFlightListing : inFlightListings) {
+        numInFlightListingsPerBucket.merge(
+            new StorageUtils().getBucketNameFromUri(inFlightListing.getLeft()), 1, Integer::sum);
+      }
+      assertTrue(numInFlightListingsPerBucket.values().stream().allMatch(count -> count <= 2));
+      inFlightListings.remove(0).getRight().complete(null);
+      numListings++;
+    }
+
+    assertTrue(crawlFuture.isDone());
+    assertEquals(12, numListings);
+    verify(lakeViewExtractorMetrics, atLeastOnce()).setTableDiscoveryFrontierSize(10);
+    verify(lakeViewExtractorMetrics, atLeastOnce()).setTableDiscoveryFrontierSize(0);
+  }
+
+  @Test
+  void testCrawlOrder() {
+    /*
+     * s3://bucket/base_path
+     * ├─ /a
+     * │   └─ /a1
+     * └─ /b
+     *     └─ /b1
+     */
+    String basePath = "s3://bucket/base_path/";
+    mockListFilesInDirByPage(
+        basePath, Arrays.asList(generateFileObj("a/", true), generateFileObj("b/", true)));
+    mockListFilesInDirByPage(
+        basePath + "a/", Collections.singletonList(generateFileObj("a1/", true)));
+    mockListFilesInDirByPage(
+        basePath + "b/", Collections.singletonList(generateFileObj("b1/", true)));
+    mockListFilesInDirByPage(basePath + "a/a1/", Collections.emptyList());
+    mockListFilesInDirByPage(basePath + "b/b1/", Collections.emptyList());
+
+    crawl(
+        getMetadataExtractorConfigBuilder()
+            .tableDiscoveryMaxConcurrentListings(1)
+            .tableDiscoveryCrawlOrder(MetadataExtractorConfig.TableDiscoveryCrawlOrder.BREADTH_FIRST)
+            .build(),
+        basePath);
+    assertEquals(
+        Arrays.asList(
+            basePath, basePath + "a/", basePath + "b/", basePath + "a/a1/", basePath + "b/b1/"),
+        listedFolders);
+
+    listedFolders.clear();
+    crawl(
+        getMetadataExtractorConfigBuilder()
+            .tableDiscoveryMaxConcurrentListings(1)
+            .tableDiscoveryCrawlOrder(MetadataExtractorConfig.TableDiscoveryCrawlOrder.DEPTH_FIRST)
+            .build(),
+        basePath);
+    assertEquals(
+        Arrays.asList(
+            basePath, basePath + "b/", basePath + "b/b1/", basePath + "a/", basePath + "a/a1/"),
+        listedFolders);
+  }
+
+  @Test
+  void testMaxDepth() {
+    String basePath = "s3://bucket/base_path/";
+    mockListFilesInDirByPage(basePath, Collections.singletonList(generateFileObj("a/", true)));
+    mockListFilesInDirByPage(
+        basePath + "a/", Collections.singletonList(generateFileObj("table/", true)));
+
+    Set<Table> tables =
+        crawl(getMetadataExtractorConfigBuilder().tableDiscoveryMaxDepth(1).build(), basePath);
+
+    assertTrue(tables.isEmpty());
+    assertEquals(Arrays.asList(basePath, basePath + "a/"), listedFolders);
+    verify(asyncStorageClient, never()).listFilesInDirByPage(eq(basePath + "a/table/"), any());
+  }
+
+  private Set<Table> crawl(MetadataExtractorConfig metadataExtractorConfig, String basePath) {
+    TableDiscoveryCrawler crawler = createCrawler(metadataExtractorConfig);
+    Set<Table> tables = crawler.addBasePath(basePath, LAKE, DATABASE);
+    crawler.crawl().join();
+    return tables;
+  }
+
+  private TableDiscoveryCrawler createCrawler(MetadataExtractorConfig metadataExtractorConfig) {
+    TableDiscoveryCrawlIndex crawlIndex = new TableDiscoveryCrawlIndex(Clock.systemUTC());
+    crawlIndex.startRound(Optional.empty());
+    return new TableDiscoveryCrawler(
+        asyncStorageClient,
+        new StorageUtils(),
+        crawlIndex,
+        lakeViewExtractorMetrics,
+        metadataExtractorConfig,
+        new PathExclusionMatcher(Collections.emptyList()));
+  }
+
+  private static MetadataExtractorConfig.MetadataExtractorConfigBuilder
+      getMetadataExtractorConfigBuilder() {
+    return MetadataExtractorConfig.builder().parserConfig(Collections.emptyList());
+  }
+
+  private void mockListFilesInDirByPage(String path, List<File> files) {
+    when(asyncStorageClient.listFilesInDirByPage(eq(path), any()))
+        .thenAnswer(
+            invocation -> {
+              listedFolders.add(path);
+              Function<List<File>, CompletableFuture<Boolean>> pageConsumer =
+                  invocation.getArgument(1);
+              if (!files.isEmpty()) {
+                pageConsumer.apply(files).join();
+              }
+              return CompletableFuture.completedFuture(null);
+            });
+  }
+
+  private static File generateFileObj(String fileName, boolean isDirectory) {
+    return File.builder()
+        .filename(fileName)
+        .isDirectory(isDirectory)
+        .lastModifiedAt(Instant.EPOCH)
+        .build();
+  }
+}
@@ -7,7 +7,9 @@ import static org.mockito.Mockito.*;
 
 import ai.onehouse.config.ConfigProvider;
 import ai.onehouse.config.models.configv1.ConfigV1;
+import ai.onehouse.config.models.configv1.CrawlIndexConfig;
 import ai.onehouse.config.models.configv1.Database;
+import ai.onehouse.config.models.configv1.InventoryConfig;
 import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
 import ai.onehouse.config.models.configv1.ParserConfig;
 import ai.onehouse.constants.MetricsConstants;
@@ -19,10 +21,13 @@ import ai.onehouse.storage.S3AsyncStorageClient;
 import ai.onehouse.storage.StorageUtils;
 import ai.onehouse.storage.models.File;
 import ai.onehouse.storage.providers.S3AsyncClientProvider;
+import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -30,6 +35,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
@@ -90,45 +96,36 @@ class TableDiscoveryServiceTest {
      * are discovered and that excluded paths are properly ignored.
      */
 
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH))
-        .thenReturn(
-            CompletableFuture.completedFuture(
-                Arrays.asList(
-                    generateFileObj("file1", false),
-                    generateFileObj("table1/", true),
-                    generateFileObj("excluded/", true),
-                    generateFileObj("nested-folder/", true))));
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH + "table1/"))
-        .thenReturn(
-            CompletableFuture.completedFuture(Arrays.asList(generateFileObj(".hoodie", true))));
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH + "nested-folder/"))
-        .thenReturn(
-            CompletableFuture.completedFuture(
-                Arrays.asList(
-                    generateFileObj("table2/", true),
-                    generateFileObj("excluded-table-3/", true),
-                    generateFileObj("unrelated-folder1/", true))));
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH + "nested-folder/table2/"))
-        .thenReturn(
-            CompletableFuture.completedFuture(
-                Collections.singletonList(generateFileObj(".hoodie", true))));
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH + "nested-folder/unrelated-folder1/"))
-        .thenReturn(CompletableFuture.completedFuture(emptyList()));
+    mockListFilesInDirByPage(
+        BASE_PATH,
+        Arrays.asList(
+            generateFileObj("file1", false),
+            generateFileObj("table1/", true),
+            generateFileObj("excluded/", true),
+            generateFileObj("nested-folder/", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH + "table1/", Arrays.asList(generateFileObj(".hoodie", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH + "nested-folder/",
+        Arrays.asList(
+            generateFileObj("table2/", true),
+            generateFileObj("excluded-table-3/", true),
+            generateFileObj("unrelated-folder1/", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH + "nested-folder/table2/",
+        Collections.singletonList(generateFileObj(".hoodie", true)));
+    mockListFilesInDirByPage(BASE_PATH + "nested-folder/unrelated-folder1/", emptyList());
 
     // paths to exclude
     String dirToExclude = BASE_PATH + "excluded/"; // excluding using an absolute path
 
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH_2))
-        .thenReturn(
-            CompletableFuture.completedFuture(
-                Arrays.asList(
-                    generateFileObj("tableWithId/", true), generateFileObj("table-4/", true))));
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH_2 + "tableWithId/"))
-        .thenReturn(
-            CompletableFuture.completedFuture(Arrays.asList(generateFileObj(".hoodie", true))));
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH_2 + "table-4/"))
-        .thenReturn(
-            CompletableFuture.completedFuture(Arrays.asList(generateFileObj(".hoodie", true))));
+    mockListFilesInDirByPage(
+        BASE_PATH_2,
+        Arrays.asList(generateFileObj("tableWithId/", true), generateFileObj("table-4/", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH_2 + "tableWithId/", Arrays.asList(generateFileObj(".hoodie", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH_2 + "table-4/", Arrays.asList(generateFileObj(".hoodie", true)));
     String tableId = "11111";
     String basePath2ConfigWithTableId = BASE_PATH_2 + "#" + tableId;
     String basePath2ExplicitlyExcludedTable = BASE_PATH_2 + "table-4/";
@@ -202,7 +199,224 @@ class TableDiscoveryServiceTest {
     // s3://bucket/base_path_2/
     // s3://bucket/base_path_2/tableWithId/
     // s3://bucket/base_path_2/table-4/
-    verify(asyncStorageClient, times(8)).listAllFilesInDir(anyString());
+    verify(asyncStorageClient, times(8)).listFilesInDirByPage(anyString(), any());
+  }
+
+  @Test
+  void testDiscoverTablesStopsListingOnceTableIsFound() {
+    /*
+     * s3://bucket/base_path
+     * │
+     * ├─ /-staging (sorts before .hoodie, traversed only after the listing passes .hoodie)
+     * │   └─ /table2
+     * │       └─ /.hoodie
+     * │
+     * └─ /table1
+     *     ├─ /-tmp (sorts before .hoodie, never traversed as table1 is a table)
+     *     ├─ /.hoodie
+     *     └─ /partition (listing stops before this page)
+     */
+    mockListFilesInDirByPage(
+        BASE_PATH,
+        Arrays.asList(generateFileObj("-staging/", true), generateFileObj("table1/", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH + "-staging/", Collections.singletonList(generateFileObj("table2/", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH + "-staging/table2/",
+        Collections.singletonList(generateFileObj(".hoodie/", true)));
+    List<File> table1Pages =
+        Arrays.asList(
+            generateFileObj("-tmp/", true),
+            generateFileObj(".hoodie/", true),
+            generateFileObj("partition/", true));
+    List<List<File>> consumedTable1Pages = new ArrayList<>();
+    when(asyncStorageClient.listFilesInDirByPage(eq(BASE_PATH + "table1/"), any()))
+        .thenAnswer(
+            invocation -> {
+              Function<List<File>, CompletableFuture<Boolean>> pageConsumer =
+                  invocation.getArgument(1);
+              for (File file : table1Pages) {
+                consumedTable1Pages.add(Collections.singletonList(file));
+                if (!pageConsumer.apply(Collections.singletonList(file)).join()) {
+                  break;
+                }
+              }
+              return CompletableFuture.completedFuture(null);
+            });
+
+    when(config.getMetadataExtractorConfig()).thenReturn(metadataExtractorConfig);
+    when(metadataExtractorConfig.getPathExclusionPatterns()).thenReturn(Optional.of(emptyList()));
+    when(metadataExtractorConfig.getParserConfig())
+        .thenReturn(
+            Collections.singletonList(
+                ParserConfig.builder()
+                    .lake(LAKE)
+                    .databases(
+                        Collections.singletonList(
+                            Database.builder()
+                                .name(DATABASE)
+                                .basePaths(Collections.singletonList(BASE_PATH))
+                                .build()))
+                    .build()));
+    tableDiscoveryService =
+        new TableDiscoveryService(
+            asyncStorageClient,
+            new StorageUtils(),
+            new ConfigProvider(config),
+            ForkJoinPool.commonPool(),
+            hudiMetadataExtractorMetrics);
+
+    Set<Table> discoveredTables = tableDiscoveryService.discoverTables().join();
+
+    assertEquals(
+        Arrays.asList(BASE_PATH + "-staging/table2/", BASE_PATH + "table1/"),
+        discoveredTables.stream()
+            .map(Table::getAbsoluteTableUri)
+            .sorted()
+            .collect(Collectors.toList()));
+    assertEquals(2, consumedTable1Pages.size());
+    verify(asyncStorageClient, never())
+        .listFilesInDirByPage(eq(BASE_PATH + "table1/-tmp/"), any());
+    verify(asyncStorageClient, times(4)).listFilesInDirByPage(anyString(), any());
+  }
+
+  @Test
+  void testDiscoverTablesReusesCrawlIndex() {
+    /*
+     * s3://bucket/base_path
+     * │
+     * ├─ /folder
+     * │   └─ /table2
+     * │       └─ /.hoodie
+     * └─ /table1
+     *     └─ /.hoodie
+     */
+    mockListFilesInDirByPage(
+        BASE_PATH,
+        Arrays.asList(generateFileObj("folder/", true), generateFileObj("table1/", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH + "folder/", Collections.singletonList(generateFileObj("table2/", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH + "folder/table2/", Collections.singletonList(generateFileObj(".hoodie/", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH + "table1/", Collections.singletonList(generateFileObj(".hoodie/", true)));
+
+    when(config.getMetadataExtractorConfig()).thenReturn(metadataExtractorConfig);
+    when(metadataExtractorConfig.getPathExclusionPatterns()).thenReturn(Optional.of(emptyList()));
+    when(metadataExtractorConfig.getCrawlIndexConfig())
+        .thenReturn(
+            Optional.of(
+                CrawlIndexConfig.builder()
+                    .relistIntervalMinutes(60)
+                    .fullRescanIntervalMinutes(600)
+                    .build()));
+    when(metadataExtractorConfig.getParserConfig())
+        .thenReturn(
+            Collections.singletonList(
+                ParserConfig.builder()
+                    .lake(LAKE)
+                    .databases(
+                        Collections.singletonList(
+                            Database.builder()
+                                .name(DATABASE)
+                                .basePaths(Collections.singletonList(BASE_PATH))
+                                .build()))
+                    .build()));
+    Clock clock = mock(Clock.class);
+    Instant startTime = Instant.parse("2024-01-01T00:00:00Z");
+    when(clock.instant()).thenReturn(startTime);
+    tableDiscoveryService =
+        new TableDiscoveryService(
+            asyncStorageClient,
+            new StorageUtils(),
+            new ConfigProvider(config),
+            ForkJoinPool.commonPool(),
+            hudiMetadataExtractorMetrics,
+            new TableDiscoveryCrawlIndex(clock),
+            new InventoryReportReader(
+                asyncStorageClient, new StorageUtils(), ForkJoinPool.commonPool()));
+    List<String> expectedTables =
+        Arrays.asList(BASE_PATH + "folder/table2/", BASE_PATH + "table1/");
+
+    assertEquals(expectedTables, getSortedTableUris(tableDiscoveryService.discoverTables().join()));
+    verify(asyncStorageClient, times(4)).listFilesInDirByPage(anyString(), any());
+
+    // folders listed in the previous round are reused
+    when(clock.instant()).thenReturn(startTime.plusSeconds(60));
+    assertEquals(expectedTables, getSortedTableUris(tableDiscoveryService.discoverTables().join()));
+    verify(asyncStorageClient, times(4)).listFilesInDirByPage(anyString(), any());
+
+    // all folders are listed again during a full rescan
+    when(clock.instant()).thenReturn(startTime.plusSeconds(600 * 60));
+    assertEquals(expectedTables, getSortedTableUris(tableDiscoveryService.discoverTables().join()));
+    verify(asyncStorageClient, times(8)).listFilesInDirByPage(anyString(), any());
+  }
+
+  @Test
+  void testDiscoverTablesFromInventory() {
+    InventoryReportReader inventoryReportReader = mock(InventoryReportReader.class);
+    List<String> inventoryUris = Collections.singletonList("s3://inventory/config/");
+    when(inventoryReportReader.readTableUris(inventoryUris))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                new HashSet<>(
+                    Arrays.asList(
+                        BASE_PATH + "table1/",
+                        BASE_PATH + "nested-folder/table2/",
+                        BASE_PATH + "excluded/table3/",
+                        BASE_PATH_2,
+                        "s3://bucket/other_path/table4/"))));
+    when(config.getMetadataExtractorConfig()).thenReturn(metadataExtractorConfig);
+    when(metadataExtractorConfig.getPathExclusionPatterns())
+        .thenReturn(Optional.of(Collections.singletonList(BASE_PATH + "excluded/")));
+    when(metadataExtractorConfig.getInventoryConfig())
+        .thenReturn(Optional.of(InventoryConfig.builder().inventoryUris(inventoryUris).build()));
+    when(metadataExtractorConfig.getParserConfig())
+        .thenReturn(
+            Collections.singletonList(
+                ParserConfig.builder()
+                    .lake(LAKE)
+                    .databases(
+                        Collections.singletonList(
+                            Database.builder()
+                                .name(DATABASE)
+                                .basePaths(
+                                    Arrays.asList(BASE_PATH, "s3://bucket/base_path_2#tableId"))
+                                .build()))
+                    .build()));
+    tableDiscoveryService =
+        new TableDiscoveryService(
+            asyncStorageClient,
+            new StorageUtils(),
+            new ConfigProvider(config),
+            ForkJoinPool.commonPool(),
+            hudiMetadataExtractorMetrics,
+            new TableDiscoveryCrawlIndex(Clock.systemUTC()),
+            inventoryReportReader);
+
+    Set<Table> discoveredTables = tableDiscoveryService.discoverTables().join();
+
+    assertEquals(
+        Stream.of(
+                Table.builder()
+                    .absoluteTableUri(BASE_PATH + "table1/")
+                    .lakeName(LAKE)
+                    .databaseName(DATABASE)
+                    .build(),
+                Table.builder()
+                    .absoluteTableUri(BASE_PATH + "nested-folder/table2/")
+                    .lakeName(LAKE)
+                    .databaseName(DATABASE)
+                    .build(),
+                Table.builder()
+                    .absoluteTableUri("s3://bucket/base_path_2")
+                    .lakeName(LAKE)
+                    .databaseName(DATABASE)
+                    .tableId("tableId")
+                    .build())
+            .collect(Collectors.toSet()),
+        discoveredTables);
+    verifyNoInteractions(asyncStorageClient);
   }
 
   @Test
@@ -220,16 +434,13 @@ class TableDiscoveryServiceTest {
      * │   └─ /.hoodie (presence of this folder indicates a Hudi table)
      *
      */
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH))
-        .thenReturn(
-            CompletableFuture.completedFuture(
-                Arrays.asList(generateFileObj("table1/", true), generateFileObj("table2/", true))));
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH + "table1/"))
-        .thenReturn(
-            CompletableFuture.completedFuture(Arrays.asList(generateFileObj(".hoodie", true))));
-    when(asyncStorageClient.listAllFilesInDir(BASE_PATH + "table2/"))
-        .thenReturn(
-            CompletableFuture.completedFuture(Arrays.asList(generateFileObj(".hoodie", true))));
+    mockListFilesInDirByPage(
+        BASE_PATH,
+        Arrays.asList(generateFileObj("table1/", true), generateFileObj("table2/", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH + "table1/", Arrays.asList(generateFileObj(".hoodie", true)));
+    mockListFilesInDirByPage(
+        BASE_PATH + "table2/", Arrays.asList(generateFileObj(".hoodie", true)));
 
     String tableId = "11111";
     String basePathConfigWithTableId = BASE_PATH + "#" + tableId;
@@ -316,8 +527,8 @@ class TableDiscoveryServiceTest {
                                 .basePaths(Collections.singletonList(basePath))
                                 .build()))
                     .build()));
-    CompletableFuture<List<File>> failedFuture = new CompletableFuture<>();
-    when(asyncStorageClient.listAllFilesInDir(basePath)).thenReturn(failedFuture);
+    CompletableFuture<Void> failedFuture = new CompletableFuture<>();
+    when(asyncStorageClient.listFilesInDirByPage(eq(basePath), any())).thenReturn(failedFuture);
     failedFuture.completeExceptionally(new RuntimeException("some-error"));
 
     tableDiscoveryService =
@@ -347,8 +558,8 @@ class TableDiscoveryServiceTest {
                                                             .basePaths(Collections.singletonList(basePath))
                                                             .build()))
                                     .build()));
-    CompletableFuture<List<File>> failedFuture = new CompletableFuture<>();
-    when(asyncStorageClient.listAllFilesInDir(basePath)).thenReturn(failedFuture);
+    CompletableFuture<Void> failedFuture = new CompletableFuture<>();
+    when(asyncStorageClient.listFilesInDirByPage(eq(basePath), any())).thenReturn(failedFuture);
     failedFuture.completeExceptionally(new RateLimitException("some-error"));
 
     tableDiscoveryService =
@@ -367,6 +578,26 @@ class TableDiscoveryServiceTest {
                     MetricsConstants.MetadataUploadFailureReasons.RATE_LIMITING);
   }
 
+  private static List<String> getSortedTableUris(Set<Table> tables) {
+    return tables.stream().map(Table::getAbsoluteTableUri).sorted().collect(Collectors.toList());
+  }
+
+  // hands over the files to the page consumer one file per page
+  private void mockListFilesInDirByPage(String path, List<File> files) {
+    when(asyncStorageClient.listFilesInDirByPage(eq(path), any()))
+        .thenAnswer(
+            invocation -> {
+              Function<List<File>, CompletableFuture<Boolean>> pageConsumer =
+                  invocation.getArgument(1);
+              for (File file : files) {
+                if (!pageConsumer.apply(Collections.singletonList(file)).join()) {
+                  break;
+                }
+              }
+              return CompletableFuture.completedFuture(null);
+            });
+  }
+
   private File generateFileObj(String fileName, boolean isDirectory) {
     return File.builder()
         .filename(fileName)
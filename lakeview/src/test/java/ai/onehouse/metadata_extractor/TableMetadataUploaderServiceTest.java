@@ -4,6 +4,7 @@ import static ai.onehouse.constants.MetadataExtractorConstants.*;
 import static org.junit.Assert.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -11,26 +12,34 @@ import static org.mockito.Mockito.when;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import ai.onehouse.api.OnehouseApiClient;
+import ai.onehouse.api.models.request.BulkGetTableMetricsCheckpointsRequest;
 import ai.onehouse.api.models.request.CommitTimelineType;
 import ai.onehouse.api.models.request.InitializeTableMetricsCheckpointRequest;
 import ai.onehouse.api.models.request.TableType;
 import ai.onehouse.api.models.response.GetTableMetricsCheckpointResponse;
 import ai.onehouse.api.models.response.InitializeTableMetricsCheckpointResponse;
+import ai.onehouse.config.Config;
+import ai.onehouse.config.models.configv1.CheckpointCacheConfig;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
 import ai.onehouse.constants.MetricsConstants;
 import ai.onehouse.metadata_extractor.models.Checkpoint;
 import ai.onehouse.metadata_extractor.models.ParsedHudiProperties;
 import ai.onehouse.metadata_extractor.models.Table;
 import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import java.time.Clock;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Assertions;
@@ -49,6 +58,8 @@ class TableMetadataUploaderServiceTest {
   @Mock private OnehouseApiClient onehouseApiClient;
   @Mock private TimelineCommitInstantsUploader timelineCommitInstantsUploader;
   @Mock private LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
+  @Mock private Config config;
+  @Mock private MetadataExtractorConfig metadataExtractorConfig;
   private TableMetadataUploaderService tableMetadataUploaderService;
   private final ObjectMapper mapper = new ObjectMapper();
   private static final String S3_TABLE_URI = "s3://bucket/table/";
@@ -95,13 +106,74 @@ class TableMetadataUploaderServiceTest {
   @BeforeEach
   void setup() {
     mapper.registerModule(new JavaTimeModule());
+    when(config.getMetadataExtractorConfig()).thenReturn(metadataExtractorConfig);
     tableMetadataUploaderService =
         new TableMetadataUploaderService(
             hoodiePropertiesReader,
             onehouseApiClient,
+            new CheckpointCache(Optional.empty(), Clock.systemUTC()),
             timelineCommitInstantsUploader,
             hudiMetadataExtractorMetrics,
-            ForkJoinPool.commonPool());
+            ForkJoinPool.commonPool(),
+            config);
+  }
+
+  @Test
+  @SneakyThrows
+  void testCachedCheckpointsAreNotFetchedAgain() {
+    CheckpointCache checkpointCache =
+        new CheckpointCache(
+            Optional.of(CheckpointCacheConfig.builder().build()), Clock.systemUTC());
+    tableMetadataUploaderService =
+        new TableMetadataUploaderService(
+            hoodiePropertiesReader,
+            onehouseApiClient,
+            checkpointCache,
+            timelineCommitInstantsUploader,
+            hudiMetadataExtractorMetrics,
+            ForkJoinPool.commonPool(),
+            config);
+    Checkpoint fetchedCheckpoint = generateCheckpointObj(1, Instant.now(), true, "active_instant1");
+    Checkpoint writtenCheckpoint = generateCheckpointObj(2, Instant.now(), true, "active_instant2");
+    when(onehouseApiClient.getTableMetricsCheckpoints(
+            Collections.singletonList(TABLE_ID.toString())))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                GetTableMetricsCheckpointResponse.builder()
+                    .checkpoints(
+                        Collections.singletonList(
+                            GetTableMetricsCheckpointResponse.TableMetadataCheckpoint.builder()
+                                .tableId(TABLE_ID.toString())
+                                .checkpoint(mapper.writeValueAsString(fetchedCheckpoint))
+                                .build()))
+                    .build()));
+    when(timelineCommitInstantsUploader.paginatedBatchUploadWithCheckpoint(
+            eq(TABLE_ID.toString()),
+            eq(TABLE),
+            any(),
+            eq(CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE)))
+        .thenReturn(CompletableFuture.completedFuture(FINAL_ACTIVE_TIMELINE_CHECKPOINT));
+
+    Assertions.assertTrue(
+        tableMetadataUploaderService.uploadInstantsInTables(Collections.singleton(TABLE)).join());
+    // the checkpoint written during the first round is used by the next one
+    checkpointCache.put(TABLE_ID.toString(), mapper.writeValueAsString(writtenCheckpoint));
+    Assertions.assertTrue(
+        tableMetadataUploaderService.uploadInstantsInTables(Collections.singleton(TABLE)).join());
+
+    verify(onehouseApiClient, times(1)).getTableMetricsCheckpoints(any());
+    verify(timelineCommitInstantsUploader)
+        .paginatedBatchUploadWithCheckpoint(
+            TABLE_ID.toString(),
+            TABLE,
+            fetchedCheckpoint,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE);
+    verify(timelineCommitInstantsUploader)
+        .paginatedBatchUploadWithCheckpoint(
+            TABLE_ID.toString(),
+            TABLE,
+            writtenCheckpoint,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE);
   }
 
   @Test
@@ -491,6 +563,132 @@ class TableMetadataUploaderServiceTest {
     // with just once
   }
 
+  @Test
+  @SneakyThrows
+  void testCheckpointsOfUpcomingBatchesAreFetchedInBulk() {
+    tableMetadataUploaderService = getServiceWithCheckpointPrefetch(2);
+    Set<Table> tables = generateTables(TABLE_PROCESSING_BATCH_SIZE + 5);
+    String checkpoint = mapper.writeValueAsString(FINAL_ACTIVE_TIMELINE_CHECKPOINT);
+    when(onehouseApiClient.bulkGetTableMetricsCheckpoints(any()))
+        .thenAnswer(
+            invocation -> {
+              BulkGetTableMetricsCheckpointsRequest request = invocation.getArgument(0);
+              return CompletableFuture.completedFuture(
+                  GetTableMetricsCheckpointResponse.builder()
+                      .checkpoints(
+                          request.getTableIds().stream()
+                              .map(
+                                  tableId ->
+                                      new GetTableMetricsCheckpointResponse
+                                          .TableMetadataCheckpoint(tableId, checkpoint))
+                              .collect(Collectors.toList()))
+                      .build());
+            });
+    when(timelineCommitInstantsUploader.paginatedBatchUploadWithCheckpoint(
+            any(),
+            any(),
+            eq(FINAL_ACTIVE_TIMELINE_CHECKPOINT),
+            eq(CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE)))
+        .thenReturn(CompletableFuture.completedFuture(FINAL_ACTIVE_TIMELINE_CHECKPOINT));
+
+    Assertions.assertTrue(tableMetadataUploaderService.uploadInstantsInTables(tables).join());
+
+    // both batches are served by a single request
+    verify(onehouseApiClient, times(1)).bulkGetTableMetricsCheckpoints(any());
+    verify(onehouseApiClient, never()).getTableMetricsCheckpoints(any());
+    verify(timelineCommitInstantsUploader, times(tables.size()))
+        .paginatedBatchUploadWithCheckpoint(
+            any(), any(), any(), eq(CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE));
+  }
+
+  @Test
+  @SneakyThrows
+  void testCheckpointsAreFetchedPerBatchWhenBulkRequestsAreNotSupported() {
+    tableMetadataUploaderService = getServiceWithCheckpointPrefetch(2);
+    Set<Table> tables = generateTables(TABLE_PROCESSING_BATCH_SIZE + 5);
+    GetTableMetricsCheckpointResponse notFoundResponse =
+        GetTableMetricsCheckpointResponse.builder().build();
+    notFoundResponse.setError(404, "Not Found");
+    when(onehouseApiClient.bulkGetTableMetricsCheckpoints(any()))
+        .thenReturn(CompletableFuture.completedFuture(notFoundResponse));
+    String checkpoint = mapper.writeValueAsString(FINAL_ACTIVE_TIMELINE_CHECKPOINT);
+    when(onehouseApiClient.getTableMetricsCheckpoints(any()))
+        .thenAnswer(
+            invocation -> {
+              List<String> tableIds = invocation.getArgument(0);
+              return CompletableFuture.completedFuture(
+                  GetTableMetricsCheckpointResponse.builder()
+                      .checkpoints(
+                          tableIds.stream()
+                              .map(
+                                  tableId ->
+                                      new GetTableMetricsCheckpointResponse
+                                          .TableMetadataCheckpoint(tableId, checkpoint))
+                              .collect(Collectors.toList()))
+                      .build());
+            });
+    when(timelineCommitInstantsUploader.paginatedBatchUploadWithCheckpoint(
+            any(),
+            any(),
+            eq(FINAL_ACTIVE_TIMELINE_CHECKPOINT),
+            eq(CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE)))
+        .thenReturn(CompletableFuture.completedFuture(FINAL_ACTIVE_TIMELINE_CHECKPOINT));
+
+    Assertions.assertTrue(tableMetadataUploaderService.uploadInstantsInTables(tables).join());
+    Assertions.assertTrue(tableMetadataUploaderService.uploadInstantsInTables(tables).join());
+
+    // the bulk endpoint is not asked again once it is known to be missing
+    verify(onehouseApiClient, times(1)).bulkGetTableMetricsCheckpoints(any());
+    verify(onehouseApiClient, times(4)).getTableMetricsCheckpoints(any());
+  }
+
+  @Test
+  @SneakyThrows
+  void testFailedPrefetchSkipsTheBatchesOfTheGroup() {
+    tableMetadataUploaderService = getServiceWithCheckpointPrefetch(1);
+    Set<Table> tables = generateTables(TABLE_PROCESSING_BATCH_SIZE + 5);
+    GetTableMetricsCheckpointResponse failedResponse =
+        GetTableMetricsCheckpointResponse.builder().build();
+    failedResponse.setError(500, "");
+    when(onehouseApiClient.getTableMetricsCheckpoints(any()))
+        .thenReturn(CompletableFuture.completedFuture(failedResponse));
+
+    assertFalse(tableMetadataUploaderService.uploadInstantsInTables(tables).join());
+
+    // one request per group of a single batch
+    verify(onehouseApiClient, times(2)).getTableMetricsCheckpoints(any());
+    verify(onehouseApiClient, never()).bulkGetTableMetricsCheckpoints(any());
+  }
+
+  private TableMetadataUploaderService getServiceWithCheckpointPrefetch(
+      int checkpointPrefetchBatches) {
+    when(metadataExtractorConfig.getCheckpointPrefetchBatches())
+        .thenReturn(checkpointPrefetchBatches);
+    return new TableMetadataUploaderService(
+        hoodiePropertiesReader,
+        onehouseApiClient,
+        new CheckpointCache(Optional.empty(), Clock.systemUTC()),
+        timelineCommitInstantsUploader,
+        hudiMetadataExtractorMetrics,
+        ForkJoinPool.commonPool(),
+        config);
+  }
+
+  private static Set<Table> generateTables(int numTables) {
+    return IntStream.range(0, numTables)
+        .mapToObj(
+            i -> {
+              String tableUri = "s3://bucket/prefetch_table" + i + "/";
+              return Table.builder()
+                  .tableId(UUID.nameUUIDFromBytes(tableUri.getBytes()).toString())
+                  .absoluteTableUri(tableUri)
+                  .databaseName("database")
+                  .lakeName("lake")
+                  .build();
+            })
+        .collect(Collectors.toCollection(LinkedHashSet::new));
+  }
+
   private Checkpoint generateCheckpointObj(
       int batchId,
       Instant checkpointTimestamp,
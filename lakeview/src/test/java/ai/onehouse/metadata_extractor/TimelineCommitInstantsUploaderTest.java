@@ -1,6 +1,5 @@
 package ai.onehouse.metadata_extractor;
 
-import static ai.onehouse.constants.MetadataExtractorConstants.DEFAULT_FILE_UPLOAD_STREAM_BATCH_SIZE;
 import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_PROPERTIES_FILE;
 import static ai.onehouse.constants.MetadataExtractorConstants.HOODIE_PROPERTIES_FILE_OBJ;
 import static ai.onehouse.constants.MetadataExtractorConstants.INITIAL_CHECKPOINT;
@@ -9,9 +8,15 @@ import static ai.onehouse.constants.MetadataExtractorConstants.PRESIGNED_URL_REQ
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -21,13 +26,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import ai.onehouse.api.OnehouseApiClient;
 import ai.onehouse.api.models.request.CommitTimelineType;
+import ai.onehouse.api.models.request.CompleteMultipartUploadRequest;
 import ai.onehouse.api.models.request.GenerateCommitMetadataUploadUrlRequest;
+import ai.onehouse.api.models.request.GenerateMultipartUploadUrlsRequest;
 import ai.onehouse.api.models.request.UploadedFile;
+import ai.onehouse.api.models.request.UploadedPart;
 import ai.onehouse.api.models.request.UpsertTableMetricsCheckpointRequest;
+import ai.onehouse.api.models.response.CompleteMultipartUploadResponse;
 import ai.onehouse.api.models.response.GenerateCommitMetadataUploadUrlResponse;
+import ai.onehouse.api.models.response.GenerateMultipartUploadUrlsResponse;
 import ai.onehouse.api.models.response.UpsertTableMetricsCheckpointResponse;
 import ai.onehouse.config.Config;
 import ai.onehouse.config.models.configv1.MetadataExtractorConfig;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig.UploadCompression;
 import ai.onehouse.constants.MetricsConstants;
 import ai.onehouse.metadata_extractor.models.Checkpoint;
 import ai.onehouse.metadata_extractor.models.Table;
@@ -36,6 +47,7 @@ import ai.onehouse.storage.AsyncStorageClient;
 import ai.onehouse.storage.PresignedUrlFileUploader;
 import ai.onehouse.storage.StorageUtils;
 import ai.onehouse.storage.models.File;
+import java.time.Clock;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -44,9 +56,11 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.SneakyThrows;
@@ -61,6 +75,8 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -104,6 +120,7 @@ class TimelineCommitInstantsUploaderTest {
         asyncStorageClient,
         presignedUrlFileUploader,
         onehouseApiClient,
+        new CheckpointCache(Optional.empty(), Clock.systemUTC()),
         new StorageUtils(),
         ForkJoinPool.commonPool(),
         activeTimelineInstantBatcher,
@@ -128,7 +145,7 @@ class TimelineCommitInstantsUploaderTest {
         .getUploadBatchSize(
             CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED); // 1 file will be processed at a time
 
-    mockListAllFilesInDir(
+    mockListFilesInDirByPage(
         TABLE.getAbsoluteTableUri() + ".hoodie/" + ARCHIVED_FOLDER_PREFIX,
         Arrays.asList(
             generateFileObj("should_be_ignored", false),
@@ -186,7 +203,7 @@ class TimelineCommitInstantsUploaderTest {
                 CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
             .join();
 
-    verify(asyncStorageClient, times(1)).listAllFilesInDir(anyString());
+    verify(asyncStorageClient, times(1)).listFilesInDirByPage(anyString(), any());
     if (!continueFromCheckpoint) {
       verifyFilesUploaded(
           Collections.singletonList(UploadedFile.builder().name(HOODIE_PROPERTIES_FILE).build()),
@@ -213,6 +230,74 @@ class TimelineCommitInstantsUploaderTest {
     assertEquals(checkpoint3, response);
   }
 
+  @Test
+  void testUploadInstantsInArchivedTimelineWithRangeListing() {
+    TimelineCommitInstantsUploader timelineCommitInstantsUploaderSpy =
+        spy(timelineCommitInstantsUploader);
+    doReturn(1)
+        .when(timelineCommitInstantsUploaderSpy)
+        .getUploadBatchSize(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    when(metadataExtractorConfig.getTimelineListingParallelism()).thenReturn(4);
+
+    String archivedPrefix = TABLE_PREFIX + "/.hoodie/" + ARCHIVED_FOLDER_PREFIX;
+    mockListPage(
+        archivedPrefix,
+        CONTINUATION_TOKEN_PREFIX + "1",
+        null,
+        Collections.singletonList(generateFileObj(".commits_.archive.1_1-0-1", false)));
+    when(asyncStorageClient.listObjectsInRanges(
+            "bucket",
+            archivedPrefix,
+            Arrays.asList(
+                archivedPrefix + ".commits_.archive.1_1-0-1",
+                archivedPrefix + ".commits_.archive.4",
+                archivedPrefix + ".commits_.archive.6",
+                archivedPrefix + ".commits_.archive.8")))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                Arrays.asList(
+                    generateFileObj(".commits_.archive.2_1-0-1", false),
+                    generateFileObj(".commits_.archive.5_1-0-1", false))));
+
+    Checkpoint checkpoint0 = generateCheckpointObj(1, Instant.EPOCH, false, HOODIE_PROPERTIES_FILE);
+    Checkpoint checkpoint1 =
+        generateCheckpointObj(2, Instant.EPOCH, false, ".commits_.archive.1_1-0-1");
+    Checkpoint checkpoint2 =
+        generateCheckpointObj(3, Instant.EPOCH, false, ".commits_.archive.2_1-0-1");
+    Checkpoint checkpoint3 =
+        generateCheckpointObj(4, Instant.EPOCH, false, ".commits_.archive.5_1-0-1");
+    List<Pair<String, Checkpoint>> expectedBatches =
+        Arrays.asList(
+            Pair.of(HOODIE_PROPERTIES_FILE, checkpoint0),
+            Pair.of(".commits_.archive.1_1-0-1", checkpoint1),
+            Pair.of(".commits_.archive.2_1-0-1", checkpoint2),
+            Pair.of(".commits_.archive.5_1-0-1", checkpoint3));
+    for (Pair<String, Checkpoint> expectedBatch : expectedBatches) {
+      stubUploadInstantsCalls(
+          Collections.singletonList(UploadedFile.builder().name(expectedBatch.getLeft()).build()),
+          expectedBatch.getRight(),
+          CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    }
+
+    Checkpoint response =
+        timelineCommitInstantsUploaderSpy
+            .batchUploadWithCheckpoint(
+                TABLE_ID.toString(),
+                TABLE,
+                INITIAL_CHECKPOINT,
+                CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+            .join();
+
+    verify(asyncStorageClient, times(0)).listFilesInDirByPage(anyString(), any());
+    for (Pair<String, Checkpoint> expectedBatch : expectedBatches) {
+      verifyFilesUploaded(
+          Collections.singletonList(UploadedFile.builder().name(expectedBatch.getLeft()).build()),
+          expectedBatch.getRight(),
+          CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    }
+    assertEquals(checkpoint3, response);
+  }
+
   @Tag("Blocking")
   @ParameterizedTest
   @MethodSource("getActiveTimeLineIngestCases")
@@ -806,7 +891,7 @@ class TimelineCommitInstantsUploaderTest {
   @Test
   void testUploadInstantsInArchivedTimelineWhenNoInstantsPresent() {
     // no files present in archived timeline
-    mockListAllFilesInDir(
+    mockListFilesInDirByPage(
         TABLE.getAbsoluteTableUri() + ".hoodie/" + ARCHIVED_FOLDER_PREFIX, Collections.emptyList());
 
     // uploading instants in archived timeline for the first time
@@ -819,10 +904,208 @@ class TimelineCommitInstantsUploaderTest {
                 CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
             .join();
 
-    verify(asyncStorageClient, times(1)).listAllFilesInDir(anyString());
+    verify(asyncStorageClient, times(1)).listFilesInDirByPage(anyString(), any());
     assertEquals(INITIAL_CHECKPOINT, checkpoint);
   }
 
+  @Test
+  @SneakyThrows
+  void testUploadUrlsArePrefetchedWhileBatchUploads() {
+    TimelineCommitInstantsUploader timelineCommitInstantsUploaderSpy =
+        spy(timelineCommitInstantsUploader);
+    doReturn(1)
+        .when(timelineCommitInstantsUploaderSpy)
+        .getUploadBatchSize(
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED); // 1 file will be processed at a time
+    when(metadataExtractorConfig.getUploadUrlPrefetchBatches()).thenReturn(1);
+    mockListFilesInDirByPage(
+        TABLE.getAbsoluteTableUri() + ".hoodie/" + ARCHIVED_FOLDER_PREFIX,
+        Arrays.asList(
+            generateFileObj(".commits_.archive.1_1-0-1", false),
+            generateFileObj(".commits_.archive.2_1-0-1", false)));
+
+    List<UploadedFile> batch0 =
+        Collections.singletonList(UploadedFile.builder().name(HOODIE_PROPERTIES_FILE).build());
+    List<UploadedFile> batch1 =
+        Collections.singletonList(UploadedFile.builder().name(".commits_.archive.1_1-0-1").build());
+    List<UploadedFile> batch2 =
+        Collections.singletonList(UploadedFile.builder().name(".commits_.archive.2_1-0-1").build());
+    Checkpoint checkpoint0 = generateCheckpointObj(1, Instant.EPOCH, false, HOODIE_PROPERTIES_FILE);
+    Checkpoint checkpoint1 =
+        generateCheckpointObj(2, Instant.EPOCH, false, ".commits_.archive.1_1-0-1");
+    Checkpoint checkpoint2 =
+        generateCheckpointObj(3, Instant.EPOCH, false, ".commits_.archive.2_1-0-1");
+    stubUploadInstantsCalls(batch0, checkpoint0, CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    stubUploadInstantsCalls(batch1, checkpoint1, CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    stubUploadInstantsCalls(batch2, checkpoint2, CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    CompletableFuture<Void> firstBatchUpload = new CompletableFuture<>();
+    when(presignedUrlFileUploader.uploadFileToPresignedUrl(
+            PRESIGNED_URL_PREFIX + HOODIE_PROPERTIES_FILE,
+            S3_TABLE_URI + ".hoodie/" + HOODIE_PROPERTIES_FILE,
+            UploadCompression.NONE))
+        .thenReturn(firstBatchUpload);
+
+    CompletableFuture<Checkpoint> uploadFuture =
+        timelineCommitInstantsUploaderSpy.batchUploadWithCheckpoint(
+            TABLE_ID.toString(),
+            TABLE,
+            INITIAL_CHECKPOINT,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+
+    // the upload urls of the second batch are requested while the first batch uploads
+    verify(onehouseApiClient, timeout(5000).times(2)).generateCommitMetadataUploadUrl(any());
+    verify(onehouseApiClient, never()).upsertTableMetricsCheckpoint(any());
+    firstBatchUpload.complete(null);
+
+    assertEquals(checkpoint2, uploadFuture.join());
+    verify(onehouseApiClient, times(3)).generateCommitMetadataUploadUrl(any());
+    InOrder checkpointOrder = inOrder(onehouseApiClient);
+    for (Checkpoint checkpoint : Arrays.asList(checkpoint0, checkpoint1, checkpoint2)) {
+      String serializedCheckpoint = mapper.writeValueAsString(checkpoint);
+      checkpointOrder
+          .verify(onehouseApiClient)
+          .upsertTableMetricsCheckpoint(
+              argThat(request -> request.getCheckpoint().equals(serializedCheckpoint)));
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void testCheckpointsOfConsecutiveBatchesAreCoalesced() {
+    TimelineCommitInstantsUploader timelineCommitInstantsUploaderSpy =
+        spy(timelineCommitInstantsUploader);
+    doReturn(1)
+        .when(timelineCommitInstantsUploaderSpy)
+        .getUploadBatchSize(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    when(metadataExtractorConfig.getCheckpointFlushBatches()).thenReturn(2);
+    when(metadataExtractorConfig.getCheckpointFlushIntervalSeconds()).thenReturn(3600);
+    mockListFilesInDirByPage(
+        TABLE.getAbsoluteTableUri() + ".hoodie/" + ARCHIVED_FOLDER_PREFIX,
+        Arrays.asList(
+            generateFileObj(".commits_.archive.1_1-0-1", false),
+            generateFileObj(".commits_.archive.2_1-0-1", false)));
+    when(onehouseApiClient.generateCommitMetadataUploadUrl(any()))
+        .thenAnswer(
+            invocation -> {
+              GenerateCommitMetadataUploadUrlRequest request = invocation.getArgument(0);
+              return CompletableFuture.completedFuture(
+                  GenerateCommitMetadataUploadUrlResponse.builder()
+                      .uploadUrls(
+                          request.getCommitInstants().stream()
+                              .map(file -> PRESIGNED_URL_PREFIX + file)
+                              .collect(Collectors.toList()))
+                      .build());
+            });
+    when(presignedUrlFileUploader.uploadFileToPresignedUrl(anyString(), anyString(), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+    when(onehouseApiClient.upsertTableMetricsCheckpoint(any()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                UpsertTableMetricsCheckpointResponse.builder().build()));
+
+    Checkpoint checkpoint =
+        timelineCommitInstantsUploaderSpy
+            .batchUploadWithCheckpoint(
+                TABLE_ID.toString(),
+                TABLE,
+                INITIAL_CHECKPOINT,
+                CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+            .join();
+
+    // the checkpoints of the first two batches are written together, the last one when done
+    Checkpoint checkpoint1 =
+        generateCheckpointObj(2, Instant.EPOCH, false, ".commits_.archive.1_1-0-1");
+    Checkpoint checkpoint2 =
+        generateCheckpointObj(3, Instant.EPOCH, false, ".commits_.archive.2_1-0-1");
+    assertEquals(checkpoint2, checkpoint);
+    ArgumentCaptor<UpsertTableMetricsCheckpointRequest> requestCaptor =
+        ArgumentCaptor.forClass(UpsertTableMetricsCheckpointRequest.class);
+    verify(onehouseApiClient, times(2)).upsertTableMetricsCheckpoint(requestCaptor.capture());
+    assertEquals(
+        mapper.writeValueAsString(checkpoint1),
+        requestCaptor.getAllValues().get(0).getCheckpoint());
+    assertEquals(
+        Arrays.asList(HOODIE_PROPERTIES_FILE, "archived/.commits_.archive.1_1-0-1"),
+        requestCaptor.getAllValues().get(0).getFilesUploaded());
+    assertEquals(
+        mapper.writeValueAsString(checkpoint2),
+        requestCaptor.getAllValues().get(1).getCheckpoint());
+    assertEquals(
+        Collections.singletonList("archived/.commits_.archive.2_1-0-1"),
+        requestCaptor.getAllValues().get(1).getFilesUploaded());
+    verify(hudiMetadataExtractorMetrics).incrementCheckpointFlushCounters(eq(2L), anyLong());
+    verify(hudiMetadataExtractorMetrics).incrementCheckpointFlushCounters(eq(1L), anyLong());
+  }
+
+  @Test
+  @SneakyThrows
+  void testHeldBackCheckpointsAreFlushedOnShutdown() {
+    TimelineCommitInstantsUploader timelineCommitInstantsUploaderSpy =
+        spy(timelineCommitInstantsUploader);
+    doReturn(1)
+        .when(timelineCommitInstantsUploaderSpy)
+        .getUploadBatchSize(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    when(metadataExtractorConfig.getCheckpointFlushBatches()).thenReturn(10);
+    when(metadataExtractorConfig.getCheckpointFlushIntervalSeconds()).thenReturn(3600);
+    mockListFilesInDirByPage(
+        TABLE.getAbsoluteTableUri() + ".hoodie/" + ARCHIVED_FOLDER_PREFIX,
+        Arrays.asList(
+            generateFileObj(".commits_.archive.1_1-0-1", false),
+            generateFileObj(".commits_.archive.2_1-0-1", false)));
+    when(onehouseApiClient.generateCommitMetadataUploadUrl(any()))
+        .thenAnswer(
+            invocation -> {
+              GenerateCommitMetadataUploadUrlRequest request = invocation.getArgument(0);
+              return CompletableFuture.completedFuture(
+                  GenerateCommitMetadataUploadUrlResponse.builder()
+                      .uploadUrls(
+                          request.getCommitInstants().stream()
+                              .map(file -> PRESIGNED_URL_PREFIX + file)
+                              .collect(Collectors.toList()))
+                      .build());
+            });
+    // the last batch is still uploading when the extractor shuts down
+    CompletableFuture<Void> lastBatchUpload = new CompletableFuture<>();
+    when(presignedUrlFileUploader.uploadFileToPresignedUrl(anyString(), anyString(), any()))
+        .thenAnswer(
+            invocation ->
+                invocation.<String>getArgument(0).endsWith(".commits_.archive.2_1-0-1")
+                    ? lastBatchUpload
+                    : CompletableFuture.completedFuture(null));
+    when(onehouseApiClient.upsertTableMetricsCheckpoint(any()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                UpsertTableMetricsCheckpointResponse.builder().build()));
+
+    CompletableFuture<Checkpoint> uploadFuture =
+        timelineCommitInstantsUploaderSpy.batchUploadWithCheckpoint(
+            TABLE_ID.toString(),
+            TABLE,
+            INITIAL_CHECKPOINT,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    verify(presignedUrlFileUploader, timeout(5000).times(3))
+        .uploadFileToPresignedUrl(anyString(), anyString(), any());
+    verify(onehouseApiClient, never()).upsertTableMetricsCheckpoint(any());
+
+    timelineCommitInstantsUploaderSpy.flushCheckpoints().join();
+
+    // the checkpoint of the uploaded batches is written, the last batch is written once done
+    Checkpoint checkpoint1 =
+        generateCheckpointObj(2, Instant.EPOCH, false, ".commits_.archive.1_1-0-1");
+    Checkpoint checkpoint2 =
+        generateCheckpointObj(3, Instant.EPOCH, false, ".commits_.archive.2_1-0-1");
+    ArgumentCaptor<UpsertTableMetricsCheckpointRequest> requestCaptor =
+        ArgumentCaptor.forClass(UpsertTableMetricsCheckpointRequest.class);
+    verify(onehouseApiClient).upsertTableMetricsCheckpoint(requestCaptor.capture());
+    assertEquals(mapper.writeValueAsString(checkpoint1), requestCaptor.getValue().getCheckpoint());
+    assertEquals(
+        Arrays.asList(HOODIE_PROPERTIES_FILE, "archived/.commits_.archive.1_1-0-1"),
+        requestCaptor.getValue().getFilesUploaded());
+    lastBatchUpload.complete(null);
+    assertEquals(checkpoint2, uploadFuture.join());
+    verify(onehouseApiClient, times(2)).upsertTableMetricsCheckpoint(any());
+  }
+
   @Test
   void testUploadInstantFailureWhenGeneratingUploadUrl() {
     TimelineCommitInstantsUploader timelineCommitInstantsUploaderSpy =
@@ -833,7 +1116,7 @@ class TimelineCommitInstantsUploaderTest {
         .getUploadBatchSize(
             CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED); // 1 file will be processed at a time
 
-    mockListAllFilesInDir(
+    mockListFilesInDirByPage(
         TABLE.getAbsoluteTableUri() + ".hoodie/" + ARCHIVED_FOLDER_PREFIX,
         Arrays.asList(
             generateFileObj(".commits_.archive.1_1-0-1", false),
@@ -862,7 +1145,7 @@ class TimelineCommitInstantsUploaderTest {
         .join();
 
     // generate commit metadata api call will fail and no more batches will be processed
-    verify(asyncStorageClient, times(1)).listAllFilesInDir(anyString());
+    verify(asyncStorageClient, times(1)).listFilesInDirByPage(anyString(), any());
     verify(onehouseApiClient, times(1)).generateCommitMetadataUploadUrl(expectedRequest);
     verifyNoMoreInteractions(presignedUrlFileUploader);
     verify(hudiMetadataExtractorMetrics)
@@ -873,8 +1156,6 @@ class TimelineCommitInstantsUploaderTest {
   @Test
   @SneakyThrows
   void testUploadInstantFailureWhenUpdatingCheckpoint() {
-    when(metadataExtractorConfig.getFileUploadStreamBatchSize())
-        .thenReturn(DEFAULT_FILE_UPLOAD_STREAM_BATCH_SIZE);
     TimelineCommitInstantsUploader timelineCommitInstantsUploaderSpy =
         spy(timelineCommitInstantsUploader);
 
@@ -882,7 +1163,7 @@ class TimelineCommitInstantsUploaderTest {
         .when(timelineCommitInstantsUploaderSpy)
         .getUploadBatchSize(
             CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED); // 1 file will be processed at a time
-    mockListAllFilesInDir(
+    mockListFilesInDirByPage(
         TABLE.getAbsoluteTableUri() + ".hoodie/" + ARCHIVED_FOLDER_PREFIX,
         Arrays.asList(
             generateFileObj(".commits_.archive.1_1-0-1", false),
@@ -909,7 +1190,7 @@ class TimelineCommitInstantsUploaderTest {
                             .map(file -> PRESIGNED_URL_PREFIX + file)
                             .collect(Collectors.toList()))
                     .build()));
-    when(presignedUrlFileUploader.uploadFileToPresignedUrl(anyString(), anyString(), anyInt()))
+    when(presignedUrlFileUploader.uploadFileToPresignedUrl(anyString(), anyString(), any()))
         .thenReturn(CompletableFuture.completedFuture(null));
 
     when(onehouseApiClient.upsertTableMetricsCheckpoint(
@@ -934,16 +1215,248 @@ class TimelineCommitInstantsUploaderTest {
         .join();
 
     // update checkpoint api call will fail and no more batches will be processed
-    verify(asyncStorageClient, times(1)).listAllFilesInDir(anyString());
+    verify(asyncStorageClient, times(1)).listFilesInDirByPage(anyString(), any());
     verify(onehouseApiClient, times(1)).generateCommitMetadataUploadUrl(expectedRequest);
     verify(presignedUrlFileUploader, times(1))
-        .uploadFileToPresignedUrl(anyString(), anyString(), anyInt());
+        .uploadFileToPresignedUrl(anyString(), anyString(), any());
     verify(onehouseApiClient, times(1)).upsertTableMetricsCheckpoint(any());
     verify(hudiMetadataExtractorMetrics)
         .incrementTableMetadataProcessingFailureCounter(
             MetricsConstants.MetadataUploadFailureReasons.UNKNOWN);
   }
 
+  @ParameterizedTest
+  @MethodSource("getUploadCompressionTestCases")
+  @SneakyThrows
+  void testUploadCompressionRequiresApiSupport(
+      UploadCompression configuredUploadCompression,
+      List<String> supportedContentEncodings,
+      UploadCompression expectedUploadCompression) {
+    TimelineCommitInstantsUploader timelineCommitInstantsUploaderSpy =
+        spy(timelineCommitInstantsUploader);
+    doReturn(1)
+        .when(timelineCommitInstantsUploaderSpy)
+        .getUploadBatchSize(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    when(metadataExtractorConfig.getUploadCompression()).thenReturn(configuredUploadCompression);
+    mockListFilesInDirByPage(
+        TABLE.getAbsoluteTableUri() + ".hoodie/" + ARCHIVED_FOLDER_PREFIX,
+        Collections.singletonList(generateFileObj(".commits_.archive.1_1-0-1", false)));
+    when(onehouseApiClient.generateCommitMetadataUploadUrl(any()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                GenerateCommitMetadataUploadUrlResponse.builder()
+                    .uploadUrls(Collections.singletonList(PRESIGNED_URL_PREFIX + "file"))
+                    .supportedContentEncodings(supportedContentEncodings)
+                    .build()));
+    when(presignedUrlFileUploader.uploadFileToPresignedUrl(anyString(), anyString(), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+    UpsertTableMetricsCheckpointResponse failureResponse =
+        UpsertTableMetricsCheckpointResponse.builder().build();
+    failureResponse.setError(500, "api error");
+    when(onehouseApiClient.upsertTableMetricsCheckpoint(any()))
+        .thenReturn(CompletableFuture.completedFuture(failureResponse));
+
+    timelineCommitInstantsUploaderSpy
+        .batchUploadWithCheckpoint(
+            TABLE_ID.toString(),
+            TABLE,
+            INITIAL_CHECKPOINT,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+        .join();
+
+    verify(presignedUrlFileUploader)
+        .uploadFileToPresignedUrl(
+            PRESIGNED_URL_PREFIX + "file",
+            S3_TABLE_URI + ".hoodie/hoodie.properties",
+            expectedUploadCompression);
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  @SneakyThrows
+  void testBundleUploadFallsBackToPerFileUploads(boolean isBundleSupported) {
+    TimelineCommitInstantsUploader timelineCommitInstantsUploaderSpy =
+        spy(timelineCommitInstantsUploader);
+    doReturn(2)
+        .when(timelineCommitInstantsUploaderSpy)
+        .getUploadBatchSize(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    when(metadataExtractorConfig.isBundleInstantUploads()).thenReturn(true);
+    mockListFilesInDirByPage(
+        TABLE.getAbsoluteTableUri() + ".hoodie/" + ARCHIVED_FOLDER_PREFIX,
+        Collections.singletonList(generateFileObj(".commits_.archive.1_1-0-1", false)));
+    List<String> commitInstants =
+        Arrays.asList("hoodie.properties", "archived/.commits_.archive.1_1-0-1");
+    when(onehouseApiClient.generateCommitMetadataUploadUrl(
+            GenerateCommitMetadataUploadUrlRequest.builder()
+                .tableId(TABLE_ID.toString())
+                .commitInstants(commitInstants)
+                .commitTimelineType(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+                .bundleUpload(true)
+                .build()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                GenerateCommitMetadataUploadUrlResponse.builder()
+                    .uploadUrls(
+                        commitInstants.stream()
+                            .map(file -> PRESIGNED_URL_PREFIX + file)
+                            .collect(Collectors.toList()))
+                    .bundleUploadUrl(isBundleSupported ? PRESIGNED_URL_PREFIX + "bundle" : null)
+                    .build()));
+    if (isBundleSupported) {
+      when(presignedUrlFileUploader.uploadBundleToPresignedUrl(anyString(), any()))
+          .thenReturn(CompletableFuture.completedFuture(null));
+    } else {
+      when(presignedUrlFileUploader.uploadFileToPresignedUrl(anyString(), anyString(), any()))
+          .thenReturn(CompletableFuture.completedFuture(null));
+    }
+    UpsertTableMetricsCheckpointResponse failureResponse =
+        UpsertTableMetricsCheckpointResponse.builder().build();
+    failureResponse.setError(500, "api error");
+    when(onehouseApiClient.upsertTableMetricsCheckpoint(any()))
+        .thenReturn(CompletableFuture.completedFuture(failureResponse));
+
+    timelineCommitInstantsUploaderSpy
+        .batchUploadWithCheckpoint(
+            TABLE_ID.toString(),
+            TABLE,
+            INITIAL_CHECKPOINT,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+        .join();
+
+    if (isBundleSupported) {
+      verify(presignedUrlFileUploader)
+          .uploadBundleToPresignedUrl(
+              PRESIGNED_URL_PREFIX + "bundle",
+              Arrays.asList(
+                  Pair.of("hoodie.properties", S3_TABLE_URI + ".hoodie/hoodie.properties"),
+                  Pair.of(
+                      "archived/.commits_.archive.1_1-0-1",
+                      S3_TABLE_URI + ".hoodie/archived/.commits_.archive.1_1-0-1")));
+      verify(presignedUrlFileUploader, never())
+          .uploadFileToPresignedUrl(anyString(), anyString(), any());
+    } else {
+      verify(presignedUrlFileUploader, times(2))
+          .uploadFileToPresignedUrl(anyString(), anyString(), eq(UploadCompression.NONE));
+      verify(presignedUrlFileUploader, never()).uploadBundleToPresignedUrl(anyString(), any());
+    }
+    verify(hudiMetadataExtractorMetrics, times(2)).incrementMetadataUploadSuccessCounter();
+  }
+
+  @Test
+  void testLargeInstantFileIsUploadedInParts() {
+    TimelineCommitInstantsUploader timelineCommitInstantsUploaderSpy =
+        spy(timelineCommitInstantsUploader);
+    doReturn(2)
+        .when(timelineCommitInstantsUploaderSpy)
+        .getUploadBatchSize(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED);
+    long mebibyte = 1024L * 1024;
+    when(metadataExtractorConfig.getMultipartUploadThresholdBytes()).thenReturn(16 * mebibyte);
+    when(metadataExtractorConfig.getMultipartUploadPartSizeBytes()).thenReturn(8 * mebibyte);
+    when(metadataExtractorConfig.getMultipartUploadMaxConcurrentParts()).thenReturn(2);
+    mockListFilesInDirByPage(
+        TABLE.getAbsoluteTableUri() + ".hoodie/" + ARCHIVED_FOLDER_PREFIX,
+        Collections.singletonList(
+            File.builder()
+                .filename(".commits_.archive.1_1-0-1")
+                .lastModifiedAt(Instant.EPOCH)
+                .size(20 * mebibyte)
+                .build()));
+    String archivedInstant = "archived/.commits_.archive.1_1-0-1";
+    String archivedFileUri = S3_TABLE_URI + ".hoodie/" + archivedInstant;
+    List<String> commitInstants = Arrays.asList("hoodie.properties", archivedInstant);
+    when(onehouseApiClient.generateCommitMetadataUploadUrl(
+            GenerateCommitMetadataUploadUrlRequest.builder()
+                .tableId(TABLE_ID.toString())
+                .commitInstants(commitInstants)
+                .commitTimelineType(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+                .build()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                GenerateCommitMetadataUploadUrlResponse.builder()
+                    .uploadUrls(
+                        commitInstants.stream()
+                            .map(file -> PRESIGNED_URL_PREFIX + file)
+                            .collect(Collectors.toList()))
+                    .build()));
+    when(presignedUrlFileUploader.uploadFileToPresignedUrl(
+            PRESIGNED_URL_PREFIX + "hoodie.properties",
+            S3_TABLE_URI + ".hoodie/hoodie.properties",
+            UploadCompression.NONE))
+        .thenReturn(CompletableFuture.completedFuture(null));
+    List<String> partUploadUrls =
+        Arrays.asList(
+            PRESIGNED_URL_PREFIX + "part1",
+            PRESIGNED_URL_PREFIX + "part2",
+            PRESIGNED_URL_PREFIX + "part3");
+    when(onehouseApiClient.generateMultipartUploadUrls(
+            GenerateMultipartUploadUrlsRequest.builder()
+                .tableId(TABLE_ID.toString())
+                .commitTimelineType(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+                .commitInstant(archivedInstant)
+                .numParts(3)
+                .build()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                GenerateMultipartUploadUrlsResponse.builder()
+                    .uploadId("upload-id")
+                    .partUploadUrls(partUploadUrls)
+                    .build()));
+    when(presignedUrlFileUploader.uploadFilePartsToPresignedUrls(
+            partUploadUrls, archivedFileUri, 20 * mebibyte, 8 * mebibyte, 2))
+        .thenReturn(
+            CompletableFuture.completedFuture(Arrays.asList("etag-1", "etag-2", "etag-3")));
+    CompleteMultipartUploadRequest expectedCompleteRequest =
+        CompleteMultipartUploadRequest.builder()
+            .tableId(TABLE_ID.toString())
+            .commitTimelineType(CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+            .commitInstant(archivedInstant)
+            .uploadId("upload-id")
+            .parts(
+                Arrays.asList(
+                    UploadedPart.builder().partNumber(1).etag("etag-1").build(),
+                    UploadedPart.builder().partNumber(2).etag("etag-2").build(),
+                    UploadedPart.builder().partNumber(3).etag("etag-3").build()))
+            .build();
+    when(onehouseApiClient.completeMultipartUpload(expectedCompleteRequest))
+        .thenReturn(
+            CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+    UpsertTableMetricsCheckpointResponse failureResponse =
+        UpsertTableMetricsCheckpointResponse.builder().build();
+    failureResponse.setError(500, "api error");
+    when(onehouseApiClient.upsertTableMetricsCheckpoint(any()))
+        .thenReturn(CompletableFuture.completedFuture(failureResponse));
+
+    timelineCommitInstantsUploaderSpy
+        .batchUploadWithCheckpoint(
+            TABLE_ID.toString(),
+            TABLE,
+            INITIAL_CHECKPOINT,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED)
+        .join();
+
+    // only the large file is uploaded in parts, and the upload is completed once all parts are in
+    InOrder multipartUploadOrder = inOrder(onehouseApiClient, presignedUrlFileUploader);
+    multipartUploadOrder.verify(onehouseApiClient).generateMultipartUploadUrls(any());
+    multipartUploadOrder
+        .verify(presignedUrlFileUploader)
+        .uploadFilePartsToPresignedUrls(any(), anyString(), anyLong(), anyLong(), anyInt());
+    multipartUploadOrder.verify(onehouseApiClient).completeMultipartUpload(expectedCompleteRequest);
+    verify(presignedUrlFileUploader, never())
+        .uploadFileToPresignedUrl(
+            PRESIGNED_URL_PREFIX + archivedInstant, archivedFileUri, UploadCompression.NONE);
+    verify(hudiMetadataExtractorMetrics, times(2)).incrementMetadataUploadSuccessCounter();
+  }
+
+  static Stream<Arguments> getUploadCompressionTestCases() {
+    return Stream.of(
+        Arguments.of(UploadCompression.NONE, Arrays.asList("gzip", "zstd"), UploadCompression.NONE),
+        Arguments.of(UploadCompression.GZIP, null, UploadCompression.NONE),
+        Arguments.of(
+            UploadCompression.ZSTD, Collections.singletonList("gzip"), UploadCompression.NONE),
+        Arguments.of(UploadCompression.GZIP, Arrays.asList("gzip", "zstd"), UploadCompression.GZIP),
+        Arguments.of(UploadCompression.ZSTD, Arrays.asList("gzip", "zstd"), UploadCompression.ZSTD));
+  }
+
   @Test
   void testGetUploadBatchSize(TestInfo testInfo) {
     when(metadataExtractorConfig.getPresignedUrlRequestBatchSizeArchivedTimeline())
@@ -968,9 +1481,20 @@ class TimelineCommitInstantsUploaderTest {
         .thenReturn(CompletableFuture.completedFuture(Pair.of(nextContinuationToken, files)));
   }
 
-  private void mockListAllFilesInDir(String dirUri, List<File> files) {
-    when(asyncStorageClient.listAllFilesInDir(dirUri))
-        .thenReturn(CompletableFuture.completedFuture(files));
+  // hands over the files to the page consumer one file per page
+  private void mockListFilesInDirByPage(String dirUri, List<File> files) {
+    when(asyncStorageClient.listFilesInDirByPage(eq(dirUri), any()))
+        .thenAnswer(
+            invocation -> {
+              Function<List<File>, CompletableFuture<Boolean>> pageConsumer =
+                  invocation.getArgument(1);
+              for (File file : files) {
+                if (!pageConsumer.apply(Collections.singletonList(file)).join()) {
+                  break;
+                }
+              }
+              return CompletableFuture.completedFuture(null);
+            });
   }
 
   private Checkpoint generateCheckpointObj(
@@ -1034,7 +1558,7 @@ class TimelineCommitInstantsUploaderTest {
       String fileUri =
           S3_TABLE_URI + ".hoodie/" + presignedUrl.substring(PRESIGNED_URL_PREFIX.length());
       when(presignedUrlFileUploader.uploadFileToPresignedUrl(
-              presignedUrl, fileUri, metadataExtractorConfig.getFileUploadStreamBatchSize()))
+              presignedUrl, fileUri, UploadCompression.NONE))
           .thenReturn(CompletableFuture.completedFuture(null));
     }
     when(onehouseApiClient.upsertTableMetricsCheckpoint(
@@ -1081,8 +1605,7 @@ class TimelineCommitInstantsUploaderTest {
       String fileUri =
           S3_TABLE_URI + ".hoodie/" + presignedUrl.substring(PRESIGNED_URL_PREFIX.length());
       verify(presignedUrlFileUploader, times(1))
-          .uploadFileToPresignedUrl(
-              presignedUrl, fileUri, metadataExtractorConfig.getFileUploadStreamBatchSize());
+          .uploadFileToPresignedUrl(presignedUrl, fileUri, UploadCompression.NONE);
     }
     verify(onehouseApiClient, times(1))
         .upsertTableMetricsCheckpoint(
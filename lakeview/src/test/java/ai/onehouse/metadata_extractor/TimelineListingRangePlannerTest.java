@@ -0,0 +1,97 @@
+package ai.onehouse.metadata_extractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import ai.onehouse.api.models.request.CommitTimelineType;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TimelineListingRangePlannerTest {
+  private static final String ACTIVE_PREFIX = "table/.hoodie/";
+  private static final String ARCHIVED_PREFIX = "table/.hoodie/archived/";
+  private static final Instant NOW = Instant.parse("2024-01-05T00:00:00Z");
+
+  @Test
+  void testPlanRangesForActiveTimeline() {
+    List<String> rangeStartAfters =
+        TimelineListingRangePlanner.planRangeStartAfters(
+            ACTIVE_PREFIX,
+            "20240101000000123.commit",
+            4,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE,
+            NOW);
+
+    assertEquals(
+        Arrays.asList(
+            ACTIVE_PREFIX + "20240101000000123.commit",
+            ACTIVE_PREFIX + "20240102000000",
+            ACTIVE_PREFIX + "20240103000000",
+            ACTIVE_PREFIX + "20240104000000"),
+        rangeStartAfters);
+  }
+
+  @Test
+  void testActiveTimelineIsNotSplitWithoutInstantTime() {
+    // the first page ended before any instant, eg: with folders like .aux/ or .temp/
+    assertEquals(
+        Collections.singletonList(ACTIVE_PREFIX + ".temp/"),
+        TimelineListingRangePlanner.planRangeStartAfters(
+            ACTIVE_PREFIX, ".temp/", 4, CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE, NOW));
+    assertEquals(
+        Collections.singletonList(ACTIVE_PREFIX + "111.commit"),
+        TimelineListingRangePlanner.planRangeStartAfters(
+            ACTIVE_PREFIX, "111.commit", 4, CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE, NOW));
+  }
+
+  @Test
+  void testActiveTimelineIsNotSplitForInstantsAfterNow() {
+    assertEquals(
+        Collections.singletonList(ACTIVE_PREFIX + "20240106000000.commit"),
+        TimelineListingRangePlanner.planRangeStartAfters(
+            ACTIVE_PREFIX,
+            "20240106000000.commit",
+            4,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ACTIVE,
+            NOW));
+  }
+
+  @Test
+  void testPlanRangesForArchivedTimeline() {
+    List<String> rangeStartAfters =
+        TimelineListingRangePlanner.planRangeStartAfters(
+            ARCHIVED_PREFIX,
+            ".commits_.archive.1_1-0-1",
+            4,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED,
+            NOW);
+
+    assertEquals(
+        Arrays.asList(
+            ARCHIVED_PREFIX + ".commits_.archive.1_1-0-1",
+            ARCHIVED_PREFIX + ".commits_.archive.4",
+            ARCHIVED_PREFIX + ".commits_.archive.6",
+            ARCHIVED_PREFIX + ".commits_.archive.8"),
+        rangeStartAfters);
+  }
+
+  @Test
+  void testArchivedTimelineRangesAreLimitedByRemainingKeySpace() {
+    List<String> rangeStartAfters =
+        TimelineListingRangePlanner.planRangeStartAfters(
+            ARCHIVED_PREFIX,
+            ".commits_.archive.78_1-0-1",
+            4,
+            CommitTimelineType.COMMIT_TIMELINE_TYPE_ARCHIVED,
+            NOW);
+
+    assertEquals(
+        Arrays.asList(
+            ARCHIVED_PREFIX + ".commits_.archive.78_1-0-1",
+            ARCHIVED_PREFIX + ".commits_.archive.8",
+            ARCHIVED_PREFIX + ".commits_.archive.9"),
+        rangeStartAfters);
+  }
+}
@@ -31,6 +31,10 @@ class LakeViewExtractorMetricsTest {
 
   @Mock private Metrics.Gauge tablesDiscoveredGaugeMetric;
   @Mock private Metrics.Gauge tablesProcessedGaugeMetric;
+  @Mock private Metrics.Gauge tableDiscoveryFrontierGaugeMetric;
+  @Mock private Metrics.Gauge gcsBlockingQueueGaugeMetric;
+  @Mock private Metrics.Gauge concurrencyLimitGaugeMetric;
+  @Mock private Metrics.Gauge concurrencyLimiterQueueGaugeMetric;
   private LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
 
   @BeforeEach
@@ -49,6 +53,16 @@ class LakeViewExtractorMetricsTest {
         "Number of tables processed during extractor run",
         getDefaultTags()))
         .thenReturn(tablesProcessedGaugeMetric);
+    when(metrics.gauge(
+            METRICS_COMMON_PREFIX + "table_discovery_frontier_size",
+            "Number of folders waiting to be listed during table discovery",
+            getDefaultTags()))
+        .thenReturn(tableDiscoveryFrontierGaugeMetric);
+    when(metrics.gauge(
+            METRICS_COMMON_PREFIX + "gcs_blocking_queue_size",
+            "Number of GCS calls waiting for a thread of the GCS executor",
+            getDefaultTags()))
+        .thenReturn(gcsBlockingQueueGaugeMetric);
 
     hudiMetadataExtractorMetrics = new LakeViewExtractorMetrics(metrics, configProvider);
   }
@@ -109,6 +123,80 @@ class LakeViewExtractorMetricsTest {
     verify(tablesProcessedGaugeMetric).increment();
   }
 
+  @Test
+  void testSetTableDiscoveryFrontierSize() {
+    hudiMetadataExtractorMetrics.setTableDiscoveryFrontierSize(7L);
+    verify(tableDiscoveryFrontierGaugeMetric).setValue(7L);
+  }
+
+  @Test
+  void testSetGcsBlockingQueueSize() {
+    hudiMetadataExtractorMetrics.setGcsBlockingQueueSize(3L);
+    verify(gcsBlockingQueueGaugeMetric).setValue(3L);
+  }
+
+  @Test
+  void testIncrementTableDiscoveryFoldersListedCounter() {
+    hudiMetadataExtractorMetrics.incrementTableDiscoveryFoldersListedCounter();
+    verify(metrics).increment(TABLE_DISCOVERY_FOLDERS_LISTED_COUNTER, getDefaultTags());
+  }
+
+  @Test
+  void testIncrementUploadCompressionCounters() {
+    hudiMetadataExtractorMetrics.incrementUploadCompressionCounters(
+        MetadataExtractorConfig.UploadCompression.ZSTD, 1000L, 100L, 2_000_000_000L);
+    List<Tag> tags = getDefaultTags();
+    tags.add(Tag.of(UPLOAD_COMPRESSION_TAG_KEY, "ZSTD"));
+    verify(metrics).increment(UPLOAD_UNCOMPRESSED_BYTES_COUNTER, tags, 1000.0);
+    verify(metrics).increment(UPLOAD_COMPRESSED_BYTES_COUNTER, tags, 100.0);
+    verify(metrics).increment(UPLOAD_COMPRESSION_CPU_SECONDS_COUNTER, tags, 2.0);
+  }
+
+  @Test
+  void testIncrementCheckpointFlushCounters() {
+    hudiMetadataExtractorMetrics.incrementCheckpointFlushCounters(5, 500_000_000L);
+    List<Tag> tags = getDefaultTags();
+    verify(metrics).increment(CHECKPOINT_FLUSH_COUNTER, tags);
+    verify(metrics).increment(CHECKPOINT_FLUSHED_BATCHES_COUNTER, tags, 5.0);
+    verify(metrics).increment(CHECKPOINT_FLUSH_SECONDS_COUNTER, tags, 0.5);
+  }
+
+  @ParameterizedTest
+  @EnumSource(MetricsConstants.ConcurrencyLimiterType.class)
+  void testSetConcurrencyLimiterGauges(MetricsConstants.ConcurrencyLimiterType limiterType) {
+    List<Tag> tags = getDefaultTags();
+    tags.add(Tag.of(CONCURRENCY_LIMITER_TAG_KEY, limiterType.name()));
+    when(metrics.gauge(
+            METRICS_COMMON_PREFIX + "concurrency_limit",
+            "Number of concurrent requests allowed by the concurrency limiter",
+            tags))
+        .thenReturn(concurrencyLimitGaugeMetric);
+    when(metrics.gauge(
+            METRICS_COMMON_PREFIX + "concurrency_limiter_queue_size",
+            "Number of requests waiting for a permit of the concurrency limiter",
+            tags))
+        .thenReturn(concurrencyLimiterQueueGaugeMetric);
+
+    hudiMetadataExtractorMetrics.setConcurrencyLimit(limiterType, 12L);
+    hudiMetadataExtractorMetrics.setConcurrencyLimiterQueueSize(limiterType, 4L);
+
+    verify(concurrencyLimitGaugeMetric).setValue(12L);
+    verify(concurrencyLimiterQueueGaugeMetric).setValue(4L);
+  }
+
+  @ParameterizedTest
+  @EnumSource(MetricsConstants.ListingCacheType.class)
+  void testIncrementListingCacheCounters(MetricsConstants.ListingCacheType listingCacheType) {
+    hudiMetadataExtractorMetrics.incrementListingCacheHitCounter(listingCacheType);
+    hudiMetadataExtractorMetrics.incrementListingCacheMissCounter(listingCacheType);
+    hudiMetadataExtractorMetrics.incrementListingCacheEvictionCounter(listingCacheType);
+    List<Tag> tags = getDefaultTags();
+    tags.add(Tag.of(LISTING_CACHE_TYPE_TAG_KEY, listingCacheType.name()));
+    verify(metrics).increment(LISTING_CACHE_HIT_COUNTER, tags);
+    verify(metrics).increment(LISTING_CACHE_MISS_COUNTER, tags);
+    verify(metrics).increment(LISTING_CACHE_EVICTION_COUNTER, tags);
+  }
+
   private List<Tag> getDefaultTags() {
     List<Tag> tags = new ArrayList<>();
     tags.add(Tag.of(CONFIG_VERSION_TAG_KEY, ConfigVersion.V1.toString()));
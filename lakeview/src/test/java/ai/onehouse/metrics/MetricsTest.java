@@ -11,6 +11,7 @@ import io.micrometer.core.instrument.Tag;
 import io.micrometer.prometheus.PrometheusMeterRegistry;
 import io.prometheus.client.CollectorRegistry;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -72,6 +73,19 @@ class MetricsTest {
     verify(metrics, times(1)).createAndIncrementCounter(eq("test.counter"), anyList());
   }
 
+  @Test
+  void testIncrementByAmount() {
+    List<Tag> tags = new ArrayList<>();
+    tags.add(Tag.of("key1", "value1"));
+
+    doNothing()
+        .when(metrics)
+        .createAndIncrementCounter("test.counter", Arrays.asList("key1", "value1"), 5.0);
+    metrics.increment("test.counter", tags, 5.0);
+    verify(metrics, times(1))
+        .createAndIncrementCounter("test.counter", Arrays.asList("key1", "value1"), 5.0);
+  }
+
   @Test
   void testGauge() {
     List<Tag> tags = new ArrayList<>();
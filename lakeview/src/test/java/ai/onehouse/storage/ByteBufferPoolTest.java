@@ -0,0 +1,44 @@
+package ai.onehouse.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class ByteBufferPoolTest {
+
+  @Test
+  void testReleasedBuffersAreReused() {
+    ByteBufferPool byteBufferPool = new ByteBufferPool(8, 2, false);
+    ByteBuffer buffer = byteBufferPool.acquire();
+    buffer.put((byte) 1);
+    byteBufferPool.release(buffer);
+
+    ByteBuffer reusedBuffer = byteBufferPool.acquire();
+    assertSame(buffer, reusedBuffer);
+    assertEquals(0, reusedBuffer.position());
+    assertEquals(8, reusedBuffer.remaining());
+  }
+
+  @Test
+  void testPoolKeepsAtMostMaxPooledBuffers() {
+    ByteBufferPool byteBufferPool = new ByteBufferPool(8, 1, true);
+    ByteBuffer buffer1 = byteBufferPool.acquire();
+    ByteBuffer buffer2 = byteBufferPool.acquire();
+    assertNotSame(buffer1, buffer2);
+    assertTrue(buffer1.isDirect());
+
+    byteBufferPool.release(buffer1);
+    byteBufferPool.release(buffer2);
+    assertEquals(1, byteBufferPool.getNumPooledBuffers());
+  }
+
+  @Test
+  void testInvalidBufferSize() {
+    assertThrows(IllegalArgumentException.class, () -> new ByteBufferPool(0, 1, false));
+  }
+}
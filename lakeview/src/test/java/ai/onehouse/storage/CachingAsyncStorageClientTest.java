@@ -0,0 +1,186 @@
+package ai.onehouse.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.onehouse.config.models.common.ListingCacheConfig;
+import ai.onehouse.constants.MetricsConstants;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import ai.onehouse.storage.models.File;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CachingAsyncStorageClientTest {
+  private static final String BUCKET = "bucket";
+  private static final String TABLE_PREFIX = "lake/table/";
+  private static final String TIMELINE_PREFIX = "lake/table/.hoodie/";
+  private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+  @Mock private AsyncStorageClient asyncStorageClient;
+  @Mock private LakeViewExtractorMetrics lakeViewExtractorMetrics;
+  @Mock private Clock clock;
+  private CachingAsyncStorageClient cachingAsyncStorageClient;
+
+  @BeforeEach
+  void setup() {
+    when(clock.instant()).thenReturn(NOW);
+    cachingAsyncStorageClient =
+        new CachingAsyncStorageClient(
+            asyncStorageClient,
+            ListingCacheConfig.builder()
+                .maxEntries(2)
+                .discoveryTtlSeconds(3600)
+                .timelineTtlSeconds(60)
+                .build(),
+            new StorageUtils(),
+            ForkJoinPool.commonPool(),
+            lakeViewExtractorMetrics,
+            clock);
+  }
+
+  @Test
+  void testListingIsServedFromCache() {
+    mockFetchObjectsByPage(TABLE_PREFIX, "file1");
+
+    Pair<String, List<File>> firstListing =
+        cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null).join();
+    Pair<String, List<File>> secondListing =
+        cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null).join();
+
+    assertEquals(firstListing, secondListing);
+    assertEquals("file1", secondListing.getRight().get(0).getFilename());
+    verify(asyncStorageClient, times(1)).fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null);
+    verify(lakeViewExtractorMetrics)
+        .incrementListingCacheMissCounter(MetricsConstants.ListingCacheType.DISCOVERY);
+    verify(lakeViewExtractorMetrics)
+        .incrementListingCacheHitCounter(MetricsConstants.ListingCacheType.DISCOVERY);
+  }
+
+  @Test
+  void testListAllFilesInDirIsServedFromCache() {
+    mockFetchObjectsByPage(TABLE_PREFIX, "file1");
+
+    cachingAsyncStorageClient.listAllFilesInDir("s3://" + BUCKET + "/" + TABLE_PREFIX).join();
+    List<File> files =
+        cachingAsyncStorageClient.listAllFilesInDir("s3://" + BUCKET + "/" + TABLE_PREFIX).join();
+
+    assertEquals(1, files.size());
+    verify(asyncStorageClient, times(1)).fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null);
+  }
+
+  @Test
+  void testTimelineListingExpiresBeforeDiscoveryListing() {
+    mockFetchObjectsByPage(TABLE_PREFIX, "file1");
+    mockFetchObjectsByPage(TIMELINE_PREFIX, "111.commit");
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null).join();
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TIMELINE_PREFIX, null, null).join();
+
+    when(clock.instant()).thenReturn(NOW.plusSeconds(61));
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null).join();
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TIMELINE_PREFIX, null, null).join();
+
+    verify(asyncStorageClient, times(1)).fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null);
+    verify(asyncStorageClient, times(2)).fetchObjectsByPage(BUCKET, TIMELINE_PREFIX, null, null);
+    verify(lakeViewExtractorMetrics)
+        .incrementListingCacheEvictionCounter(MetricsConstants.ListingCacheType.TIMELINE);
+    verify(lakeViewExtractorMetrics, times(2))
+        .incrementListingCacheMissCounter(MetricsConstants.ListingCacheType.TIMELINE);
+  }
+
+  @Test
+  void testLeastRecentlyUsedListingIsEvicted() {
+    String otherTablePrefix = "lake/table2/";
+    String thirdTablePrefix = "lake/table3/";
+    mockFetchObjectsByPage(TABLE_PREFIX, "file1");
+    mockFetchObjectsByPage(otherTablePrefix, "file2");
+    mockFetchObjectsByPage(thirdTablePrefix, "file3");
+
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null).join();
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, otherTablePrefix, null, null).join();
+    // accessing the first listing makes the second one the least recently used
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null).join();
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, thirdTablePrefix, null, null).join();
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null).join();
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, otherTablePrefix, null, null).join();
+
+    assertEquals(2, cachingAsyncStorageClient.getCacheSize());
+    verify(asyncStorageClient, times(1)).fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null);
+    verify(asyncStorageClient, times(2)).fetchObjectsByPage(BUCKET, otherTablePrefix, null, null);
+    verify(lakeViewExtractorMetrics, times(2))
+        .incrementListingCacheEvictionCounter(MetricsConstants.ListingCacheType.DISCOVERY);
+  }
+
+  @Test
+  void testInvalidate() {
+    mockFetchObjectsByPage(TABLE_PREFIX, "file1");
+    mockFetchObjectsByPage(TIMELINE_PREFIX, "111.commit");
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null).join();
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TIMELINE_PREFIX, null, null).join();
+
+    cachingAsyncStorageClient.invalidate("s3://" + BUCKET + "/" + TIMELINE_PREFIX);
+    assertEquals(1, cachingAsyncStorageClient.getCacheSize());
+
+    cachingAsyncStorageClient.invalidate("s3://" + BUCKET + "/" + TABLE_PREFIX);
+    assertEquals(0, cachingAsyncStorageClient.getCacheSize());
+
+    cachingAsyncStorageClient.fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null).join();
+    cachingAsyncStorageClient.invalidateAll();
+    assertEquals(0, cachingAsyncStorageClient.getCacheSize());
+  }
+
+  @Test
+  void testFailedListingIsNotCached() {
+    CompletableFuture<Pair<String, List<File>>> failedListing = new CompletableFuture<>();
+    failedListing.completeExceptionally(new RuntimeException("listing failed"));
+    when(asyncStorageClient.fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null))
+        .thenReturn(failedListing)
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                Pair.of(null, Collections.singletonList(generateFile("file1")))));
+
+    CompletionException exception =
+        assertThrows(
+            CompletionException.class,
+            () ->
+                cachingAsyncStorageClient
+                    .fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null)
+                    .join());
+    assertEquals("listing failed", exception.getCause().getMessage());
+    assertEquals(0, cachingAsyncStorageClient.getCacheSize());
+
+    assertTrue(
+        cachingAsyncStorageClient
+            .fetchObjectsByPage(BUCKET, TABLE_PREFIX, null, null)
+            .join()
+            .getRight()
+            .stream()
+            .anyMatch(file -> file.getFilename().equals("file1")));
+  }
+
+  private void mockFetchObjectsByPage(String prefix, String filename) {
+    when(asyncStorageClient.fetchObjectsByPage(BUCKET, prefix, null, null))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                Pair.of(null, Collections.singletonList(generateFile(filename)))));
+  }
+
+  private static File generateFile(String filename) {
+    return File.builder().filename(filename).lastModifiedAt(NOW).isDirectory(false).build();
+  }
+}
@@ -2,7 +2,9 @@ package ai.onehouse.storage;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.api.gax.paging.Page;
@@ -11,6 +13,8 @@ import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.Storage;
 import com.google.common.collect.ImmutableList;
+import ai.onehouse.config.models.common.GCSConfig;
+import ai.onehouse.metrics.LakeViewExtractorMetrics;
 import ai.onehouse.storage.models.File;
 import ai.onehouse.storage.models.FileStreamData;
 import ai.onehouse.storage.providers.GcsClientProvider;
@@ -22,8 +26,13 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -40,6 +49,7 @@ class GCSAsyncStorageClientTest {
   @Mock private Blob mockBlob2;
   @Mock private Page<Blob> mockPage1;
   @Mock private Page<Blob> mockPage2;
+  @Mock private LakeViewExtractorMetrics mockLakeViewExtractorMetrics;
   private GCSAsyncStorageClient gcsAsyncStorageClient;
   private static final String GCS_URI = "gs://test-bucket/test-key";
   private static final String TEST_BUCKET = "test-bucket";
@@ -52,7 +62,11 @@ class GCSAsyncStorageClientTest {
     when(mockStorageUtils.getPathFromUrl(GCS_URI)).thenReturn(TEST_KEY);
     gcsAsyncStorageClient =
         new GCSAsyncStorageClient(
-            mockGcsClientProvider, mockStorageUtils, ForkJoinPool.commonPool());
+            mockGcsClientProvider,
+            mockStorageUtils,
+            ForkJoinPool.commonPool(),
+            GCSConfig.builder().readChunkSizeBytes(4).build(),
+            mockLakeViewExtractorMetrics);
   }
 
   @Test
@@ -143,6 +157,74 @@ class GCSAsyncStorageClientTest {
     assertArrayEquals(fileContent, resultContent);
   }
 
+  @Test
+  void testReadFileAsBytes() throws IOException {
+    byte[] fileContent = "test content".getBytes();
+    ReadChannel mockReadChannel = mock(ReadChannel.class);
+
+    when(mockGcsClient.get(BlobId.of(TEST_BUCKET, TEST_KEY))).thenReturn(mockBlob1);
+    when(mockBlob1.getSize()).thenReturn((long) fileContent.length);
+    when(mockBlob1.reader(Blob.BlobSourceOption.generationMatch())).thenReturn(mockReadChannel);
+    ByteBuffer buffer = ByteBuffer.wrap(fileContent);
+    // the channel returns at most one chunk per read
+    when(mockReadChannel.read(any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              ByteBuffer arg = invocation.getArgument(0);
+              int remaining = Math.min(4, Math.min(arg.remaining(), buffer.remaining()));
+              byte[] data = new byte[remaining];
+              buffer.get(data);
+              arg.put(data);
+              return remaining > 0 ? remaining : -1;
+            });
+
+    assertArrayEquals(fileContent, gcsAsyncStorageClient.readFileAsBytes(GCS_URI).join());
+    verify(mockReadChannel).setChunkSize(4);
+    verify(mockReadChannel).close();
+  }
+
+  @Test
+  void testGcsCallsBeyondQueueCapacityAreRejected() throws InterruptedException {
+    ThreadPoolExecutor blockingExecutor =
+        new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1));
+    GCSAsyncStorageClient boundedGcsAsyncStorageClient =
+        new GCSAsyncStorageClient(
+            mockGcsClientProvider,
+            mockStorageUtils,
+            ForkJoinPool.commonPool(),
+            GCSConfig.builder().build(),
+            mockLakeViewExtractorMetrics,
+            null,
+            blockingExecutor);
+    CountDownLatch gcsCallStarted = new CountDownLatch(1);
+    CountDownLatch gcsCallReleased = new CountDownLatch(1);
+    when(mockGcsClient.get(BlobId.of(TEST_BUCKET, TEST_KEY)))
+        .thenAnswer(
+            invocation -> {
+              gcsCallStarted.countDown();
+              gcsCallReleased.await();
+              return mockBlob1;
+            });
+
+    try {
+      CompletableFuture<Blob> runningCall = boundedGcsAsyncStorageClient.readBlob(GCS_URI);
+      gcsCallStarted.await();
+      CompletableFuture<Blob> queuedCall = boundedGcsAsyncStorageClient.readBlob(GCS_URI);
+      CompletableFuture<Blob> rejectedCall = boundedGcsAsyncStorageClient.readBlob(GCS_URI);
+
+      ExecutionException exception = assertThrows(ExecutionException.class, rejectedCall::get);
+      assertTrue(exception.getCause() instanceof RejectedExecutionException);
+      verify(mockLakeViewExtractorMetrics, atLeastOnce()).setGcsBlockingQueueSize(1L);
+
+      gcsCallReleased.countDown();
+      assertEquals(mockBlob1, runningCall.join());
+      assertEquals(mockBlob1, queuedCall.join());
+    } finally {
+      gcsCallReleased.countDown();
+      blockingExecutor.shutdown();
+    }
+  }
+
   private static byte[] toByteArray(InputStream is) throws IOException {
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
       byte[] buffer = new byte[8192];
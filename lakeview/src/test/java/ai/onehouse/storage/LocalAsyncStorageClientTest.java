@@ -0,0 +1,164 @@
+package ai.onehouse.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ai.onehouse.config.models.common.LocalFileSystemConfig;
+import ai.onehouse.storage.models.File;
+import ai.onehouse.storage.models.FileStreamData;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LocalAsyncStorageClientTest {
+  @TempDir Path tempDir;
+  private LocalAsyncStorageClient localAsyncStorageClient;
+  private String dirPrefix;
+
+  @BeforeEach
+  void setup() throws IOException {
+    localAsyncStorageClient =
+        new LocalAsyncStorageClient(
+            LocalFileSystemConfig.builder().listingPageSize(2).build(),
+            new StorageUtils(),
+            ForkJoinPool.commonPool());
+    dirPrefix = tempDir.toString().substring(1) + "/";
+
+    Files.write(tempDir.resolve("b.commit"), "b".getBytes(StandardCharsets.UTF_8));
+    Files.write(tempDir.resolve("a.commit"), "a".getBytes(StandardCharsets.UTF_8));
+    Files.write(tempDir.resolve("c.commit"), "c".getBytes(StandardCharsets.UTF_8));
+    Files.createDirectory(tempDir.resolve("d"));
+    Files.write(tempDir.resolve("d").resolve("nested"), new byte[0]);
+  }
+
+  @Test
+  void testFetchObjectsByPage() {
+    Pair<String, List<File>> firstPage =
+        localAsyncStorageClient.fetchObjectsByPage("", dirPrefix, null, null).join();
+    assertEquals(dirPrefix + "b.commit", firstPage.getLeft());
+    assertEquals(Arrays.asList("a.commit", "b.commit"), getFilenames(firstPage.getRight()));
+    assertTrue(firstPage.getRight().get(0).getLastModifiedAt().isAfter(Instant.EPOCH));
+
+    // continuation token takes precedence over startAfter, same as S3
+    Pair<String, List<File>> secondPage =
+        localAsyncStorageClient
+            .fetchObjectsByPage("", dirPrefix, firstPage.getLeft(), dirPrefix + "a.commit")
+            .join();
+    assertNull(secondPage.getLeft());
+    assertEquals(Arrays.asList("c.commit", "d/"), getFilenames(secondPage.getRight()));
+    File directory = secondPage.getRight().get(1);
+    assertTrue(directory.isDirectory());
+    assertEquals(Instant.EPOCH, directory.getLastModifiedAt());
+  }
+
+  @Test
+  void testFetchObjectsByPageWithStartAfter() {
+    Pair<String, List<File>> page =
+        localAsyncStorageClient
+            .fetchObjectsByPage("", dirPrefix, null, dirPrefix + "a.commit")
+            .join();
+    assertEquals(dirPrefix + "c.commit", page.getLeft());
+    assertEquals(Arrays.asList("b.commit", "c.commit"), getFilenames(page.getRight()));
+  }
+
+  @Test
+  void testFetchObjectsByPageAfterFileNamedLikeDirectory() throws IOException {
+    // "d.commit" sorts before the directory key "d/", and "d0" after it
+    Files.write(tempDir.resolve("d.commit"), new byte[0]);
+    Files.write(tempDir.resolve("d0"), new byte[0]);
+
+    Pair<String, List<File>> page =
+        localAsyncStorageClient
+            .fetchObjectsByPage("", dirPrefix, null, dirPrefix + "d.commit")
+            .join();
+    assertNull(page.getLeft());
+    assertEquals(Arrays.asList("d/", "d0"), getFilenames(page.getRight()));
+
+    page = localAsyncStorageClient.fetchObjectsByPage("", dirPrefix, null, dirPrefix + "d/").join();
+    assertEquals(Arrays.asList("d0"), getFilenames(page.getRight()));
+  }
+
+  @Test
+  void testFetchObjectsByPageForMissingDirectory() {
+    Pair<String, List<File>> page =
+        localAsyncStorageClient.fetchObjectsByPage("", dirPrefix + "missing/", null, null).join();
+    assertNull(page.getLeft());
+    assertTrue(page.getRight().isEmpty());
+  }
+
+  @Test
+  void testListAllFilesInDir() {
+    List<File> files = localAsyncStorageClient.listAllFilesInDir("file://" + tempDir).join();
+    assertEquals(Arrays.asList("a.commit", "b.commit", "c.commit", "d/"), getFilenames(files));
+  }
+
+  @Test
+  void testReadFileAsBytes() {
+    assertArrayEquals(
+        "b".getBytes(StandardCharsets.UTF_8),
+        localAsyncStorageClient.readFileAsBytes("file://" + tempDir + "/b.commit").join());
+    assertArrayEquals(
+        new byte[0],
+        localAsyncStorageClient.readFileAsBytes("file://" + tempDir + "/d/nested").join());
+  }
+
+  @Test
+  void testStreamFileAsync() throws IOException {
+    byte[] fileContent = new byte[10000];
+    Arrays.fill(fileContent, (byte) 7);
+    Files.write(tempDir.resolve("large.commit"), fileContent);
+
+    FileStreamData fileStreamData =
+        localAsyncStorageClient.streamFileAsync("file://" + tempDir + "/large.commit").join();
+
+    assertEquals(fileContent.length, fileStreamData.getFileSize());
+    assertArrayEquals(fileContent, toByteArray(fileStreamData.getInputStream()));
+  }
+
+  @Test
+  void testStreamFileRangeAsync() throws IOException {
+    Files.write(tempDir.resolve("range.commit"), "0123456789".getBytes(StandardCharsets.UTF_8));
+    String filePath = "file://" + tempDir + "/range.commit";
+
+    FileStreamData fileStreamData =
+        localAsyncStorageClient.streamFileRangeAsync(filePath, 2, 5).join();
+    assertEquals(5, fileStreamData.getFileSize());
+    assertArrayEquals(
+        "23456".getBytes(StandardCharsets.UTF_8), toByteArray(fileStreamData.getInputStream()));
+
+    // the last range is cut at the end of the file
+    FileStreamData lastRange = localAsyncStorageClient.streamFileRangeAsync(filePath, 8, 5).join();
+    assertEquals(2, lastRange.getFileSize());
+    assertArrayEquals(
+        "89".getBytes(StandardCharsets.UTF_8), toByteArray(lastRange.getInputStream()));
+  }
+
+  private static List<String> getFilenames(List<File> files) {
+    return files.stream().map(File::getFilename).collect(Collectors.toList());
+  }
+
+  private static byte[] toByteArray(InputStream is) throws IOException {
+    try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+      byte[] buffer = new byte[4096];
+      int bytesRead;
+      while ((bytesRead = is.read(buffer)) != -1) {
+        baos.write(buffer, 0, bytesRead);
+      }
+      return baos.toByteArray();
+    }
+  }
+}
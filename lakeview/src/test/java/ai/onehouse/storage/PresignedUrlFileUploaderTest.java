@@ -1,23 +1,41 @@
 package ai.onehouse.storage;
 
 import static ai.onehouse.constants.MetadataExtractorConstants.DEFAULT_FILE_UPLOAD_STREAM_BATCH_SIZE;
+import static ai.onehouse.constants.MetadataExtractorConstants.FILE_UPLOAD_BUFFER_POOL_SIZE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 import ai.onehouse.api.AsyncHttpClientWithRetry;
+import ai.onehouse.config.models.configv1.MetadataExtractorConfig.UploadCompression;
 import ai.onehouse.constants.MetricsConstants;
 import ai.onehouse.metrics.LakeViewExtractorMetrics;
+import ai.onehouse.storage.models.BundleManifest;
 import ai.onehouse.storage.models.FileStreamData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import lombok.SneakyThrows;
 import okhttp3.OkHttpClient;
 import okhttp3.mockwebserver.Dispatcher;
@@ -25,11 +43,14 @@ import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -45,12 +66,13 @@ class PresignedUrlFileUploaderTest {
           .writeTimeout(2, TimeUnit.SECONDS)
           .build();
   private final AsyncHttpClientWithRetry asyncHttpClientWithRetry =
-      new AsyncHttpClientWithRetry(1, 1000L, client);
+      new AsyncHttpClientWithRetry(1, 1000L, client, mock(LakeViewExtractorMetrics.class));
   @Mock AsyncStorageClient mockAsyncStorageClient;
   @Mock private LakeViewExtractorMetrics hudiMetadataExtractorMetrics;
   private final String fileContent = "some-file-content";
-  private final InputStream inputStream =
-      IOUtils.toInputStream(fileContent, StandardCharsets.UTF_8);
+  private final ByteBufferPool byteBufferPool =
+      new ByteBufferPool(
+          DEFAULT_FILE_UPLOAD_STREAM_BATCH_SIZE, FILE_UPLOAD_BUFFER_POOL_SIZE, false);
   private MockWebServer mockWebServer;
 
   private static final int FAILURE_STATUS_CODE = 500;
@@ -60,13 +82,15 @@ class PresignedUrlFileUploaderTest {
   @BeforeEach
   void setup() {
     mockWebServer = new MockWebServer();
-    when(mockAsyncStorageClient.streamFileAsync(FILE_URI))
-        .thenReturn(
-            CompletableFuture.completedFuture(
-                FileStreamData.builder()
-                    .inputStream(inputStream)
-                    .fileSize(fileContent.length())
-                    .build()));
+    lenient()
+        .when(mockAsyncStorageClient.streamFileAsync(FILE_URI))
+        .thenAnswer(
+            invocation ->
+                CompletableFuture.completedFuture(
+                    FileStreamData.builder()
+                        .inputStream(IOUtils.toInputStream(fileContent, StandardCharsets.UTF_8))
+                        .fileSize(fileContent.length())
+                        .build()));
   }
 
   @SneakyThrows
@@ -97,13 +121,13 @@ class PresignedUrlFileUploaderTest {
 
     PresignedUrlFileUploader uploader =
         new PresignedUrlFileUploader(
-            mockAsyncStorageClient, asyncHttpClientWithRetry, hudiMetadataExtractorMetrics);
+            mockAsyncStorageClient,
+            asyncHttpClientWithRetry,
+            hudiMetadataExtractorMetrics,
+            byteBufferPool);
 
     uploader
-        .uploadFileToPresignedUrl(
-            mockWebServer.url("/upload").url().toString(),
-            FILE_URI,
-            DEFAULT_FILE_UPLOAD_STREAM_BATCH_SIZE)
+        .uploadFileToPresignedUrl(mockWebServer.url("/upload").url().toString(), FILE_URI)
         .join();
 
     verify(mockAsyncStorageClient).streamFileAsync(FILE_URI);
@@ -116,7 +140,10 @@ class PresignedUrlFileUploaderTest {
 
     PresignedUrlFileUploader uploader =
         new PresignedUrlFileUploader(
-            mockAsyncStorageClient, asyncHttpClientWithRetry, hudiMetadataExtractorMetrics);
+            mockAsyncStorageClient,
+            asyncHttpClientWithRetry,
+            hudiMetadataExtractorMetrics,
+            byteBufferPool);
 
     ExecutionException exception =
         assertThrows(
@@ -124,9 +151,7 @@ class PresignedUrlFileUploaderTest {
             () ->
                 uploader
                     .uploadFileToPresignedUrl(
-                        mockWebServer.url("/upload").url().toString(),
-                        FILE_URI,
-                        DEFAULT_FILE_UPLOAD_STREAM_BATCH_SIZE)
+                        mockWebServer.url("/upload").url().toString(), FILE_URI)
                     .get());
     assertEquals(
         String.format(
@@ -140,19 +165,276 @@ class PresignedUrlFileUploaderTest {
   }
 
   @Test
-  void testUploadLargeFile() {
+  void testUploadFileInChunksThroughPooledDirectBuffers() {
     setupMockWebServer(false);
+    ByteBufferPool directByteBufferPool = new ByteBufferPool(4, 1, true);
 
     PresignedUrlFileUploader uploader =
         new PresignedUrlFileUploader(
-            mockAsyncStorageClient, asyncHttpClientWithRetry, hudiMetadataExtractorMetrics);
+            mockAsyncStorageClient,
+            asyncHttpClientWithRetry,
+            hudiMetadataExtractorMetrics,
+            directByteBufferPool);
 
     uploader
-        .uploadFileToPresignedUrl(mockWebServer.url("/upload").url().toString(), FILE_URI, 1)
+        .uploadFileToPresignedUrl(mockWebServer.url("/upload").url().toString(), FILE_URI)
         .join();
 
     verify(mockAsyncStorageClient).streamFileAsync(FILE_URI);
     verifyRequestPayload();
+    // the buffer is returned to the pool once the upload is done
+    assertEquals(1, directByteBufferPool.getNumPooledBuffers());
+  }
+
+  @Test
+  @SneakyThrows
+  void testRetriedUploadStreamsFileAgain() {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(FAILURE_STATUS_CODE));
+    mockWebServer.enqueue(new MockResponse().setBody(""));
+    mockWebServer.start();
+
+    PresignedUrlFileUploader uploader =
+        new PresignedUrlFileUploader(
+            mockAsyncStorageClient,
+            new AsyncHttpClientWithRetry(2, 1L, client, mock(LakeViewExtractorMetrics.class)),
+            hudiMetadataExtractorMetrics,
+            byteBufferPool);
+
+    uploader
+        .uploadFileToPresignedUrl(mockWebServer.url("/upload").url().toString(), FILE_URI)
+        .join();
+
+    verify(mockAsyncStorageClient, times(2)).streamFileAsync(FILE_URI);
+    verifyRequestPayload();
+    verifyRequestPayload();
+  }
+
+  @ParameterizedTest
+  @EnumSource(
+      value = UploadCompression.class,
+      names = {"GZIP", "ZSTD"})
+  @SneakyThrows
+  void testUploadCompressedFile(UploadCompression uploadCompression) {
+    setupMockWebServer(false);
+
+    PresignedUrlFileUploader uploader =
+        new PresignedUrlFileUploader(
+            mockAsyncStorageClient,
+            asyncHttpClientWithRetry,
+            hudiMetadataExtractorMetrics,
+            byteBufferPool);
+
+    uploader
+        .uploadFileToPresignedUrl(
+            mockWebServer.url("/upload").url().toString(), FILE_URI, uploadCompression)
+        .join();
+
+    RecordedRequest capturedRequest = mockWebServer.takeRequest(5, TimeUnit.SECONDS);
+    assertNotNull(capturedRequest);
+    assertEquals(
+        uploadCompression.getContentEncoding(), capturedRequest.getHeader("Content-Encoding"));
+    byte[] compressedBody = capturedRequest.getBody().readByteArray();
+    // presigned S3 PUTs reject chunked bodies
+    assertNull(capturedRequest.getHeader("Transfer-Encoding"));
+    assertEquals(
+        String.valueOf(compressedBody.length), capturedRequest.getHeader("Content-Length"));
+    InputStream decompressedBody =
+        uploadCompression == UploadCompression.GZIP
+            ? new GZIPInputStream(new ByteArrayInputStream(compressedBody))
+            : new ZstdInputStream(new ByteArrayInputStream(compressedBody));
+    assertEquals(fileContent, IOUtils.toString(decompressedBody, StandardCharsets.UTF_8));
+    verify(hudiMetadataExtractorMetrics)
+        .incrementUploadCompressionCounters(
+            eq(uploadCompression),
+            eq((long) fileContent.length()),
+            eq((long) compressedBody.length),
+            anyLong());
+  }
+
+  @Test
+  @SneakyThrows
+  void testUploadBundle() {
+    setupMockWebServer(false);
+
+    PresignedUrlFileUploader uploader =
+        new PresignedUrlFileUploader(
+            mockAsyncStorageClient,
+            asyncHttpClientWithRetry,
+            hudiMetadataExtractorMetrics,
+            byteBufferPool);
+
+    uploader
+        .uploadBundleToPresignedUrl(
+            mockWebServer.url("/upload").url().toString(),
+            Arrays.asList(Pair.of("1.commit", FILE_URI), Pair.of("2.commit", FILE_URI)))
+        .join();
+
+    RecordedRequest capturedRequest = mockWebServer.takeRequest(5, TimeUnit.SECONDS);
+    assertNotNull(capturedRequest);
+    assertEquals("PUT", capturedRequest.getMethod());
+    assertEquals("application/zip", capturedRequest.getHeader("content-type"));
+    assertNull(capturedRequest.getHeader("Transfer-Encoding"));
+    assertEquals(
+        String.valueOf(capturedRequest.getBodySize()), capturedRequest.getHeader("Content-Length"));
+    Map<String, String> entries = new LinkedHashMap<>();
+    try (ZipInputStream zipStream = new ZipInputStream(capturedRequest.getBody().inputStream())) {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipStream.getNextEntry()) != null) {
+        entries.put(zipEntry.getName(), IOUtils.toString(zipStream, StandardCharsets.UTF_8));
+      }
+    }
+    assertEquals(
+        Arrays.asList("1.commit", "2.commit", "manifest.json"),
+        new ArrayList<>(entries.keySet()));
+    assertEquals(fileContent, entries.get("1.commit"));
+    assertEquals(fileContent, entries.get("2.commit"));
+    BundleManifest manifest =
+        new ObjectMapper().readValue(entries.get("manifest.json"), BundleManifest.class);
+    assertEquals(
+        Arrays.asList(
+            BundleManifest.Entry.builder().name("1.commit").size(fileContent.length()).build(),
+            BundleManifest.Entry.builder().name("2.commit").size(fileContent.length()).build()),
+        manifest.getEntries());
+  }
+
+  @Test
+  void testUploadBundleFailsWhenFileCannotBeRead() {
+    setupMockWebServer(false);
+    CompletableFuture<FileStreamData> failedRead = new CompletableFuture<>();
+    failedRead.completeExceptionally(new RuntimeException("file not found"));
+    when(mockAsyncStorageClient.streamFileAsync("s3://bucket/missing")).thenReturn(failedRead);
+
+    PresignedUrlFileUploader uploader =
+        new PresignedUrlFileUploader(
+            mockAsyncStorageClient,
+            asyncHttpClientWithRetry,
+            hudiMetadataExtractorMetrics,
+            byteBufferPool);
+
+    CompletableFuture<Void> uploadFuture =
+        uploader.uploadBundleToPresignedUrl(
+            mockWebServer.url("/upload").url().toString(),
+            Arrays.asList(
+                Pair.of("1.commit", FILE_URI), Pair.of("2.commit", "s3://bucket/missing")));
+
+    CompletionException exception = assertThrows(CompletionException.class, uploadFuture::join);
+    assertEquals(IOException.class, exception.getCause().getClass());
+  }
+
+  @Test
+  @SneakyThrows
+  void testFileStreamIsClosedWhenUploadIsNotSent() {
+    AtomicInteger numClosedStreams = new AtomicInteger();
+    when(mockAsyncStorageClient.streamFileAsync(FILE_URI))
+        .thenAnswer(
+            invocation ->
+                CompletableFuture.completedFuture(
+                    FileStreamData.builder()
+                        .inputStream(
+                            new ByteArrayInputStream(
+                                fileContent.getBytes(StandardCharsets.UTF_8)) {
+                              @Override
+                              public void close() {
+                                numClosedStreams.incrementAndGet();
+                              }
+                            })
+                        .fileSize(fileContent.length())
+                        .build()));
+    // nothing listens on the port once the server is shut down
+    mockWebServer.start();
+    String uploadUrl = mockWebServer.url("/upload").url().toString();
+    mockWebServer.shutdown();
+
+    PresignedUrlFileUploader uploader =
+        new PresignedUrlFileUploader(
+            mockAsyncStorageClient,
+            asyncHttpClientWithRetry,
+            hudiMetadataExtractorMetrics,
+            byteBufferPool);
+
+    assertThrows(
+        CompletionException.class,
+        () -> uploader.uploadFileToPresignedUrl(uploadUrl, FILE_URI).join());
+    verify(mockAsyncStorageClient).streamFileAsync(FILE_URI);
+    assertEquals(1, numClosedStreams.get());
+  }
+
+  @Test
+  @SneakyThrows
+  void testUploadFileInParts() {
+    AtomicInteger numPartTwoRequests = new AtomicInteger();
+    Map<String, String> uploadedParts = new ConcurrentHashMap<>();
+    mockWebServer.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public @NotNull MockResponse dispatch(@NotNull RecordedRequest recordedRequest) {
+            String partNumber = recordedRequest.getRequestUrl().queryParameter("partNumber");
+            // the second part fails once and is retried on its own
+            if ("2".equals(partNumber) && numPartTwoRequests.getAndIncrement() == 0) {
+              return new MockResponse().setResponseCode(FAILURE_STATUS_CODE);
+            }
+            uploadedParts.put(partNumber, recordedRequest.getBody().readUtf8());
+            return new MockResponse().setHeader("ETag", "etag-" + partNumber);
+          }
+        });
+    mockWebServer.start();
+    when(mockAsyncStorageClient.streamFileRangeAsync(eq(FILE_URI), anyLong(), anyLong()))
+        .thenAnswer(
+            invocation -> {
+              int offset = (int) (long) invocation.getArgument(1, Long.class);
+              int length = (int) (long) invocation.getArgument(2, Long.class);
+              return CompletableFuture.completedFuture(
+                  FileStreamData.builder()
+                      .inputStream(
+                          IOUtils.toInputStream(
+                              fileContent.substring(offset, offset + length),
+                              StandardCharsets.UTF_8))
+                      .fileSize(length)
+                      .build());
+            });
+
+    PresignedUrlFileUploader uploader =
+        new PresignedUrlFileUploader(
+            mockAsyncStorageClient,
+            new AsyncHttpClientWithRetry(2, 1L, client, mock(LakeViewExtractorMetrics.class)),
+            hudiMetadataExtractorMetrics,
+            byteBufferPool);
+
+    List<String> partUploadUrls = new ArrayList<>();
+    for (int partNumber = 1; partNumber <= 3; partNumber++) {
+      partUploadUrls.add(mockWebServer.url("/part?partNumber=" + partNumber).url().toString());
+    }
+    List<String> etags =
+        uploader
+            .uploadFilePartsToPresignedUrls(
+                partUploadUrls, FILE_URI, fileContent.length(), 6, 2)
+            .join();
+
+    assertEquals(Arrays.asList("etag-1", "etag-2", "etag-3"), etags);
+    assertEquals(
+        fileContent, uploadedParts.get("1") + uploadedParts.get("2") + uploadedParts.get("3"));
+    assertEquals(2, numPartTwoRequests.get());
+    verify(mockAsyncStorageClient).streamFileRangeAsync(FILE_URI, 0, 6);
+    verify(mockAsyncStorageClient, times(2)).streamFileRangeAsync(FILE_URI, 6, 6);
+    verify(mockAsyncStorageClient).streamFileRangeAsync(FILE_URI, 12, 5);
+  }
+
+  @Test
+  void testGetMultipartUploadPartSize() {
+    long mebibyte = 1024L * 1024;
+    // raised to the smallest part size object stores accept
+    assertEquals(
+        5 * mebibyte, PresignedUrlFileUploader.getMultipartUploadPartSize(20 * mebibyte, 1));
+    assertEquals(
+        8 * mebibyte,
+        PresignedUrlFileUploader.getMultipartUploadPartSize(20 * mebibyte, 8 * mebibyte));
+    // raised to keep a 100 GiB file within 10000 parts
+    long partSize =
+        PresignedUrlFileUploader.getMultipartUploadPartSize(102400 * mebibyte, 8 * mebibyte);
+    assertEquals(11 * mebibyte, partSize);
+    assertEquals(
+        9310, PresignedUrlFileUploader.getNumMultipartUploadParts(102400 * mebibyte, partSize));
+    assertEquals(1, PresignedUrlFileUploader.getNumMultipartUploadParts(0, partSize));
   }
 
   @SneakyThrows
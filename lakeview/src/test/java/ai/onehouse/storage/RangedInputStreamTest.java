@@ -0,0 +1,147 @@
+package ai.onehouse.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+class RangedInputStreamTest {
+  private static final String FILE_URI = "s3://bucket/file";
+  private static final String FILE_CONTENT = "0123456789abcdefghij";
+
+  private final Map<Long, CompletableFuture<byte[]>> requestedRanges = new LinkedHashMap<>();
+
+  @Test
+  void testRangesAreReassembledInOrder() throws IOException {
+    InputStream rangedInputStream = createRangedInputStream(4, 3);
+    // ranges completing out of order are still read in order
+    completeRange(12, 4);
+    completeRange(8, 4);
+    completeRange(4, 4);
+    assertEquals("0123456789ab", readString(rangedInputStream, 12));
+
+    // the last range is only requested once the reader moved on to the next range
+    completeRange(16, 4);
+    assertEquals("cdefghij", readString(rangedInputStream, 8));
+    assertEquals(-1, rangedInputStream.read());
+  }
+
+  @Test
+  void testInFlightRangesAreCapped() throws IOException {
+    InputStream rangedInputStream = createRangedInputStream(4, 2);
+    assertArrayEquals(new Long[] {4L, 8L}, requestedRanges.keySet().toArray(new Long[0]));
+
+    // reading the first part does not fetch more ranges
+    assertEquals("0123", readString(rangedInputStream, 4));
+    assertEquals(2, requestedRanges.size());
+
+    // moving on to the next range makes room for one more range
+    completeRange(4, 4);
+    assertEquals("4567", readString(rangedInputStream, 4));
+    assertArrayEquals(new Long[] {4L, 8L, 12L}, requestedRanges.keySet().toArray(new Long[0]));
+  }
+
+  @Test
+  void testRangesShareInFlightBytesBudget() throws IOException {
+    Semaphore inFlightBytesBudget = new Semaphore(8);
+    InputStream rangedInputStream = createRangedInputStream(4, 4, inFlightBytesBudget);
+    // two ranges take up the whole budget
+    assertEquals(2, requestedRanges.size());
+    assertEquals(0, inFlightBytesBudget.availablePermits());
+
+    AtomicInteger numOtherFileRanges = new AtomicInteger();
+    InputStream otherRangedInputStream =
+        new RangedInputStream(
+            FILE_URI,
+            new ByteArrayInputStream(FILE_CONTENT.substring(0, 4).getBytes(StandardCharsets.UTF_8)),
+            4,
+            FILE_CONTENT.length(),
+            4,
+            4,
+            inFlightBytesBudget,
+            (offset, length) -> {
+              numOtherFileRanges.incrementAndGet();
+              return CompletableFuture.completedFuture(
+                  FILE_CONTENT
+                      .substring((int) offset, (int) (offset + length))
+                      .getBytes(StandardCharsets.UTF_8));
+            });
+    assertEquals(0, numOtherFileRanges.get());
+
+    // closing the first file returns its ranges to the budget
+    rangedInputStream.close();
+    assertEquals(8, inFlightBytesBudget.availablePermits());
+    assertEquals(FILE_CONTENT, readString(otherRangedInputStream, FILE_CONTENT.length()));
+    assertEquals(4, numOtherFileRanges.get());
+    otherRangedInputStream.close();
+    assertEquals(8, inFlightBytesBudget.availablePermits());
+  }
+
+  @Test
+  void testFailedRangeFailsRead() throws IOException {
+    InputStream rangedInputStream = createRangedInputStream(4, 1);
+    requestedRanges.get(4L).completeExceptionally(new RuntimeException("range not found"));
+
+    assertEquals("0123", readString(rangedInputStream, 4));
+    IOException exception = assertThrows(IOException.class, rangedInputStream::read);
+    assertEquals("range not found", exception.getCause().getMessage());
+  }
+
+  @Test
+  void testCloseCancelsInFlightRanges() throws IOException {
+    InputStream rangedInputStream = createRangedInputStream(4, 2);
+
+    rangedInputStream.close();
+
+    assertTrue(requestedRanges.values().stream().allMatch(CompletableFuture::isCancelled));
+  }
+
+  private InputStream createRangedInputStream(long rangeSize, int maxInFlightRanges) {
+    return createRangedInputStream(rangeSize, maxInFlightRanges, new Semaphore(Integer.MAX_VALUE));
+  }
+
+  private InputStream createRangedInputStream(
+      long rangeSize, int maxInFlightRanges, Semaphore inFlightBytesBudget) {
+    return new RangedInputStream(
+        FILE_URI,
+        new ByteArrayInputStream(
+            FILE_CONTENT.substring(0, (int) rangeSize).getBytes(StandardCharsets.UTF_8)),
+        rangeSize,
+        FILE_CONTENT.length(),
+        rangeSize,
+        maxInFlightRanges,
+        inFlightBytesBudget,
+        (offset, length) -> {
+          CompletableFuture<byte[]> range = new CompletableFuture<>();
+          requestedRanges.put(offset, range);
+          return range;
+        });
+  }
+
+  private void completeRange(long offset, int length) {
+    requestedRanges
+        .get(offset)
+        .complete(
+            FILE_CONTENT
+                .substring((int) offset, (int) offset + length)
+                .getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String readString(InputStream inputStream, int length) throws IOException {
+    byte[] content = new byte[length];
+    IOUtils.readFully(inputStream, content);
+    return new String(content, StandardCharsets.UTF_8);
+  }
+}
@@ -3,6 +3,7 @@ package ai.onehouse.storage;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import ai.onehouse.config.models.common.RangedReadConfig;
 import ai.onehouse.exceptions.RateLimitException;
 import ai.onehouse.storage.models.File;
 import ai.onehouse.storage.models.FileStreamData;
@@ -18,6 +19,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.BeforeEach;
@@ -111,6 +113,77 @@ class S3AsyncStorageClientTest {
     assertEquals(result, expectedFiles);
   }
 
+  @Test
+  void testListFilesInDirByPageStopsWhenConsumerIsDone()
+      throws ExecutionException, InterruptedException {
+    ListObjectsV2Request expectedRequest =
+        ListObjectsV2Request.builder()
+            .bucket(TEST_BUCKET)
+            .prefix(TEST_KEY + "/")
+            .delimiter("/")
+            .build();
+    when(mockS3AsyncClient.listObjectsV2(expectedRequest))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                buildListObjectsV2Response(TEST_KEY + "/", Arrays.asList("a", "b"), "token")));
+
+    List<List<File>> consumedPages = new ArrayList<>();
+    s3AsyncStorageClient
+        .listFilesInDirByPage(
+            S3_URI,
+            page -> {
+              consumedPages.add(page);
+              return CompletableFuture.completedFuture(false);
+            })
+        .get();
+
+    assertEquals(1, consumedPages.size());
+    assertEquals(
+        Arrays.asList("a", "b"),
+        consumedPages.get(0).stream().map(File::getFilename).collect(Collectors.toList()));
+    verify(mockS3AsyncClient, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+  }
+
+  @MockitoSettings(strictness = Strictness.LENIENT)
+  @Test
+  void testListObjectsInRanges() throws ExecutionException, InterruptedException {
+    String prefix = TEST_KEY + "/";
+    ListObjectsV2Request firstRangeRequest =
+        ListObjectsV2Request.builder()
+            .bucket(TEST_BUCKET)
+            .prefix(prefix)
+            .delimiter("/")
+            .startAfter(prefix + "a")
+            .build();
+    ListObjectsV2Request secondRangeRequest =
+        firstRangeRequest.toBuilder().startAfter(prefix + "m").build();
+
+    // first range spans two pages, listing stops at the page which crosses into the second range
+    when(mockS3AsyncClient.listObjectsV2(firstRangeRequest))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                buildListObjectsV2Response(prefix, Arrays.asList("b", "c"), "token")));
+    when(mockS3AsyncClient.listObjectsV2(
+            firstRangeRequest.toBuilder().continuationToken("token").build()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                buildListObjectsV2Response(prefix, Arrays.asList("m", "n"), "token2")));
+    when(mockS3AsyncClient.listObjectsV2(secondRangeRequest))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                buildListObjectsV2Response(prefix, Arrays.asList("n", "o"), null)));
+
+    List<File> result =
+        s3AsyncStorageClient
+            .listObjectsInRanges(TEST_BUCKET, prefix, Arrays.asList(prefix + "a", prefix + "m"))
+            .get();
+
+    assertEquals(
+        Arrays.asList("b", "c", "m", "n", "o"),
+        result.stream().map(File::getFilename).collect(Collectors.toList()));
+    verify(mockS3AsyncClient, times(3)).listObjectsV2(any(ListObjectsV2Request.class));
+  }
+
   @Test
   void testStreamFileAsync() throws ExecutionException, InterruptedException, IOException {
     byte[] fileContent = "file content".getBytes(StandardCharsets.UTF_8);
@@ -126,6 +199,107 @@ class S3AsyncStorageClientTest {
     assertEquals(contentLength, result.getFileSize());
   }
 
+  @Test
+  void testStreamFileAsyncInRanges() throws IOException {
+    String fileContent = "0123456789abcdefghij";
+    S3AsyncStorageClient rangedS3AsyncStorageClient = createRangedS3AsyncStorageClient();
+    stubRangedReads(fileContent);
+
+    FileStreamData result = rangedS3AsyncStorageClient.streamFileAsync(S3_URI).join();
+
+    assertEquals(fileContent.length(), result.getFileSize());
+    assertEquals(fileContent, new String(toByteArray(result.getInputStream()), StandardCharsets.UTF_8));
+    // the first part is a ranged GET as well, the rest is fetched in ranges of the same version
+    verify(mockS3AsyncClient)
+        .getObject(
+            eq(GetObjectRequest.builder().bucket(TEST_BUCKET).key(TEST_KEY).range("bytes=0-7").build()),
+            any(AsyncResponseTransformer.class));
+    verify(mockS3AsyncClient)
+        .getObject(
+            eq(
+                GetObjectRequest.builder()
+                    .bucket(TEST_BUCKET)
+                    .key(TEST_KEY)
+                    .range("bytes=8-15")
+                    .ifMatch("etag")
+                    .build()),
+            any(AsyncResponseTransformer.class));
+    verify(mockS3AsyncClient)
+        .getObject(
+            eq(
+                GetObjectRequest.builder()
+                    .bucket(TEST_BUCKET)
+                    .key(TEST_KEY)
+                    .range("bytes=16-19")
+                    .ifMatch("etag")
+                    .build()),
+            any(AsyncResponseTransformer.class));
+  }
+
+  @Test
+  void testStreamFileAsyncInRangesReadsSmallFileInOneRequest() throws IOException {
+    String fileContent = "01234";
+    S3AsyncStorageClient rangedS3AsyncStorageClient = createRangedS3AsyncStorageClient();
+    stubRangedReads(fileContent);
+
+    FileStreamData result = rangedS3AsyncStorageClient.streamFileAsync(S3_URI).join();
+
+    assertEquals(fileContent.length(), result.getFileSize());
+    assertEquals(fileContent, new String(toByteArray(result.getInputStream()), StandardCharsets.UTF_8));
+    verify(mockS3AsyncClient, times(1))
+        .getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+  }
+
+  @Test
+  void testStreamFileAsyncInRangesReadsEmptyFile() throws IOException {
+    S3AsyncStorageClient rangedS3AsyncStorageClient = createRangedS3AsyncStorageClient();
+    CompletableFuture<ResponseInputStream<GetObjectResponse>> rangeNotSatisfiable =
+        new CompletableFuture<>();
+    rangeNotSatisfiable.completeExceptionally(S3Exception.builder().statusCode(416).build());
+    when(mockS3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+        .thenReturn(rangeNotSatisfiable);
+
+    FileStreamData result = rangedS3AsyncStorageClient.streamFileAsync(S3_URI).join();
+
+    assertEquals(0, result.getFileSize());
+    assertEquals(-1, result.getInputStream().read());
+  }
+
+  private S3AsyncStorageClient createRangedS3AsyncStorageClient() {
+    return new S3AsyncStorageClient(
+        mockS3AsyncClientProvider,
+        mockStorageUtils,
+        ForkJoinPool.commonPool(),
+        RangedReadConfig.builder().thresholdBytes(8).rangeSizeBytes(8).maxInFlightRanges(1).build());
+  }
+
+  // answers the first part as a stream and the following ranges as bytes
+  private void stubRangedReads(String fileContent) {
+    when(mockS3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+        .thenAnswer(
+            invocation -> {
+              GetObjectRequest request = invocation.getArgument(0);
+              String[] range = request.range().substring("bytes=".length()).split("-");
+              int start = Integer.parseInt(range[0]);
+              int end = Math.min(Integer.parseInt(range[1]), fileContent.length() - 1);
+              byte[] rangeContent =
+                  fileContent.substring(start, end + 1).getBytes(StandardCharsets.UTF_8);
+              if (request.ifMatch() == null) {
+                return CompletableFuture.completedFuture(
+                    new ResponseInputStream<>(
+                        GetObjectResponse.builder()
+                            .contentLength((long) rangeContent.length)
+                            .contentRange(
+                                String.format("bytes %d-%d/%d", start, end, fileContent.length()))
+                            .eTag("etag")
+                            .build(),
+                        new ByteArrayInputStream(rangeContent)));
+              }
+              return CompletableFuture.completedFuture(
+                  ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), rangeContent));
+            });
+  }
+
   @Test
   void testReadFileAsBytes() throws ExecutionException, InterruptedException, IOException {
     byte[] fileContent = "file content".getBytes(StandardCharsets.UTF_8);
@@ -248,6 +422,20 @@ class S3AsyncStorageClientTest {
     }
   }
 
+  private ListObjectsV2Response buildListObjectsV2Response(
+      String prefix, List<String> fileNames, String nextContinuationToken) {
+    return ListObjectsV2Response.builder()
+        .contents(
+            fileNames.stream()
+                .map(
+                    fileName ->
+                        S3Object.builder().key(prefix + fileName).lastModified(Instant.EPOCH).build())
+                .collect(Collectors.toList()))
+        .isTruncated(nextContinuationToken != null)
+        .nextContinuationToken(nextContinuationToken)
+        .build();
+  }
+
   private <R> CompletableFuture<R> buildS3Exception(){
 
     CompletableFuture<R> futureResponse = new CompletableFuture<>();
@@ -0,0 +1,94 @@
+package ai.onehouse.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import okhttp3.MediaType;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+class SpooledRequestBodyTest {
+  private static final MediaType MEDIA_TYPE = MediaType.parse("application/octet-stream");
+  private static final byte[] CONTENT = "some-spooled-content".getBytes();
+
+  @Test
+  void testContentIsWrittenOnceForEveryAttempt() throws IOException {
+    AtomicInteger numWrites = new AtomicInteger();
+    try (SpooledRequestBody requestBody = getRequestBody(1024, numWrites)) {
+      assertEquals(CONTENT.length, requestBody.contentLength());
+      assertArrayEquals(CONTENT, write(requestBody));
+      // a retry sends the spooled bytes again
+      assertEquals(CONTENT.length, requestBody.contentLength());
+      assertArrayEquals(CONTENT, write(requestBody));
+      assertEquals(1, numWrites.get());
+    }
+  }
+
+  @Test
+  void testContentPastThresholdIsSpooledToTemporaryFile() throws IOException {
+    List<Path> spoolFilesBefore = getSpoolFiles();
+    SpooledRequestBody requestBody = getRequestBody(4, new AtomicInteger());
+
+    assertEquals(CONTENT.length, requestBody.contentLength());
+    List<Path> spoolFiles = getSpoolFiles();
+    spoolFiles.removeAll(spoolFilesBefore);
+    assertEquals(1, spoolFiles.size());
+    assertArrayEquals(CONTENT, write(requestBody));
+
+    requestBody.close();
+    assertFalse(Files.exists(spoolFiles.get(0)));
+  }
+
+  @Test
+  void testFailedWriteIsReported() throws IOException {
+    List<Path> spoolFilesBefore = getSpoolFiles();
+    SpooledRequestBody requestBody =
+        new SpooledRequestBody(MEDIA_TYPE, 4) {
+          @Override
+          protected void writeContent(OutputStream outputStream) throws IOException {
+            outputStream.write(CONTENT);
+            throw new IOException("file not found");
+          }
+        };
+
+    assertThrows(IOException.class, requestBody::contentLength);
+    // the partly written spool file is deleted right away
+    assertEquals(spoolFilesBefore, getSpoolFiles());
+  }
+
+  private static SpooledRequestBody getRequestBody(
+      int memoryThresholdBytes, AtomicInteger numWrites) {
+    return new SpooledRequestBody(MEDIA_TYPE, memoryThresholdBytes) {
+      @Override
+      protected void writeContent(OutputStream outputStream) throws IOException {
+        numWrites.incrementAndGet();
+        outputStream.write(CONTENT);
+      }
+    };
+  }
+
+  private static byte[] write(SpooledRequestBody requestBody) throws IOException {
+    Buffer buffer = new Buffer();
+    requestBody.writeTo(buffer);
+    return buffer.readByteArray();
+  }
+
+  private static List<Path> getSpoolFiles() throws IOException {
+    try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+      return files
+          .filter(file -> file.getFileName().toString().startsWith("lakeview-upload-"))
+          .collect(Collectors.toList());
+    }
+  }
+}
@@ -13,6 +13,8 @@ class StorageUtilsTest {
     assertEquals("path/to/file", storageUtils.getPathFromUrl("gs://bucket/path/to/file"));
     assertEquals("", storageUtils.getPathFromUrl("s3://bucket"));
     assertEquals("", storageUtils.getPathFromUrl("gs://bucket"));
+    assertEquals("path/to/file", storageUtils.getPathFromUrl("file:///path/to/file"));
+    assertEquals("", storageUtils.getPathFromUrl("file:///"));
     assertThrows(IllegalArgumentException.class, () -> storageUtils.getPathFromUrl("invalidUri"));
   }
 
@@ -49,6 +51,10 @@ class StorageUtilsTest {
   void testGetBucketNameFromUri() {
     assertEquals("bucket", storageUtils.getBucketNameFromUri("s3://bucket/path/to/file"));
     assertEquals("bucket", storageUtils.getBucketNameFromUri("gs://bucket/path/to/file"));
+    assertEquals("", storageUtils.getBucketNameFromUri("file:///path/to/file"));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> storageUtils.getBucketNameFromUri("file://relative/path"));
     assertThrows(
         IllegalArgumentException.class, () -> storageUtils.getBucketNameFromUri("invalidUri"));
   }
@@ -16,6 +16,7 @@ import java.util.concurrent.ExecutorService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Answers;
 import org.mockito.Mock;
@@ -101,4 +102,33 @@ class S3AsyncClientProviderTest {
       verify(s3AsyncClientProviderSpy, times(1)).createS3AsyncClient();
     }
   }
+
+  @ParameterizedTest
+  @EnumSource(S3Config.S3ClientType.class)
+  void testCreateTunedS3AsyncClient(S3Config.S3ClientType clientType) {
+    when(config.getFileSystemConfiguration()).thenReturn(fileSystemConfiguration);
+    when(fileSystemConfiguration.getS3Config())
+        .thenReturn(
+            S3Config.builder()
+                .region("us-west-2")
+                .accessKey(Optional.of("access-key"))
+                .accessSecret(Optional.of("access-secret"))
+                .clientType(clientType)
+                .maxConcurrency(Optional.of(200))
+                .targetThroughputInGbps(Optional.of(5.0))
+                .connectionAcquisitionTimeoutSeconds(Optional.of(30))
+                .connectionMaxIdleTimeSeconds(Optional.of(120))
+                .tcpKeepAlive(Optional.of(true))
+                .endpointOverride(Optional.of("http://localhost:9000"))
+                .forcePathStyle(Optional.of(true))
+                .build());
+
+    try (S3AsyncClient result =
+        new S3AsyncClientProvider(config, executorService).createS3AsyncClient()) {
+      assertNotNull(result);
+      assertEquals(
+          clientType == S3Config.S3ClientType.CRT,
+          result.getClass().getSimpleName().contains("Crt"));
+    }
+  }
 }